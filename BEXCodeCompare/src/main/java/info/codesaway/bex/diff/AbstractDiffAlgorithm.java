@@ -5,6 +5,7 @@ import static info.codesaway.bex.diff.NormalizationFunction.normalization;
 import static info.codesaway.bex.util.BEXUtilities.firstNonNull;
 import static info.codesaway.bex.util.BEXUtilities.immutableCopyOf;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicReference;
@@ -22,6 +23,30 @@ public abstract class AbstractDiffAlgorithm implements DiffAlgorithm {
 	private final NormalizationFunction normalizationFunction;
 	//	private final BiFunction<String, String, DiffNormalizedText> normalizationFunction;
 
+	/**
+	 * Interned lines (or <code>null</code> if lines are compared by normalizing the text each time)
+	 */
+	private final InternedLines internedLines;
+
+	/**
+	 * Number of common lines at the start, which were trimmed (the same number of lines is trimmed from each side)
+	 */
+	private final int commonPrefixLength;
+
+	/**
+	 * Number of common lines at the end, which were trimmed (the same number of lines is trimmed from each side)
+	 */
+	private final int commonSuffixLength;
+
+	// All the lines (including the trimmed common lines)
+	private final List<DiffLine> allLeftLines;
+	private final List<DiffLine> allRightLines;
+
+	/**
+	 * Budget which limits how much work the algorithm does (or <code>null</code> if unlimited)
+	 */
+	private final DiffBudget budget;
+
 	private final AtomicReference<List<DiffEdit>> cachedDiff = new AtomicReference<>();
 
 	/**
@@ -44,16 +69,195 @@ public abstract class AbstractDiffAlgorithm implements DiffAlgorithm {
 	 */
 	protected AbstractDiffAlgorithm(final List<DiffLine> leftLines, final List<DiffLine> rightLines,
 			final NormalizationFunction normalizationFunction) {
+		this(leftLines, rightLines, normalizationFunction, false);
+	}
+
+	/**
+	 *
+	 * @param leftLines
+	 * @param rightLines
+	 * @param normalizationFunction the normalization function (if null, mimics {@link NormalizationFunction#NO_NORMALIZATION})
+	 * @param trimCommonLines whether to trim the common lines at the start and end (if so, only the lines between are passed to the algorithm)
+	 * @since 0.15
+	 */
+	protected AbstractDiffAlgorithm(final List<DiffLine> leftLines, final List<DiffLine> rightLines,
+			final NormalizationFunction normalizationFunction, final boolean trimCommonLines) {
+		this(leftLines, rightLines, normalizationFunction, trimCommonLines, null);
+	}
+
+	/**
+	 *
+	 * @param leftLines
+	 * @param rightLines
+	 * @param normalizationFunction the normalization function (if null, mimics {@link NormalizationFunction#NO_NORMALIZATION})
+	 * @param trimCommonLines whether to trim the common lines at the start and end (if so, only the lines between are passed to the algorithm)
+	 * @param budget the budget which limits how much work the algorithm does (if null, no limit)
+	 * @since 0.15
+	 */
+	protected AbstractDiffAlgorithm(final List<DiffLine> leftLines, final List<DiffLine> rightLines,
+			final NormalizationFunction normalizationFunction, final boolean trimCommonLines,
+			final DiffBudget budget) {
+		this.budget = budget;
+
 		// Take a defensive clone of the passed values and retain them as immutable lists
 		//		this.leftLines = ImmutableList.copyOf(leftLines);
 		//		this.rightLines = ImmutableList.copyOf(rightLines);
-		this.leftLines = immutableCopyOf(leftLines);
-		this.rightLines = immutableCopyOf(rightLines);
+		this.allLeftLines = immutableCopyOf(leftLines);
+		this.allRightLines = immutableCopyOf(rightLines);
 		this.normalizationFunction = firstNonNull(normalizationFunction, NO_NORMALIZATION);
+		this.internedLines = null;
+
+		if (trimCommonLines) {
+			this.commonPrefixLength = commonPrefixLength(this.allLeftLines, this.allRightLines,
+					this.normalizationFunction);
+			this.commonSuffixLength = commonSuffixLength(this.allLeftLines, this.allRightLines,
+					this.commonPrefixLength, this.normalizationFunction);
+		} else {
+			this.commonPrefixLength = 0;
+			this.commonSuffixLength = 0;
+		}
+
+		this.leftLines = this.trim(this.allLeftLines);
+		this.rightLines = this.trim(this.allRightLines);
+	}
+
+	/**
+	 * Creates a diff algorithm which compares lines using their interned ids
+	 *
+	 * @param internedLines the interned lines
+	 * @since 0.15
+	 */
+	protected AbstractDiffAlgorithm(final InternedLines internedLines) {
+		this(internedLines, false);
+	}
+
+	/**
+	 * Creates a diff algorithm which compares lines using their interned ids
+	 *
+	 * @param internedLines the interned lines
+	 * @param trimCommonLines whether to trim the common lines at the start and end (if so, only the lines between are passed to the algorithm)
+	 * @since 0.15
+	 */
+	protected AbstractDiffAlgorithm(final InternedLines internedLines, final boolean trimCommonLines) {
+		this(internedLines, trimCommonLines, null);
+	}
+
+	/**
+	 * Creates a diff algorithm which compares lines using their interned ids
+	 *
+	 * @param internedLines the interned lines
+	 * @param trimCommonLines whether to trim the common lines at the start and end (if so, only the lines between are passed to the algorithm)
+	 * @param budget the budget which limits how much work the algorithm does (if null, no limit)
+	 * @since 0.15
+	 */
+	protected AbstractDiffAlgorithm(final InternedLines internedLines, final boolean trimCommonLines,
+			final DiffBudget budget) {
+		this.budget = budget;
+
+		Objects.requireNonNull(internedLines, "internedLines cannot be null");
+
+		// InternedLines already has immutable copies of the lines
+		this.allLeftLines = internedLines.getLeftLines();
+		this.allRightLines = internedLines.getRightLines();
+		this.normalizationFunction = internedLines.getNormalizationFunction();
+
+		if (trimCommonLines) {
+			int leftSize = this.allLeftLines.size();
+			int rightSize = this.allRightLines.size();
+			int minSize = Math.min(leftSize, rightSize);
+
+			int prefixLength = 0;
+			while (prefixLength < minSize && internedLines.isEqual(prefixLength, prefixLength)) {
+				prefixLength++;
+			}
+
+			int suffixLength = 0;
+			while (prefixLength + suffixLength < minSize
+					&& internedLines.isEqual(leftSize - suffixLength - 1, rightSize - suffixLength - 1)) {
+				suffixLength++;
+			}
+
+			this.commonPrefixLength = prefixLength;
+			this.commonSuffixLength = suffixLength;
+		} else {
+			this.commonPrefixLength = 0;
+			this.commonSuffixLength = 0;
+		}
+
+		this.internedLines = this.isTrimmed()
+				? internedLines.subLines(this.commonPrefixLength, this.allLeftLines.size() - this.commonSuffixLength,
+						this.commonPrefixLength, this.allRightLines.size() - this.commonSuffixLength)
+				: internedLines;
+		this.leftLines = this.internedLines.getLeftLines();
+		this.rightLines = this.internedLines.getRightLines();
+	}
+
+	/**
+	 * Gets the number of common lines at the start of both sides
+	 */
+	private static int commonPrefixLength(final List<DiffLine> leftLines, final List<DiffLine> rightLines,
+			final NormalizationFunction normalizationFunction) {
+		int minSize = Math.min(leftLines.size(), rightLines.size());
+
+		int length = 0;
+		while (length < minSize
+				&& isCommonLine(leftLines.get(length), rightLines.get(length), normalizationFunction)) {
+			length++;
+		}
+
+		return length;
+	}
+
+	/**
+	 * Gets the number of common lines at the end of both sides (excluding the common lines at the start)
+	 */
+	private static int commonSuffixLength(final List<DiffLine> leftLines, final List<DiffLine> rightLines,
+			final int prefixLength, final NormalizationFunction normalizationFunction) {
+		int leftSize = leftLines.size();
+		int rightSize = rightLines.size();
+		int minSize = Math.min(leftSize, rightSize);
+
+		int length = 0;
+		while (prefixLength + length < minSize
+				&& isCommonLine(leftLines.get(leftSize - length - 1), rightLines.get(rightSize - length - 1),
+						normalizationFunction)) {
+			length++;
+		}
+
+		return length;
+	}
+
+	private static boolean isCommonLine(final DiffLine leftLine, final DiffLine rightLine,
+			final NormalizationFunction normalizationFunction) {
+		// Most common lines are identical, so check this first (before normalizing)
+		if (leftLine.getText().equals(rightLine.getText())) {
+			return true;
+		}
+
+		return normalizationFunction != NO_NORMALIZATION
+				&& normalizationFunction.normalize(leftLine, rightLine).hasEqualText();
+	}
+
+	private List<DiffLine> trim(final List<DiffLine> lines) {
+		return this.isTrimmed()
+				? lines.subList(this.commonPrefixLength, lines.size() - this.commonSuffixLength)
+				: lines;
+	}
+
+	/**
+	 * Indicates if common lines at the start or end were trimmed
+	 *
+	 * @return <code>true</code> if common lines were trimmed
+	 */
+	private boolean isTrimmed() {
+		return this.commonPrefixLength != 0 || this.commonSuffixLength != 0;
 	}
 
 	/**
 	 * Gets the left lines
+	 *
+	 * <p>If common lines were trimmed, this only includes the lines between the common lines at the start and end</p>
+	 *
 	 * @return the left lines
 	 */
 	@SuppressFBWarnings(value = "EI_EXPOSE_REP", justification = "Immutable copy in constructor")
@@ -64,6 +268,8 @@ public abstract class AbstractDiffAlgorithm implements DiffAlgorithm {
 	/**
 	 * Gets the right lines.
 	 *
+	 * <p>If common lines were trimmed, this only includes the lines between the common lines at the start and end</p>
+	 *
 	 * @return the right lines
 	 */
 	@SuppressFBWarnings(value = "EI_EXPOSE_REP", justification = "Immutable copy in constructor")
@@ -77,6 +283,91 @@ public abstract class AbstractDiffAlgorithm implements DiffAlgorithm {
 		return this.normalizationFunction;
 	}
 
+	/**
+	 * Gets the cached normalized text of each line, which can be passed as the normalization function to later stages
+	 * (such as {@link DiffHelper#handleSubstitution(List, NormalizationFunction, info.codesaway.bex.diff.substitution.SubstitutionType...) DiffHelper.handleSubstitution})
+	 *
+	 * @return the normalized lines (or <code>null</code> if the normalization function is not a {@link NormalizedLines})
+	 * @since 0.15
+	 */
+	public NormalizedLines getNormalizedLines() {
+		return this.normalizationFunction instanceof NormalizedLines
+				? (NormalizedLines) this.normalizationFunction
+				: null;
+	}
+
+	/**
+	 * Gets the interned lines
+	 *
+	 * @return the interned lines (or <code>null</code> if lines are not interned)
+	 * @since 0.15
+	 */
+	public InternedLines getInternedLines() {
+		return this.internedLines;
+	}
+
+	/**
+	 * Indicates if the lines are interned (if so, lines are compared using their interned ids)
+	 *
+	 * @return <code>true</code> if the lines are interned
+	 * @since 0.15
+	 */
+	public boolean isInterned() {
+		return this.internedLines != null;
+	}
+
+	/**
+	 * Gets the budget which limits how much work the algorithm does
+	 *
+	 * @return the budget (or <code>null</code> if there is no limit)
+	 * @since 0.15
+	 */
+	public DiffBudget getBudget() {
+		return this.budget;
+	}
+
+	/**
+	 * Indicates if the budget ran out, so the diff is approximate (valid, but coarser than the full algorithm would give)
+	 *
+	 * @return <code>true</code> if the diff is approximate
+	 * @since 0.15
+	 */
+	public boolean isApproximate() {
+		return this.budget != null && this.budget.isExhausted();
+	}
+
+	/**
+	 * Indicates if the budget is exceeded
+	 *
+	 * <p>Algorithms call this as they search; if exceeded, the algorithm should give up searching and use a coarser diff</p>
+	 *
+	 * @param cost the current cost (such as the number of D-steps searched for the current box)
+	 * @return <code>true</code> if the budget is exceeded (always <code>false</code> if there is no budget)
+	 * @since 0.15
+	 */
+	protected boolean isBudgetExceeded(final int cost) {
+		return this.budget != null && this.budget.isExceeded(cost);
+	}
+
+	/**
+	 * Indicates if the left line and right line at the specified positions have equal normalized text
+	 *
+	 * <p>If the lines are interned, compares the interned ids; otherwise, normalizes the text using {@link #isNormalizedEqualText(info.codesaway.bex.Indexed, info.codesaway.bex.Indexed) isNormalizedEqualText}</p>
+	 *
+	 * @param leftPosition the left position
+	 * @param rightPosition the right position
+	 * @return <code>true</code> if the lines have equal normalized text
+	 * @since 0.15
+	 */
+	protected boolean isNormalizedEqualLine(final int leftPosition, final int rightPosition) {
+		if (this.internedLines != null) {
+			return this.internedLines.isEqual(leftPosition, rightPosition);
+		}
+
+		return this.isNormalizedEqualText(this.getLeftIndexedText(leftPosition),
+				this.getRightIndexedText(rightPosition));
+	}
+
 	// Helper methods to make code more readable
 
 	/**
@@ -126,6 +417,8 @@ public abstract class AbstractDiffAlgorithm implements DiffAlgorithm {
 	 *
 	 * <p>This is a lazy getter and the diff is only calculated the first time it's run</p>
 	 *
+	 * <p>If common lines were trimmed, the diff includes the common lines at the start and end</p>
+	 *
 	 * @return the calculated diff
 	 */
 	// Reference: https://projectlombok.org/features/GetterLazy
@@ -136,7 +429,7 @@ public abstract class AbstractDiffAlgorithm implements DiffAlgorithm {
 			synchronized (this.cachedDiff) {
 				value = this.cachedDiff.get();
 				if (value == null) {
-					List<DiffEdit> actualValue = this.diff();
+					List<DiffEdit> actualValue = this.isTrimmed() ? this.addCommonLines(this.diff()) : this.diff();
 					this.cachedDiff.set(actualValue);
 					value = actualValue;
 				}
@@ -150,6 +443,32 @@ public abstract class AbstractDiffAlgorithm implements DiffAlgorithm {
 	 */
 	protected abstract List<DiffEdit> diff();
 
+	/**
+	 * Adds the trimmed common lines at the start and end to the diff
+	 *
+	 * @param diff the diff of the lines between the common lines
+	 * @return the full diff
+	 */
+	private List<DiffEdit> addCommonLines(final List<DiffEdit> diff) {
+		List<DiffEdit> result = new ArrayList<>(this.commonPrefixLength + diff.size() + this.commonSuffixLength);
+
+		for (int i = 0; i < this.commonPrefixLength; i++) {
+			result.add(this.newEqualOrNormalizeEdit(this.allLeftLines.get(i), this.allRightLines.get(i)));
+		}
+
+		result.addAll(diff);
+
+		int leftSuffixStart = this.allLeftLines.size() - this.commonSuffixLength;
+		int rightSuffixStart = this.allRightLines.size() - this.commonSuffixLength;
+
+		for (int i = 0; i < this.commonSuffixLength; i++) {
+			result.add(this.newEqualOrNormalizeEdit(this.allLeftLines.get(leftSuffixStart + i),
+					this.allRightLines.get(rightSuffixStart + i)));
+		}
+
+		return result;
+	}
+
 	/**
 	 * Returns a new DiffEdit with DiffType of either {@link BasicDiffType#EQUAL} or {@link BasicDiffType#NORMALIZE} depending whether the specified text is equal or not
 	 *
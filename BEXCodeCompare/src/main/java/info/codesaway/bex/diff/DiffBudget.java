@@ -0,0 +1,139 @@
+package info.codesaway.bex.diff;
+
+import static info.codesaway.bex.util.BEXUtilities.checkArgument;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits how much work a diff algorithm does, so a pathological pair of files can't stall the diff
+ *
+ * <p>Similar to GNU diff's heuristic and git's diff.maxcost:</p>
+ * <ul>
+ * <li>Max cost is the maximum edit distance (number of D-steps) searched for each box before giving up on finding the optimal split</li>
+ * <li>Max time is the maximum time for the entire diff (starting when the budget is first checked)</li>
+ * </ul>
+ *
+ * <p>When the budget runs out, the algorithm returns a valid, but coarser, diff
+ * (MyersLinearDiff splits the box at the furthest reaching point found so far and keeps diffing both halves;
+ * only if no progress was made are the remaining lines reported as deleted and inserted)
+ * and the budget is marked as {@link #isExhausted() exhausted}, meaning the diff is approximate.</p>
+ *
+ * <p>A budget tracks a single diff (it can be shared by the diff algorithm and its fallback diff algorithm), so create a new budget for each diff.
+ * This class is thread-safe.</p>
+ *
+ * @since 0.15
+ */
+public final class DiffBudget {
+	/**
+	 * Indicates there is no limit on the cost
+	 */
+	public static final int UNLIMITED_COST = Integer.MAX_VALUE;
+
+	private final int maxCost;
+
+	/**
+	 * Max time in nanoseconds (or {@link Long#MAX_VALUE} if no limit)
+	 */
+	private final long maxTimeNanos;
+
+	/**
+	 * Deadline in terms of {@link System#nanoTime()} (set when the budget is first checked)
+	 */
+	private final AtomicLong deadline = new AtomicLong();
+	private volatile boolean isStarted;
+
+	private volatile boolean isExhausted;
+
+	private DiffBudget(final int maxCost, final long maxTimeNanos) {
+		checkArgument(maxCost >= 0, "maxCost cannot be negative: " + maxCost);
+		checkArgument(maxTimeNanos >= 0, "maxTime cannot be negative");
+
+		this.maxCost = maxCost;
+		this.maxTimeNanos = maxTimeNanos;
+	}
+
+	/**
+	 * Creates a budget which limits the cost (edit distance searched for each box)
+	 *
+	 * @param maxCost the max cost
+	 * @return the budget
+	 */
+	public static DiffBudget ofCost(final int maxCost) {
+		return new DiffBudget(maxCost, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Creates a budget which limits the time for the entire diff
+	 *
+	 * @param maxTime the max time
+	 * @return the budget
+	 */
+	public static DiffBudget ofTime(final Duration maxTime) {
+		return of(UNLIMITED_COST, maxTime);
+	}
+
+	/**
+	 * Creates a budget which limits both the cost and the time
+	 *
+	 * @param maxCost the max cost (edit distance searched for each box)
+	 * @param maxTime the max time for the entire diff
+	 * @return the budget
+	 */
+	public static DiffBudget of(final int maxCost, final Duration maxTime) {
+		return new DiffBudget(maxCost, maxTime.toNanos());
+	}
+
+	public int getMaxCost() {
+		return this.maxCost;
+	}
+
+	/**
+	 * Gets the max time
+	 *
+	 * @return the max time (or <code>null</code> if the time is not limited)
+	 */
+	public Duration getMaxTime() {
+		return this.maxTimeNanos != Long.MAX_VALUE ? Duration.ofNanos(this.maxTimeNanos) : null;
+	}
+
+	/**
+	 * Indicates if the budget is exceeded (if so, marks the budget as exhausted)
+	 *
+	 * @param cost the current cost (such as the number of D-steps searched for the current box)
+	 * @return <code>true</code> if the cost is above the max cost or the max time has passed
+	 */
+	public boolean isExceeded(final int cost) {
+		if (cost > this.maxCost || this.isTimeExceeded()) {
+			this.isExhausted = true;
+			return true;
+		}
+
+		return false;
+	}
+
+	private boolean isTimeExceeded() {
+		if (this.maxTimeNanos == Long.MAX_VALUE) {
+			return false;
+		}
+
+		long now = System.nanoTime();
+
+		if (!this.isStarted) {
+			// Only the first thread to check sets the deadline
+			this.deadline.compareAndSet(0, now + this.maxTimeNanos);
+			this.isStarted = true;
+		}
+
+		return now - this.deadline.get() > 0;
+	}
+
+	/**
+	 * Indicates if the budget ran out, meaning the diff is approximate (valid, but may not be minimal)
+	 *
+	 * @return <code>true</code> if the budget ran out
+	 */
+	public boolean isExhausted() {
+		return this.isExhausted;
+	}
+}
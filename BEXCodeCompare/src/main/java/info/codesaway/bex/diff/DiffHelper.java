@@ -9,6 +9,7 @@ import static info.codesaway.bex.IntBEXRange.closed;
 import static info.codesaway.bex.diff.BasicDiffType.REPLACEMENT_BLOCK;
 import static info.codesaway.bex.diff.NormalizationFunction.NO_NORMALIZATION;
 import static info.codesaway.bex.diff.NormalizationFunction.normalization;
+import static info.codesaway.bex.util.BEXUtilities.checkArgument;
 import static info.codesaway.bex.util.BEXUtilities.firstNonNull;
 import static info.codesaway.bex.util.BEXUtilities.index;
 import static info.codesaway.bex.util.BEXUtilities.not;
@@ -16,7 +17,6 @@ import static info.codesaway.util.regex.Pattern.getThreadLocalMatcher;
 import static java.util.stream.Collectors.toMap;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -32,25 +32,38 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BiFunction;
 import java.util.function.BiPredicate;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import info.codesaway.bex.BEXListPair;
 import info.codesaway.bex.BEXPair;
 import info.codesaway.bex.BEXPairValue;
 import info.codesaway.bex.BEXSide;
 import info.codesaway.bex.Indexed;
+import info.codesaway.bex.IntBEXRange;
 import info.codesaway.bex.IntPair;
 import info.codesaway.bex.IntRange;
 import info.codesaway.bex.diff.patience.FrequencyCount;
 import info.codesaway.bex.diff.patience.PatienceMatch;
+import info.codesaway.bex.diff.substitution.InvertedIndexCandidateGenerator;
+import info.codesaway.bex.diff.substitution.MinHashCandidateGenerator;
 import info.codesaway.bex.diff.substitution.RefactoringDiffType;
+import info.codesaway.bex.diff.substitution.RefactoringDiffTypeValue;
 import info.codesaway.bex.diff.substitution.RefactoringType;
+import info.codesaway.bex.diff.substitution.SubstitutionCandidateGenerator;
 import info.codesaway.bex.diff.substitution.SubstitutionDiffType;
+import info.codesaway.bex.diff.substitution.SubstitutionDiffTypeValue;
+import info.codesaway.bex.diff.substitution.SubstitutionPipeline;
 import info.codesaway.bex.diff.substitution.SubstitutionType;
 import info.codesaway.bex.diff.substitution.java.ImportSameClassnameDiffType;
 import info.codesaway.util.regex.MatchResult;
@@ -72,6 +85,11 @@ public final class DiffHelper {
 	private static final ThreadLocal<Matcher> NORMALIZE_WHITESPACE_MATCHER = getThreadLocalMatcher(
 			"\\b \\B|\\B \\b|\\B \\B");
 
+	/**
+	 * Buffer used by {@link #normalizeWhitespace(String)} (grown as needed and reused for each line)
+	 */
+	private static final ThreadLocal<char[]> NORMALIZE_WHITESPACE_BUFFER = ThreadLocal.withInitial(() -> new char[256]);
+
 	/**
 	 * Normalize whitespace
 	 *
@@ -80,13 +98,148 @@ public final class DiffHelper {
 	 * @return
 	 */
 	private static DiffNormalizedText normalizeWhitespace(final String leftLine, final String rightLine) {
+		return new DiffNormalizedText(normalizeWhitespace(leftLine), normalizeWhitespace(rightLine));
+	}
+
+	/**
+	 * Normalizes the whitespace in the text
+	 *
+	 * <p>Trims the text, then replaces each run of whitespace with a single space if it's between two word characters and otherwise removes it
+	 * (for example, <code>"  int  x = ( a + b );"</code> is normalized to <code>"int x=(a+b);"</code>).</p>
+	 *
+	 * <p>Gives the same result as {@link #normalizeWhitespaceUsingRegex(String, String)}, but scans the text once without using regular expressions.
+	 * Word characters are the same as <code>\b</code> in Java 8 regular expressions (letters, digits, and underscore, including non-spacing marks which follow a word character).</p>
+	 *
+	 * @param text the text
+	 * @return the normalized text (the same String if the text is already normalized)
+	 * @since 0.15
+	 */
+	public static String normalizeWhitespace(final String text) {
+		// Same as String.trim
+		int start = 0;
+		int end = text.length();
+
+		while (start < end && text.charAt(start) <= ' ') {
+			start++;
+		}
+
+		while (start < end && text.charAt(end - 1) <= ' ') {
+			end--;
+		}
+
+		char[] buffer = NORMALIZE_WHITESPACE_BUFFER.get();
+
+		if (buffer.length < end - start) {
+			buffer = new char[Math.max(end - start, buffer.length * 2)];
+			NORMALIZE_WHITESPACE_BUFFER.set(buffer);
+		}
+
+		int length = 0;
+		boolean isChanged = start != 0 || end != text.length();
+
+		int index = start;
+		while (index < end) {
+			char c = text.charAt(index);
+
+			if (!isRegexWhitespace(c)) {
+				buffer[length++] = c;
+				index++;
+				continue;
+			}
+
+			// Since the text is trimmed, the run of whitespace is between two non-whitespace characters
+			int runEnd = index + 1;
+			while (isRegexWhitespace(text.charAt(runEnd))) {
+				runEnd++;
+			}
+
+			if (isWordBefore(text, start, index) && isWordAt(text, runEnd)) {
+				buffer[length++] = ' ';
+
+				if (c != ' ' || runEnd != index + 1) {
+					isChanged = true;
+				}
+			} else {
+				isChanged = true;
+			}
+
+			index = runEnd;
+		}
+
+		return isChanged ? new String(buffer, 0, length) : text;
+	}
+
+	/**
+	 * Indicates if the character is whitespace (same as <code>\s</code> in regular expressions)
+	 */
+	private static boolean isRegexWhitespace(final char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+	/**
+	 * Indicates if the character is a word character (same as <code>\b</code> in Java 8 regular expressions)
+	 */
+	private static boolean isRegexWordCharacter(final int codePoint) {
+		return codePoint == '_' || Character.isLetterOrDigit(codePoint);
+	}
+
+	/**
+	 * Indicates if the character before the specified index is a word character (so there is a word boundary before the whitespace at the index)
+	 *
+	 * @param text the text
+	 * @param start the start of the trimmed text
+	 * @param index the index
+	 */
+	private static boolean isWordBefore(final String text, final int start, final int index) {
+		int codePoint = text.codePointBefore(index);
+
+		if (isRegexWordCharacter(codePoint)) {
+			return true;
+		}
+
+		if (Character.getType(codePoint) != Character.NON_SPACING_MARK) {
+			return false;
+		}
+
+		// A non-spacing mark is part of the word if its base character is a letter or digit (same as regular expressions)
+		for (int i = index - 1; i >= start; i--) {
+			int baseCodePoint = text.codePointAt(i);
+
+			if (Character.isLetterOrDigit(baseCodePoint)) {
+				return true;
+			}
+
+			if (Character.getType(baseCodePoint) != Character.NON_SPACING_MARK) {
+				return false;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Indicates if the character at the specified index is a word character
+	 *
+	 * <p>A non-spacing mark after whitespace doesn't have a base character, so isn't a word character</p>
+	 */
+	private static boolean isWordAt(final String text, final int index) {
+		return isRegexWordCharacter(text.codePointAt(index));
+	}
+
+	/**
+	 * Normalize whitespace using regular expressions (original implementation of {@link #WHITESPACE_NORMALIZATION_FUNCTION})
+	 *
+	 * <p>Kept to verify and benchmark {@link #normalizeWhitespace(String)}, which gives the same result</p>
+	 *
+	 * @param leftLine the left text
+	 * @param rightLine the right text
+	 * @return the normalized text
+	 * @since 0.15
+	 */
+	public static DiffNormalizedText normalizeWhitespaceUsingRegex(final String leftLine, final String rightLine) {
 		String leftNormalizedText = leftLine.trim();
 		String rightNormalizedText = rightLine.trim();
 
-		// Normalize whitespace
-		// TODO: optimize so doesn't use regex
-		// Check what Eclipse's built in whitespace ignore does
-
 		// Replace multiple whitespace with a single space
 		leftNormalizedText = MULTIPLE_WHITESPACE_MATCHER.get().reset(leftNormalizedText).replaceAll(" ");
 		rightNormalizedText = MULTIPLE_WHITESPACE_MATCHER.get().reset(rightNormalizedText).replaceAll(" ");
@@ -139,7 +292,8 @@ public final class DiffHelper {
 		Map<DiffEdit, String> result = new HashMap<>(diffEdits.size());
 
 		for (DiffEdit diffEdit : diffEdits) {
-			String normalizedText = normalize(diffEdit.getFirstSide(), diffEdit.getText(), normalizationFunction);
+			BEXSide side = diffEdit.getFirstSide();
+			String normalizedText = normalize(side, diffEdit.getIndexedText(side), normalizationFunction);
 			result.put(diffEdit, normalizedText);
 		}
 
@@ -168,6 +322,27 @@ public final class DiffHelper {
 				: normalize(indexedBlank, indexedText, normalizationFunction).getRight();
 	}
 
+	/**
+	 * Normalizes the text of the specified line
+	 *
+	 * <p>If the normalization function is {@link NormalizedLines}, uses the cached normalized text for the line;
+	 * otherwise, the same as {@link #normalize(BEXSide, String, NormalizationFunction)}</p>
+	 *
+	 * @param side the side of the line
+	 * @param line the line
+	 * @param normalizationFunction the normalization function
+	 * @return the normalized text
+	 * @since 0.15
+	 */
+	public static String normalize(final BEXSide side, final DiffLine line,
+			final NormalizationFunction normalizationFunction) {
+		if (normalizationFunction instanceof NormalizedLines) {
+			return ((NormalizedLines) normalizationFunction).getNormalizedText(side, line);
+		}
+
+		return normalize(side, line.getText(), normalizationFunction);
+	}
+
 	/**
 	 * @since 0.14
 	 */
@@ -277,7 +452,7 @@ public final class DiffHelper {
 			for (DiffWithIndex iDiff : iterable) {
 				BEXSide side = iDiff.getFirstSide();
 				DiffLine line = iDiff.getLine(side).get();
-				String text = normalize(side, line.getText(), normalizationFunction);
+				String text = normalize(side, line, normalizationFunction);
 
 				counts.compute(text,
 						(k, v) -> FrequencyCount.emptyIfNull(v).recordFoundInSlice(side, line.getNumber()));
@@ -319,6 +494,110 @@ public final class DiffHelper {
 		} while (!done);
 	}
 
+	/**
+	 * Modifies the passed list of DiffEdit to handle moved lines, including moved lines which were also changed
+	 *
+	 * <p>After handling the moved lines (which have equal normalized text), the remaining inserted / deleted lines across the entire diff
+	 * are paired using the candidate generator (such as a {@link MinHashCandidateGenerator}) and checked using the substitution types.
+	 * Accepted pairs in different blocks are a moved substitution (pairs in the same block are left for {@link #handleSubstitution(List, NormalizationFunction, SubstitutionType...)}).
+	 * Like the moved lines with equal text ({@link BasicDiffType#MOVE_LEFT} and {@link BasicDiffType#MOVE_RIGHT}),
+	 * the index of the left line and the index of the right line each get their own DiffEdit,
+	 * whose type is the substitution type marked as a move (a refactoring keeps its side, category, and info).</p>
+	 *
+	 * @param diff the list of differences (will be modified by this method)
+	 * @param normalizationFunction
+	 * @param candidateGenerator determines which left / right pairs are checked for moved substitutions
+	 * @param substitutionTypes
+	 * @since 0.15
+	 */
+	public static void handleMovedLines(final List<DiffEdit> diff,
+			final NormalizationFunction normalizationFunction,
+			final SubstitutionCandidateGenerator candidateGenerator,
+			final SubstitutionType... substitutionTypes) {
+		Objects.requireNonNull(candidateGenerator, "candidateGenerator");
+
+		NormalizationFunction nullSafeNormalizationFunction = firstNonNull(normalizationFunction, NO_NORMALIZATION);
+
+		handleMovedLines(diff, nullSafeNormalizationFunction);
+
+		List<DiffEdit> diffEdits = new ArrayList<>();
+		Map<DiffEdit, Integer> indexes = new HashMap<>();
+		// Blocks of inserted / deleted lines are separated by other lines (such as equal lines), but not moved lines
+		Map<DiffEdit, Integer> blocks = new HashMap<>();
+		int block = 0;
+
+		for (int i = 0; i < diff.size(); i++) {
+			DiffEdit diffEdit = diff.get(i);
+
+			if (diffEdit.isInsertOrDelete()) {
+				diffEdits.add(diffEdit);
+				indexes.put(diffEdit, i);
+				blocks.put(diffEdit, block);
+			} else if (!diffEdit.isMove()) {
+				block++;
+			}
+		}
+
+		Map<DiffEdit, String> normalizedTexts = normalizeTexts(diffEdits, nullSafeNormalizationFunction);
+		Collection<BEXPair<DiffEdit>> checkPairs = candidateGenerator.generate(diffEdits, normalizedTexts);
+
+		SubstitutionPipeline pipeline = SubstitutionPipeline.withoutStatistics(substitutionTypes);
+		Set<DiffEdit> alreadyFound = new HashSet<>();
+		Map<SubstitutionDiffType, SubstitutionDiffType> moveTypes = new HashMap<>();
+
+		for (BEXPair<DiffEdit> checkPair : checkPairs) {
+			if (checkPair.testOrBoth(alreadyFound::contains)) {
+				continue;
+			}
+
+			if (checkPair.test((l, r) -> blocks.get(l).equals(blocks.get(r)))) {
+				// Same block, so not a move
+				continue;
+			}
+
+			SubstitutionDiffType diffType = pipeline.accept(checkPair, normalizedTexts, nullSafeNormalizationFunction);
+
+			if (diffType != null) {
+				if (!diffType.isSubstitution()) {
+					throw new AssertionError("DiffType is not a substitution");
+				}
+
+				SubstitutionDiffType moveType = diffType.isMove()
+						? diffType
+						: moveTypes.computeIfAbsent(diffType, DiffHelper::toMoveType);
+
+				checkPair.acceptBoth(e -> diff.set(indexes.get(e),
+						new DiffEdit(moveType, checkPair.mapWithSide(DiffEdit::getLine))));
+				checkPair.acceptBoth(alreadyFound::add);
+			}
+		}
+	}
+
+	/**
+	 * Gets the substitution type marked as a move
+	 *
+	 * @param diffType the substitution type (not a move)
+	 * @return the substitution type marked as a move
+	 */
+	private static SubstitutionDiffType toMoveType(final SubstitutionDiffType diffType) {
+		if (diffType instanceof RefactoringDiffTypeValue) {
+			RefactoringDiffTypeValue refactoring = (RefactoringDiffTypeValue) diffType;
+
+			return new RefactoringDiffTypeValue(refactoring.getSymbol(), refactoring.getSide(),
+					refactoring.getCategory(), refactoring.getInfo(), refactoring.shouldTreatAsNormalizedEqual(),
+					true);
+		}
+
+		if (diffType instanceof ImportSameClassnameDiffType) {
+			ImportSameClassnameDiffType importType = (ImportSameClassnameDiffType) diffType;
+
+			return new ImportSameClassnameDiffType(importType.getClassName(), importType.getImportPackage(), true);
+		}
+
+		return new SubstitutionDiffTypeValue(diffType.getSymbol(), diffType + " (MOVE)", true,
+				diffType.shouldTreatAsNormalizedEqual());
+	}
+
 	public static final ThreadLocal<Matcher> IMPORT_MATCHER = getThreadLocalMatcher(
 			"^\\s*+import(?<static>\\s++static)?+\\s++(?<package>(?:[A-Za-z0-9]++\\.)+)?(?<class>[A-Z][A-Za-z0-9]*+)(?<method>\\.\\w++)?+;");
 
@@ -501,6 +780,41 @@ public final class DiffHelper {
 
 	private static final ThreadLocal<Matcher> WORD_MATCHER = getThreadLocalMatcher("\\w++");
 
+	/**
+	 * Blocks with at most this many left / right pairs check every pair for substitutions
+	 * (larger blocks use an {@link InvertedIndexCandidateGenerator}, so the number of pairs checked isn't quadratic)
+	 *
+	 * @since 0.15
+	 */
+	public static final int MAX_ALL_PAIRS_SUBSTITUTION_CANDIDATES = 10_000;
+
+	/**
+	 * Candidate generator which checks every left / right pair for substitutions
+	 *
+	 * @since 0.15
+	 */
+	public static final SubstitutionCandidateGenerator ALL_PAIRS_SUBSTITUTION_CANDIDATE_GENERATOR = (diffEdits,
+			normalizedTexts) -> calculateSimilarDiffEdits(diffEdits, normalizedTexts, false);
+
+	private static final SubstitutionCandidateGenerator INVERTED_INDEX_CANDIDATE_GENERATOR = new InvertedIndexCandidateGenerator();
+
+	/**
+	 * Default candidate generator, which checks every left / right pair for small blocks
+	 * and uses an {@link InvertedIndexCandidateGenerator} (with the default number of candidates) for large blocks
+	 *
+	 * @see #MAX_ALL_PAIRS_SUBSTITUTION_CANDIDATES
+	 * @since 0.15
+	 */
+	public static final SubstitutionCandidateGenerator DEFAULT_SUBSTITUTION_CANDIDATE_GENERATOR = (diffEdits,
+			normalizedTexts) -> {
+		long leftCount = diffEdits.stream().filter(DiffEdit::hasLeftLine).count();
+		long rightCount = diffEdits.size() - leftCount;
+
+		return leftCount * rightCount <= MAX_ALL_PAIRS_SUBSTITUTION_CANDIDATES
+				? ALL_PAIRS_SUBSTITUTION_CANDIDATE_GENERATOR.generate(diffEdits, normalizedTexts)
+				: INVERTED_INDEX_CANDIDATE_GENERATOR.generate(diffEdits, normalizedTexts);
+	};
+
 	/**
 	 *
 	 *
@@ -535,6 +849,57 @@ public final class DiffHelper {
 	public static void handleSubstitution(final List<DiffEdit> diff,
 			final NormalizationFunction normalizationFunction,
 			final SubstitutionType... substitutionTypes) {
+		handleSubstitution(diff, normalizationFunction, DEFAULT_SUBSTITUTION_CANDIDATE_GENERATOR, substitutionTypes);
+	}
+
+	/**
+	 * Handle substitutions
+	 *
+	 * @param diff the list of differences (will be modified by this method)
+	 * @param normalizationFunction
+	 * @param candidateGenerator determines which left / right pairs are checked for substitutions
+	 * (such as an {@link InvertedIndexCandidateGenerator} with a different number of candidates)
+	 * @param substitutionTypes
+	 * @since 0.15
+	 */
+	public static void handleSubstitution(final List<DiffEdit> diff,
+			final NormalizationFunction normalizationFunction,
+			final SubstitutionCandidateGenerator candidateGenerator,
+			final SubstitutionType... substitutionTypes) {
+		handleSubstitution(diff, normalizationFunction, candidateGenerator,
+				SubstitutionPipeline.withoutStatistics(substitutionTypes));
+	}
+
+	/**
+	 * Handle substitutions
+	 *
+	 * @param diff the list of differences (will be modified by this method)
+	 * @param normalizationFunction
+	 * @param pipeline the substitution types (built once and reused)
+	 * @since 0.15
+	 */
+	public static void handleSubstitution(final List<DiffEdit> diff,
+			final NormalizationFunction normalizationFunction,
+			final SubstitutionPipeline pipeline) {
+		handleSubstitution(diff, normalizationFunction, DEFAULT_SUBSTITUTION_CANDIDATE_GENERATOR, pipeline);
+	}
+
+	/**
+	 * Handle substitutions
+	 *
+	 * @param diff the list of differences (will be modified by this method)
+	 * @param normalizationFunction
+	 * @param candidateGenerator determines which left / right pairs are checked for substitutions
+	 * @param pipeline the substitution types (built once and reused)
+	 * @since 0.15
+	 */
+	public static void handleSubstitution(final List<DiffEdit> diff,
+			final NormalizationFunction normalizationFunction,
+			final SubstitutionCandidateGenerator candidateGenerator,
+			final SubstitutionPipeline pipeline) {
+		Objects.requireNonNull(candidateGenerator, "candidateGenerator");
+		Objects.requireNonNull(pipeline, "pipeline");
+
 		// Fix for issue #118
 		NormalizationFunction nullSafeNormalizationFunction = firstNonNull(normalizationFunction, NO_NORMALIZATION);
 
@@ -542,11 +907,6 @@ public final class DiffHelper {
 
 		List<DiffEdit> results = new ArrayList<>();
 
-		List<RefactoringType> refactoringTypes = Arrays.stream(substitutionTypes)
-				.filter(RefactoringType.class::isInstance)
-				.map(RefactoringType.class::cast)
-				.collect(Collectors.toList());
-
 		// Only need to handle substitution if has a left line and right line in the same block
 		// TODO: if there are only left lines or right lines, may still be part of RefactoringType
 		// TODO: how should moves be handled / ignored so could run handleMove before handleSubstitution if user desired
@@ -565,8 +925,7 @@ public final class DiffHelper {
 			} else {
 				if (!diffEdits.isEmpty()) {
 					results.addAll(hasLeftLine && hasRightLine
-							? findSubstitutions(diffEdits, nullSafeNormalizationFunction, substitutionTypes,
-									refactoringTypes)
+							? findSubstitutions(diffEdits, nullSafeNormalizationFunction, candidateGenerator, pipeline)
 							: diffEdits);
 
 					// Reset values
@@ -581,7 +940,7 @@ public final class DiffHelper {
 
 		if (!diffEdits.isEmpty()) {
 			results.addAll(hasLeftLine && hasRightLine
-					? findSubstitutions(diffEdits, nullSafeNormalizationFunction, substitutionTypes, refactoringTypes)
+					? findSubstitutions(diffEdits, nullSafeNormalizationFunction, candidateGenerator, pipeline)
 					: diffEdits);
 		}
 
@@ -594,6 +953,143 @@ public final class DiffHelper {
 		diff.addAll(results);
 	}
 
+	/**
+	 * Handle substitutions, checking the blocks of inserted / deleted lines in parallel (using the common fork/join pool)
+	 *
+	 * @param diff the list of differences (will be modified by this method)
+	 * @param normalizationFunction the normalization function (must be thread-safe)
+	 * @param substitutionTypes
+	 * @see #handleSubstitutionParallel(List, NormalizationFunction, SubstitutionCandidateGenerator, Executor, SubstitutionType...)
+	 * @since 0.15
+	 */
+	public static void handleSubstitutionParallel(final List<DiffEdit> diff,
+			final NormalizationFunction normalizationFunction,
+			final SubstitutionType... substitutionTypes) {
+		handleSubstitutionParallel(diff, normalizationFunction, DEFAULT_SUBSTITUTION_CANDIDATE_GENERATOR,
+				ForkJoinPool.commonPool(), substitutionTypes);
+	}
+
+	/**
+	 * Handle substitutions, checking the blocks of inserted / deleted lines in parallel
+	 *
+	 * <p>The blocks are independent, so each block is checked as a separate task and the results are spliced back in order
+	 * (the result is the same as {@link #handleSubstitution(List, NormalizationFunction, SubstitutionCandidateGenerator, SubstitutionType...)}).
+	 * If any of the substitution types is {@link SubstitutionType#isStateful() stateful}, the blocks are checked serially,
+	 * since the state from an earlier block may affect a later block.</p>
+	 *
+	 * @param diff the list of differences (will be modified by this method)
+	 * @param normalizationFunction the normalization function (must be thread-safe)
+	 * @param candidateGenerator determines which left / right pairs are checked for substitutions (must be thread-safe)
+	 * @param executor the executor used to check the blocks
+	 * @param substitutionTypes
+	 * @since 0.15
+	 */
+	public static void handleSubstitutionParallel(final List<DiffEdit> diff,
+			final NormalizationFunction normalizationFunction,
+			final SubstitutionCandidateGenerator candidateGenerator, final Executor executor,
+			final SubstitutionType... substitutionTypes) {
+		handleSubstitutionParallel(diff, normalizationFunction, candidateGenerator, executor,
+				SubstitutionPipeline.withoutStatistics(substitutionTypes));
+	}
+
+	/**
+	 * Handle substitutions, checking the blocks of inserted / deleted lines in parallel
+	 *
+	 * @param diff the list of differences (will be modified by this method)
+	 * @param normalizationFunction the normalization function (must be thread-safe)
+	 * @param candidateGenerator determines which left / right pairs are checked for substitutions (must be thread-safe)
+	 * @param executor the executor used to check the blocks
+	 * @param pipeline the substitution types (built once and reused)
+	 * @see #handleSubstitutionParallel(List, NormalizationFunction, SubstitutionCandidateGenerator, Executor, SubstitutionType...)
+	 * @since 0.15
+	 */
+	public static void handleSubstitutionParallel(final List<DiffEdit> diff,
+			final NormalizationFunction normalizationFunction,
+			final SubstitutionCandidateGenerator candidateGenerator, final Executor executor,
+			final SubstitutionPipeline pipeline) {
+		Objects.requireNonNull(candidateGenerator, "candidateGenerator");
+		Objects.requireNonNull(executor, "executor");
+		Objects.requireNonNull(pipeline, "pipeline");
+
+		if (pipeline.isStateful()) {
+			handleSubstitution(diff, normalizationFunction, candidateGenerator, pipeline);
+			return;
+		}
+
+		NormalizationFunction nullSafeNormalizationFunction = firstNonNull(normalizationFunction, NO_NORMALIZATION);
+
+		// The results of each block / other line (in order)
+		List<CompletableFuture<List<DiffEdit>>> results = new ArrayList<>();
+
+		List<DiffEdit> diffEdits = new ArrayList<>();
+		boolean hasLeftLine = false;
+		boolean hasRightLine = false;
+
+		for (DiffEdit diffEdit : diff) {
+			if (diffEdit.isInsertOrDelete()) {
+				diffEdits.add(diffEdit);
+
+				if (diffEdit.hasLeftLine()) {
+					hasLeftLine = true;
+				} else if (diffEdit.hasRightLine()) {
+					hasRightLine = true;
+				}
+			} else {
+				if (!diffEdits.isEmpty()) {
+					results.add(findSubstitutionsAsync(diffEdits, hasLeftLine && hasRightLine,
+							nullSafeNormalizationFunction, candidateGenerator, executor, pipeline));
+
+					diffEdits = new ArrayList<>();
+					hasLeftLine = false;
+					hasRightLine = false;
+				}
+
+				results.add(CompletableFuture.completedFuture(Collections.singletonList(diffEdit)));
+			}
+		}
+
+		if (!diffEdits.isEmpty()) {
+			results.add(findSubstitutionsAsync(diffEdits, hasLeftLine && hasRightLine, nullSafeNormalizationFunction,
+					candidateGenerator, executor, pipeline));
+		}
+
+		List<DiffEdit> combinedResults = new ArrayList<>(diff.size());
+
+		try {
+			for (CompletableFuture<List<DiffEdit>> result : results) {
+				combinedResults.addAll(result.join());
+			}
+		} catch (CompletionException e) {
+			// Throw the same exception as the serial version
+			Throwable cause = e.getCause();
+
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+
+			throw e;
+		}
+
+		// Copy back to original parameter
+		// (mimics other methods which process results in-line)
+		diff.clear();
+		diff.addAll(combinedResults);
+	}
+
+	private static CompletableFuture<List<DiffEdit>> findSubstitutionsAsync(final List<DiffEdit> diffEdits,
+			final boolean hasLeftAndRightLine, final NormalizationFunction normalizationFunction,
+			final SubstitutionCandidateGenerator candidateGenerator, final Executor executor,
+			final SubstitutionPipeline pipeline) {
+		if (!hasLeftAndRightLine) {
+			return CompletableFuture.completedFuture(diffEdits);
+		}
+
+		return CompletableFuture.supplyAsync(() -> findSubstitutions(diffEdits, normalizationFunction,
+				candidateGenerator, pipeline), executor);
+	}
+
 	/**
 	 * Find substitutions
 	 *
@@ -602,8 +1098,8 @@ public final class DiffHelper {
 	 * @return
 	 */
 	private static List<DiffEdit> findSubstitutions(final List<DiffEdit> diffEdits,
-			final NormalizationFunction normalizationFunction,
-			final SubstitutionType[] substitutionTypes, final List<RefactoringType> refactoringTypes) {
+			final NormalizationFunction normalizationFunction, final SubstitutionCandidateGenerator candidateGenerator,
+			final SubstitutionPipeline pipeline) {
 
 		Map<DiffEdit, String> normalizedTexts = normalizeTexts(diffEdits, normalizationFunction);
 
@@ -614,7 +1110,7 @@ public final class DiffHelper {
 		Map<DiffEdit, DiffEdit> replacements = new HashMap<>();
 
 		findSubstitutionsRecursive(diffEdits, normalizedTexts, matches, replacements, normalizationFunction,
-				substitutionTypes, refactoringTypes);
+				candidateGenerator, pipeline);
 
 		List<DiffEdit> results = new ArrayList<>();
 
@@ -648,17 +1144,15 @@ public final class DiffHelper {
 	 * @param normalizedTexts
 	 * @param matches
 	 * @param replacements
-	 * @param substitutionTypes
-	 * @param refactoringTypes
+	 * @param pipeline
 	 */
 	private static void findSubstitutionsRecursive(final List<DiffEdit> diffEdits,
 			final Map<DiffEdit, String> normalizedTexts, final Set<DiffEdit> matches,
 			final Map<DiffEdit, DiffEdit> replacements,
-			final NormalizationFunction normalizationFunction,
-			final SubstitutionType[] substitutionTypes, final List<RefactoringType> refactoringTypes) {
-		// TODO: accept as parameter (to allow user defined traversal)
-		Collection<BEXPair<DiffEdit>> checkPairs = calculateSimilarDiffEdits(diffEdits, normalizedTexts,
-				!refactoringTypes.isEmpty());
+			final NormalizationFunction normalizationFunction, final SubstitutionCandidateGenerator candidateGenerator,
+			final SubstitutionPipeline pipeline) {
+		List<RefactoringType> refactoringTypes = pipeline.getRefactoringTypes();
+		Collection<BEXPair<DiffEdit>> checkPairs = candidateGenerator.generate(diffEdits, normalizedTexts);
 
 		// Track which DiffEdit are already part of a substitution found in this method
 		// TODO: see if can remove
@@ -683,33 +1177,23 @@ public final class DiffHelper {
 			// TODO: also consider lone left lines / right lines if not part of substitution
 			// (this way can group with enhanced for refactoring the deleted local loop variable / value
 
-			for (SubstitutionType substitutionType : substitutionTypes) {
-				SubstitutionDiffType diffType = substitutionType.accept(checkPair, normalizedTexts,
-						normalizationFunction);
-
-				if (diffType != null) {
-					if (!diffType.isSubstitution()) {
-						throw new AssertionError("DiffType is not a substitution");
-					}
+			SubstitutionDiffType diffType = pipeline.accept(checkPair, normalizedTexts, normalizationFunction);
 
-					//					if (diffType.getSymbol() == 'S') {
-					//						System.out.println(diffType + "\t" + substitutionType.getClass());
-					//						System.out.println("L: " + left);
-					//						System.out.println("R: " + right);
-					//					}
+			if (diffType != null) {
+				if (!diffType.isSubstitution()) {
+					throw new AssertionError("DiffType is not a substitution");
+				}
 
-					DiffEdit substitution = new DiffEdit(diffType, checkPair.mapWithSide(DiffEdit::getLine));
+				DiffEdit substitution = new DiffEdit(diffType, checkPair.mapWithSide(DiffEdit::getLine));
 
-					checkPair.acceptWithSide((e, side) -> potentialReplacements.put(e, side == RIGHT
-							? substitution
-							: null));
+				checkPair.acceptWithSide((e, side) -> potentialReplacements.put(e, side == RIGHT
+						? substitution
+						: null));
 
-					checkPair.acceptBoth(alreadyFound::add);
+				checkPair.acceptBoth(alreadyFound::add);
 
-					patienceMatches.add(new PatienceMatch(substitution.getLeftLineNumber(),
-							substitution.getRightLineNumber()));
-					break;
-				}
+				patienceMatches.add(new PatienceMatch(substitution.getLeftLineNumber(),
+						substitution.getRightLineNumber()));
 			}
 		}
 
@@ -805,7 +1289,7 @@ public final class DiffHelper {
 				combinedDiffs.addAll(subDiffEdits.getRight());
 
 				findSubstitutionsRecursive(combinedDiffs, normalizedTexts, matches, replacements, normalizationFunction,
-						substitutionTypes, refactoringTypes);
+						candidateGenerator, pipeline);
 			}
 
 			if (match == null) {
@@ -847,6 +1331,9 @@ public final class DiffHelper {
 
 		// TODO: how to use includeSingleSideDiffEdit?
 
+		// Note: hasPriorMatch is never set to true, so every DiffEdit is also in the "" partition
+		// (as a result, every left / right pair is checked, which is quadratic for large blocks)
+
 		// Partition of similar DiffEdit
 		// (records with the same key are "similar" to each other and are possible canidates for substitution)
 		// (the goal is to reduce the number of lines being compared to try to find similar lines)
@@ -984,6 +1471,151 @@ public final class DiffHelper {
 		return results;
 	}
 
+	/**
+	 * Re-diffs only the region affected by an edit to one side, splicing the result into the passed diff
+	 *
+	 * @param diff the previous diff (will be modified by this method)
+	 * @param lines the current lines (only the lines on the edited side may have changed)
+	 * @param side the side which was edited
+	 * @param changedLines the range of previous line numbers on the edited side which were replaced (empty if lines were only inserted)
+	 * @param diffAlgorithm the diff algorithm used to diff the affected region
+	 * @return the range of indexes in <code>diff</code> which were re-diffed
+	 * @since 0.15
+	 * @see #rediff(List, BEXListPair, BEXSide, IntRange, BiFunction, Consumer)
+	 */
+	public static IntRange rediff(final List<DiffEdit> diff, final BEXListPair<DiffLine> lines, final BEXSide side,
+			final IntRange changedLines, final BiFunction<List<DiffLine>, List<DiffLine>, List<DiffEdit>> diffAlgorithm) {
+		return rediff(diff, lines, side, changedLines, diffAlgorithm, null);
+	}
+
+	/**
+	 * Re-diffs only the region affected by an edit to one side, splicing the result into the passed diff
+	 *
+	 * <p>The affected region is between the last {@link BasicDiffType#EQUAL EQUAL} edit before the changed lines
+	 * and the first {@link BasicDiffType#EQUAL EQUAL} edit after the changed lines. Only this region is re-diffed;
+	 * the edits before it are kept as is and the edits after it have their line on the edited side updated to the current lines.
+	 * This way, a small edit (such as typing in an editor) doesn't require diffing the entire file again.</p>
+	 *
+	 * <p>The result is a valid diff, but may differ from diffing the entire file again
+	 * (for example, the diff algorithm only sees the lines in the affected region when determining the unique lines).</p>
+	 *
+	 * <p>The post processor is run on only the re-diffed region (such as to handle substitutions).
+	 * Since the region is bounded by EQUAL edits, post processing which works a block at a time (such as {@link #handleSubstitution(List, NormalizationFunction, SubstitutionType...)})
+	 * gives the same result as post processing the entire diff.</p>
+	 *
+	 * <p>The lines before the changed lines keep their line number and text, so the edits before the affected region continue to refer to the previous DiffLine objects
+	 * (pass the same DiffLine objects for the unchanged lines if the edits should refer to the current lines).</p>
+	 *
+	 * <p><b>NOTE</b>: the previous diff must have each line on the edited side exactly once in order (so must not have handled moved lines)</p>
+	 *
+	 * @param diff the previous diff (will be modified by this method)
+	 * @param lines the current lines (only the lines on the edited side may have changed)
+	 * @param side the side which was edited
+	 * @param changedLines the range of previous line numbers on the edited side which were replaced (empty if lines were only inserted)
+	 * @param diffAlgorithm the diff algorithm used to diff the affected region
+	 * @param postProcessor run on the re-diffed region before it's spliced into the diff (if null, no post processing)
+	 * @return the range of indexes in <code>diff</code> which were re-diffed
+	 * @since 0.15
+	 */
+	public static IntRange rediff(final List<DiffEdit> diff, final BEXListPair<DiffLine> lines, final BEXSide side,
+			final IntRange changedLines, final BiFunction<List<DiffLine>, List<DiffLine>, List<DiffEdit>> diffAlgorithm,
+			final Consumer<List<DiffEdit>> postProcessor) {
+		int changedStart = changedLines.getInclusiveStart();
+		int changedEnd = changedLines.getCanonicalEnd();
+		checkArgument(changedStart <= changedEnd, "Invalid changed lines: " + changedLines);
+
+		BEXSide otherSide = side.other();
+
+		// Index in diff of the EQUAL edits which bound the affected region
+		int startAnchor = -1;
+		int endAnchor = diff.size();
+
+		// Index of the anchor's line within the lines for each side (start anchor is exclusive, end anchor is inclusive)
+		int startLineIndex = -1;
+		int startOtherLineIndex = -1;
+		int endLineIndex = -1;
+		int endOtherLineIndex = -1;
+
+		int lineCount = 0;
+		int otherLineCount = 0;
+
+		for (int i = 0; i < diff.size(); i++) {
+			DiffEdit diffEdit = diff.get(i);
+
+			if (diffEdit.getType() == BasicDiffType.EQUAL && endLineIndex == -1) {
+				int lineNumber = diffEdit.getLineNumber(side);
+
+				if (lineNumber < changedStart) {
+					startAnchor = i;
+					startLineIndex = lineCount;
+					startOtherLineIndex = otherLineCount;
+				} else if (lineNumber >= changedEnd) {
+					endAnchor = i;
+					endLineIndex = lineCount;
+					endOtherLineIndex = otherLineCount;
+				}
+			}
+
+			if (diffEdit.hasLine(side)) {
+				lineCount++;
+			}
+
+			if (diffEdit.hasLine(otherSide)) {
+				otherLineCount++;
+			}
+		}
+
+		List<DiffLine> sideLines = lines.get(side);
+		List<DiffLine> otherLines = lines.get(otherSide);
+
+		// Number of lines added to the edited side (negative if lines were removed)
+		int delta = sideLines.size() - lineCount;
+
+		if (endLineIndex == -1) {
+			// No EQUAL edit after the changed lines, so re-diff through the end
+			endLineIndex = lineCount;
+			endOtherLineIndex = otherLineCount;
+		}
+
+		if (delta != 0) {
+			// Update the edits after the affected region to refer to the current lines
+			int lineIndex = endLineIndex;
+
+			for (int i = endAnchor; i < diff.size(); i++) {
+				DiffEdit diffEdit = diff.get(i);
+
+				if (!diffEdit.hasLine(side)) {
+					continue;
+				}
+
+				Optional<DiffLine> line = Optional.of(sideLines.get(lineIndex + delta));
+				lineIndex++;
+
+				diff.set(i, side == LEFT
+						? new DiffEdit(diffEdit.getType(), line, diffEdit.getRightLine())
+						: new DiffEdit(diffEdit.getType(), diffEdit.getLeftLine(), line));
+			}
+		}
+
+		List<DiffLine> regionLines = sideLines.subList(startLineIndex + 1, endLineIndex + delta);
+		List<DiffLine> otherRegionLines = otherLines.subList(startOtherLineIndex + 1, endOtherLineIndex);
+
+		List<DiffEdit> regionDiff = new ArrayList<>(side == LEFT
+				? diffAlgorithm.apply(regionLines, otherRegionLines)
+				: diffAlgorithm.apply(otherRegionLines, regionLines));
+
+		if (postProcessor != null) {
+			postProcessor.accept(regionDiff);
+		}
+
+		int regionStart = startAnchor + 1;
+		List<DiffEdit> region = diff.subList(regionStart, endAnchor);
+		region.clear();
+		region.addAll(regionDiff);
+
+		return IntBEXRange.closedOpen(regionStart, regionStart + regionDiff.size());
+	}
+
 	/**
 	 * Determines the range which encloses all the lines of the specified DiffUnit
 	 *
@@ -0,0 +1,196 @@
+package info.codesaway.bex.diff;
+
+import static info.codesaway.bex.diff.NormalizationFunction.NO_NORMALIZATION;
+import static info.codesaway.bex.util.BEXUtilities.checkArgument;
+import static info.codesaway.bex.util.BEXUtilities.firstNonNull;
+import static info.codesaway.bex.util.BEXUtilities.immutableCopyOf;
+import static info.codesaway.bex.util.BEXUtilities.index;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import info.codesaway.bex.Indexed;
+
+/**
+ * Left and right lines where each line has been normalized once and interned to a dense int id
+ *
+ * <p>Two lines have the same id if and only if their normalized text is equal.
+ * This allows diff algorithms to compare lines using an int compare (versus normalizing and comparing Strings each time)</p>
+ *
+ * <p>Each line is normalized by itself (paired with a blank line), the same way {@link info.codesaway.bex.diff.patience.PatienceDiff PatienceDiff}
+ * determines unique lines. As a result, the normalization function must normalize each line independent of the other line
+ * (such as {@link NormalizationFunction#WHITESPACE_NORMALIZATION}).</p>
+ *
+ * <p>Instances of this class are immutable.</p>
+ *
+ * @since 0.15
+ */
+public final class InternedLines {
+	private final List<DiffLine> leftLines;
+	private final List<DiffLine> rightLines;
+
+	private final NormalizationFunction normalizationFunction;
+
+	private final int[] leftIds;
+	private final int[] rightIds;
+
+	/**
+	 * Number of distinct ids (ids range from 0 to idCount - 1)
+	 */
+	private final int idCount;
+
+	private InternedLines(final List<DiffLine> leftLines, final List<DiffLine> rightLines,
+			final NormalizationFunction normalizationFunction, final int[] leftIds, final int[] rightIds,
+			final int idCount) {
+		this.leftLines = leftLines;
+		this.rightLines = rightLines;
+		this.normalizationFunction = normalizationFunction;
+		this.leftIds = leftIds;
+		this.rightIds = rightIds;
+		this.idCount = idCount;
+	}
+
+	/**
+	 * Normalizes each line once and interns the normalized text
+	 *
+	 * @param leftLines the left lines
+	 * @param rightLines the right lines
+	 * @param normalizationFunction the normalization function (if null, mimics {@link NormalizationFunction#NO_NORMALIZATION})
+	 * @return the interned lines
+	 */
+	public static InternedLines intern(final List<DiffLine> leftLines, final List<DiffLine> rightLines,
+			final NormalizationFunction normalizationFunction) {
+		NormalizationFunction usedNormalizationFunction = firstNonNull(normalizationFunction, NO_NORMALIZATION);
+
+		List<DiffLine> left = immutableCopyOf(leftLines);
+		List<DiffLine> right = immutableCopyOf(rightLines);
+
+		// Map from normalized text to its id
+		Map<String, Integer> ids = new HashMap<>();
+		Indexed<String> indexedBlank = index(-1, "");
+
+		int[] leftIds = new int[left.size()];
+		for (int i = 0; i < leftIds.length; i++) {
+			String text = usedNormalizationFunction.normalize(left.get(i), indexedBlank).getLeft();
+			leftIds[i] = intern(ids, text);
+		}
+
+		int[] rightIds = new int[right.size()];
+		for (int i = 0; i < rightIds.length; i++) {
+			String text = usedNormalizationFunction.normalize(indexedBlank, right.get(i)).getRight();
+			rightIds[i] = intern(ids, text);
+		}
+
+		return new InternedLines(left, right, usedNormalizationFunction, leftIds, rightIds, ids.size());
+	}
+
+	/**
+	 * Creates interned lines using ids which were already computed (such as by comparing the raw bytes of each line)
+	 *
+	 * <p>The lists are <b>not</b> copied (so lazily computed lists can be used); they must not be modified.</p>
+	 *
+	 * @param leftLines the left lines
+	 * @param rightLines the right lines
+	 * @param normalizationFunction the normalization function used to compute the ids (if null, mimics {@link NormalizationFunction#NO_NORMALIZATION})
+	 * @param leftIds the id of each left line
+	 * @param rightIds the id of each right line
+	 * @param idCount the number of distinct ids (ids must range from 0 to idCount - 1)
+	 * @return the interned lines
+	 * @since 0.15
+	 */
+	public static InternedLines of(final List<DiffLine> leftLines, final List<DiffLine> rightLines,
+			final NormalizationFunction normalizationFunction, final int[] leftIds, final int[] rightIds,
+			final int idCount) {
+		checkArgument(leftLines.size() == leftIds.length, "Expected one id per left line");
+		checkArgument(rightLines.size() == rightIds.length, "Expected one id per right line");
+
+		return new InternedLines(leftLines, rightLines, firstNonNull(normalizationFunction, NO_NORMALIZATION),
+				leftIds.clone(), rightIds.clone(), idCount);
+	}
+
+	private static int intern(final Map<String, Integer> ids, final String text) {
+		Integer id = ids.get(text);
+
+		if (id == null) {
+			id = ids.size();
+			ids.put(text, id);
+		}
+
+		return id;
+	}
+
+	/**
+	 * Gets the lines in the specified range (the ids retain their meaning, so can be compared against the ids in this object)
+	 *
+	 * @param leftStart the left start (inclusive)
+	 * @param leftEnd the left end (exclusive)
+	 * @param rightStart the right start (inclusive)
+	 * @param rightEnd the right end (exclusive)
+	 * @return the lines in the specified range
+	 */
+	public InternedLines subLines(final int leftStart, final int leftEnd, final int rightStart, final int rightEnd) {
+		return new InternedLines(this.leftLines.subList(leftStart, leftEnd),
+				this.rightLines.subList(rightStart, rightEnd), this.normalizationFunction,
+				Arrays.copyOfRange(this.leftIds, leftStart, leftEnd),
+				Arrays.copyOfRange(this.rightIds, rightStart, rightEnd), this.idCount);
+	}
+
+	@SuppressFBWarnings(value = "EI_EXPOSE_REP", justification = "Immutable copy in intern")
+	public List<DiffLine> getLeftLines() {
+		return this.leftLines;
+	}
+
+	@SuppressFBWarnings(value = "EI_EXPOSE_REP", justification = "Immutable copy in intern")
+	public List<DiffLine> getRightLines() {
+		return this.rightLines;
+	}
+
+	public NormalizationFunction getNormalizationFunction() {
+		return this.normalizationFunction;
+	}
+
+	/**
+	 * Gets the id for the left line at the specified position
+	 *
+	 * @param position the position
+	 * @return the id of the left line's normalized text
+	 */
+	public int getLeftId(final int position) {
+		return this.leftIds[position];
+	}
+
+	/**
+	 * Gets the id for the right line at the specified position
+	 *
+	 * @param position the position
+	 * @return the id of the right line's normalized text
+	 */
+	public int getRightId(final int position) {
+		return this.rightIds[position];
+	}
+
+	/**
+	 * Gets the number of distinct ids
+	 *
+	 * <p>Ids range from 0 to <code>getIdCount() - 1</code>, so can be used to index into an array</p>
+	 *
+	 * @return the number of distinct ids
+	 */
+	public int getIdCount() {
+		return this.idCount;
+	}
+
+	/**
+	 * Indicates if the left line and right line at the specified positions have equal normalized text
+	 *
+	 * @param leftPosition the left position
+	 * @param rightPosition the right position
+	 * @return <code>true</code> if the lines have equal normalized text
+	 */
+	public boolean isEqual(final int leftPosition, final int rightPosition) {
+		return this.leftIds[leftPosition] == this.rightIds[rightPosition];
+	}
+}
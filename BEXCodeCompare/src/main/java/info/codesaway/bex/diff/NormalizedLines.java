@@ -0,0 +1,209 @@
+package info.codesaway.bex.diff;
+
+import static info.codesaway.bex.diff.NormalizationFunction.NO_NORMALIZATION;
+import static info.codesaway.bex.util.BEXUtilities.firstNonNull;
+import static info.codesaway.bex.util.BEXUtilities.immutableCopyOf;
+import static info.codesaway.bex.util.BEXUtilities.index;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import info.codesaway.bex.BEXSide;
+import info.codesaway.bex.Indexed;
+
+/**
+ * Normalization function which caches the normalized text of each left and right line, so each line is normalized at most once per diff
+ *
+ * <p>The same lines are normalized by each stage (diff algorithm, substitutions, moved lines, split lines, and blank lines);
+ * create a NormalizedLines for the lines being compared and pass it as the normalization function to each stage, to reuse the normalized text.</p>
+ *
+ * <p>Lines are found by their side and line number (and must have the same text as the cached line); other text, such as text from a different file, is normalized each time.
+ * Each line is normalized by itself (paired with a blank line), the same as {@link InternedLines}.
+ * As a result, the normalization function must normalize each line independent of the other line
+ * (such as {@link NormalizationFunction#WHITESPACE_NORMALIZATION}).</p>
+ *
+ * <p>Lines are normalized lazily, the first time they are used. Instances of this class are thread-safe if the normalization function is thread-safe.</p>
+ *
+ * @since 0.15
+ */
+public final class NormalizedLines implements NormalizationFunction {
+	private final NormalizationFunction normalizationFunction;
+
+	private final Side left;
+	private final Side right;
+
+	private NormalizedLines(final List<DiffLine> leftLines, final List<DiffLine> rightLines,
+			final NormalizationFunction normalizationFunction) {
+		this.normalizationFunction = normalizationFunction;
+		this.left = new Side(leftLines);
+		this.right = new Side(rightLines);
+	}
+
+	/**
+	 * Creates a cache of the normalized text of the specified lines
+	 *
+	 * <p>If the normalization function is already a NormalizedLines, its underlying normalization function is used</p>
+	 *
+	 * @param leftLines the left lines
+	 * @param rightLines the right lines
+	 * @param normalizationFunction the normalization function (if null, mimics {@link NormalizationFunction#NO_NORMALIZATION})
+	 * @return the normalized lines
+	 */
+	public static NormalizedLines of(final List<DiffLine> leftLines, final List<DiffLine> rightLines,
+			final NormalizationFunction normalizationFunction) {
+		NormalizationFunction usedNormalizationFunction = normalizationFunction instanceof NormalizedLines
+				? ((NormalizedLines) normalizationFunction).getNormalizationFunction()
+				: firstNonNull(normalizationFunction, NO_NORMALIZATION);
+
+		return new NormalizedLines(immutableCopyOf(leftLines), immutableCopyOf(rightLines),
+				usedNormalizationFunction);
+	}
+
+	/**
+	 * Gets the underlying normalization function
+	 *
+	 * @return the underlying normalization function
+	 */
+	public NormalizationFunction getNormalizationFunction() {
+		return this.normalizationFunction;
+	}
+
+	@SuppressFBWarnings(value = "EI_EXPOSE_REP", justification = "Immutable copy in of")
+	public List<DiffLine> getLeftLines() {
+		return this.left.lines;
+	}
+
+	@SuppressFBWarnings(value = "EI_EXPOSE_REP", justification = "Immutable copy in of")
+	public List<DiffLine> getRightLines() {
+		return this.right.lines;
+	}
+
+	@Override
+	public DiffNormalizedText normalize(final Indexed<String> leftIndexedText, final Indexed<String> rightIndexedText) {
+		if (this.normalizationFunction == NO_NORMALIZATION) {
+			return this.normalizationFunction.normalize(leftIndexedText, rightIndexedText);
+		}
+
+		return new DiffNormalizedText(this.getNormalizedText(BEXSide.LEFT, leftIndexedText),
+				this.getNormalizedText(BEXSide.RIGHT, rightIndexedText));
+	}
+
+	/**
+	 * Gets the normalized text for the specified line
+	 *
+	 * @param side the side of the line
+	 * @param indexedText the line
+	 * @return the cached normalized text (or the normalized text, if the line isn't one of the cached lines)
+	 */
+	public String getNormalizedText(final BEXSide side, final Indexed<String> indexedText) {
+		Side cache = side == BEXSide.LEFT ? this.left : this.right;
+		int position = cache.position(indexedText);
+
+		if (position == -1) {
+			if (indexedText.getValue().isEmpty()) {
+				// Blank text (such as the absent side of an inserted / deleted line)
+				String normalizedBlank = cache.normalizedBlank;
+
+				if (normalizedBlank == null) {
+					normalizedBlank = this.normalizeLine(side, index(-1, ""));
+					cache.normalizedBlank = normalizedBlank;
+				}
+
+				return normalizedBlank;
+			}
+
+			return this.normalizeLine(side, indexedText);
+		}
+
+		String normalizedText = cache.normalizedTexts[position];
+
+		if (normalizedText == null) {
+			// Benign race: another thread may normalize the same line, but will get the same text
+			normalizedText = this.normalizeLine(side, cache.lines.get(position));
+			cache.normalizedTexts[position] = normalizedText;
+		}
+
+		return normalizedText;
+	}
+
+	private String normalizeLine(final BEXSide side, final Indexed<String> indexedText) {
+		Indexed<String> indexedBlank = index(-1, "");
+
+		return side == BEXSide.LEFT
+				? this.normalizationFunction.normalize(indexedText, indexedBlank).getLeft()
+				: this.normalizationFunction.normalize(indexedBlank, indexedText).getRight();
+	}
+
+	/**
+	 * The lines on one side and their normalized text
+	 */
+	private static final class Side {
+		private final List<DiffLine> lines;
+		private final String[] normalizedTexts;
+
+		/**
+		 * Line number of the first line, if the line numbers are consecutive
+		 */
+		private final int firstLineNumber;
+
+		/**
+		 * Map from line number to position, if the line numbers are not consecutive (otherwise <code>null</code>)
+		 */
+		private final Map<Integer, Integer> positions;
+
+		private volatile String normalizedBlank;
+
+		Side(final List<DiffLine> lines) {
+			this.lines = lines;
+			this.normalizedTexts = new String[lines.size()];
+			this.firstLineNumber = lines.isEmpty() ? 0 : lines.get(0).getNumber();
+
+			boolean isConsecutive = true;
+			for (int i = 0; i < lines.size(); i++) {
+				if (lines.get(i).getNumber() != this.firstLineNumber + i) {
+					isConsecutive = false;
+					break;
+				}
+			}
+
+			if (isConsecutive) {
+				this.positions = null;
+			} else {
+				this.positions = new HashMap<>();
+				for (int i = 0; i < lines.size(); i++) {
+					this.positions.putIfAbsent(lines.get(i).getNumber(), i);
+				}
+			}
+		}
+
+		/**
+		 * Gets the position of the line (or -1 if the line isn't one of these lines)
+		 */
+		int position(final Indexed<String> indexedText) {
+			int position;
+
+			if (this.positions == null) {
+				position = indexedText.getIndex() - this.firstLineNumber;
+
+				if (position < 0 || position >= this.lines.size()) {
+					return -1;
+				}
+			} else {
+				Integer value = this.positions.get(indexedText.getIndex());
+
+				if (value == null) {
+					return -1;
+				}
+
+				position = value;
+			}
+
+			DiffLine line = this.lines.get(position);
+
+			// Same line number, but different text (such as a line from a different file)
+			return line.getText().equals(indexedText.getValue()) ? position : -1;
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package info.codesaway.bex.diff.cache;
+
+import java.util.List;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import info.codesaway.bex.diff.DiffEdit;
+import info.codesaway.bex.diff.DiffUnit;
+
+/**
+ * Diff read from a {@link DiffCache}
+ *
+ * <p>The edits refer to the lines passed to {@link DiffCache#get(DiffCacheKey, List, List)}, the same as a newly computed diff</p>
+ *
+ * @since 0.15
+ */
+public final class CachedDiff {
+	private final List<DiffEdit> diff;
+	private final List<DiffUnit> diffBlocks;
+
+	CachedDiff(final List<DiffEdit> diff, final List<DiffUnit> diffBlocks) {
+		this.diff = diff;
+		this.diffBlocks = diffBlocks;
+	}
+
+	/**
+	 *
+	 * @return the diff (a new modifiable list)
+	 */
+	@SuppressFBWarnings(value = "EI_EXPOSE_REP", justification = "New list created for each cache hit")
+	public List<DiffEdit> getDiff() {
+		return this.diff;
+	}
+
+	/**
+	 *
+	 * @return the diff blocks (a new modifiable list)
+	 */
+	@SuppressFBWarnings(value = "EI_EXPOSE_REP", justification = "New list created for each cache hit")
+	public List<DiffUnit> getDiffBlocks() {
+		return this.diffBlocks;
+	}
+}
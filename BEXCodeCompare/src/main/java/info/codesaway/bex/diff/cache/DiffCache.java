@@ -0,0 +1,614 @@
+package info.codesaway.bex.diff.cache;
+
+import static info.codesaway.bex.util.BEXUtilities.checkArgument;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+import info.codesaway.bex.diff.DiffEdit;
+import info.codesaway.bex.diff.DiffLine;
+import info.codesaway.bex.diff.DiffUnit;
+
+/**
+ * Persistent cache of diffs, so repeatedly comparing the same files doesn't recompute their diffs
+ *
+ * <p>Diffs are stored in a single append-only file. Each record contains the key, a CRC-32 checksum, and the encoded diff
+ * (lines are stored as their position, so the file doesn't contain any of the text being compared).
+ * When opened, the records are scanned to build an in-memory index from each key to its record;
+ * an incomplete record at the end of the file (such as if the process was killed while writing) is removed.</p>
+ *
+ * <p>When the file grows larger than the max size, the file is compacted, keeping the most recently used diffs
+ * (up to 3/4 of the max size) and evicting the rest. Records are written from least to most recently used,
+ * so the order is kept when the cache is reopened. A diff whose record wouldn't fit in the compacted file isn't cached.</p>
+ *
+ * <p>Instances of this class are thread-safe. The file is locked while the cache is open, so it can only be used by one process at a time.</p>
+ *
+ * @since 0.15
+ */
+public final class DiffCache implements Closeable {
+	private static final byte[] MAGIC = { 'B', 'E', 'X', 'D', 'I', 'F', 'F', 'C' };
+
+	/**
+	 * Format version (increment if the record format or {@link DiffCodec} encoding changes, so old diffs aren't read)
+	 */
+	private static final int VERSION = 1;
+
+	private static final int FILE_HEADER_SIZE = MAGIC.length + Integer.BYTES;
+
+	/**
+	 * Size of each record's header: the payload length, the key, and the CRC-32 of the payload
+	 */
+	private static final int RECORD_HEADER_SIZE = Integer.BYTES + DiffCacheKey.SIZE + Integer.BYTES;
+
+	private final Path path;
+	private final long maxSize;
+
+	/**
+	 * Max size of the file after it's compacted
+	 */
+	private final long compactedSize;
+
+	private FileChannel channel;
+	private FileLock lock;
+	private long size;
+
+	/**
+	 * Location of each record, in access order (least recently used first)
+	 */
+	private final LinkedHashMap<DiffCacheKey, Location> index = new LinkedHashMap<>(16, 0.75f, true);
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder puts = new LongAdder();
+	private final LongAdder uncacheable = new LongAdder();
+	private final LongAdder corrupt = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder compactions = new LongAdder();
+
+	private DiffCache(final Path path, final long maxSize) {
+		this.path = path;
+		this.maxSize = maxSize;
+		this.compactedSize = maxSize / 4 * 3;
+	}
+
+	/**
+	 * Opens the cache, creating the file if it doesn't exist
+	 *
+	 * <p>If the file isn't a diff cache with the current format version, it's cleared</p>
+	 *
+	 * @param path the cache file
+	 * @param maxSize the max size of the cache file, in bytes
+	 * @return the cache
+	 * @throws IOException if an I/O error occurs or the cache is already open
+	 */
+	public static DiffCache open(final Path path, final long maxSize) throws IOException {
+		checkArgument(maxSize > FILE_HEADER_SIZE, "maxSize must be greater than " + FILE_HEADER_SIZE);
+
+		DiffCache diffCache = new DiffCache(path, maxSize);
+
+		try {
+			diffCache.openChannel();
+			diffCache.readIndex();
+		} catch (IOException | RuntimeException e) {
+			diffCache.close();
+			throw e;
+		}
+
+		return diffCache;
+	}
+
+	private void openChannel() throws IOException {
+		this.channel = FileChannel.open(this.path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+
+		try {
+			this.lock = this.channel.tryLock();
+		} catch (OverlappingFileLockException e) {
+			this.lock = null;
+		}
+
+		if (this.lock == null) {
+			throw new IOException("Diff cache is already in use: " + this.path);
+		}
+	}
+
+	private void readIndex() throws IOException {
+		long fileSize = this.channel.size();
+
+		if (!this.hasValidFileHeader(fileSize)) {
+			this.clear();
+			return;
+		}
+
+		ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+		long position = FILE_HEADER_SIZE;
+
+		while (position + RECORD_HEADER_SIZE <= fileSize) {
+			header.clear();
+			readFully(this.channel, header, position);
+			header.flip();
+
+			int length = header.getInt();
+
+			if (length < 0 || position + RECORD_HEADER_SIZE + length > fileSize) {
+				break;
+			}
+
+			byte[] digest = new byte[DiffCacheKey.SIZE];
+			header.get(digest);
+
+			// Later records replace earlier records with the same key
+			this.index.put(DiffCacheKey.fromDigest(digest), new Location(position, length));
+			position += RECORD_HEADER_SIZE + length;
+		}
+
+		if (position != fileSize) {
+			// Remove the incomplete record at the end
+			this.channel.truncate(position);
+		}
+
+		this.size = position;
+	}
+
+	private boolean hasValidFileHeader(final long fileSize) throws IOException {
+		if (fileSize < FILE_HEADER_SIZE) {
+			return false;
+		}
+
+		ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+		readFully(this.channel, header, 0);
+		header.flip();
+
+		byte[] magic = new byte[MAGIC.length];
+		header.get(magic);
+
+		return Arrays.equals(magic, MAGIC) && header.getInt() == VERSION;
+	}
+
+	/**
+	 * Removes all diffs from the cache
+	 *
+	 * @throws IOException if an I/O error occurs
+	 */
+	public synchronized void clear() throws IOException {
+		this.ensureOpen();
+		this.channel.truncate(0);
+
+		ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+		header.put(MAGIC).putInt(VERSION).flip();
+		writeFully(this.channel, header, 0);
+
+		this.index.clear();
+		this.size = FILE_HEADER_SIZE;
+	}
+
+	public Path getPath() {
+		return this.path;
+	}
+
+	public long getMaxSize() {
+		return this.maxSize;
+	}
+
+	/**
+	 * Gets the cached diff
+	 *
+	 * @param key the key
+	 * @param leftLines the left lines (the same lines passed when the diff was put in the cache)
+	 * @param rightLines the right lines (the same lines passed when the diff was put in the cache)
+	 * @return the cached diff, whose edits refer to the specified lines (or <code>null</code> if the diff isn't cached)
+	 * @throws IOException if an I/O error occurs
+	 */
+	public CachedDiff get(final DiffCacheKey key, final List<DiffLine> leftLines, final List<DiffLine> rightLines)
+			throws IOException {
+		byte[] payload;
+
+		synchronized (this) {
+			this.ensureOpen();
+			Location location = this.index.get(key);
+
+			if (location == null) {
+				this.misses.increment();
+				return null;
+			}
+
+			payload = this.readPayload(location);
+		}
+
+		// Decode outside of the lock
+		CachedDiff cachedDiff;
+		try {
+			cachedDiff = payload != null ? DiffCodec.decode(payload, leftLines, rightLines) : null;
+		} catch (IOException e) {
+			cachedDiff = null;
+		}
+
+		if (cachedDiff == null) {
+			// Checksum didn't match or couldn't decode (such as if the file was modified)
+			synchronized (this) {
+				this.index.remove(key);
+			}
+
+			this.corrupt.increment();
+			this.misses.increment();
+			return null;
+		}
+
+		this.hits.increment();
+		return cachedDiff;
+	}
+
+	/**
+	 * Reads the payload of the record
+	 *
+	 * @return the payload (or <code>null</code> if the checksum doesn't match)
+	 */
+	private byte[] readPayload(final Location location) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + location.length);
+		readFully(this.channel, buffer, location.position);
+		buffer.flip();
+
+		buffer.position(Integer.BYTES + DiffCacheKey.SIZE);
+		int checksum = buffer.getInt();
+
+		byte[] payload = new byte[location.length];
+		buffer.get(payload);
+
+		return checksum(payload) == checksum ? payload : null;
+	}
+
+	/**
+	 * Puts the diff in the cache
+	 *
+	 * <p>If the diff is already cached or cannot be cached (such as if it contains a DiffType not defined in BEX
+	 * or it's too large to be kept when the file is compacted), nothing is done</p>
+	 *
+	 * @param key the key
+	 * @param diff the diff
+	 * @param diffBlocks the diff blocks
+	 * @param leftLines the left lines which were compared
+	 * @param rightLines the right lines which were compared
+	 * @return <code>true</code> if the diff was put in the cache
+	 * @throws IOException if an I/O error occurs
+	 */
+	public boolean put(final DiffCacheKey key, final List<DiffEdit> diff, final List<DiffUnit> diffBlocks,
+			final List<DiffLine> leftLines, final List<DiffLine> rightLines) throws IOException {
+		synchronized (this) {
+			if (this.index.containsKey(key)) {
+				return false;
+			}
+		}
+
+		// Encode outside of the lock
+		byte[] payload = DiffCodec.encode(diff, diffBlocks, leftLines, rightLines);
+
+		// A record which doesn't fit in the compacted file would evict every diff, including itself
+		if (payload == null || FILE_HEADER_SIZE + RECORD_HEADER_SIZE + payload.length > this.compactedSize) {
+			this.uncacheable.increment();
+			return false;
+		}
+
+		ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+		record.putInt(payload.length)
+				.put(key.getDigest())
+				.putInt(checksum(payload))
+				.put(payload)
+				.flip();
+
+		synchronized (this) {
+			this.ensureOpen();
+
+			if (this.index.containsKey(key)) {
+				// Put by another thread while encoding
+				return false;
+			}
+
+			long position = this.size;
+			writeFully(this.channel, record, position);
+
+			this.index.put(key, new Location(position, payload.length));
+			this.size = position + RECORD_HEADER_SIZE + payload.length;
+			this.puts.increment();
+
+			if (this.size > this.maxSize) {
+				this.compact(this.compactedSize);
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Rewrites the file with only the most recently used records (evicting the rest)
+	 *
+	 * @param targetSize the max size of the compacted file
+	 */
+	private void compact(final long targetSize) throws IOException {
+		// Keep the most recently used (at the end of the index) which fit within the target size
+		List<Map.Entry<DiffCacheKey, Location>> entries = new ArrayList<>(this.index.entrySet());
+		long keptSize = FILE_HEADER_SIZE;
+		int firstKept = entries.size();
+
+		while (firstKept > 0) {
+			Location location = entries.get(firstKept - 1).getValue();
+			long recordSize = RECORD_HEADER_SIZE + location.length;
+
+			if (keptSize + recordSize > targetSize) {
+				break;
+			}
+
+			keptSize += recordSize;
+			firstKept--;
+		}
+
+		Path compactedPath = this.path.resolveSibling(this.path.getFileName() + ".compact");
+		LinkedHashMap<DiffCacheKey, Location> compactedIndex = new LinkedHashMap<>(16, 0.75f, true);
+
+		try (FileChannel compacted = FileChannel.open(compactedPath, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+			header.put(MAGIC).putInt(VERSION).flip();
+			writeFully(compacted, header, 0);
+
+			long position = FILE_HEADER_SIZE;
+
+			// Write from least to most recently used, so the order is kept when reopened
+			for (Map.Entry<DiffCacheKey, Location> entry : entries.subList(firstKept, entries.size())) {
+				Location location = entry.getValue();
+				ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + location.length);
+				readFully(this.channel, record, location.position);
+				record.flip();
+
+				writeFully(compacted, record, position);
+				compactedIndex.put(entry.getKey(), new Location(position, location.length));
+				position += RECORD_HEADER_SIZE + location.length;
+			}
+		}
+
+		// Release the lock and close the file, so it can be replaced (required on Windows)
+		this.closeChannel();
+
+		boolean isMoved = false;
+
+		try {
+			try {
+				Files.move(compactedPath, this.path, StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(compactedPath, this.path, StandardCopyOption.REPLACE_EXISTING);
+			}
+
+			isMoved = true;
+		} finally {
+			// Reopen even if the move failed (the file and index are unchanged), so the cache can still be used
+			this.openChannel();
+
+			if (!isMoved) {
+				Files.deleteIfExists(compactedPath);
+			}
+		}
+
+		this.evictions.add(this.index.size() - compactedIndex.size());
+		this.compactions.increment();
+
+		this.index.clear();
+		this.index.putAll(compactedIndex);
+		this.size = keptSize;
+	}
+
+	private void ensureOpen() throws IOException {
+		if (this.channel == null) {
+			throw new IOException("Diff cache is closed: " + this.path);
+		}
+	}
+
+	private static int checksum(final byte[] payload) {
+		CRC32 crc = new CRC32();
+		crc.update(payload, 0, payload.length);
+		return (int) crc.getValue();
+	}
+
+	private static void readFully(final FileChannel channel, final ByteBuffer buffer, final long position)
+			throws IOException {
+		long current = position;
+
+		while (buffer.hasRemaining()) {
+			int count = channel.read(buffer, current);
+
+			if (count == -1) {
+				throw new IOException("Unexpected end of diff cache file");
+			}
+
+			current += count;
+		}
+	}
+
+	private static void writeFully(final FileChannel channel, final ByteBuffer buffer, final long position)
+			throws IOException {
+		long current = position;
+
+		while (buffer.hasRemaining()) {
+			current += channel.write(buffer, current);
+		}
+	}
+
+	/**
+	 * Gets the statistics for this cache (since it was opened)
+	 *
+	 * @return the statistics
+	 */
+	public synchronized Statistics getStatistics() {
+		return new Statistics(this.hits.sum(), this.misses.sum(), this.puts.sum(), this.uncacheable.sum(),
+				this.corrupt.sum(), this.evictions.sum(), this.compactions.sum(), this.index.size(), this.size);
+	}
+
+	/**
+	 * Closes the cache file (diffs already put in the cache are kept)
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		this.closeChannel();
+	}
+
+	private void closeChannel() throws IOException {
+		if (this.channel == null) {
+			return;
+		}
+
+		try {
+			if (this.lock != null && this.lock.isValid()) {
+				this.lock.release();
+			}
+		} finally {
+			this.lock = null;
+			this.channel.close();
+			this.channel = null;
+		}
+	}
+
+	/**
+	 * Location of a record in the file
+	 */
+	private static final class Location {
+		private final long position;
+		private final int length;
+
+		Location(final long position, final int length) {
+			this.position = position;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * Statistics for a DiffCache
+	 */
+	public static final class Statistics {
+		private final long hits;
+		private final long misses;
+		private final long puts;
+		private final long uncacheable;
+		private final long corrupt;
+		private final long evictions;
+		private final long compactions;
+		private final int entries;
+		private final long size;
+
+		Statistics(final long hits, final long misses, final long puts, final long uncacheable, final long corrupt,
+				final long evictions, final long compactions, final int entries, final long size) {
+			this.hits = hits;
+			this.misses = misses;
+			this.puts = puts;
+			this.uncacheable = uncacheable;
+			this.corrupt = corrupt;
+			this.evictions = evictions;
+			this.compactions = compactions;
+			this.entries = entries;
+			this.size = size;
+		}
+
+		/**
+		 *
+		 * @return the number of diffs read from the cache
+		 */
+		public long getHits() {
+			return this.hits;
+		}
+
+		/**
+		 *
+		 * @return the number of diffs not found in the cache
+		 */
+		public long getMisses() {
+			return this.misses;
+		}
+
+		/**
+		 *
+		 * @return the number of diffs put in the cache
+		 */
+		public long getPuts() {
+			return this.puts;
+		}
+
+		/**
+		 *
+		 * @return the number of diffs which couldn't be cached (such as if they contain a DiffType not defined in BEX)
+		 */
+		public long getUncacheable() {
+			return this.uncacheable;
+		}
+
+		/**
+		 *
+		 * @return the number of cached diffs which couldn't be read (such as if the checksum didn't match)
+		 */
+		public long getCorrupt() {
+			return this.corrupt;
+		}
+
+		/**
+		 *
+		 * @return the number of diffs evicted, to keep the cache within its max size
+		 */
+		public long getEvictions() {
+			return this.evictions;
+		}
+
+		/**
+		 *
+		 * @return the number of times the cache file was compacted
+		 */
+		public long getCompactions() {
+			return this.compactions;
+		}
+
+		/**
+		 *
+		 * @return the number of cached diffs
+		 */
+		public int getEntries() {
+			return this.entries;
+		}
+
+		/**
+		 *
+		 * @return the size of the cache file, in bytes
+		 */
+		public long getSize() {
+			return this.size;
+		}
+
+		/**
+		 *
+		 * @return the fraction of lookups which were found in the cache
+		 */
+		public double getHitRate() {
+			long lookups = this.hits + this.misses;
+			return lookups != 0 ? (double) this.hits / lookups : 0;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("hits=%d, misses=%d (%.1f%% hit rate), puts=%d, uncacheable=%d, corrupt=%d, "
+					+ "evictions=%d, compactions=%d, entries=%d, size=%d bytes", this.hits, this.misses,
+					this.getHitRate() * 100, this.puts, this.uncacheable, this.corrupt, this.evictions,
+					this.compactions, this.entries, this.size);
+		}
+	}
+}
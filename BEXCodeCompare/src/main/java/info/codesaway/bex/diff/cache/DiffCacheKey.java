@@ -0,0 +1,140 @@
+package info.codesaway.bex.diff.cache;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import info.codesaway.bex.diff.DiffLine;
+
+/**
+ * Key for a cached diff
+ *
+ * <p>The key is a SHA-256 digest of the left content hash, the right content hash, the normalization id, and the configuration id.
+ * The ids identify how the diff was computed (such as the normalization function and substitution types);
+ * if the diff would be computed differently, a different id must be used, so the previously cached diffs aren't used.</p>
+ *
+ * @since 0.15
+ */
+public final class DiffCacheKey {
+	/**
+	 * Number of bytes in the digest
+	 */
+	static final int SIZE = 32;
+
+	private final byte[] digest;
+	private final int hashCode;
+
+	private DiffCacheKey(final byte[] digest) {
+		this.digest = digest;
+		this.hashCode = Arrays.hashCode(digest);
+	}
+
+	/**
+	 * Creates the key for the diff of the specified lines
+	 *
+	 * @param leftLines the left lines
+	 * @param rightLines the right lines
+	 * @param normalizationId identifies the normalization function
+	 * @param configurationId identifies the other configuration used to compute the diff (such as the substitution types)
+	 * @return the key
+	 */
+	public static DiffCacheKey of(final List<DiffLine> leftLines, final List<DiffLine> rightLines,
+			final String normalizationId, final String configurationId) {
+		Objects.requireNonNull(normalizationId, "normalizationId");
+		Objects.requireNonNull(configurationId, "configurationId");
+
+		MessageDigest messageDigest = newMessageDigest();
+
+		messageDigest.update(hash(leftLines));
+		messageDigest.update(hash(rightLines));
+		update(messageDigest, normalizationId.getBytes(UTF_8));
+		update(messageDigest, configurationId.getBytes(UTF_8));
+
+		return new DiffCacheKey(messageDigest.digest());
+	}
+
+	/**
+	 * Creates the key from the digest read from the cache file
+	 */
+	static DiffCacheKey fromDigest(final byte[] digest) {
+		return new DiffCacheKey(digest.clone());
+	}
+
+	/**
+	 * Gets the content hash of the lines
+	 */
+	private static byte[] hash(final List<DiffLine> lines) {
+		MessageDigest messageDigest = newMessageDigest();
+
+		for (DiffLine line : lines) {
+			messageDigest.update(intToBytes(line.getNumber()));
+			update(messageDigest, line.getText().getBytes(UTF_8));
+		}
+
+		return messageDigest.digest();
+	}
+
+	/**
+	 * Updates the digest with the length of the bytes followed by the bytes
+	 *
+	 * <p>(so the boundary between each value is part of the digest)</p>
+	 */
+	private static void update(final MessageDigest messageDigest, final byte[] bytes) {
+		messageDigest.update(intToBytes(bytes.length));
+		messageDigest.update(bytes);
+	}
+
+	private static byte[] intToBytes(final int value) {
+		return ByteBuffer.allocate(Integer.BYTES).putInt(value).array();
+	}
+
+	private static MessageDigest newMessageDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java implementation is required to support SHA-256
+			throw new AssertionError("SHA-256 is not supported", e);
+		}
+	}
+
+	byte[] getDigest() {
+		return this.digest;
+	}
+
+	@Override
+	public int hashCode() {
+		return this.hashCode;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null) {
+			return false;
+		}
+		if (this.getClass() != obj.getClass()) {
+			return false;
+		}
+		DiffCacheKey other = (DiffCacheKey) obj;
+		return Arrays.equals(this.digest, other.digest);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder(this.digest.length * 2);
+
+		for (byte b : this.digest) {
+			result.append(Character.forDigit((b >> 4) & 0xF, 16))
+					.append(Character.forDigit(b & 0xF, 16));
+		}
+
+		return result.toString();
+	}
+}
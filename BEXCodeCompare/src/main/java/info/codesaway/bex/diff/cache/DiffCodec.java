@@ -0,0 +1,509 @@
+package info.codesaway.bex.diff.cache;
+
+import static info.codesaway.bex.diff.BasicDiffType.REFACTOR;
+import static info.codesaway.bex.diff.BasicDiffType.REPLACEMENT_BLOCK;
+import static info.codesaway.bex.diff.BasicDiffType.SUBSTITUTE;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import info.codesaway.bex.BEXPairValue;
+import info.codesaway.bex.BEXSide;
+import info.codesaway.bex.diff.BasicDiffType;
+import info.codesaway.bex.diff.DiffBlock;
+import info.codesaway.bex.diff.DiffEdit;
+import info.codesaway.bex.diff.DiffLine;
+import info.codesaway.bex.diff.DiffType;
+import info.codesaway.bex.diff.DiffUnit;
+import info.codesaway.bex.diff.substitution.RefactoringDiffTypeValue;
+import info.codesaway.bex.diff.substitution.SubstitutionContainsDiffType;
+import info.codesaway.bex.diff.substitution.SubstitutionDiffTypeValue;
+import info.codesaway.bex.diff.substitution.java.ImportSameClassnameDiffType;
+
+/**
+ * Binary encoding of a diff and its diff blocks
+ *
+ * <p>Lines are encoded as their position in the left / right lines (the text isn't stored).
+ * Each distinct DiffType is encoded once, then referenced by its position.
+ * Edits in the diff blocks, which are also in the diff, are referenced by their position in the diff.
+ * Numbers are encoded as variable-length ints, so most take a single byte.</p>
+ *
+ * <p>Only the DiffTypes defined in BEX can be encoded; a diff with any other DiffType (or DiffUnit, such as DiffChange) isn't cached.</p>
+ */
+final class DiffCodec {
+	private DiffCodec() {
+		throw new UnsupportedOperationException();
+	}
+
+	private static final int BASIC_DIFF_TYPE = 0;
+	private static final int CONSTANT_DIFF_TYPE = 1;
+	private static final int SUBSTITUTION_DIFF_TYPE = 2;
+	private static final int REFACTORING_DIFF_TYPE = 3;
+	private static final int SUBSTITUTION_CONTAINS_DIFF_TYPE = 4;
+	private static final int IMPORT_SAME_CLASSNAME_DIFF_TYPE = 5;
+
+	/**
+	 * DiffType constants which aren't part of the BasicDiffType enum
+	 *
+	 * <p>(decoded to the same instance, since they are compared by identity)</p>
+	 */
+	private static final DiffType[] CONSTANT_DIFF_TYPES = { SUBSTITUTE, REPLACEMENT_BLOCK, REFACTOR };
+
+	private static final int EDIT_UNIT = 0;
+	private static final int BLOCK_UNIT = 1;
+
+	private static final BasicDiffType[] BASIC_DIFF_TYPES = BasicDiffType.values();
+	private static final BEXSide[] SIDES = BEXSide.values();
+	private static final SubstitutionContainsDiffType.Direction[] DIRECTIONS = SubstitutionContainsDiffType.Direction
+			.values();
+
+	/**
+	 * Encodes the diff and diff blocks
+	 *
+	 * @return the encoded diff (or <code>null</code> if the diff cannot be encoded)
+	 */
+	static byte[] encode(final List<DiffEdit> diff, final List<DiffUnit> diffBlocks,
+			final List<DiffLine> leftLines, final List<DiffLine> rightLines) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try (DataOutputStream output = new DataOutputStream(bytes)) {
+			Encoder encoder = new Encoder(output, leftLines, rightLines, diff);
+
+			if (!encoder.encode(diff, diffBlocks)) {
+				return null;
+			}
+		} catch (UTFDataFormatException e) {
+			// String is too long to encode
+			return null;
+		} catch (IOException e) {
+			// ByteArrayOutputStream doesn't throw IOException
+			throw new UncheckedIOException(e);
+		}
+
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Decodes the diff and diff blocks
+	 *
+	 * @throws IOException if the bytes aren't a valid encoded diff for the lines
+	 */
+	static CachedDiff decode(final byte[] bytes, final List<DiffLine> leftLines, final List<DiffLine> rightLines)
+			throws IOException {
+		try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes))) {
+			return new Decoder(input, leftLines, rightLines).decode();
+		}
+	}
+
+	private static final class Encoder {
+		private final DataOutput output;
+		private final Map<DiffLine, Integer> leftPositions;
+		private final Map<DiffLine, Integer> rightPositions;
+		private final Map<DiffEdit, Integer> editPositions;
+		private final Map<DiffType, Integer> diffTypes = new IdentityHashMap<>();
+		private final ByteArrayOutputStream typeBytes = new ByteArrayOutputStream();
+		private final DataOutputStream typeOutput = new DataOutputStream(this.typeBytes);
+
+		Encoder(final DataOutput output, final List<DiffLine> leftLines, final List<DiffLine> rightLines,
+				final List<DiffEdit> diff) {
+			this.output = output;
+			this.leftPositions = positions(leftLines);
+			this.rightPositions = positions(rightLines);
+			this.editPositions = positions(diff);
+		}
+
+		private static <T> Map<T, Integer> positions(final List<T> list) {
+			Map<T, Integer> positions = new IdentityHashMap<>(list.size());
+
+			for (int i = 0; i < list.size(); i++) {
+				positions.putIfAbsent(list.get(i), i);
+			}
+
+			return positions;
+		}
+
+		/**
+		 * Encodes the DiffTypes, followed by the diff and diff blocks
+		 *
+		 * @return <code>false</code> if cannot be encoded
+		 */
+		boolean encode(final List<DiffEdit> diff, final List<DiffUnit> diffBlocks) throws IOException {
+			// Encode the diff first (so know the DiffTypes), then write the DiffTypes before the diff
+			ByteArrayOutputStream diffBytes = new ByteArrayOutputStream();
+			DataOutputStream diffOutput = new DataOutputStream(diffBytes);
+
+			writeVarInt(diffOutput, diff.size());
+			for (DiffEdit edit : diff) {
+				if (!this.writeEdit(diffOutput, edit)) {
+					return false;
+				}
+			}
+
+			writeVarInt(diffOutput, diffBlocks.size());
+			for (DiffUnit diffUnit : diffBlocks) {
+				if (diffUnit instanceof DiffEdit) {
+					diffOutput.writeByte(EDIT_UNIT);
+
+					if (!this.writeEditReference(diffOutput, (DiffEdit) diffUnit)) {
+						return false;
+					}
+				} else if (diffUnit instanceof DiffBlock) {
+					diffOutput.writeByte(BLOCK_UNIT);
+
+					if (!this.writeDiffType(diffOutput, diffUnit.getType())) {
+						return false;
+					}
+
+					List<DiffEdit> edits = diffUnit.getEdits();
+					writeVarInt(diffOutput, edits.size());
+
+					for (DiffEdit edit : edits) {
+						if (!this.writeEditReference(diffOutput, edit)) {
+							return false;
+						}
+					}
+				} else {
+					return false;
+				}
+			}
+
+			diffOutput.flush();
+
+			writeVarInt(this.output, this.diffTypes.size());
+			this.typeOutput.flush();
+			this.output.write(this.typeBytes.toByteArray());
+			this.output.write(diffBytes.toByteArray());
+
+			return true;
+		}
+
+		/**
+		 * Writes the position of the edit in the diff (plus 1) or 0 followed by the edit
+		 */
+		private boolean writeEditReference(final DataOutput output, final DiffEdit edit) throws IOException {
+			Integer position = this.editPositions.get(edit);
+
+			if (position != null) {
+				writeVarInt(output, position + 1);
+				return true;
+			}
+
+			writeVarInt(output, 0);
+			return this.writeEdit(output, edit);
+		}
+
+		private boolean writeEdit(final DataOutput output, final DiffEdit edit) throws IOException {
+			if (!this.writeDiffType(output, edit.getType())) {
+				return false;
+			}
+
+			return writeLine(output, edit.getLeftLine().orElse(null), this.leftPositions)
+					&& writeLine(output, edit.getRightLine().orElse(null), this.rightPositions);
+		}
+
+		/**
+		 * Writes the position of the line (plus 1) or 0 if there is no line
+		 */
+		private static boolean writeLine(final DataOutput output, final DiffLine line,
+				final Map<DiffLine, Integer> positions) throws IOException {
+			if (line == null) {
+				writeVarInt(output, 0);
+				return true;
+			}
+
+			Integer position = positions.get(line);
+
+			if (position == null) {
+				// Line isn't one of the lines being compared
+				return false;
+			}
+
+			writeVarInt(output, position + 1);
+			return true;
+		}
+
+		/**
+		 * Writes the position of the DiffType, adding the DiffType to the DiffTypes if it's the first time it's used
+		 */
+		private boolean writeDiffType(final DataOutput output, final DiffType diffType) throws IOException {
+			Integer position = this.diffTypes.get(diffType);
+
+			if (position == null) {
+				if (!this.writeDiffTypeDefinition(diffType)) {
+					return false;
+				}
+
+				position = this.diffTypes.size();
+				this.diffTypes.put(diffType, position);
+			}
+
+			writeVarInt(output, position);
+			return true;
+		}
+
+		private boolean writeDiffTypeDefinition(final DiffType diffType) throws IOException {
+			DataOutput output = this.typeOutput;
+
+			if (diffType instanceof BasicDiffType) {
+				output.writeByte(BASIC_DIFF_TYPE);
+				writeVarInt(output, ((BasicDiffType) diffType).ordinal());
+				return true;
+			}
+
+			for (int i = 0; i < CONSTANT_DIFF_TYPES.length; i++) {
+				if (diffType == CONSTANT_DIFF_TYPES[i]) {
+					output.writeByte(CONSTANT_DIFF_TYPE);
+					writeVarInt(output, i);
+					return true;
+				}
+			}
+
+			if (diffType instanceof SubstitutionDiffTypeValue) {
+				SubstitutionDiffTypeValue value = (SubstitutionDiffTypeValue) diffType;
+				output.writeByte(SUBSTITUTION_DIFF_TYPE);
+				output.writeChar(value.getSymbol());
+				writeString(output, value.getName());
+				output.writeBoolean(value.isMove());
+				output.writeBoolean(value.shouldTreatAsNormalizedEqual());
+				return true;
+			} else if (diffType instanceof RefactoringDiffTypeValue) {
+				RefactoringDiffTypeValue value = (RefactoringDiffTypeValue) diffType;
+				output.writeByte(REFACTORING_DIFF_TYPE);
+				output.writeChar(value.getSymbol());
+				output.writeByte(value.getSide() != null ? value.getSide().ordinal() : -1);
+				writeString(output, value.getCategory());
+				writeString(output, value.getInfo());
+				output.writeBoolean(value.shouldTreatAsNormalizedEqual());
+				output.writeBoolean(value.isMove());
+				return true;
+			} else if (diffType instanceof SubstitutionContainsDiffType) {
+				SubstitutionContainsDiffType value = (SubstitutionContainsDiffType) diffType;
+				output.writeByte(SUBSTITUTION_CONTAINS_DIFF_TYPE);
+				writeString(output, value.getPrefix());
+				writeVarInt(output, value.getDirection().ordinal());
+				writeString(output, value.getSuffix());
+				return true;
+			} else if (diffType instanceof ImportSameClassnameDiffType) {
+				ImportSameClassnameDiffType value = (ImportSameClassnameDiffType) diffType;
+				output.writeByte(IMPORT_SAME_CLASSNAME_DIFF_TYPE);
+				writeString(output, value.getClassName());
+				writeString(output, value.getImportPackage().getLeft());
+				writeString(output, value.getImportPackage().getRight());
+				output.writeBoolean(value.isMove());
+				return true;
+			}
+
+			return false;
+		}
+	}
+
+	private static final class Decoder {
+		private final DataInput input;
+		private final List<DiffLine> leftLines;
+		private final List<DiffLine> rightLines;
+		private final List<DiffEdit> diff = new ArrayList<>();
+		private DiffType[] diffTypes;
+
+		Decoder(final DataInput input, final List<DiffLine> leftLines, final List<DiffLine> rightLines) {
+			this.input = input;
+			this.leftLines = leftLines;
+			this.rightLines = rightLines;
+		}
+
+		CachedDiff decode() throws IOException {
+			this.diffTypes = new DiffType[readVarInt(this.input)];
+			for (int i = 0; i < this.diffTypes.length; i++) {
+				this.diffTypes[i] = this.readDiffTypeDefinition();
+			}
+
+			int diffSize = readVarInt(this.input);
+			for (int i = 0; i < diffSize; i++) {
+				this.diff.add(this.readEdit());
+			}
+
+			int diffBlockCount = readVarInt(this.input);
+			List<DiffUnit> diffBlocks = new ArrayList<>(diffBlockCount);
+
+			for (int i = 0; i < diffBlockCount; i++) {
+				int unit = this.input.readByte();
+
+				if (unit == EDIT_UNIT) {
+					diffBlocks.add(this.readEditReference());
+				} else if (unit == BLOCK_UNIT) {
+					DiffType diffType = this.readDiffType();
+					int editCount = readVarInt(this.input);
+					List<DiffEdit> edits = new ArrayList<>(editCount);
+
+					for (int j = 0; j < editCount; j++) {
+						edits.add(this.readEditReference());
+					}
+
+					diffBlocks.add(new DiffBlock(diffType, edits));
+				} else {
+					throw new IOException("Invalid diff unit: " + unit);
+				}
+			}
+
+			return new CachedDiff(this.diff, diffBlocks);
+		}
+
+		private DiffEdit readEditReference() throws IOException {
+			int reference = readVarInt(this.input);
+
+			if (reference == 0) {
+				return this.readEdit();
+			}
+
+			return get(this.diff, reference - 1, "edit");
+		}
+
+		private DiffEdit readEdit() throws IOException {
+			DiffType diffType = this.readDiffType();
+			DiffLine leftLine = this.readLine(this.leftLines);
+			DiffLine rightLine = this.readLine(this.rightLines);
+
+			if (leftLine == null && rightLine == null) {
+				throw new IOException("Edit has neither a left line nor a right line");
+			}
+
+			return new DiffEdit(diffType, leftLine, rightLine);
+		}
+
+		private DiffLine readLine(final List<DiffLine> lines) throws IOException {
+			int reference = readVarInt(this.input);
+			return reference == 0 ? null : get(lines, reference - 1, "line");
+		}
+
+		private DiffType readDiffType() throws IOException {
+			int position = readVarInt(this.input);
+
+			if (position >= this.diffTypes.length) {
+				throw new IOException("Invalid DiffType: " + position);
+			}
+
+			return this.diffTypes[position];
+		}
+
+		private DiffType readDiffTypeDefinition() throws IOException {
+			int kind = this.input.readByte();
+
+			switch (kind) {
+			case BASIC_DIFF_TYPE:
+				return get(BASIC_DIFF_TYPES, readVarInt(this.input), "BasicDiffType");
+			case CONSTANT_DIFF_TYPE:
+				return get(CONSTANT_DIFF_TYPES, readVarInt(this.input), "DiffType constant");
+			case SUBSTITUTION_DIFF_TYPE: {
+				char symbol = this.input.readChar();
+				String name = readString(this.input);
+				boolean isMove = this.input.readBoolean();
+				boolean shouldTreatAsNormalizedEqual = this.input.readBoolean();
+				return new SubstitutionDiffTypeValue(symbol, name, isMove, shouldTreatAsNormalizedEqual);
+			}
+			case REFACTORING_DIFF_TYPE: {
+				char symbol = this.input.readChar();
+				int side = this.input.readByte();
+				String category = readString(this.input);
+				String info = readString(this.input);
+				boolean shouldTreatAsNormalizedEqual = this.input.readBoolean();
+				boolean isMove = this.input.readBoolean();
+				return new RefactoringDiffTypeValue(symbol, side != -1 ? get(SIDES, side, "side") : null, category,
+						info, shouldTreatAsNormalizedEqual, isMove);
+			}
+			case SUBSTITUTION_CONTAINS_DIFF_TYPE: {
+				String prefix = readString(this.input);
+				SubstitutionContainsDiffType.Direction direction = get(DIRECTIONS, readVarInt(this.input),
+						"direction");
+				String suffix = readString(this.input);
+				return new SubstitutionContainsDiffType(prefix, direction, suffix);
+			}
+			case IMPORT_SAME_CLASSNAME_DIFF_TYPE: {
+				String className = readString(this.input);
+				String leftPackage = readString(this.input);
+				String rightPackage = readString(this.input);
+				boolean isMove = this.input.readBoolean();
+				return new ImportSameClassnameDiffType(className, new BEXPairValue<>(leftPackage, rightPackage),
+						isMove);
+			}
+			default:
+				throw new IOException("Invalid DiffType kind: " + kind);
+			}
+		}
+
+		private static <T> T get(final List<T> list, final int position, final String description)
+				throws IOException {
+			if (position >= list.size()) {
+				throw new IOException("Invalid " + description + ": " + position);
+			}
+
+			return list.get(position);
+		}
+
+		private static <T> T get(final T[] array, final int position, final String description)
+				throws IOException {
+			if (position >= array.length) {
+				throw new IOException("Invalid " + description + ": " + position);
+			}
+
+			return array[position];
+		}
+	}
+
+	/**
+	 * Writes the string (which may be <code>null</code>)
+	 */
+	private static void writeString(final DataOutput output, final String value) throws IOException {
+		output.writeBoolean(value != null);
+
+		if (value != null) {
+			output.writeUTF(value);
+		}
+	}
+
+	private static String readString(final DataInput input) throws IOException {
+		return input.readBoolean() ? input.readUTF() : null;
+	}
+
+	/**
+	 * Writes the non-negative int using 7 bits per byte (the high bit indicates more bytes follow)
+	 */
+	static void writeVarInt(final DataOutput output, final int value) throws IOException {
+		int remaining = value;
+
+		while ((remaining & ~0x7F) != 0) {
+			output.writeByte((remaining & 0x7F) | 0x80);
+			remaining >>>= 7;
+		}
+
+		output.writeByte(remaining);
+	}
+
+	static int readVarInt(final DataInput input) throws IOException {
+		int value = 0;
+
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = input.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+
+			if ((b & 0x80) == 0) {
+				if (value < 0) {
+					throw new IOException("Invalid variable-length int: " + value);
+				}
+
+				return value;
+			}
+		}
+
+		throw new IOException("Variable-length int is too long");
+	}
+}
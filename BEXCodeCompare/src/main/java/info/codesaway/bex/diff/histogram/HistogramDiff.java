@@ -0,0 +1,402 @@
+package info.codesaway.bex.diff.histogram;
+
+import static info.codesaway.bex.diff.NormalizationFunction.NO_NORMALIZATION;
+import static info.codesaway.bex.diff.NormalizationFunction.normalization;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import info.codesaway.bex.diff.AbstractDiffAlgorithm;
+import info.codesaway.bex.diff.BasicDiffType;
+import info.codesaway.bex.diff.DiffEdit;
+import info.codesaway.bex.diff.DiffLine;
+import info.codesaway.bex.diff.DiffNormalizedText;
+import info.codesaway.bex.diff.InternedLines;
+import info.codesaway.bex.diff.NormalizationFunction;
+import info.codesaway.bex.diff.myers.MyersLinearDiff;
+
+/**
+ * Histogram diff algorithm
+ *
+ * <p>Extends the idea of patience diff to support lines which aren't unique.
+ * For each region, the longest common sequence anchored on the lines with the fewest occurrences is used to split the region,
+ * then the regions before and after are diffed.
+ * This gives patience-like diffs, but still works for regions full of repeated lines (such as <code>}</code> and blank lines).</p>
+ *
+ * <p>If every common line in a region occurs more than {@link #MAX_CHAIN_LENGTH} times,
+ * the region is diffed using the fallback diff algorithm ({@link MyersLinearDiff} by default).</p>
+ *
+ * <p>Lines are compared using their {@link InternedLines interned ids};
+ * if passed lines instead, they are interned using the normalization function.</p>
+ *
+ * @since 0.15
+ */
+public final class HistogramDiff extends AbstractDiffAlgorithm {
+	// Java implementation based on the JGit implementation (HistogramDiff / HistogramDiffIndex)
+	// https://github.com/eclipse/jgit/blob/master/org.eclipse.jgit/src/org/eclipse/jgit/diff/HistogramDiffIndex.java
+
+	/**
+	 * Maximum number of occurrences of a line, in the left region, for it to be considered as an anchor (same default as JGit)
+	 */
+	public static final int MAX_CHAIN_LENGTH = 64;
+
+	/**
+	 * Indicates that there is no position
+	 */
+	private static final int NONE = -1;
+
+	private final Function<InternedLines, List<DiffEdit>> fallbackDiffAlgorithm;
+
+	/**
+	 * Number of occurrences of each id in the left region
+	 */
+	private final int[] counts;
+
+	/**
+	 * First position of each id in the left region (or {@link #NONE})
+	 */
+	private final int[] firstPositions;
+
+	/**
+	 * Next position (in the left region) with the same id (or {@link #NONE})
+	 */
+	private final int[] nextPositions;
+
+	// State used when finding the longest common sequence for a region
+	private int lcsLeftStart;
+	private int lcsLeftEnd;
+	private int lcsRightStart;
+	private int lcsRightEnd;
+	private int lcsCount;
+	private boolean hasCommon;
+
+	private HistogramDiff(final InternedLines internedLines,
+			final Function<InternedLines, List<DiffEdit>> fallbackDiffAlgorithm) {
+		super(internedLines);
+		this.fallbackDiffAlgorithm = fallbackDiffAlgorithm;
+
+		this.counts = new int[internedLines.getIdCount()];
+		this.firstPositions = new int[internedLines.getIdCount()];
+		Arrays.fill(this.firstPositions, NONE);
+		this.nextPositions = new int[internedLines.getLeftLines().size()];
+	}
+
+	public static BiFunction<List<DiffLine>, List<DiffLine>, List<DiffEdit>> with(
+			final BiFunction<String, String, DiffNormalizedText> normalizationFunction) {
+		return with(normalization(normalizationFunction));
+	}
+
+	public static BiFunction<List<DiffLine>, List<DiffLine>, List<DiffEdit>> with(
+			final NormalizationFunction normalizationFunction) {
+		return (l, r) -> diff(l, r, normalizationFunction);
+	}
+
+	/**
+	 * Calculates the diff
+	 *
+	 * @param leftLines
+	 * @param rightLines
+	 * @return
+	 */
+	public static List<DiffEdit> diff(final List<DiffLine> leftLines, final List<DiffLine> rightLines) {
+		return diff(leftLines, rightLines, NO_NORMALIZATION);
+	}
+
+	/**
+	 * Calculates the diff
+	 *
+	 * @param leftLines
+	 * @param rightLines
+	 * @return
+	 */
+	public static List<DiffEdit> diff(final List<DiffLine> leftLines, final List<DiffLine> rightLines,
+			final BiFunction<String, String, DiffNormalizedText> normalizationFunction) {
+		return diff(leftLines, rightLines, normalization(normalizationFunction));
+	}
+
+	/**
+	 * Calculates the diff
+	 *
+	 * @param leftLines
+	 * @param rightLines
+	 * @return
+	 */
+	public static List<DiffEdit> diff(final List<DiffLine> leftLines, final List<DiffLine> rightLines,
+			final NormalizationFunction normalizationFunction) {
+		return diff(InternedLines.intern(leftLines, rightLines, normalizationFunction));
+	}
+
+	/**
+	 * Calculates the diff
+	 *
+	 * @param leftLines
+	 * @param rightLines
+	 * @param normalizationFunction
+	 * @param fallbackDiffAlgorithm diff algorithm used for regions where every common line occurs more than {@link #MAX_CHAIN_LENGTH} times
+	 * @return
+	 */
+	public static List<DiffEdit> diff(final List<DiffLine> leftLines, final List<DiffLine> rightLines,
+			final NormalizationFunction normalizationFunction,
+			final BiFunction<List<DiffLine>, List<DiffLine>, List<DiffEdit>> fallbackDiffAlgorithm) {
+		return diff(InternedLines.intern(leftLines, rightLines, normalizationFunction),
+				l -> fallbackDiffAlgorithm.apply(l.getLeftLines(), l.getRightLines()));
+	}
+
+	/**
+	 * Calculates the diff, comparing lines using their interned ids
+	 *
+	 * <p>Uses {@link MyersLinearDiff} (also comparing interned ids) as the fallback diff algorithm</p>
+	 *
+	 * @param internedLines the interned lines
+	 * @return
+	 */
+	public static List<DiffEdit> diff(final InternedLines internedLines) {
+		return diff(internedLines, MyersLinearDiff::diff);
+	}
+
+	/**
+	 * Calculates the diff, comparing lines using their interned ids
+	 *
+	 * @param internedLines the interned lines
+	 * @param fallbackDiffAlgorithm diff algorithm used for regions where every common line occurs more than {@link #MAX_CHAIN_LENGTH} times
+	 * @return
+	 */
+	public static List<DiffEdit> diff(final InternedLines internedLines,
+			final Function<InternedLines, List<DiffEdit>> fallbackDiffAlgorithm) {
+		return new HistogramDiff(internedLines, fallbackDiffAlgorithm).getDiff();
+	}
+
+	@Override
+	protected List<DiffEdit> diff() {
+		List<DiffEdit> diff = new ArrayList<>();
+
+		int leftStart = 0;
+		int leftEnd = this.getLeftLines().size();
+		int rightStart = 0;
+		int rightEnd = this.getRightLines().size();
+
+		// Like JGit, remove the common head / tail before looking for the longest common sequence
+		while (leftStart < leftEnd && rightStart < rightEnd && this.isNormalizedEqualLine(leftStart, rightStart)) {
+			diff.add(this.newEqualOrNormalizeEdit(this.getLeftIndexedText(leftStart),
+					this.getRightIndexedText(rightStart)));
+			leftStart++;
+			rightStart++;
+		}
+
+		int tailLength = 0;
+		while (leftStart < leftEnd - tailLength && rightStart < rightEnd - tailLength
+				&& this.isNormalizedEqualLine(leftEnd - tailLength - 1, rightEnd - tailLength - 1)) {
+			tailLength++;
+		}
+
+		// Regions are processed in order using a stack (versus recursion), since the recursion depth could be the number of lines
+		Deque<HistogramRegion> regions = new ArrayDeque<>();
+		regions.push(new HistogramRegion(leftStart, leftEnd - tailLength, rightStart, rightEnd - tailLength, false));
+
+		while (!regions.isEmpty()) {
+			HistogramRegion region = regions.pop();
+
+			if (region.isMatch) {
+				for (int i = 0; i < region.getLeftLength(); i++) {
+					diff.add(this.newEqualOrNormalizeEdit(this.getLeftIndexedText(region.leftStart + i),
+							this.getRightIndexedText(region.rightStart + i)));
+				}
+			} else if (region.getLeftLength() == 0 || region.getRightLength() == 0) {
+				this.addDeletesAndInserts(diff, region);
+			} else if (!this.findLongestCommonSequence(region)) {
+				// Too many occurrences, so use fallback
+				diff.addAll(this.fallbackDiffAlgorithm.apply(this.getInternedLines().subLines(
+						region.leftStart, region.leftEnd, region.rightStart, region.rightEnd)));
+			} else if (this.lcsLeftEnd == this.lcsLeftStart) {
+				// Nothing in common
+				this.addDeletesAndInserts(diff, region);
+			} else {
+				// Pushed in reverse order, so the region before the match is handled first
+				regions.push(new HistogramRegion(this.lcsLeftEnd, region.leftEnd, this.lcsRightEnd, region.rightEnd,
+						false));
+				regions.push(new HistogramRegion(this.lcsLeftStart, this.lcsLeftEnd, this.lcsRightStart,
+						this.lcsRightEnd, true));
+				regions.push(new HistogramRegion(region.leftStart, this.lcsLeftStart, region.rightStart,
+						this.lcsRightStart, false));
+			}
+		}
+
+		for (int i = tailLength; i > 0; i--) {
+			diff.add(this.newEqualOrNormalizeEdit(this.getLeftIndexedText(leftEnd - i),
+					this.getRightIndexedText(rightEnd - i)));
+		}
+
+		return diff;
+	}
+
+	private void addDeletesAndInserts(final List<DiffEdit> diff, final HistogramRegion region) {
+		for (int i = region.leftStart; i < region.leftEnd; i++) {
+			diff.add(new DiffEdit(BasicDiffType.DELETE, this.getLeftIndexedText(i), null));
+		}
+
+		for (int i = region.rightStart; i < region.rightEnd; i++) {
+			diff.add(new DiffEdit(BasicDiffType.INSERT, null, this.getRightIndexedText(i)));
+		}
+	}
+
+	/**
+	 * Finds the longest common sequence within the region (preferring lines with fewer occurrences)
+	 *
+	 * <p>The result is stored in the lcs fields; if there is nothing in common, the lcs will be empty</p>
+	 *
+	 * @param region the region
+	 * @return <code>false</code> if every common line occurs more than {@link #MAX_CHAIN_LENGTH} times (in this case, should use the fallback diff algorithm)
+	 */
+	private boolean findLongestCommonSequence(final HistogramRegion region) {
+		InternedLines internedLines = this.getInternedLines();
+
+		// Scan from the end, so the chain of positions for each id is in ascending order
+		for (int position = region.leftEnd - 1; position >= region.leftStart; position--) {
+			int id = internedLines.getLeftId(position);
+
+			this.counts[id]++;
+			this.nextPositions[position] = this.firstPositions[id];
+			this.firstPositions[id] = position;
+		}
+
+		this.lcsLeftStart = 0;
+		this.lcsLeftEnd = 0;
+		this.lcsRightStart = 0;
+		this.lcsRightEnd = 0;
+		this.lcsCount = MAX_CHAIN_LENGTH + 1;
+		this.hasCommon = false;
+
+		for (int rightPosition = region.rightStart; rightPosition < region.rightEnd;) {
+			rightPosition = this.tryLongestCommonSequence(region, rightPosition);
+		}
+
+		// Clear the counts, so can reuse for the next region
+		for (int position = region.leftStart; position < region.leftEnd; position++) {
+			int id = internedLines.getLeftId(position);
+
+			this.counts[id] = 0;
+			this.firstPositions[id] = NONE;
+		}
+
+		return !this.hasCommon || this.lcsCount <= MAX_CHAIN_LENGTH;
+	}
+
+	/**
+	 *
+	 * @param region the region
+	 * @param rightPosition the right position
+	 * @return the next right position to check
+	 */
+	private int tryLongestCommonSequence(final HistogramRegion region, final int rightPosition) {
+		InternedLines internedLines = this.getInternedLines();
+
+		int nextRightPosition = rightPosition + 1;
+		int id = internedLines.getRightId(rightPosition);
+		int leftPosition = this.firstPositions[id];
+
+		if (leftPosition == NONE) {
+			// Not in the left region
+			return nextRightPosition;
+		}
+
+		this.hasCommon = true;
+
+		if (this.counts[id] > this.lcsCount) {
+			// More occurrences than the current longest common sequence, so don't use
+			return nextRightPosition;
+		}
+
+		while (true) {
+			int next = this.nextPositions[leftPosition];
+
+			int leftStart = leftPosition;
+			int rightStart = rightPosition;
+			int leftEnd = leftPosition + 1;
+			int rightEnd = rightPosition + 1;
+			int count = this.counts[id];
+
+			while (region.leftStart < leftStart && region.rightStart < rightStart
+					&& this.isNormalizedEqualLine(leftStart - 1, rightStart - 1)) {
+				leftStart--;
+				rightStart--;
+
+				if (count > 1) {
+					count = Math.min(count, this.counts[internedLines.getLeftId(leftStart)]);
+				}
+			}
+
+			while (leftEnd < region.leftEnd && rightEnd < region.rightEnd
+					&& this.isNormalizedEqualLine(leftEnd, rightEnd)) {
+				if (count > 1) {
+					count = Math.min(count, this.counts[internedLines.getLeftId(leftEnd)]);
+				}
+
+				leftEnd++;
+				rightEnd++;
+			}
+
+			if (nextRightPosition < rightEnd) {
+				nextRightPosition = rightEnd;
+			}
+
+			if (this.lcsLeftEnd - this.lcsLeftStart < leftEnd - leftStart || count < this.lcsCount) {
+				// If this region is the longest, or has fewer occurrences, it's now the longest common sequence
+				this.lcsLeftStart = leftStart;
+				this.lcsLeftEnd = leftEnd;
+				this.lcsRightStart = rightStart;
+				this.lcsRightEnd = rightEnd;
+				this.lcsCount = count;
+			}
+
+			// Skip positions which are within the sequence just examined
+			while (next != NONE && next < leftEnd) {
+				next = this.nextPositions[next];
+			}
+
+			if (next == NONE) {
+				break;
+			}
+
+			leftPosition = next;
+		}
+
+		return nextRightPosition;
+	}
+
+	/**
+	 * Region of lines (start inclusive, end exclusive) which needs to be diffed (or is a match)
+	 */
+	private static final class HistogramRegion {
+		private final int leftStart;
+		private final int leftEnd;
+		private final int rightStart;
+		private final int rightEnd;
+
+		/**
+		 * Indicates the lines in the region are equal (so just need to add the equal lines)
+		 */
+		private final boolean isMatch;
+
+		HistogramRegion(final int leftStart, final int leftEnd, final int rightStart, final int rightEnd,
+				final boolean isMatch) {
+			this.leftStart = leftStart;
+			this.leftEnd = leftEnd;
+			this.rightStart = rightStart;
+			this.rightEnd = rightEnd;
+			this.isMatch = isMatch;
+		}
+
+		int getLeftLength() {
+			return this.leftEnd - this.leftStart;
+		}
+
+		int getRightLength() {
+			return this.rightEnd - this.rightStart;
+		}
+	}
+}
@@ -0,0 +1,269 @@
+package info.codesaway.bex.diff.mapped;
+
+import static info.codesaway.bex.diff.NormalizationFunction.NO_NORMALIZATION;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import info.codesaway.bex.BEXSide;
+import info.codesaway.bex.diff.BasicDiffType;
+import info.codesaway.bex.diff.DiffEdit;
+import info.codesaway.bex.diff.DiffLine;
+import info.codesaway.bex.diff.InternedLines;
+import info.codesaway.bex.diff.myers.MyersLinearDiff;
+import info.codesaway.bex.diff.patience.PatienceDiff;
+
+/**
+ * Diffs files which may be larger than the heap
+ *
+ * <p>Both files are memory-mapped ({@link MappedFileLines}) and each line is interned using a 64-bit hash of its raw bytes
+ * (confirmed by comparing the bytes), so the line text is never materialized as Strings while diffing.
+ * The diff algorithm works on the interned ids; afterwards, only the lines in the returned DiffEdits are decoded.</p>
+ *
+ * <p>The result only includes the changes (inserted and deleted lines); equal lines are not included, since this would require decoding the entire file.
+ * Lines are compared exactly (no normalization).</p>
+ *
+ * <p>Common lines at the start and end are trimmed before running the diff algorithm.
+ * Memory used is proportional to the number of lines (offsets and ids) plus the number of lines between the first and last change, not the size of the files.</p>
+ *
+ * @since 0.15
+ */
+public final class MappedFileDiff {
+	private MappedFileDiff() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Diffs the files using {@link PatienceDiff} (with {@link MyersLinearDiff} as the fallback) and the default charset
+	 *
+	 * @param leftFile the left file
+	 * @param rightFile the right file
+	 * @return the changes (inserted and deleted lines)
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static List<DiffEdit> diff(final Path leftFile, final Path rightFile) throws IOException {
+		return diff(leftFile, rightFile, Charset.defaultCharset(), PatienceDiff::diff);
+	}
+
+	/**
+	 * Diffs the files
+	 *
+	 * @param leftFile the left file
+	 * @param rightFile the right file
+	 * @param charset the charset used to decode the changed lines
+	 * @param diffAlgorithm the diff algorithm (such as <code>PatienceDiff::diff</code>)
+	 * @return the changes (inserted and deleted lines)
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static List<DiffEdit> diff(final Path leftFile, final Path rightFile, final Charset charset,
+			final Function<InternedLines, List<DiffEdit>> diffAlgorithm) throws IOException {
+		return diff(MappedFileLines.map(leftFile, charset), MappedFileLines.map(rightFile, charset), diffAlgorithm);
+	}
+
+	/**
+	 * Diffs the mapped files
+	 *
+	 * @param leftLines the left lines
+	 * @param rightLines the right lines
+	 * @param diffAlgorithm the diff algorithm (such as <code>PatienceDiff::diff</code>)
+	 * @return the changes (inserted and deleted lines)
+	 */
+	public static List<DiffEdit> diff(final MappedFileLines leftLines, final MappedFileLines rightLines,
+			final Function<InternedLines, List<DiffEdit>> diffAlgorithm) {
+		LineInterner interner = new LineInterner(leftLines, rightLines);
+
+		int leftCount = leftLines.getLineCount();
+		int rightCount = rightLines.getLineCount();
+
+		int[] leftIds = new int[leftCount];
+		for (int i = 0; i < leftCount; i++) {
+			leftIds[i] = interner.intern(BEXSide.LEFT, i);
+		}
+
+		int[] rightIds = new int[rightCount];
+		for (int i = 0; i < rightCount; i++) {
+			rightIds[i] = interner.intern(BEXSide.RIGHT, i);
+		}
+
+		// Trim the common lines at the start and end, so no DiffEdits are created for them
+		int minCount = Math.min(leftCount, rightCount);
+
+		int prefixLength = 0;
+		while (prefixLength < minCount && leftIds[prefixLength] == rightIds[prefixLength]) {
+			prefixLength++;
+		}
+
+		int suffixLength = 0;
+		while (prefixLength + suffixLength < minCount
+				&& leftIds[leftCount - suffixLength - 1] == rightIds[rightCount - suffixLength - 1]) {
+			suffixLength++;
+		}
+
+		// The diff algorithm only compares ids, so give it lines without text (versus decoding every line)
+		InternedLines internedLines = InternedLines.of(new PlaceholderLines(leftCount),
+				new PlaceholderLines(rightCount), NO_NORMALIZATION, leftIds, rightIds, interner.size())
+				.subLines(prefixLength, leftCount - suffixLength, prefixLength, rightCount - suffixLength);
+
+		List<DiffEdit> diff = diffAlgorithm.apply(internedLines);
+
+		// Decode only the changed lines
+		List<DiffEdit> changes = new ArrayList<>();
+		for (DiffEdit diffEdit : diff) {
+			if (diffEdit.getType() == BasicDiffType.EQUAL) {
+				continue;
+			}
+
+			DiffLine leftLine = diffEdit.getLeftLine().map(l -> leftLines.getLine(l.getNumber() - 1)).orElse(null);
+			DiffLine rightLine = diffEdit.getRightLine().map(l -> rightLines.getLine(l.getNumber() - 1))
+					.orElse(null);
+
+			changes.add(new DiffEdit(diffEdit.getType(), leftLine, rightLine));
+		}
+
+		return changes;
+	}
+
+	/**
+	 * Lines with the correct line numbers, but empty text (created when requested, so no memory is used to store the lines)
+	 */
+	private static final class PlaceholderLines extends AbstractList<DiffLine> {
+		private final int size;
+
+		PlaceholderLines(final int size) {
+			this.size = size;
+		}
+
+		@Override
+		public DiffLine get(final int index) {
+			if (index < 0 || index >= this.size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+			}
+
+			return new DiffLine(index + 1, "");
+		}
+
+		@Override
+		public int size() {
+			return this.size;
+		}
+	}
+
+	/**
+	 * Interns lines to dense ids using their 64-bit hash (open addressing, so no boxing)
+	 *
+	 * <p>Lines with the same hash are confirmed by comparing their bytes, so a hash collision doesn't cause different lines to share an id</p>
+	 */
+	private static final class LineInterner {
+		private static final int EMPTY = -1;
+
+		private final MappedFileLines leftLines;
+		private final MappedFileLines rightLines;
+
+		/**
+		 * Hash table of ids (or {@link #EMPTY})
+		 */
+		private int[] table;
+
+		// Indexed by id
+		private long[] hashes;
+
+		/**
+		 * Position of the first line with each id (left positions are stored as is; right positions are stored as <code>-(position + 1)</code>)
+		 */
+		private int[] representatives;
+
+		private int size;
+
+		LineInterner(final MappedFileLines leftLines, final MappedFileLines rightLines) {
+			this.leftLines = leftLines;
+			this.rightLines = rightLines;
+
+			// Sized for half the lines being distinct (grows if needed)
+			int expectedLines = leftLines.getLineCount() + rightLines.getLineCount();
+			int capacity = Integer.highestOneBit(Math.max(16, expectedLines)) << 1;
+			this.table = new int[capacity];
+			Arrays.fill(this.table, EMPTY);
+
+			int idCapacity = Math.max(16, expectedLines / 4);
+			this.hashes = new long[idCapacity];
+			this.representatives = new int[idCapacity];
+		}
+
+		int size() {
+			return this.size;
+		}
+
+		int intern(final BEXSide side, final int position) {
+			MappedFileLines lines = side == BEXSide.LEFT ? this.leftLines : this.rightLines;
+			long hash = lines.hash(position);
+			int mask = this.table.length - 1;
+
+			int slot = slot(hash, mask);
+			while (this.table[slot] != EMPTY) {
+				int id = this.table[slot];
+
+				if (this.hashes[id] == hash && this.isRepresentativeEqual(id, lines, position)) {
+					return id;
+				}
+
+				slot = (slot + 1) & mask;
+			}
+
+			int id = this.size++;
+
+			if (id == this.hashes.length) {
+				int capacity = 2 * id;
+				this.hashes = Arrays.copyOf(this.hashes, capacity);
+				this.representatives = Arrays.copyOf(this.representatives, capacity);
+			}
+
+			this.hashes[id] = hash;
+			this.representatives[id] = side == BEXSide.LEFT ? position : -(position + 1);
+			this.table[slot] = id;
+
+			// Load factor of 0.75
+			if (4 * this.size > 3 * this.table.length) {
+				this.rehash();
+			}
+
+			return id;
+		}
+
+		private boolean isRepresentativeEqual(final int id, final MappedFileLines lines, final int position) {
+			int representative = this.representatives[id];
+
+			return representative >= 0
+					? lines.isEqual(position, this.leftLines, representative)
+					: lines.isEqual(position, this.rightLines, -representative - 1);
+		}
+
+		private void rehash() {
+			int[] newTable = new int[2 * this.table.length];
+			Arrays.fill(newTable, EMPTY);
+			int mask = newTable.length - 1;
+
+			for (int id = 0; id < this.size; id++) {
+				int slot = slot(this.hashes[id], mask);
+				while (newTable[slot] != EMPTY) {
+					slot = (slot + 1) & mask;
+				}
+
+				newTable[slot] = id;
+			}
+
+			this.table = newTable;
+		}
+
+		private static int slot(final long hash, final int mask) {
+			// Mix the high bits into the low bits, since only the low bits are used
+			int h = (int) (hash ^ (hash >>> 32)) * 0x9E3779B9;
+			return (h ^ (h >>> 16)) & mask;
+		}
+	}
+}
@@ -0,0 +1,208 @@
+package info.codesaway.bex.diff.mapped;
+
+import static info.codesaway.bex.util.BEXUtilities.checkArgument;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import info.codesaway.bex.diff.DiffLine;
+
+/**
+ * Lines of a memory-mapped file
+ *
+ * <p>The file is mapped (versus read into a String) and only the offsets of each line are stored.
+ * Line text is only decoded when requested, so files larger than the heap can be diffed.</p>
+ *
+ * <p>Lines are split the same as CompareDirectories (<code>\r\n</code>, <code>\n</code>, or <code>\r</code>);
+ * a line separator at the end of the file is followed by an empty last line.</p>
+ *
+ * <p>The charset must encode <code>\r</code> and <code>\n</code> as single bytes (such as UTF-8 or ISO-8859-1), since lines are split using the raw bytes.
+ * Files must be smaller than 2 GB, since this is the maximum size of a single mapping.</p>
+ *
+ * @since 0.15
+ */
+public final class MappedFileLines {
+	private final Path path;
+	private final Charset charset;
+	private final ByteBuffer buffer;
+
+	/**
+	 * Start offset of each line (inclusive), followed by <code>size + 1</code>
+	 *
+	 * <p>The end of each line is calculated from the start of the next line (excluding the line separator)</p>
+	 */
+	private final int[] lineStarts;
+
+	private final int lineCount;
+
+	private MappedFileLines(final Path path, final Charset charset, final ByteBuffer buffer, final int[] lineStarts) {
+		this.path = path;
+		this.charset = charset;
+		this.buffer = buffer;
+		this.lineStarts = lineStarts;
+		this.lineCount = lineStarts.length - 1;
+	}
+
+	/**
+	 * Memory-maps the file and indexes the offset of each line
+	 *
+	 * @param path the file
+	 * @param charset the charset used to decode lines
+	 * @return the mapped file lines
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static MappedFileLines map(final Path path, final Charset charset) throws IOException {
+		checkArgument(Arrays.equals("\r\n".getBytes(charset), new byte[] { '\r', '\n' }),
+				"Charset must encode line separators as single bytes: " + charset);
+
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("File is too large to map (" + size + " bytes): " + path);
+			}
+
+			// Mapping remains valid after the channel is closed
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+
+		int size = buffer.limit();
+
+		// Count the lines first, so the offsets array is the exact size
+		int lineCount = 1;
+		for (int i = 0; i < size; i++) {
+			byte b = buffer.get(i);
+
+			if (b == '\n' || b == '\r' && (i + 1 == size || buffer.get(i + 1) != '\n')) {
+				lineCount++;
+			}
+		}
+
+		int[] lineStarts = new int[lineCount + 1];
+		int line = 1;
+		for (int i = 0; i < size; i++) {
+			byte b = buffer.get(i);
+
+			if (b == '\n' || b == '\r' && (i + 1 == size || buffer.get(i + 1) != '\n')) {
+				lineStarts[line++] = i + 1;
+			}
+		}
+
+		// Last line (empty if the file ends with a line separator)
+		lineStarts[lineCount] = size + 1;
+
+		return new MappedFileLines(path, charset, buffer, lineStarts);
+	}
+
+	public Path getPath() {
+		return this.path;
+	}
+
+	public Charset getCharset() {
+		return this.charset;
+	}
+
+	public int getLineCount() {
+		return this.lineCount;
+	}
+
+	/**
+	 * Decodes the text of the line at the specified position
+	 *
+	 * @param position the position (0-based)
+	 * @return the text of the line (excluding the line separator)
+	 */
+	public String getText(final int position) {
+		ByteBuffer line = this.buffer.duplicate();
+		line.limit(this.getLineEnd(position));
+		line.position(this.lineStarts[position]);
+
+		return this.charset.decode(line).toString();
+	}
+
+	/**
+	 * Gets the line at the specified position (decoding its text)
+	 *
+	 * @param position the position (0-based)
+	 * @return the line (line numbers start at 1)
+	 */
+	public DiffLine getLine(final int position) {
+		return new DiffLine(position + 1, this.getText(position));
+	}
+
+	/**
+	 * Calculates a 64-bit hash of the raw bytes of the line at the specified position (without decoding the text)
+	 *
+	 * @param position the position (0-based)
+	 * @return the hash (FNV-1a)
+	 */
+	public long hash(final int position) {
+		// https://en.wikipedia.org/wiki/Fowler%E2%80%93Noll%E2%80%93Vo_hash_function
+		long hash = 0xcbf29ce484222325L;
+
+		int end = this.getLineEnd(position);
+		for (int i = this.lineStarts[position]; i < end; i++) {
+			hash ^= this.buffer.get(i) & 0xff;
+			hash *= 0x100000001b3L;
+		}
+
+		return hash;
+	}
+
+	/**
+	 * Indicates if the raw bytes of the line at the specified position equal the bytes of the other line
+	 *
+	 * @param position the position (0-based)
+	 * @param other the other lines
+	 * @param otherPosition the position of the other line (0-based)
+	 * @return <code>true</code> if the lines have the same bytes
+	 */
+	public boolean isEqual(final int position, final MappedFileLines other, final int otherPosition) {
+		int start = this.lineStarts[position];
+		int length = this.getLineEnd(position) - start;
+		int otherStart = other.lineStarts[otherPosition];
+
+		if (length != other.getLineEnd(otherPosition) - otherStart) {
+			return false;
+		}
+
+		for (int i = 0; i < length; i++) {
+			if (this.buffer.get(start + i) != other.buffer.get(otherStart + i)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Gets the end offset of the line (exclusive, excluding the line separator)
+	 *
+	 * @param position the position (0-based)
+	 * @return the end offset
+	 */
+	private int getLineEnd(final int position) {
+		// Index of the last byte of the line separator (or size, for the last line)
+		int separatorEnd = this.lineStarts[position + 1] - 1;
+
+		if (position + 1 == this.lineCount) {
+			// Last line
+			return separatorEnd;
+		}
+
+		if (separatorEnd > this.lineStarts[position] && this.buffer.get(separatorEnd) == '\n'
+				&& this.buffer.get(separatorEnd - 1) == '\r') {
+			// Line separator is \r\n
+			return separatorEnd - 1;
+		}
+
+		return separatorEnd;
+	}
+}
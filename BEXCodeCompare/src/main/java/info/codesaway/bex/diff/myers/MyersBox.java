@@ -1,5 +1,12 @@
 package info.codesaway.bex.diff.myers;
 
+/**
+ * Box searched by the linear space version of Myers' algorithm
+ *
+ * @deprecated {@link MyersLinearDiff} no longer uses this class (each box is passed as its left, top, right, and bottom);
+ * will be removed in a future version
+ */
+@Deprecated
 public final class MyersBox {
 	// Box class from https://blog.jcoglan.com/2017/04/25/myers-diff-in-linear-space-implementation/
 	private final MyersPoint topLeft;
@@ -0,0 +1,37 @@
+package info.codesaway.bex.diff.myers;
+
+/**
+ * Primitive edit script, where each operation moves along the edit graph
+ *
+ * <p>The line numbers are implied by the operations (starting from 0, 0), so only the operations are stored</p>
+ *
+ * @since 0.15
+ */
+final class MyersEditScript {
+	static final byte EQUAL = 0;
+	static final byte INSERT = 1;
+	static final byte DELETE = 2;
+
+	private final byte[] operations;
+	private int size;
+
+	/**
+	 *
+	 * @param maxSize the maximum number of operations (number of left lines + number of right lines)
+	 */
+	MyersEditScript(final int maxSize) {
+		this.operations = new byte[maxSize];
+	}
+
+	void add(final byte operation) {
+		this.operations[this.size++] = operation;
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	byte get(final int index) {
+		return this.operations[index];
+	}
+}
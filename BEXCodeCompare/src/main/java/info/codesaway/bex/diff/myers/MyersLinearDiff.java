@@ -2,18 +2,25 @@ package info.codesaway.bex.diff.myers;
 
 import static info.codesaway.bex.diff.NormalizationFunction.NO_NORMALIZATION;
 import static info.codesaway.bex.diff.NormalizationFunction.normalization;
+import static info.codesaway.bex.util.BEXUtilities.checkArgument;
 import static info.codesaway.bex.util.BEXUtilities.isBetween;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 import java.util.function.BiFunction;
 
 import info.codesaway.bex.diff.AbstractDiffAlgorithm;
 import info.codesaway.bex.diff.BasicDiffType;
+import info.codesaway.bex.diff.DiffBudget;
 import info.codesaway.bex.diff.DiffEdit;
 import info.codesaway.bex.diff.DiffLine;
 import info.codesaway.bex.diff.DiffNormalizedText;
+import info.codesaway.bex.diff.InternedLines;
 import info.codesaway.bex.diff.NormalizationFunction;
 
 public final class MyersLinearDiff extends AbstractDiffAlgorithm {
@@ -30,18 +37,51 @@ public final class MyersLinearDiff extends AbstractDiffAlgorithm {
 	// https://blog.jcoglan.com/2017/02/17/the-myers-diff-algorithm-part-3/
 
 	/**
-	 * Minimum number of lines before run in parallel
+	 * Default minimum box size (number of left lines + number of right lines) before the sub-boxes are diffed in parallel
+	 *
+	 * @since 0.15
+	 */
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 10_000;
+
+	/**
+	 * Pools used to diff in parallel, by parallelism
+	 *
+	 * <p>Each pool is created when first needed, then shared by all diffs with the same parallelism
+	 * (so diffing many files doesn't create and shut down a pool for each diff)</p>
+	 *
+	 * @see #shutdownForkJoinPools()
+	 */
+	private static final ConcurrentMap<Integer, ForkJoinPool> FORK_JOIN_POOLS = new ConcurrentHashMap<>();
+
+	/**
+	 * Number of threads used to diff (1 means serial)
+	 */
+	private final int parallelism;
+
+	/**
+	 * Minimum box size before the sub-boxes are diffed in parallel
 	 */
-	//	private static final int PARALLEL_THRESHOLD = 10_000;
+	private final int parallelThreshold;
 
-	//    /**
-	//     * Thread pool to use for recursive algorithm
-	//     */
-	//    private static final ForkJoinPool FORK_JOIN_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+	private MyersLinearDiff(final List<DiffLine> leftLines, final List<DiffLine> rightLines,
+			final NormalizationFunction normalizationFunction, final boolean trimCommonLines,
+			final DiffBudget budget) {
+		this(leftLines, rightLines, normalizationFunction, 1, DEFAULT_PARALLEL_THRESHOLD, trimCommonLines, budget);
+	}
 
 	private MyersLinearDiff(final List<DiffLine> leftLines, final List<DiffLine> rightLines,
-			final NormalizationFunction normalizationFunction) {
-		super(leftLines, rightLines, normalizationFunction);
+			final NormalizationFunction normalizationFunction, final int parallelism, final int parallelThreshold,
+			final boolean trimCommonLines, final DiffBudget budget) {
+		super(leftLines, rightLines, normalizationFunction, trimCommonLines, budget);
+		this.parallelism = parallelism;
+		this.parallelThreshold = parallelThreshold;
+	}
+
+	private MyersLinearDiff(final InternedLines internedLines, final boolean trimCommonLines,
+			final DiffBudget budget) {
+		super(internedLines, trimCommonLines, budget);
+		this.parallelism = 1;
+		this.parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
 	}
 
 	public static BiFunction<List<DiffLine>, List<DiffLine>, List<DiffEdit>> with(
@@ -57,6 +97,53 @@ public final class MyersLinearDiff extends AbstractDiffAlgorithm {
 		return (l, r) -> diff(l, r, normalizationFunction);
 	}
 
+	/**
+	 * Diff algorithm which limits how much work is done
+	 *
+	 * <p>The budget tracks a single diff, so this should be used for a single diff (such as the fallback for a PatienceDiff)</p>
+	 *
+	 * @param normalizationFunction the normalization function
+	 * @param budget the budget (if null, no limit)
+	 * @return the diff algorithm
+	 * @since 0.15
+	 * @see #diff(List, List, NormalizationFunction, DiffBudget)
+	 */
+	public static BiFunction<List<DiffLine>, List<DiffLine>, List<DiffEdit>> with(
+			final NormalizationFunction normalizationFunction, final DiffBudget budget) {
+		return (l, r) -> diff(l, r, normalizationFunction, budget);
+	}
+
+	/**
+	 * Diff algorithm which diffs large boxes in parallel (using {@link #DEFAULT_PARALLEL_THRESHOLD})
+	 *
+	 * @param normalizationFunction the normalization function (must be thread-safe if <code>parallelism</code> is greater than 1)
+	 * @param parallelism the number of threads used to diff (1 means serial)
+	 * @return the diff algorithm
+	 * @since 0.15
+	 * @see #diff(List, List, NormalizationFunction, int, int)
+	 */
+	public static BiFunction<List<DiffLine>, List<DiffLine>, List<DiffEdit>> with(
+			final NormalizationFunction normalizationFunction, final int parallelism) {
+		return with(normalizationFunction, parallelism, DEFAULT_PARALLEL_THRESHOLD);
+	}
+
+	/**
+	 * Diff algorithm which diffs large boxes in parallel
+	 *
+	 * @param normalizationFunction the normalization function (must be thread-safe if <code>parallelism</code> is greater than 1)
+	 * @param parallelism the number of threads used to diff (1 means serial)
+	 * @param parallelThreshold the minimum box size (number of left lines + number of right lines) before the sub-boxes are diffed in parallel
+	 * @return the diff algorithm
+	 * @since 0.15
+	 * @see #diff(List, List, NormalizationFunction, int, int)
+	 */
+	public static BiFunction<List<DiffLine>, List<DiffLine>, List<DiffEdit>> with(
+			final NormalizationFunction normalizationFunction, final int parallelism, final int parallelThreshold) {
+		checkArgument(parallelism >= 1, "parallelism must be at least 1: " + parallelism);
+
+		return (l, r) -> diff(l, r, normalizationFunction, parallelism, parallelThreshold);
+	}
+
 	/**
 	 * Calculates the diff
 	 *
@@ -90,205 +177,426 @@ public final class MyersLinearDiff extends AbstractDiffAlgorithm {
 	 */
 	public static List<DiffEdit> diff(final List<DiffLine> leftLines, final List<DiffLine> rightLines,
 			final NormalizationFunction normalizationFunction) {
-		return new MyersLinearDiff(leftLines, rightLines, normalizationFunction).getDiff();
+		return diff(leftLines, rightLines, normalizationFunction, false);
 	}
 
 	/**
 	 * Calculates the diff
 	 *
+	 * @param leftLines
+	 * @param rightLines
+	 * @param normalizationFunction
+	 * @param trimCommonLines whether to trim the common lines at the start and end (if so, only the lines between are diffed)
 	 * @return
+	 * @since 0.15
 	 */
-	@Override
-	protected List<DiffEdit> diff() {
-		List<DiffEdit> diff = new ArrayList<>();
+	public static List<DiffEdit> diff(final List<DiffLine> leftLines, final List<DiffLine> rightLines,
+			final NormalizationFunction normalizationFunction, final boolean trimCommonLines) {
+		return new MyersLinearDiff(leftLines, rightLines, normalizationFunction, trimCommonLines, null).getDiff();
+	}
 
-		// XXX: instead of using Lambda, looks like I can just pass the diff list and add the entry
-		// Changes diff list in Lambda since this mimics what Ruby code was doing in article
-		this.walkSnakes((point1, point2) -> diff.add(this.handleDiff(point1, point2)));
+	/**
+	 * Calculates the diff, diffing large boxes in parallel
+	 *
+	 * <p>After the midpoint splits a box larger than <code>parallelThreshold</code>, the two sub-boxes are diffed as fork/join tasks.
+	 * The tasks run in a shared pool with the specified parallelism (see {@link #shutdownForkJoinPools()}).
+	 * The result is identical to the serial diff.</p>
+	 *
+	 * @param leftLines
+	 * @param rightLines
+	 * @param normalizationFunction the normalization function (must be thread-safe if <code>parallelism</code> is greater than 1)
+	 * @param parallelism the number of threads used to diff (1 means serial)
+	 * @param parallelThreshold the minimum box size (number of left lines + number of right lines) before the sub-boxes are diffed in parallel
+	 * @return
+	 * @since 0.15
+	 */
+	public static List<DiffEdit> diff(final List<DiffLine> leftLines, final List<DiffLine> rightLines,
+			final NormalizationFunction normalizationFunction, final int parallelism, final int parallelThreshold) {
+		checkArgument(parallelism >= 1, "parallelism must be at least 1: " + parallelism);
 
-		return diff;
+		return new MyersLinearDiff(leftLines, rightLines, normalizationFunction, parallelism, parallelThreshold,
+				false, null).getDiff();
 	}
 
 	/**
-	 * Handles the diff (called from {@link #backtrack()}
+	 * Shuts down the pools used to diff in parallel
+	 *
+	 * <p>A pool is shared by all parallel diffs with the same parallelism. The pools use daemon threads,
+	 * so this is only needed to release the threads while the JVM keeps running (such as when a plugin is stopped).
+	 * Must not be called while diffing in parallel; later parallel diffs create new pools.</p>
 	 *
-	 * @param previousX
-	 * @param previousY
-	 * @param x
-	 * @param y
+	 * @since 0.15
 	 */
-	private DiffEdit handleDiff(final MyersPoint point1, final MyersPoint point2) {
-		if (point1.getX() == point2.getX()) {
-			DiffLine rightLine = this.getRightLines().get(point1.getY());
+	public static void shutdownForkJoinPools() {
+		FORK_JOIN_POOLS.values().removeIf(pool -> {
+			pool.shutdown();
+			return true;
+		});
+	}
 
-			return new DiffEdit(BasicDiffType.INSERT, null, rightLine);
-		} else if (point1.getY() == point2.getY()) {
-			DiffLine leftLine = this.getLeftLines().get(point1.getX());
+	/**
+	 * Calculates the diff, comparing lines using their interned ids
+	 *
+	 * @param internedLines the interned lines
+	 * @return
+	 * @since 0.15
+	 */
+	public static List<DiffEdit> diff(final InternedLines internedLines) {
+		return diff(internedLines, false);
+	}
 
-			return new DiffEdit(BasicDiffType.DELETE, leftLine, null);
-		} else {
-			DiffLine leftLine = this.getLeftLines().get(point1.getX());
-			DiffLine rightLine = this.getRightLines().get(point1.getY());
+	/**
+	 * Calculates the diff, comparing lines using their interned ids
+	 *
+	 * @param internedLines the interned lines
+	 * @param trimCommonLines whether to trim the common lines at the start and end (if so, only the lines between are diffed)
+	 * @return
+	 * @since 0.15
+	 */
+	public static List<DiffEdit> diff(final InternedLines internedLines, final boolean trimCommonLines) {
+		return new MyersLinearDiff(internedLines, trimCommonLines, null).getDiff();
+	}
 
-			return this.newEqualOrNormalizeEdit(leftLine, rightLine);
-		}
+	/**
+	 * Calculates the diff, limiting how much work is done
+	 *
+	 * <p>If the budget runs out, the diff is valid, but coarser ({@link DiffBudget#isExhausted()} indicates the diff is approximate)</p>
+	 *
+	 * @param leftLines
+	 * @param rightLines
+	 * @param normalizationFunction
+	 * @param budget the budget (if null, no limit)
+	 * @return
+	 * @since 0.15
+	 */
+	public static List<DiffEdit> diff(final List<DiffLine> leftLines, final List<DiffLine> rightLines,
+			final NormalizationFunction normalizationFunction, final DiffBudget budget) {
+		return new MyersLinearDiff(leftLines, rightLines, normalizationFunction, false, budget).getDiff();
 	}
 
-	// Methods added for linear space version of Myers algorithm
-	// Source: https://blog.jcoglan.com/2017/04/25/myers-diff-in-linear-space-implementation/
+	/**
+	 * Calculates the diff, comparing lines using their interned ids and limiting how much work is done
+	 *
+	 * @param internedLines the interned lines
+	 * @param budget the budget (if null, no limit)
+	 * @return
+	 * @since 0.15
+	 * @see #diff(List, List, NormalizationFunction, DiffBudget)
+	 */
+	public static List<DiffEdit> diff(final InternedLines internedLines, final DiffBudget budget) {
+		return new MyersLinearDiff(internedLines, false, budget).getDiff();
+	}
 
-	private void walkSnakes(final BiFunction<MyersPoint, MyersPoint, ?> block) {
-		MyersPoint topLeft = new MyersPoint(0, 0);
-		MyersPoint bottomRight = new MyersPoint(this.getLeftLines().size(), this.getRightLines().size());
+	/**
+	 * Calculates the diff
+	 *
+	 * <p>The path and edit script are stored in primitive arrays; DiffEdit objects are only created at the end</p>
+	 *
+	 * @return
+	 */
+	@Override
+	protected List<DiffEdit> diff() {
+		int leftSize = this.getLeftLines().size();
+		int rightSize = this.getRightLines().size();
 
-		List<MyersPoint> path = this.findPath(topLeft, bottomRight);
+		MyersPath path = this.findPath(leftSize, rightSize);
 
 		if (path == null) {
-			return;
+			return new ArrayList<>();
 		}
 
-		// For each two consecutive points
-		for (int i = 1; i < path.size(); i++) {
-			MyersPoint walkDiagonal = path.get(i - 1);
-			MyersPoint point2 = path.get(i);
+		MyersEditScript editScript = new MyersEditScript(leftSize + rightSize);
+		this.walkSnakes(path, editScript);
+
+		List<DiffEdit> diff = new ArrayList<>(editScript.size());
+		int x = 0;
+		int y = 0;
+
+		for (int i = 0; i < editScript.size(); i++) {
+			switch (editScript.get(i)) {
+			case MyersEditScript.INSERT:
+				diff.add(new DiffEdit(BasicDiffType.INSERT, null, this.getRightLines().get(y)));
+				y++;
+				break;
+			case MyersEditScript.DELETE:
+				diff.add(new DiffEdit(BasicDiffType.DELETE, this.getLeftLines().get(x), null));
+				x++;
+				break;
+			default:
+				diff.add(this.newEqualOrNormalizeEdit(this.getLeftLines().get(x), this.getRightLines().get(y)));
+				x++;
+				y++;
+				break;
+			}
+		}
 
-			walkDiagonal = this.walkDiagonal(walkDiagonal, point2, block);
-			int x1 = walkDiagonal.getX();
-			int y1 = walkDiagonal.getY();
+		return diff;
+	}
 
-			int compare = Integer.compare(point2.getX() - x1, point2.getY() - y1);
-			if (compare != 0) {
-				MyersPoint newWalkDiagonal = compare < 0 ? new MyersPoint(x1, y1 + 1) : new MyersPoint(x1 + 1, y1);
+	// Methods added for linear space version of Myers algorithm
+	// Source: https://blog.jcoglan.com/2017/04/25/myers-diff-in-linear-space-implementation/
 
-				block.apply(walkDiagonal, newWalkDiagonal);
-				walkDiagonal = newWalkDiagonal;
+	private void walkSnakes(final MyersPath path, final MyersEditScript editScript) {
+		// For each two consecutive points
+		for (int i = 1; i < path.size(); i++) {
+			int x1 = path.getX(i - 1);
+			int y1 = path.getY(i - 1);
+			int x2 = path.getX(i);
+			int y2 = path.getY(i);
+
+			int diagonal = this.walkDiagonal(x1, y1, x2, y2, editScript);
+			x1 += diagonal;
+			y1 += diagonal;
+
+			int compare = Integer.compare(x2 - x1, y2 - y1);
+			if (compare < 0) {
+				editScript.add(MyersEditScript.INSERT);
+				y1++;
+			} else if (compare > 0) {
+				editScript.add(MyersEditScript.DELETE);
+				x1++;
 			}
 
-			this.walkDiagonal(walkDiagonal, point2, block);
+			this.walkDiagonal(x1, y1, x2, y2, editScript);
 		}
 	}
 
-	private MyersPoint walkDiagonal(final MyersPoint point1, final MyersPoint point2,
-			final BiFunction<MyersPoint, MyersPoint, ?> block) {
-		// Point which gets updated via the loop
-		// (initialized to point1)
-		MyersPoint point = point1;
+	/**
+	 * Walks along the diagonal (while the lines are equal)
+	 *
+	 * @return the number of steps taken along the diagonal
+	 */
+	private int walkDiagonal(final int x1, final int y1, final int x2, final int y2,
+			final MyersEditScript editScript) {
+		int x = x1;
+		int y = y1;
+
+		while (x < x2 && y < y2 && this.isNormalizedEqualLine(x, y)) {
+			// Go along diagonal, incrementing both X and Y
+			editScript.add(MyersEditScript.EQUAL);
+			x++;
+			y++;
+		}
+
+		return x - x1;
+	}
 
-		while (point.getX() < point2.getX() && point.getY() < point2.getY()
-				&& this.isNormalizedEqualText(this.getLeftIndexedText(point.getX()),
-						this.getRightIndexedText(point.getY()))) {
-			// Create new point by going along diagonal, incrementing both X and Y
+	/**
+	 * Finds the path from the top left (0, 0) to the bottom right
+	 *
+	 * @param leftSize
+	 * @param rightSize
+	 * @return the path (or <code>null</code> if both sides are empty)
+	 */
+	private MyersPath findPath(final int leftSize, final int rightSize) {
+		if (this.parallelism > 1 && this.isParallel(leftSize + rightSize)) {
+			MyersLinearDiffRecursiveTask task = new MyersLinearDiffRecursiveTask(this, 0, 0, leftSize, rightSize);
+			ForkJoinPool pool = FORK_JOIN_POOLS.computeIfAbsent(this.parallelism, ForkJoinPool::new);
+
+			if (ForkJoinTask.getPool() == pool) {
+				// Already running in the pool with the requested parallelism
+				return task.invoke();
+			}
 
-			MyersPoint newPoint = new MyersPoint(point.getX() + 1, point.getY() + 1);
-			block.apply(point, newPoint);
-			point = newPoint;
+			// Use the pool with the requested parallelism (even if running in a different pool)
+			return pool.invoke(task);
 		}
 
-		return point;
+		MyersPath path = new MyersPath(16);
+		boolean hasPath = this.findPath(new MyersSearch(leftSize + rightSize), path, 0, 0, leftSize, rightSize);
+		return hasPath ? path : null;
 	}
 
-	protected List<MyersPoint> findPath(final MyersPoint topLeft, final MyersPoint bottomRight) {
-		MyersBox box = new MyersBox(topLeft, bottomRight);
-		MyersSnake snake = this.midpoint(box);
+	/**
+	 * Finds the path for the box, adding its points to the specified path
+	 *
+	 * @param search the search state (reused for each box)
+	 * @return <code>true</code> if added the path; <code>false</code> if the box is empty
+	 */
+	private boolean findPath(final MyersSearch search, final MyersPath path, final int left, final int top,
+			final int right, final int bottom) {
+		int size = (right - left) + (bottom - top);
 
-		if (snake == null) {
-			return null;
+		if (size == 0) {
+			return false;
 		}
 
-		MyersPoint start = snake.getStart();
-		MyersPoint finish = snake.getFinish();
-
-		List<MyersPoint> head;
-		List<MyersPoint> tail;
-
-		// TODO: for now, always run in Serial, since not sure if good to multi-thread in plugin
-		// (also, in most cases, shouldn't have 10K lines of code
-		//		if (box.size() > PARALLEL_THRESHOLD) {
-		//			// Parallelize the task
-		//			MyersLinearDiffRecursiveTask task1 = new MyersLinearDiffRecursiveTask(this, topLeft, start);
-		//			MyersLinearDiffRecursiveTask task2 = new MyersLinearDiffRecursiveTask(this, finish, bottomRight);
-		//
-		//			ForkJoinTask.invokeAll(task1, task2);
-		//
-		//			head = task1.join();
-		//			tail = task2.join();
-		//		} else {
-		// Use serial execution
-		head = this.findPath(topLeft, start);
-		tail = this.findPath(finish, bottomRight);
-		//		}
-
-		// Size of result is the sum of head + tail (if null, will be size 1, since adding the start or finish point)
-		int resultSize = (head != null ? head.size() : 1) + (tail != null ? tail.size() : 1);
-		List<MyersPoint> pathPoints = new ArrayList<>(resultSize);
-
-		if (head != null) {
-			pathPoints.addAll(head);
-		} else {
-			pathPoints.add(start);
+		if (!this.midpoint(search, left, top, right, bottom)) {
+			// Budget ran out without making any progress, so use a coarse path (delete all the left lines, then insert all the right lines)
+			for (int x = left; x <= right; x++) {
+				path.add(x, top);
+			}
+
+			for (int y = top + 1; y <= bottom; y++) {
+				path.add(right, y);
+			}
+
+			return true;
 		}
 
-		if (tail != null) {
-			pathPoints.addAll(tail);
+		// Search state is reused by the recursive calls, so retain the snake
+		int startX = search.startX;
+		int startY = search.startY;
+		int finishX = search.finishX;
+		int finishY = search.finishY;
+
+		// Serial unless parallelism was requested (for example, the plugin always diffs in serial)
+		if (this.parallelism > 1 && this.isParallel(size) && ForkJoinTask.inForkJoinPool()) {
+			// Parallelize the task
+			MyersLinearDiffRecursiveTask task1 = new MyersLinearDiffRecursiveTask(this, left, top, startX, startY);
+			MyersLinearDiffRecursiveTask task2 = new MyersLinearDiffRecursiveTask(this, finishX, finishY, right,
+					bottom);
+
+			ForkJoinTask.invokeAll(task1, task2);
+
+			MyersPath head = task1.join();
+			MyersPath tail = task2.join();
+
+			// If null, add the start or finish point
+			if (head != null) {
+				path.addAll(head);
+			} else {
+				path.add(startX, startY);
+			}
+
+			if (tail != null) {
+				path.addAll(tail);
+			} else {
+				path.add(finishX, finishY);
+			}
 		} else {
-			pathPoints.add(finish);
+			// Use serial execution
+			if (!this.findPath(search, path, left, top, startX, startY)) {
+				path.add(startX, startY);
+			}
+
+			if (!this.findPath(search, path, finishX, finishY, right, bottom)) {
+				path.add(finishX, finishY);
+			}
 		}
 
-		return pathPoints;
+		return true;
 	}
 
-	private MyersSnake midpoint(final MyersBox box) {
-		if (box.size() == 0) {
-			return null;
-		}
+	/**
+	 * Indicates if the box is large enough to diff its sub-boxes in parallel
+	 *
+	 * @param size the box size (width + height)
+	 * @return
+	 */
+	private boolean isParallel(final int size) {
+		return size > this.parallelThreshold;
+	}
 
-		int max = (int) Math.ceil(box.size() / 2.0);
+	/**
+	 * Finds the middle snake for the box, storing it in the search state
+	 *
+	 * <p>If the budget runs out first, the box is split at the furthest reaching point found so far
+	 * (similar to GNU diff and git's xdl_split), which is stored as an empty snake,
+	 * so the alignment already found is kept and both halves are still diffed.</p>
+	 *
+	 * @return <code>true</code> if found the middle snake (or a point to split the box);
+	 * <code>false</code> if the budget ran out before making any progress
+	 */
+	private boolean midpoint(final MyersSearch search, final int left, final int top, final int right,
+			final int bottom) {
+		int width = right - left;
+		int height = bottom - top;
+		int max = (width + height + 1) / 2;
 
 		// The original algorithm mentions negative indexes
 		// This is used to offset the indexes so they range from 0 to 2 * max instead of -max to +max
 		int offset = max;
 
-		int[] vf = new int[2 * max + 1];
-		vf[1 + offset] = box.getLeft();
-		int[] vb = new int[2 * max + 1];
-		vb[1 + offset] = box.getBottom();
+		int[] vf = search.vf;
+		int[] vb = search.vb;
+		vf[1 + offset] = left;
+		vb[1 + offset] = bottom;
 
 		for (int d = 0; d <= max; d++) {
-			Optional<MyersSnake> snake;
-
-			snake = this.forward(box, vf, vb, d, offset);
+			if (d > 0 && this.isBudgetExceeded(d)) {
+				return this.furthestReaching(search, left, top, right, bottom, d - 1, offset);
+			}
 
-			// Only if present return the snake
+			// Only if found, return
 			// (found the midpoint)
-			if (snake.isPresent()) {
-				return snake.get();
+			if (this.forward(search, left, top, right, bottom, d, offset)
+					|| this.backward(search, left, top, right, bottom, d, offset)) {
+				return true;
 			}
+		}
 
-			snake = this.backward(box, vf, vb, d, offset);
+		throw new AssertionError("Found no midpoint in Myers.midpoint");
+	}
 
-			// Only if present return the snake
-			// (found the midpoint)
-			if (snake.isPresent()) {
-				return snake.get();
+	/**
+	 * Finds the furthest reaching point, searching forward and backward, after the specified number of D-steps
+	 *
+	 * <p>The point is stored in the search state as an empty snake</p>
+	 *
+	 * @param d the number of D-steps searched in each direction
+	 * @return <code>true</code> if found a point inside the box (not a corner), so both halves are smaller than the box
+	 */
+	private boolean furthestReaching(final MyersSearch search, final int left, final int top, final int right,
+			final int bottom, final int d, final int offset) {
+		int[] vf = search.vf;
+		int[] vb = search.vb;
+		int delta = (right - left) - (bottom - top);
+		int size = (right - left) + (bottom - top);
+
+		int bestX = left;
+		int bestY = top;
+		int bestDistance = 0;
+
+		for (int k = d; k >= -d; k -= 2) {
+			int x = vf[k + offset];
+			int y = top + (x - left) - k;
+			int distance = (x - left) + (y - top);
+
+			if (distance > bestDistance && isBetween(x, left, right) && isBetween(y, top, bottom)) {
+				bestX = x;
+				bestY = y;
+				bestDistance = distance;
 			}
 		}
 
-		throw new AssertionError("Found no midpoint in Myers.midpoint");
+		for (int c = -d; c <= d; c += 2) {
+			int y = vb[c + offset];
+			int x = left + (y - top) + c + delta;
+			int distance = (right - x) + (bottom - y);
+
+			if (distance > bestDistance && isBetween(x, left, right) && isBetween(y, top, bottom)) {
+				bestX = x;
+				bestY = y;
+				bestDistance = distance;
+			}
+		}
+
+		if (bestDistance == 0 || bestDistance == size) {
+			// Splitting at a corner wouldn't make the box any smaller
+			return false;
+		}
+
+		search.setSnake(bestX, bestY, bestX, bestY);
+		return true;
 	}
 
-	private Optional<MyersSnake> forward(final MyersBox box, final int[] vf, final int[] vb, final int d,
-			final int offset) {
+	private boolean forward(final MyersSearch search, final int left, final int top, final int right,
+			final int bottom, final int d, final int offset) {
+		int[] vf = search.vf;
+		int[] vb = search.vb;
+		int delta = (right - left) - (bottom - top);
 
 		// Check if delta is odd
 		// * Will only return value if delta is odd
-		// * If delta is even, will always return Optional.empty()
+		// * If delta is even, will always return false
 		// Note: side effects from method are necessary, which is why method is called
-		boolean isDeltaOdd = isOdd(box.delta());
+		boolean isDeltaOdd = isOdd(delta);
 
 		//		for (int k = -d; k <= d; k += 2) {
 		// Git uses reverse, which is what I'm comparing against for the test
 		for (int k = d; k >= -d; k -= 2) {
-			int c = k - box.delta();
+			int c = k - delta;
 
 			int px;
 			int x;
@@ -300,11 +608,10 @@ public final class MyersLinearDiff extends AbstractDiffAlgorithm {
 				x = px + 1;
 			}
 
-			int y = box.getTop() + (x - box.getLeft()) - k;
+			int y = top + (x - left) - k;
 			int py = (d == 0 || x != px) ? y : y - 1;
 
-			while (x < box.getRight() && y < box.getBottom()
-					&& this.isNormalizedEqualText(this.getLeftIndexedText(x), this.getRightIndexedText(y))) {
+			while (x < right && y < bottom && this.isNormalizedEqualLine(x, y)) {
 				x++;
 				y++;
 			}
@@ -312,25 +619,30 @@ public final class MyersLinearDiff extends AbstractDiffAlgorithm {
 			vf[k + offset] = x;
 
 			if (isDeltaOdd && isBetween(c, -(d - 1), d - 1) && y >= vb[c + offset]) {
-				return Optional.of(new MyersSnake(new MyersPoint(px, py), new MyersPoint(x, y)));
+				search.setSnake(px, py, x, y);
+				return true;
 			}
 		}
 
-		return Optional.empty();
+		return false;
 	}
 
-	private Optional<MyersSnake> backward(final MyersBox box, final int[] vf, final int[] vb, final int d,
-			final int offset) {
+	private boolean backward(final MyersSearch search, final int left, final int top, final int right,
+			final int bottom, final int d, final int offset) {
+		int[] vf = search.vf;
+		int[] vb = search.vb;
+		int delta = (right - left) - (bottom - top);
+
 		// Check if delta is even
 		// * Will only return value if delta is even
-		// * If delta is odd, will always return Optional.empty()
+		// * If delta is odd, will always return false
 		// Note: side effects from method are necessary, which is why method is called
-		boolean isDeltaEven = isEven(box.delta());
+		boolean isDeltaEven = isEven(delta);
 
 		for (int c = -d; c <= d; c += 2) {
 			// Git uses reverse, which is what I'm comparing against for the test
 			//        for (int c = d; c >= -d; c -= 2) {
-			int k = c + box.delta();
+			int k = c + delta;
 
 			int py;
 			int y;
@@ -342,11 +654,10 @@ public final class MyersLinearDiff extends AbstractDiffAlgorithm {
 				y = py - 1;
 			}
 
-			int x = box.getLeft() + (y - box.getTop()) + k;
+			int x = left + (y - top) + k;
 			int px = (d == 0 || y != py) ? x : x + 1;
 
-			while (x > box.getLeft() && y > box.getTop()
-					&& this.isNormalizedEqualText(this.getLeftIndexedText(x - 1), this.getRightIndexedText(y - 1))) {
+			while (x > left && y > top && this.isNormalizedEqualLine(x - 1, y - 1)) {
 				x--;
 				y--;
 			}
@@ -354,11 +665,12 @@ public final class MyersLinearDiff extends AbstractDiffAlgorithm {
 			vb[c + offset] = y;
 
 			if (isDeltaEven && isBetween(k, -d, d) && x <= vf[k + offset]) {
-				return Optional.of(new MyersSnake(new MyersPoint(x, y), new MyersPoint(px, py)));
+				search.setSnake(x, y, px, py);
+				return true;
 			}
 		}
 
-		return Optional.empty();
+		return false;
 	}
 
 	/**
@@ -381,4 +693,38 @@ public final class MyersLinearDiff extends AbstractDiffAlgorithm {
 	private static boolean isEven(final int number) {
 		return (number & 1) == 0;
 	}
+
+	/**
+	 * Finds the path for a box as a fork/join task
+	 *
+	 * <p>Each task has its own search state, since tasks run concurrently</p>
+	 */
+	private static final class MyersLinearDiffRecursiveTask extends RecursiveTask<MyersPath> {
+		private static final long serialVersionUID = 1L;
+
+		private final transient MyersLinearDiff myersLinearDiff;
+		private final int left;
+		private final int top;
+		private final int right;
+		private final int bottom;
+
+		MyersLinearDiffRecursiveTask(final MyersLinearDiff myersLinearDiff, final int left, final int top,
+				final int right, final int bottom) {
+			this.myersLinearDiff = myersLinearDiff;
+			this.left = left;
+			this.top = top;
+			this.right = right;
+			this.bottom = bottom;
+		}
+
+		@Override
+		protected MyersPath compute() {
+			int size = (this.right - this.left) + (this.bottom - this.top);
+			MyersPath path = new MyersPath(16);
+
+			boolean hasPath = this.myersLinearDiff.findPath(new MyersSearch(size), path, this.left, this.top,
+					this.right, this.bottom);
+			return hasPath ? path : null;
+		}
+	}
 }
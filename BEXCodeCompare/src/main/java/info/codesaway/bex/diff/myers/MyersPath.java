@@ -0,0 +1,45 @@
+package info.codesaway.bex.diff.myers;
+
+import java.util.Arrays;
+
+/**
+ * Points along the path found by the linear space Myers algorithm, stored as a primitive array of x, y pairs
+ *
+ * @since 0.15
+ */
+final class MyersPath {
+	private int[] points;
+	private int size;
+
+	MyersPath(final int initialCapacity) {
+		this.points = new int[2 * Math.max(initialCapacity, 2)];
+	}
+
+	void add(final int x, final int y) {
+		if (2 * this.size + 2 > this.points.length) {
+			this.points = Arrays.copyOf(this.points, 2 * this.points.length);
+		}
+
+		this.points[2 * this.size] = x;
+		this.points[2 * this.size + 1] = y;
+		this.size++;
+	}
+
+	void addAll(final MyersPath path) {
+		for (int i = 0; i < path.size; i++) {
+			this.add(path.getX(i), path.getY(i));
+		}
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	int getX(final int index) {
+		return this.points[2 * index];
+	}
+
+	int getY(final int index) {
+		return this.points[2 * index + 1];
+	}
+}
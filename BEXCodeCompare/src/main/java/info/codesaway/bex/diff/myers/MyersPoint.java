@@ -1,5 +1,12 @@
 package info.codesaway.bex.diff.myers;
 
+/**
+ * Point in the edit graph of Myers' algorithm
+ *
+ * @deprecated {@link MyersLinearDiff} no longer uses this class (the path's points are stored as primitive arrays);
+ * will be removed in a future version
+ */
+@Deprecated
 public final class MyersPoint {
 	private final int x;
 	private final int y;
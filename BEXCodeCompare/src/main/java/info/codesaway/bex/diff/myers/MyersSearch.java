@@ -0,0 +1,45 @@
+package info.codesaway.bex.diff.myers;
+
+/**
+ * Reusable state for finding the middle snake
+ *
+ * <p>The forward and backward V arrays are allocated once (for the largest box) and reused for each box,
+ * and the snake is stored as primitive fields (versus creating points and snakes on each step)</p>
+ *
+ * @since 0.15
+ */
+final class MyersSearch {
+	/**
+	 * Furthest reaching x value for each diagonal k, when searching forward
+	 */
+	final int[] vf;
+
+	/**
+	 * Furthest reaching y value for each diagonal c, when searching backward
+	 */
+	final int[] vb;
+
+	// Middle snake found by the last search
+	int startX;
+	int startY;
+	int finishX;
+	int finishY;
+
+	/**
+	 *
+	 * @param maxBoxSize the size of the largest box which will be searched (width + height)
+	 */
+	MyersSearch(final int maxBoxSize) {
+		int max = (maxBoxSize + 1) / 2;
+
+		this.vf = new int[2 * max + 1];
+		this.vb = new int[2 * max + 1];
+	}
+
+	void setSnake(final int startX, final int startY, final int finishX, final int finishY) {
+		this.startX = startX;
+		this.startY = startY;
+		this.finishX = finishX;
+		this.finishY = finishY;
+	}
+}
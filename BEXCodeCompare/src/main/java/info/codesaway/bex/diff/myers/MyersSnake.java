@@ -1,5 +1,12 @@
 package info.codesaway.bex.diff.myers;
 
+/**
+ * Middle snake found by the linear space version of Myers' algorithm
+ *
+ * @deprecated {@link MyersLinearDiff} no longer uses this class (the snake is stored as primitive fields);
+ * will be removed in a future version
+ */
+@Deprecated
 public final class MyersSnake {
 	// Stores two points of info
 	// Original source passes around as 2x2 array
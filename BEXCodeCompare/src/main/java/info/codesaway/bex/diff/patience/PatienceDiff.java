@@ -11,6 +11,7 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -24,16 +25,38 @@ import info.codesaway.bex.diff.DiffEdit;
 import info.codesaway.bex.diff.DiffHelper;
 import info.codesaway.bex.diff.DiffLine;
 import info.codesaway.bex.diff.DiffNormalizedText;
+import info.codesaway.bex.diff.InternedLines;
 import info.codesaway.bex.diff.NormalizationFunction;
+import info.codesaway.bex.diff.myers.MyersLinearDiff;
 
 public final class PatienceDiff extends AbstractDiffAlgorithm {
 	private final BiFunction<List<DiffLine>, List<DiffLine>, List<DiffEdit>> fallbackDiffAlgorithm;
 
+	/**
+	 * Fallback diff algorithm used when the lines are interned
+	 */
+	private final Function<InternedLines, List<DiffEdit>> internedFallbackDiffAlgorithm;
+
+	// Used when lines are interned, to count occurrences of each id in the current slice
+	// (reused for each slice and cleared after use, so only allocated once per diff)
+	private int[] leftCounts;
+	private int[] rightCounts;
+	private int[] rightFirstLineNumbers;
+
 	private PatienceDiff(final List<DiffLine> leftLines, final List<DiffLine> rightLines,
 			final NormalizationFunction normalizationFunction,
-			final BiFunction<List<DiffLine>, List<DiffLine>, List<DiffEdit>> fallbackDiffAlgorithm) {
-		super(leftLines, rightLines, normalizationFunction);
+			final BiFunction<List<DiffLine>, List<DiffLine>, List<DiffEdit>> fallbackDiffAlgorithm,
+			final boolean trimCommonLines) {
+		super(leftLines, rightLines, normalizationFunction, trimCommonLines);
 		this.fallbackDiffAlgorithm = fallbackDiffAlgorithm;
+		this.internedFallbackDiffAlgorithm = null;
+	}
+
+	private PatienceDiff(final InternedLines internedLines,
+			final Function<InternedLines, List<DiffEdit>> internedFallbackDiffAlgorithm, final boolean trimCommonLines) {
+		super(internedLines, trimCommonLines);
+		this.fallbackDiffAlgorithm = null;
+		this.internedFallbackDiffAlgorithm = internedFallbackDiffAlgorithm;
 	}
 
 	/**
@@ -72,7 +95,70 @@ public final class PatienceDiff extends AbstractDiffAlgorithm {
 	public static List<DiffEdit> diff(final List<DiffLine> leftLines, final List<DiffLine> rightLines,
 			final NormalizationFunction normalizationFunction,
 			final BiFunction<List<DiffLine>, List<DiffLine>, List<DiffEdit>> fallbackDiffAlgorithm) {
-		return new PatienceDiff(leftLines, rightLines, normalizationFunction, fallbackDiffAlgorithm).getDiff();
+		return diff(leftLines, rightLines, normalizationFunction, fallbackDiffAlgorithm, false);
+	}
+
+	/**
+	 * Calculates the diff
+	 *
+	 * <p>By default, common lines at the start and end are not trimmed before the first pass (see {@link #diff()}).
+	 * Trimming them first is faster when there are only a few changes, but may lead to less than optimal looking diffs.</p>
+	 *
+	 * @param leftLines
+	 * @param rightLines
+	 * @param normalizationFunction
+	 * @param fallbackDiffAlgorithm
+	 * @param trimCommonLines whether to trim the common lines at the start and end (if so, only the lines between are diffed)
+	 * @return
+	 * @since 0.15
+	 */
+	public static List<DiffEdit> diff(final List<DiffLine> leftLines, final List<DiffLine> rightLines,
+			final NormalizationFunction normalizationFunction,
+			final BiFunction<List<DiffLine>, List<DiffLine>, List<DiffEdit>> fallbackDiffAlgorithm,
+			final boolean trimCommonLines) {
+		return new PatienceDiff(leftLines, rightLines, normalizationFunction, fallbackDiffAlgorithm,
+				trimCommonLines).getDiff();
+	}
+
+	/**
+	 * Calculates the diff, comparing lines using their interned ids
+	 *
+	 * <p>Uses {@link MyersLinearDiff} (also comparing interned ids) as the fallback diff algorithm</p>
+	 *
+	 * @param internedLines the interned lines
+	 * @return
+	 * @since 0.15
+	 */
+	public static List<DiffEdit> diff(final InternedLines internedLines) {
+		return diff(internedLines, MyersLinearDiff::diff);
+	}
+
+	/**
+	 * Calculates the diff, comparing lines using their interned ids
+	 *
+	 * @param internedLines the interned lines
+	 * @param fallbackDiffAlgorithm the fallback diff algorithm (passed the interned lines for the slice)
+	 * @return
+	 * @since 0.15
+	 */
+	public static List<DiffEdit> diff(final InternedLines internedLines,
+			final Function<InternedLines, List<DiffEdit>> fallbackDiffAlgorithm) {
+		return diff(internedLines, fallbackDiffAlgorithm, false);
+	}
+
+	/**
+	 * Calculates the diff, comparing lines using their interned ids
+	 *
+	 * @param internedLines the interned lines
+	 * @param fallbackDiffAlgorithm the fallback diff algorithm (passed the interned lines for the slice)
+	 * @param trimCommonLines whether to trim the common lines at the start and end (if so, only the lines between are diffed)
+	 * @return
+	 * @since 0.15
+	 * @see #diff(List, List, NormalizationFunction, BiFunction, boolean)
+	 */
+	public static List<DiffEdit> diff(final InternedLines internedLines,
+			final Function<InternedLines, List<DiffEdit>> fallbackDiffAlgorithm, final boolean trimCommonLines) {
+		return new PatienceDiff(internedLines, fallbackDiffAlgorithm, trimCommonLines).getDiff();
 	}
 
 	@Override
@@ -90,6 +176,7 @@ public final class PatienceDiff extends AbstractDiffAlgorithm {
 		//      by consuming any leading and trailing lines that match
 
 		// In this implementation, this handling of head / tail is done in the method handleSliceMatch
+		// (if trimCommonLines was specified, the common head / tail lines were already trimmed by AbstractDiffAlgorithm)
 		return this.diff(slice);
 	}
 
@@ -201,8 +288,7 @@ public final class PatienceDiff extends AbstractDiffAlgorithm {
 
 		List<DiffEdit> head = new ArrayList<>();
 
-		while (!slice.isEmpty() && this.isNormalizedEqualText(this.getLeftIndexedText(slice.getLeftStart()),
-				this.getRightIndexedText(slice.getRightStart()))) {
+		while (!slice.isEmpty() && this.isNormalizedEqualLine(slice.getLeftStart(), slice.getRightStart())) {
 			head.add(this.newEqualOrNormalizeEdit(
 					this.getLeftLines().get(slice.getLeftStart()),
 					this.getRightLines().get(slice.getRightStart())));
@@ -221,8 +307,7 @@ public final class PatienceDiff extends AbstractDiffAlgorithm {
 		// Note: Instead, plan to add in regular order and reverse at end
 		List<DiffEdit> tail = new ArrayList<>();
 
-		while (!slice.isEmpty() && this.isNormalizedEqualText(this.getLeftIndexedText(slice.getLeftEnd() - 1),
-				this.getRightIndexedText(slice.getRightEnd() - 1))) {
+		while (!slice.isEmpty() && this.isNormalizedEqualLine(slice.getLeftEnd() - 1, slice.getRightEnd() - 1)) {
 			slice.decrementEnds();
 			tail.add(this.newEqualOrNormalizeEdit(
 					this.getLeftLines().get(slice.getLeftEnd()),
@@ -235,6 +320,10 @@ public final class PatienceDiff extends AbstractDiffAlgorithm {
 	}
 
 	private List<PatienceMatch> uniqueMatchingLines(final PatienceSlice slice) {
+		if (this.isInterned()) {
+			return this.uniqueMatchingInternedLines(slice);
+		}
+
 		// Source: https://blog.jcoglan.com/2017/09/28/implementing-patience-diff/
 		// Source code uses Ruby Hash which maintains insertion order
 		// For Java, the corresponding is LinkedHashMap
@@ -277,7 +366,65 @@ public final class PatienceDiff extends AbstractDiffAlgorithm {
 				.collect(Collectors.toList());
 	}
 
+	/**
+	 * Finds the unique matching lines using the interned ids
+	 *
+	 * <p>Yields the same matches, in the same order, as the LinkedHashMap approach, without normalizing any text
+	 * (the matches are in order of the left line number, since a unique line's first occurrence is its left line)</p>
+	 *
+	 * @param slice the slice
+	 * @return the unique matching lines, sorted by left line number
+	 */
+	private List<PatienceMatch> uniqueMatchingInternedLines(final PatienceSlice slice) {
+		InternedLines internedLines = this.getInternedLines();
+
+		if (this.leftCounts == null) {
+			int idCount = internedLines.getIdCount();
+			this.leftCounts = new int[idCount];
+			this.rightCounts = new int[idCount];
+			this.rightFirstLineNumbers = new int[idCount];
+		}
+
+		for (int n = slice.getLeftStart(); n < slice.getLeftEnd(); n++) {
+			this.leftCounts[internedLines.getLeftId(n)]++;
+		}
+
+		for (int n = slice.getRightStart(); n < slice.getRightEnd(); n++) {
+			int id = internedLines.getRightId(n);
+
+			if (this.rightCounts[id]++ == 0) {
+				this.rightFirstLineNumbers[id] = n;
+			}
+		}
+
+		List<PatienceMatch> matches = new ArrayList<>();
+
+		for (int n = slice.getLeftStart(); n < slice.getLeftEnd(); n++) {
+			int id = internedLines.getLeftId(n);
+
+			if (this.leftCounts[id] == 1 && this.rightCounts[id] == 1) {
+				matches.add(new PatienceMatch(n, this.rightFirstLineNumbers[id]));
+			}
+		}
+
+		// Clear the counts, so can reuse for the next slice
+		for (int n = slice.getLeftStart(); n < slice.getLeftEnd(); n++) {
+			this.leftCounts[internedLines.getLeftId(n)] = 0;
+		}
+
+		for (int n = slice.getRightStart(); n < slice.getRightEnd(); n++) {
+			this.rightCounts[internedLines.getRightId(n)] = 0;
+		}
+
+		return matches;
+	}
+
 	private List<DiffEdit> fallbackDiff(final PatienceSlice slice) {
+		if (this.isInterned()) {
+			return this.internedFallbackDiffAlgorithm.apply(this.getInternedLines().subLines(
+					slice.getLeftStart(), slice.getLeftEnd(), slice.getRightStart(), slice.getRightEnd()));
+		}
+
 		return this.fallbackDiffAlgorithm.apply(
 				this.getLeftLines().subList(slice.getLeftStart(), slice.getLeftEnd()),
 				this.getRightLines().subList(slice.getRightStart(), slice.getRightEnd()));
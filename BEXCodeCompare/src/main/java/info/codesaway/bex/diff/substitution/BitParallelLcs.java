@@ -0,0 +1,174 @@
+package info.codesaway.bex.diff.substitution;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Computes the length of the longest common subsequence (LCS) of two texts using bit-parallelism
+ *
+ * <p>Uses the bit-vector algorithm from Hyyrö ("Bit-parallel LCS-length computation revisited", 2004).
+ * The shorter text is the pattern; each character of the longer text updates a bit vector with one bit per pattern character,
+ * 64 pattern characters at a time. This is O(n * m / 64) time and O(m / 64) memory per distinct pattern character
+ * (versus O(n * m) time and memory for the dynamic programming table), so there's no need to limit the line length.</p>
+ *
+ * @since 0.15
+ */
+public final class BitParallelLcs {
+	private BitParallelLcs() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Characters below this value have their match mask stored in an array (other characters use a map)
+	 */
+	private static final int ASCII_SIZE = 128;
+
+	/**
+	 * Gets the length of the longest common subsequence
+	 *
+	 * @param left the left text
+	 * @param right the right text
+	 * @return the length of the longest common subsequence
+	 */
+	public static int lcsLength(final CharSequence left, final CharSequence right) {
+		// Use the shorter text as the pattern, so the bit vector is as small as possible
+		boolean isLeftShorter = left.length() <= right.length();
+		CharSequence pattern = isLeftShorter ? left : right;
+		CharSequence text = isLeftShorter ? right : left;
+
+		if (pattern.length() == 0) {
+			return 0;
+		} else if (pattern.length() <= Long.SIZE) {
+			return lcsLengthSingleWord(pattern, text);
+		} else {
+			return lcsLengthMultipleWords(pattern, text);
+		}
+	}
+
+	private static int lcsLengthSingleWord(final CharSequence pattern, final CharSequence text) {
+		int m = pattern.length();
+
+		// Bit i of a character's match mask is set if the pattern has the character at index i
+		long[] asciiMasks = new long[ASCII_SIZE];
+		Map<Character, Long> otherMasks = null;
+
+		for (int i = 0; i < m; i++) {
+			char c = pattern.charAt(i);
+
+			if (c < ASCII_SIZE) {
+				asciiMasks[c] |= 1L << i;
+			} else {
+				if (otherMasks == null) {
+					otherMasks = new HashMap<>();
+				}
+
+				otherMasks.merge(c, 1L << i, (x, y) -> x | y);
+			}
+		}
+
+		// Zero bits in v indicate the LCS (initially, all ones)
+		long v = -1L;
+
+		for (int j = 0; j < text.length(); j++) {
+			char c = text.charAt(j);
+			long mask;
+
+			if (c < ASCII_SIZE) {
+				mask = asciiMasks[c];
+			} else {
+				Long otherMask = otherMasks != null ? otherMasks.get(c) : null;
+				mask = otherMask != null ? otherMask : 0;
+			}
+
+			long u = v & mask;
+			v = (v + u) | (v - u);
+		}
+
+		long patternBits = m == Long.SIZE ? -1L : (1L << m) - 1;
+		return Long.bitCount(~v & patternBits);
+	}
+
+	private static int lcsLengthMultipleWords(final CharSequence pattern, final CharSequence text) {
+		int m = pattern.length();
+		int words = (m + Long.SIZE - 1) >>> 6;
+
+		// Bit i of a character's match mask is set if the pattern has the character at index i
+		long[][] asciiMasks = new long[ASCII_SIZE][];
+		Map<Character, long[]> otherMasks = null;
+
+		for (int i = 0; i < m; i++) {
+			char c = pattern.charAt(i);
+			long[] mask;
+
+			if (c < ASCII_SIZE) {
+				mask = asciiMasks[c];
+
+				if (mask == null) {
+					mask = new long[words];
+					asciiMasks[c] = mask;
+				}
+			} else {
+				if (otherMasks == null) {
+					otherMasks = new HashMap<>();
+				}
+
+				mask = otherMasks.computeIfAbsent(c, k -> new long[words]);
+			}
+
+			mask[i >>> 6] |= 1L << i;
+		}
+
+		// Zero bits in v indicate the LCS (initially, all ones)
+		long[] v = new long[words];
+		for (int w = 0; w < words; w++) {
+			v[w] = -1L;
+		}
+
+		for (int j = 0; j < text.length(); j++) {
+			char c = text.charAt(j);
+			long[] mask;
+
+			if (c < ASCII_SIZE) {
+				mask = asciiMasks[c];
+			} else {
+				mask = otherMasks != null ? otherMasks.get(c) : null;
+			}
+
+			if (mask == null) {
+				// Character isn't in the pattern, so v is unchanged
+				continue;
+			}
+
+			// v = (v + u) | (v & ~mask), where u = v & mask
+			// (addition carries from lower words to higher words)
+			long carry = 0;
+
+			for (int w = 0; w < words; w++) {
+				long vw = v[w];
+				long u = vw & mask[w];
+
+				long sum = vw + u;
+				long sumCarry = Long.compareUnsigned(sum, vw) < 0 ? 1 : 0;
+
+				sum += carry;
+				if (carry != 0 && sum == 0) {
+					sumCarry = 1;
+				}
+
+				carry = sumCarry;
+				v[w] = sum | (vw & ~mask[w]);
+			}
+		}
+
+		int lcsLength = 0;
+		for (int w = 0; w < words - 1; w++) {
+			lcsLength += Long.bitCount(~v[w]);
+		}
+
+		int lastWordBits = m - ((words - 1) << 6);
+		long lastWordPatternBits = lastWordBits == Long.SIZE ? -1L : (1L << lastWordBits) - 1;
+		lcsLength += Long.bitCount(~v[words - 1] & lastWordPatternBits);
+
+		return lcsLength;
+	}
+}
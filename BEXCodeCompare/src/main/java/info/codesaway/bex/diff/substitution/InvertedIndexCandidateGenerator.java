@@ -0,0 +1,328 @@
+package info.codesaway.bex.diff.substitution;
+
+import static info.codesaway.bex.parsing.BEXParsingUtilities.isWordCharacter;
+import static info.codesaway.bex.util.BEXUtilities.checkArgument;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import info.codesaway.bex.BEXPair;
+import info.codesaway.bex.BEXPairValue;
+import info.codesaway.bex.diff.DiffEdit;
+
+/**
+ * Generates substitution candidates using an inverted index from each word to the lines which contain it
+ *
+ * <p>Each word is weighted by its inverse document frequency (IDF), <code>log(lines / lines containing the word)</code>,
+ * and words which are on too many lines (such as <code>final</code> or <code>String</code> in Java code) are ignored, similar to stop words.
+ * For each line, the lines on the other side are scored by the sum of the weights of their shared words
+ * and only the top <i>k</i> lines are kept as candidates (<i>k</i> is the max candidates).</p>
+ *
+ * <p>Each line has at most <i>k</i> candidates (plus the lines which chose it as a candidate),
+ * so the number of pairs checked is linear in the size of the block, versus quadratic when checking every pair.
+ * Lines which don't share any indexed word with a line on the other side (such as blank lines or lines with just symbols)
+ * use the <i>k</i> lines on the other side nearest the same relative position.</p>
+ *
+ * @since 0.15
+ */
+public final class InvertedIndexCandidateGenerator implements SubstitutionCandidateGenerator {
+	/**
+	 * Default max number of candidates per DiffEdit
+	 */
+	public static final int DEFAULT_MAX_CANDIDATES = 10;
+
+	/**
+	 * Default max fraction of lines a word can be on and still be indexed
+	 */
+	public static final double DEFAULT_MAX_WORD_FREQUENCY = 0.05;
+
+	private final int maxCandidates;
+	private final double maxWordFrequency;
+
+	/**
+	 * Creates a generator with the default max candidates and max word frequency
+	 */
+	public InvertedIndexCandidateGenerator() {
+		this(DEFAULT_MAX_CANDIDATES);
+	}
+
+	/**
+	 * Creates a generator with the default max word frequency
+	 *
+	 * @param maxCandidates the max number of candidates per DiffEdit (<i>k</i>)
+	 */
+	public InvertedIndexCandidateGenerator(final int maxCandidates) {
+		this(maxCandidates, DEFAULT_MAX_WORD_FREQUENCY);
+	}
+
+	/**
+	 *
+	 * @param maxCandidates the max number of candidates per DiffEdit (<i>k</i>)
+	 * @param maxWordFrequency the max fraction of lines a word can be on and still be indexed
+	 * (words on at most <code>maxCandidates</code> lines are always indexed)
+	 */
+	public InvertedIndexCandidateGenerator(final int maxCandidates, final double maxWordFrequency) {
+		checkArgument(maxCandidates > 0, "The max candidates must be positive: " + maxCandidates);
+		checkArgument(maxWordFrequency > 0 && maxWordFrequency <= 1,
+				"The max word frequency must be greater than 0 and at most 1: " + maxWordFrequency);
+
+		this.maxCandidates = maxCandidates;
+		this.maxWordFrequency = maxWordFrequency;
+	}
+
+	public int getMaxCandidates() {
+		return this.maxCandidates;
+	}
+
+	public double getMaxWordFrequency() {
+		return this.maxWordFrequency;
+	}
+
+	@Override
+	public Collection<BEXPair<DiffEdit>> generate(final List<DiffEdit> diffEdits,
+			final Map<DiffEdit, String> normalizedTexts) {
+		List<DiffEdit> lefts = new ArrayList<>();
+		List<DiffEdit> rights = new ArrayList<>();
+
+		for (DiffEdit diffEdit : diffEdits) {
+			if (!diffEdit.isInsertOrDelete()) {
+				throw new AssertionError("Unexpected DiffType: " + diffEdit.getType());
+			}
+
+			if (diffEdit.hasLeftLine()) {
+				lefts.add(diffEdit);
+			} else {
+				rights.add(diffEdit);
+			}
+		}
+
+		if (lefts.isEmpty() || rights.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		// Map from word to its id
+		Map<String, Integer> wordIds = new HashMap<>();
+		int[][] leftWords = words(lefts, normalizedTexts, wordIds);
+		int[][] rightWords = words(rights, normalizedTexts, wordIds);
+
+		double[] weights = this.weights(leftWords, rightWords, wordIds.size());
+
+		Set<BEXPair<DiffEdit>> results = new TreeSet<>(LINE_NUMBER_ORDER);
+
+		int[][] leftCandidates = this.topCandidates(leftWords, rightWords, weights);
+		for (int l = 0; l < leftCandidates.length; l++) {
+			for (int r : leftCandidates[l]) {
+				results.add(new BEXPairValue<>(lefts.get(l), rights.get(r)));
+			}
+		}
+
+		int[][] rightCandidates = this.topCandidates(rightWords, leftWords, weights);
+		for (int r = 0; r < rightCandidates.length; r++) {
+			for (int l : rightCandidates[r]) {
+				results.add(new BEXPairValue<>(lefts.get(l), rights.get(r)));
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * Gets the distinct word ids on each line
+	 */
+	private static int[][] words(final List<DiffEdit> diffEdits, final Map<DiffEdit, String> normalizedTexts,
+			final Map<String, Integer> wordIds) {
+		int[][] words = new int[diffEdits.size()][];
+		// Word ids on the current line (used to skip repeated words)
+		Set<Integer> lineWords = new TreeSet<>();
+
+		for (int i = 0; i < words.length; i++) {
+			String text = normalizedTexts.get(diffEdits.get(i));
+			lineWords.clear();
+
+			int index = 0;
+			while (index < text.length()) {
+				if (!isWordCharacter(text.charAt(index))) {
+					index++;
+					continue;
+				}
+
+				int end = index + 1;
+				while (end < text.length() && isWordCharacter(text.charAt(end))) {
+					end++;
+				}
+
+				String word = text.substring(index, end);
+				Integer id = wordIds.get(word);
+
+				if (id == null) {
+					id = wordIds.size();
+					wordIds.put(word, id);
+				}
+
+				lineWords.add(id);
+				index = end;
+			}
+
+			words[i] = lineWords.stream().mapToInt(Integer::intValue).toArray();
+		}
+
+		return words;
+	}
+
+	/**
+	 * Gets the IDF weight of each word (0 if the word isn't indexed)
+	 */
+	private double[] weights(final int[][] leftWords, final int[][] rightWords, final int wordCount) {
+		int[] documentFrequencies = new int[wordCount];
+
+		for (int[] words : leftWords) {
+			for (int word : words) {
+				documentFrequencies[word]++;
+			}
+		}
+
+		for (int[] words : rightWords) {
+			for (int word : words) {
+				documentFrequencies[word]++;
+			}
+		}
+
+		int lineCount = leftWords.length + rightWords.length;
+
+		// Words on more lines than this are too common to identify similar lines
+		int maxDocumentFrequency = Math.max(this.maxCandidates, (int) (this.maxWordFrequency * lineCount));
+
+		double[] weights = new double[wordCount];
+
+		for (int word = 0; word < wordCount; word++) {
+			int documentFrequency = documentFrequencies[word];
+
+			if (documentFrequency <= maxDocumentFrequency && documentFrequency < lineCount) {
+				weights[word] = Math.log((double) lineCount / documentFrequency);
+			}
+		}
+
+		return weights;
+	}
+
+	/**
+	 * Gets the indexes of the top candidates (on the other side) for each line
+	 *
+	 * @param queryWords the word ids for the lines to find candidates for
+	 * @param targetWords the word ids for the lines on the other side
+	 * @param weights the weight of each word
+	 * @return the indexes of the top candidates in <code>targetWords</code> for each line in <code>queryWords</code>
+	 */
+	private int[][] topCandidates(final int[][] queryWords, final int[][] targetWords, final double[] weights) {
+		int[][] index = invertedIndex(targetWords, weights);
+		int[][] candidates = new int[queryWords.length][];
+
+		double[] scores = new double[targetWords.length];
+		// Targets with a non-zero score (so only those scores need to be reset)
+		int[] scored = new int[targetWords.length];
+
+		for (int q = 0; q < queryWords.length; q++) {
+			int scoredCount = 0;
+
+			for (int word : queryWords[q]) {
+				if (weights[word] == 0) {
+					continue;
+				}
+
+				for (int t : index[word]) {
+					if (scores[t] == 0) {
+						scored[scoredCount++] = t;
+					}
+
+					scores[t] += weights[word];
+				}
+			}
+
+			if (scoredCount == 0) {
+				candidates[q] = this.nearestCandidates(q, queryWords.length, targetWords.length);
+				continue;
+			}
+
+			// Partial selection sort of the top candidates (highest score, then earliest line)
+			int candidateCount = Math.min(this.maxCandidates, scoredCount);
+
+			for (int i = 0; i < candidateCount; i++) {
+				int best = i;
+
+				for (int j = i + 1; j < scoredCount; j++) {
+					int t = scored[j];
+					int bestT = scored[best];
+
+					if (scores[t] > scores[bestT] || scores[t] == scores[bestT] && t < bestT) {
+						best = j;
+					}
+				}
+
+				int swap = scored[i];
+				scored[i] = scored[best];
+				scored[best] = swap;
+			}
+
+			candidates[q] = Arrays.copyOf(scored, candidateCount);
+
+			for (int i = 0; i < scoredCount; i++) {
+				scores[scored[i]] = 0;
+			}
+		}
+
+		return candidates;
+	}
+
+	/**
+	 * Gets the lines on the other side nearest the same relative position
+	 */
+	private int[] nearestCandidates(final int queryIndex, final int queryCount, final int targetCount) {
+		int candidateCount = Math.min(this.maxCandidates, targetCount);
+
+		int position = (int) ((long) queryIndex * targetCount / queryCount);
+		int start = Math.max(0, Math.min(targetCount - candidateCount, position - candidateCount / 2));
+
+		int[] candidates = new int[candidateCount];
+		for (int i = 0; i < candidateCount; i++) {
+			candidates[i] = start + i;
+		}
+
+		return candidates;
+	}
+
+	/**
+	 * Creates an inverted index from each indexed word to the lines which contain it
+	 */
+	private static int[][] invertedIndex(final int[][] lineWords, final double[] weights) {
+		int[] counts = new int[weights.length];
+
+		for (int[] words : lineWords) {
+			for (int word : words) {
+				counts[word]++;
+			}
+		}
+
+		int[][] index = new int[weights.length][];
+		for (int word = 0; word < weights.length; word++) {
+			index[word] = new int[weights[word] != 0 ? counts[word] : 0];
+			counts[word] = 0;
+		}
+
+		for (int line = 0; line < lineWords.length; line++) {
+			for (int word : lineWords[line]) {
+				if (weights[word] != 0) {
+					index[word][counts[word]++] = line;
+				}
+			}
+		}
+
+		return index;
+	}
+}
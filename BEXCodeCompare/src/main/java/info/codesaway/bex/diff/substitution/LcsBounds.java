@@ -0,0 +1,126 @@
+package info.codesaway.bex.diff.substitution;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cheap upper bounds on the length of the longest common subsequence (LCS), used to reject pairs before computing the LCS
+ *
+ * @since 0.15
+ */
+final class LcsBounds {
+	private LcsBounds() {
+		throw new UnsupportedOperationException();
+	}
+
+	private static final int ASCII_SIZE = 128;
+
+	/**
+	 * Gets an upper bound using the character counts
+	 *
+	 * <p>Each character in the LCS occurs in both texts, so the LCS length is at most the sum (over each character) of the minimum count in either text</p>
+	 *
+	 * @param left the left text
+	 * @param right the right text
+	 * @return the upper bound
+	 */
+	static int characterHistogramBound(final CharSequence left, final CharSequence right) {
+		int[] asciiCounts = new int[ASCII_SIZE];
+		Map<Character, Integer> otherCounts = null;
+
+		for (int i = 0; i < left.length(); i++) {
+			char c = left.charAt(i);
+
+			if (c < ASCII_SIZE) {
+				asciiCounts[c]++;
+			} else {
+				if (otherCounts == null) {
+					otherCounts = new HashMap<>();
+				}
+
+				otherCounts.merge(c, 1, Integer::sum);
+			}
+		}
+
+		// Each right character uses up one of the left occurrences (if any remain)
+		int bound = 0;
+
+		for (int i = 0; i < right.length(); i++) {
+			char c = right.charAt(i);
+
+			if (c < ASCII_SIZE) {
+				if (asciiCounts[c] > 0) {
+					asciiCounts[c]--;
+					bound++;
+				}
+			} else if (otherCounts != null) {
+				Integer count = otherCounts.get(c);
+
+				if (count != null && count > 0) {
+					otherCounts.put(c, count - 1);
+					bound++;
+				}
+			}
+		}
+
+		return bound;
+	}
+
+	/**
+	 * Gets an upper bound using the common bigrams (q-grams of length 2)
+	 *
+	 * <p>Transforming the left text into the right text keeps the <i>L</i> characters of the LCS, deletes the other left characters, and inserts the other right characters.
+	 * A left q-gram survives (and is a q-gram in the right text) unless one of its characters is deleted (each delete affects at most <i>q</i> q-grams)
+	 * or characters are inserted inside it (each insert affects at most <i>q</i> - 1 q-grams). As a result,
+	 * <code>common &gt;= (n - q + 1) - q * (n - L) - (q - 1) * (m - L)</code>, so
+	 * <code>L &lt;= (common + (q - 1) * (n + m + 1)) / (2 * q - 1)</code>.</p>
+	 *
+	 * @param left the left text
+	 * @param right the right text
+	 * @return the upper bound
+	 */
+	static int bigramBound(final CharSequence left, final CharSequence right) {
+		int leftLength = left.length();
+		int rightLength = right.length();
+		int minLength = Math.min(leftLength, rightLength);
+
+		if (minLength < 2) {
+			return minLength;
+		}
+
+		int[] leftBigrams = bigrams(left);
+		int[] rightBigrams = bigrams(right);
+
+		// Count the common bigrams (multiset intersection of the sorted bigrams)
+		int commonBigrams = 0;
+		int i = 0;
+		int j = 0;
+
+		while (i < leftBigrams.length && j < rightBigrams.length) {
+			if (leftBigrams[i] == rightBigrams[j]) {
+				commonBigrams++;
+				i++;
+				j++;
+			} else if (leftBigrams[i] < rightBigrams[j]) {
+				i++;
+			} else {
+				j++;
+			}
+		}
+
+		// q = 2
+		return Math.min(minLength, (commonBigrams + leftLength + rightLength + 1) / 3);
+	}
+
+	private static int[] bigrams(final CharSequence text) {
+		int[] bigrams = new int[text.length() - 1];
+
+		for (int i = 0; i < bigrams.length; i++) {
+			bigrams[i] = text.charAt(i) << 16 | text.charAt(i + 1);
+		}
+
+		Arrays.sort(bigrams);
+		return bigrams;
+	}
+}
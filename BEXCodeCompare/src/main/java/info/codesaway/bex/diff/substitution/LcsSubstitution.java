@@ -1,19 +1,43 @@
 package info.codesaway.bex.diff.substitution;
 
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.IntBinaryOperator;
 
 import info.codesaway.bex.BEXPair;
 import info.codesaway.bex.diff.BasicDiffType;
 import info.codesaway.bex.diff.DiffEdit;
 import info.codesaway.bex.diff.NormalizationFunction;
-import info.codesaway.util.lcs.LcsString;
 
 public final class LcsSubstitution implements SubstitutionType {
 	private final double threshold;
 	private final int lcsMaxLineLength;
 	private final IntBinaryOperator operator;
 
+	// Counters for how many pairs each bound rejected (for tuning)
+	// (LongAdder, since the same instance may be used by multiple threads)
+	private final LongAdder lengthBoundRejections = new LongAdder();
+	private final LongAdder characterHistogramBoundRejections = new LongAdder();
+	private final LongAdder bigramBoundRejections = new LongAdder();
+	private final LongAdder lcsComputations = new LongAdder();
+
+	/**
+	 * Creates an LCS substitution with no limit on the line length
+	 *
+	 * @param threshold the minimum LCS length, as a fraction of the operator applied to the line lengths
+	 * @param operator the operator applied to the left and right line lengths (such as <code>Math::min</code>)
+	 * @since 0.15
+	 */
+	public LcsSubstitution(final double threshold, final IntBinaryOperator operator) {
+		this(threshold, Integer.MAX_VALUE, operator);
+	}
+
+	/**
+	 *
+	 * @param threshold the minimum LCS length, as a fraction of the operator applied to the line lengths
+	 * @param lcsMaxLineLength lines longer than this are not checked
+	 * @param operator the operator applied to the left and right line lengths (such as <code>Math::min</code>)
+	 */
 	public LcsSubstitution(final double threshold, final int lcsMaxLineLength, final IntBinaryOperator operator) {
 		this.threshold = threshold;
 		this.lcsMaxLineLength = lcsMaxLineLength;
@@ -27,19 +51,94 @@ public final class LcsSubstitution implements SubstitutionType {
 		BEXPair<String> normalizedText = checkPair.map(normalizedTexts::get);
 
 		if (normalizedText.testOrBoth(t -> t.length() > this.lcsMaxLineLength)) {
-			// Don't run LCS for long lines, since LCS is O(n^2) for memory and could cause a memory exception for too long of lines
 			return null;
 		}
 
-		int lcsLength = new LcsString(normalizedText.getLeft(), normalizedText.getRight()).lcsLength();
+		String left = normalizedText.getLeft();
+		String right = normalizedText.getRight();
 
-		if (lcsLength == 0) {
+		int value = this.operator.applyAsInt(left.length(), right.length());
+		double minLcsLength = this.threshold * value;
+
+		// Check cheap upper bounds first, since most pairs don't meet the threshold
+		// (if the upper bound doesn't meet the threshold, the LCS can't either)
+		if (!meetsThreshold(Math.min(left.length(), right.length()), minLcsLength)) {
+			this.lengthBoundRejections.increment();
 			return null;
 		}
 
-		int value = this.operator.applyAsInt(normalizedText.getLeft().length(), normalizedText.getRight().length());
+		if (!meetsThreshold(LcsBounds.characterHistogramBound(left, right), minLcsLength)) {
+			this.characterHistogramBoundRejections.increment();
+			return null;
+		}
 
-		boolean meetsThreshold = lcsLength >= this.threshold * value;
+		// Bigram bound sorts the bigrams, so only worth checking if the LCS needs more than a single 64-bit word
+		if (Math.min(left.length(), right.length()) > Long.SIZE
+				&& !meetsThreshold(LcsBounds.bigramBound(left, right), minLcsLength)) {
+			this.bigramBoundRejections.increment();
+			return null;
+		}
+
+		this.lcsComputations.increment();
+		int lcsLength = BitParallelLcs.lcsLength(left, right);
+
+		boolean meetsThreshold = meetsThreshold(lcsLength, minLcsLength);
 		return meetsThreshold ? BasicDiffType.SUBSTITUTE : null;
 	}
+
+	private static boolean meetsThreshold(final int lcsLength, final double minLcsLength) {
+		return lcsLength != 0 && lcsLength >= minLcsLength;
+	}
+
+	/**
+	 * Gets the number of pairs rejected since the shorter line is shorter than the threshold
+	 *
+	 * @return the number of pairs rejected by the length bound
+	 * @since 0.15
+	 */
+	public long getLengthBoundRejections() {
+		return this.lengthBoundRejections.sum();
+	}
+
+	/**
+	 * Gets the number of pairs rejected since the common characters (ignoring order) don't meet the threshold
+	 *
+	 * @return the number of pairs rejected by the character histogram bound
+	 * @since 0.15
+	 */
+	public long getCharacterHistogramBoundRejections() {
+		return this.characterHistogramBoundRejections.sum();
+	}
+
+	/**
+	 * Gets the number of pairs rejected since the common bigrams don't meet the threshold
+	 *
+	 * @return the number of pairs rejected by the bigram bound
+	 * @since 0.15
+	 */
+	public long getBigramBoundRejections() {
+		return this.bigramBoundRejections.sum();
+	}
+
+	/**
+	 * Gets the number of pairs where the LCS was computed (pairs not rejected by the bounds)
+	 *
+	 * @return the number of LCS computations
+	 * @since 0.15
+	 */
+	public long getLcsComputations() {
+		return this.lcsComputations.sum();
+	}
+
+	/**
+	 * Resets the counters (such as before diffing a file, when tuning)
+	 *
+	 * @since 0.15
+	 */
+	public void resetCounters() {
+		this.lengthBoundRejections.reset();
+		this.characterHistogramBoundRejections.reset();
+		this.bigramBoundRejections.reset();
+		this.lcsComputations.reset();
+	}
 }
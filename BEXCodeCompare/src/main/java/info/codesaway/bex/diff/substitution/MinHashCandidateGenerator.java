@@ -0,0 +1,353 @@
+package info.codesaway.bex.diff.substitution;
+
+import static info.codesaway.bex.parsing.BEXParsingUtilities.isWordCharacter;
+import static info.codesaway.bex.util.BEXUtilities.checkArgument;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import info.codesaway.bex.BEXPair;
+import info.codesaway.bex.BEXPairValue;
+import info.codesaway.bex.diff.DiffEdit;
+
+/**
+ * Generates substitution candidates using MinHash signatures and locality-sensitive hashing (LSH)
+ *
+ * <p>Each normalized line is split into tokens (words and symbols, ignoring whitespace) and the consecutive token pairs (shingles) are hashed.
+ * The MinHash signature of a line is the minimum hash of its shingles for each of <i>bands</i> * <i>rows</i> hash functions;
+ * the probability that two lines have the same minimum hash is the Jaccard similarity of their shingles.
+ * The signature is split into bands of <i>rows</i> hashes and lines with an identical band are placed in the same bucket,
+ * so similar lines are likely to share at least one bucket, while dissimilar lines rarely do
+ * (with the default 16 bands of 4 rows, lines with a Jaccard similarity of 0.5 share a bucket 64% of the time and 0.8 over 99% of the time).</p>
+ *
+ * <p>Only lines sharing a bucket are compared, so candidate generation is near-linear in the size of the block.
+ * Each line keeps at most <i>k</i> candidates (the lines sharing the most bands), and buckets with too many lines (such as identical lines repeated throughout the block) are ignored.
+ * Lines without tokens (such as blank lines) don't have any candidates.</p>
+ *
+ * <p>Compared to {@link InvertedIndexCandidateGenerator}, this is more suited to very large blocks (such as when whole classes were reformatted or moved),
+ * since the work per line doesn't depend on how many lines share a word.</p>
+ *
+ * @since 0.15
+ */
+public final class MinHashCandidateGenerator implements SubstitutionCandidateGenerator {
+	/**
+	 * Default number of bands
+	 */
+	public static final int DEFAULT_BANDS = 16;
+
+	/**
+	 * Default number of rows (hashes) per band
+	 */
+	public static final int DEFAULT_ROWS = 4;
+
+	/**
+	 * Default max number of candidates per DiffEdit
+	 */
+	public static final int DEFAULT_MAX_CANDIDATES = 10;
+
+	/**
+	 * Default max fraction of lines in a bucket (larger buckets are ignored)
+	 */
+	public static final double DEFAULT_MAX_BUCKET_FREQUENCY = 0.05;
+
+	private final int bands;
+	private final int rows;
+	private final int maxCandidates;
+	private final double maxBucketFrequency;
+
+	/**
+	 * Seed for each hash function
+	 */
+	private final long[] seeds;
+
+	/**
+	 * Creates a generator with the default bands, rows, and max candidates
+	 */
+	public MinHashCandidateGenerator() {
+		this(DEFAULT_BANDS, DEFAULT_ROWS, DEFAULT_MAX_CANDIDATES);
+	}
+
+	/**
+	 *
+	 * @param bands the number of bands (more bands find more candidates)
+	 * @param rows the number of rows (hashes) per band (more rows require lines to be more similar to share a bucket)
+	 * @param maxCandidates the max number of candidates per DiffEdit (<i>k</i>)
+	 */
+	public MinHashCandidateGenerator(final int bands, final int rows, final int maxCandidates) {
+		this(bands, rows, maxCandidates, DEFAULT_MAX_BUCKET_FREQUENCY);
+	}
+
+	/**
+	 *
+	 * @param bands the number of bands (more bands find more candidates)
+	 * @param rows the number of rows (hashes) per band (more rows require lines to be more similar to share a bucket)
+	 * @param maxCandidates the max number of candidates per DiffEdit (<i>k</i>)
+	 * @param maxBucketFrequency the max fraction of lines in a bucket (buckets with at most <code>maxCandidates</code> lines are always used)
+	 */
+	public MinHashCandidateGenerator(final int bands, final int rows, final int maxCandidates,
+			final double maxBucketFrequency) {
+		checkArgument(bands > 0, "The bands must be positive: " + bands);
+		checkArgument(rows > 0, "The rows must be positive: " + rows);
+		checkArgument(maxCandidates > 0, "The max candidates must be positive: " + maxCandidates);
+		checkArgument(maxBucketFrequency > 0 && maxBucketFrequency <= 1,
+				"The max bucket frequency must be greater than 0 and at most 1: " + maxBucketFrequency);
+
+		this.bands = bands;
+		this.rows = rows;
+		this.maxCandidates = maxCandidates;
+		this.maxBucketFrequency = maxBucketFrequency;
+
+		// Fixed seeds, so the candidates are the same each run
+		this.seeds = new long[bands * rows];
+		long seed = 0;
+		for (int i = 0; i < this.seeds.length; i++) {
+			seed += 0x9E3779B97F4A7C15L;
+			this.seeds[i] = mix(seed);
+		}
+	}
+
+	public int getBands() {
+		return this.bands;
+	}
+
+	public int getRows() {
+		return this.rows;
+	}
+
+	public int getMaxCandidates() {
+		return this.maxCandidates;
+	}
+
+	public double getMaxBucketFrequency() {
+		return this.maxBucketFrequency;
+	}
+
+	@Override
+	public Collection<BEXPair<DiffEdit>> generate(final List<DiffEdit> diffEdits,
+			final Map<DiffEdit, String> normalizedTexts) {
+		List<DiffEdit> lefts = new ArrayList<>();
+		List<DiffEdit> rights = new ArrayList<>();
+
+		for (DiffEdit diffEdit : diffEdits) {
+			if (!diffEdit.isInsertOrDelete()) {
+				throw new AssertionError("Unexpected DiffType: " + diffEdit.getType());
+			}
+
+			if (diffEdit.hasLeftLine()) {
+				lefts.add(diffEdit);
+			} else {
+				rights.add(diffEdit);
+			}
+		}
+
+		if (lefts.isEmpty() || rights.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		// Band hashes for each line (null if the line doesn't have any tokens)
+		long[][] leftBands = this.bandHashes(lefts, normalizedTexts);
+		long[][] rightBands = this.bandHashes(rights, normalizedTexts);
+
+		int lineCount = lefts.size() + rights.size();
+		int maxBucketSize = Math.max(this.maxCandidates, (int) (this.maxBucketFrequency * lineCount));
+
+		Set<BEXPair<DiffEdit>> results = new TreeSet<>(LINE_NUMBER_ORDER);
+
+		int[][] leftCandidates = this.topCandidates(leftBands, rightBands, maxBucketSize);
+		for (int l = 0; l < leftCandidates.length; l++) {
+			for (int r : leftCandidates[l]) {
+				results.add(new BEXPairValue<>(lefts.get(l), rights.get(r)));
+			}
+		}
+
+		int[][] rightCandidates = this.topCandidates(rightBands, leftBands, maxBucketSize);
+		for (int r = 0; r < rightCandidates.length; r++) {
+			for (int l : rightCandidates[r]) {
+				results.add(new BEXPairValue<>(lefts.get(l), rights.get(r)));
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * Computes the MinHash signature of each line and combines the hashes in each band
+	 */
+	private long[][] bandHashes(final List<DiffEdit> diffEdits, final Map<DiffEdit, String> normalizedTexts) {
+		long[][] bandHashes = new long[diffEdits.size()][];
+		long[] signature = new long[this.seeds.length];
+
+		for (int i = 0; i < bandHashes.length; i++) {
+			long[] shingles = shingles(normalizedTexts.get(diffEdits.get(i)));
+
+			if (shingles.length == 0) {
+				continue;
+			}
+
+			Arrays.fill(signature, Long.MAX_VALUE);
+
+			for (long shingle : shingles) {
+				for (int h = 0; h < signature.length; h++) {
+					long hash = mix(shingle ^ this.seeds[h]);
+
+					if (hash < signature[h]) {
+						signature[h] = hash;
+					}
+				}
+			}
+
+			long[] lineBandHashes = new long[this.bands];
+			for (int b = 0; b < this.bands; b++) {
+				long bandHash = b;
+
+				for (int r = 0; r < this.rows; r++) {
+					bandHash = mix(bandHash * 31 + signature[b * this.rows + r]);
+				}
+
+				lineBandHashes[b] = bandHash;
+			}
+
+			bandHashes[i] = lineBandHashes;
+		}
+
+		return bandHashes;
+	}
+
+	/**
+	 * Gets the hash of each pair of consecutive tokens (or the single token, if the text only has one token)
+	 */
+	static long[] shingles(final String text) {
+		List<String> tokens = new ArrayList<>();
+
+		int index = 0;
+		while (index < text.length()) {
+			char c = text.charAt(index);
+
+			if (Character.isWhitespace(c)) {
+				index++;
+				continue;
+			}
+
+			int end = index + 1;
+
+			if (isWordCharacter(c)) {
+				while (end < text.length() && isWordCharacter(text.charAt(end))) {
+					end++;
+				}
+			}
+
+			tokens.add(text.substring(index, end));
+			index = end;
+		}
+
+		if (tokens.size() <= 1) {
+			return tokens.isEmpty() ? new long[0] : new long[] { tokens.get(0).hashCode() };
+		}
+
+		long[] shingles = new long[tokens.size() - 1];
+		for (int i = 0; i < shingles.length; i++) {
+			shingles[i] = (long) tokens.get(i).hashCode() << 32 | tokens.get(i + 1).hashCode() & 0xFFFFFFFFL;
+		}
+
+		return shingles;
+	}
+
+	/**
+	 * Gets the indexes of the top candidates (on the other side) for each line
+	 *
+	 * @param queryBands the band hashes for the lines to find candidates for
+	 * @param targetBands the band hashes for the lines on the other side
+	 * @param maxBucketSize the max number of lines in a bucket (larger buckets are ignored)
+	 * @return the indexes of the top candidates in <code>targetBands</code> for each line in <code>queryBands</code>
+	 */
+	private int[][] topCandidates(final long[][] queryBands, final long[][] targetBands, final int maxBucketSize) {
+		List<Map<Long, List<Integer>>> buckets = new ArrayList<>(this.bands);
+
+		for (int b = 0; b < this.bands; b++) {
+			Map<Long, List<Integer>> bandBuckets = new HashMap<>();
+
+			for (int t = 0; t < targetBands.length; t++) {
+				if (targetBands[t] != null) {
+					bandBuckets.computeIfAbsent(targetBands[t][b], k -> new ArrayList<>()).add(t);
+				}
+			}
+
+			buckets.add(bandBuckets);
+		}
+
+		int[][] candidates = new int[queryBands.length][];
+
+		// Number of bands each target shares with the current query line
+		int[] sharedBands = new int[targetBands.length];
+		// Targets which share a band (so only those counts need to be reset)
+		int[] shared = new int[targetBands.length];
+
+		for (int q = 0; q < queryBands.length; q++) {
+			if (queryBands[q] == null) {
+				candidates[q] = new int[0];
+				continue;
+			}
+
+			int sharedCount = 0;
+
+			for (int b = 0; b < this.bands; b++) {
+				List<Integer> bucket = buckets.get(b).get(queryBands[q][b]);
+
+				if (bucket == null || bucket.size() > maxBucketSize) {
+					continue;
+				}
+
+				for (int t : bucket) {
+					if (sharedBands[t]++ == 0) {
+						shared[sharedCount++] = t;
+					}
+				}
+			}
+
+			// Partial selection sort of the top candidates (most shared bands, then earliest line)
+			int candidateCount = Math.min(this.maxCandidates, sharedCount);
+
+			for (int i = 0; i < candidateCount; i++) {
+				int best = i;
+
+				for (int j = i + 1; j < sharedCount; j++) {
+					int t = shared[j];
+					int bestT = shared[best];
+
+					if (sharedBands[t] > sharedBands[bestT] || sharedBands[t] == sharedBands[bestT] && t < bestT) {
+						best = j;
+					}
+				}
+
+				int swap = shared[i];
+				shared[i] = shared[best];
+				shared[best] = swap;
+			}
+
+			candidates[q] = Arrays.copyOf(shared, candidateCount);
+
+			for (int i = 0; i < sharedCount; i++) {
+				sharedBands[shared[i]] = 0;
+			}
+		}
+
+		return candidates;
+	}
+
+	/**
+	 * 64-bit mixing function (from SplitMix64)
+	 */
+	private static long mix(final long value) {
+		long z = value;
+		z = (z ^ z >>> 30) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ z >>> 27) * 0x94D049BB133111EBL;
+		return z ^ z >>> 31;
+	}
+}
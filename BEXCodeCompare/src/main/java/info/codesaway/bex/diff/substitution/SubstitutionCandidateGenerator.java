@@ -0,0 +1,39 @@
+package info.codesaway.bex.diff.substitution;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import info.codesaway.bex.BEXPair;
+import info.codesaway.bex.diff.DiffEdit;
+
+/**
+ * Determines which left / right pairs of DiffEdit are checked for substitutions
+ *
+ * <p>Checking every left line against every right line is quadratic in the size of the block;
+ * a candidate generator can instead return only the pairs which are likely to be similar.</p>
+ *
+ * @since 0.15
+ */
+@FunctionalInterface
+public interface SubstitutionCandidateGenerator {
+	/**
+	 * Orders the pairs by left line number then right line number
+	 */
+	public static final Comparator<BEXPair<DiffEdit>> LINE_NUMBER_ORDER = Comparator
+			.<BEXPair<DiffEdit>> comparingInt(p -> p.getLeft().getLeftLineNumber())
+			.thenComparingInt(p -> p.getRight().getRightLineNumber());
+
+	/**
+	 * Generates the candidate pairs to check for substitutions
+	 *
+	 * <p>The pairs are checked in iteration order and the first accepted pair for a DiffEdit wins,
+	 * so the pairs should be ordered by left line number then right line number ({@link #LINE_NUMBER_ORDER}) (to give correct results for refactorings that contain state based on the text order)</p>
+	 *
+	 * @param diffEdits list of {@link info.codesaway.bex.diff.BasicDiffType#INSERT INSERT} and {@link info.codesaway.bex.diff.BasicDiffType#DELETE DELETE}
+	 * @param normalizedTexts the normalized text for each DiffEdit
+	 * @return the candidate pairs, where the left is a left DiffEdit and the right is a right DiffEdit
+	 */
+	public Collection<BEXPair<DiffEdit>> generate(List<DiffEdit> diffEdits, Map<DiffEdit, String> normalizedTexts);
+}
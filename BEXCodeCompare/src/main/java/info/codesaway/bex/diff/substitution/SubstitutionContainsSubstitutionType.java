@@ -64,4 +64,9 @@ public final class SubstitutionContainsSubstitutionType implements SubstitutionT
 				? new SubstitutionContainsDiffType(prefix, direction, suffix)
 				: null;
 	}
+
+	@Override
+	public String getCacheId() {
+		return this.getClass().getName();
+	}
 }
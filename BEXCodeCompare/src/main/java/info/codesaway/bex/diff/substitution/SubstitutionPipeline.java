@@ -0,0 +1,344 @@
+package info.codesaway.bex.diff.substitution;
+
+import static info.codesaway.bex.util.BEXUtilities.checkArgument;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import info.codesaway.bex.BEXPair;
+import info.codesaway.bex.diff.DiffEdit;
+import info.codesaway.bex.diff.NormalizationFunction;
+
+/**
+ * Substitution types, built once and reused, which are checked in order for each pair of DiffEdit
+ *
+ * <p>For each pair, the first substitution type which accepts the pair determines the SubstitutionDiffType (the same as passing the substitution types to
+ * {@link info.codesaway.bex.diff.DiffHelper#handleSubstitution(List, NormalizationFunction, SubstitutionType...) DiffHelper.handleSubstitution}).
+ * Substitution types whose {@link SubstitutionType#mightAccept(BEXPair) cheap precondition} fails are skipped.</p>
+ *
+ * <p>Unless created using {@link #withoutStatistics(SubstitutionType...)}, the pipeline records the number of pairs skipped,
+ * checked, and accepted by each substitution type, as well as the time spent checking.
+ * The statistics can be used to tune the order (see {@link #reorderedByCost()}).</p>
+ *
+ * <p>The pipeline is thread-safe if its substitution types are thread-safe.</p>
+ *
+ * @since 0.15
+ */
+public final class SubstitutionPipeline {
+	private final List<SubstitutionType> substitutionTypes;
+	private final List<RefactoringType> refactoringTypes;
+	private final boolean isStateful;
+
+	/**
+	 * Statistics for each substitution type (<code>null</code> if not recording statistics)
+	 */
+	private final List<Counters> counters;
+
+	private SubstitutionPipeline(final List<SubstitutionType> substitutionTypes, final List<Counters> counters) {
+		this.substitutionTypes = Collections.unmodifiableList(new ArrayList<>(substitutionTypes));
+		this.refactoringTypes = Collections.unmodifiableList(substitutionTypes.stream()
+				.filter(RefactoringType.class::isInstance)
+				.map(RefactoringType.class::cast)
+				.collect(Collectors.toList()));
+		this.isStateful = substitutionTypes.stream().anyMatch(SubstitutionType::isStateful);
+		this.counters = counters;
+	}
+
+	/**
+	 * Creates a pipeline which records statistics
+	 *
+	 * @param substitutionTypes the substitution types (in the order they are checked)
+	 * @return the pipeline
+	 */
+	public static SubstitutionPipeline of(final SubstitutionType... substitutionTypes) {
+		return of(Arrays.asList(substitutionTypes));
+	}
+
+	/**
+	 * Creates a pipeline which records statistics
+	 *
+	 * @param substitutionTypes the substitution types (in the order they are checked)
+	 * @return the pipeline
+	 */
+	public static SubstitutionPipeline of(final List<SubstitutionType> substitutionTypes) {
+		List<Counters> counters = new ArrayList<>(substitutionTypes.size());
+		for (int i = 0; i < substitutionTypes.size(); i++) {
+			counters.add(new Counters());
+		}
+
+		return new SubstitutionPipeline(substitutionTypes, counters);
+	}
+
+	/**
+	 * Creates a pipeline which doesn't record statistics
+	 *
+	 * @param substitutionTypes the substitution types (in the order they are checked)
+	 * @return the pipeline
+	 */
+	public static SubstitutionPipeline withoutStatistics(final SubstitutionType... substitutionTypes) {
+		return new SubstitutionPipeline(Arrays.asList(substitutionTypes), null);
+	}
+
+	/**
+	 * Creates a pipeline with different instances of the substitution types, which shares the statistics with this pipeline
+	 *
+	 * <p>Used when stateful substitution types are created for each file, but the statistics should be combined.</p>
+	 *
+	 * @param substitutionTypes the substitution types (in the order they are checked); must be the same number as this pipeline
+	 * @return the pipeline
+	 */
+	public SubstitutionPipeline withSubstitutionTypes(final List<SubstitutionType> substitutionTypes) {
+		checkArgument(substitutionTypes.size() == this.substitutionTypes.size(),
+				"Expected " + this.substitutionTypes.size() + " substitution types: " + substitutionTypes.size());
+
+		return new SubstitutionPipeline(substitutionTypes, this.counters);
+	}
+
+	/**
+	 * Determines if the delete / insert pair is a substitution
+	 *
+	 * @param checkPair the pair of DiffEdit to check
+	 * @param normalizedTexts
+	 * @param normalizationFunction
+	 * @return the SubstitutionDiffType from the first substitution type which accepts the pair or <code>null</code> if none accept the pair
+	 */
+	public SubstitutionDiffType accept(final BEXPair<DiffEdit> checkPair, final Map<DiffEdit, String> normalizedTexts,
+			final NormalizationFunction normalizationFunction) {
+		BEXPair<String> normalizedText = checkPair.map(normalizedTexts::get);
+
+		for (int i = 0; i < this.substitutionTypes.size(); i++) {
+			SubstitutionType substitutionType = this.substitutionTypes.get(i);
+			Counters counters = this.counters != null ? this.counters.get(i) : null;
+
+			if (!substitutionType.mightAccept(normalizedText)) {
+				if (counters != null) {
+					counters.skips.increment();
+				}
+
+				continue;
+			}
+
+			SubstitutionDiffType diffType;
+
+			if (counters != null) {
+				long start = System.nanoTime();
+				diffType = substitutionType.accept(checkPair, normalizedTexts, normalizationFunction);
+				counters.nanos.add(System.nanoTime() - start);
+				counters.checks.increment();
+
+				if (diffType != null) {
+					counters.hits.increment();
+				}
+			} else {
+				diffType = substitutionType.accept(checkPair, normalizedTexts, normalizationFunction);
+			}
+
+			if (diffType != null) {
+				return diffType;
+			}
+		}
+
+		return null;
+	}
+
+	public List<SubstitutionType> getSubstitutionTypes() {
+		return this.substitutionTypes;
+	}
+
+	/**
+	 *
+	 * @return the substitution types which are RefactoringType (in order)
+	 */
+	public List<RefactoringType> getRefactoringTypes() {
+		return this.refactoringTypes;
+	}
+
+	/**
+	 *
+	 * @return <code>true</code> if any of the substitution types is {@link SubstitutionType#isStateful() stateful}
+	 */
+	public boolean isStateful() {
+		return this.isStateful;
+	}
+
+	public boolean isRecordingStatistics() {
+		return this.counters != null;
+	}
+
+	/**
+	 * Gets a snapshot of the statistics for each substitution type (in order)
+	 *
+	 * @return the statistics (empty if not recording statistics)
+	 */
+	public List<Statistics> getStatistics() {
+		if (this.counters == null) {
+			return Collections.emptyList();
+		}
+
+		List<Statistics> statistics = new ArrayList<>(this.substitutionTypes.size());
+		for (int i = 0; i < this.substitutionTypes.size(); i++) {
+			Counters counters = this.counters.get(i);
+			statistics.add(new Statistics(this.substitutionTypes.get(i), counters.skips.sum(),
+					counters.checks.sum(), counters.hits.sum(), counters.nanos.sum()));
+		}
+
+		return statistics;
+	}
+
+	public void resetStatistics() {
+		if (this.counters == null) {
+			return;
+		}
+
+		for (Counters counters : this.counters) {
+			counters.skips.reset();
+			counters.checks.reset();
+			counters.hits.reset();
+			counters.nanos.reset();
+		}
+	}
+
+	/**
+	 * Creates a pipeline with the substitution types ordered by the measured cost per accepted pair (the time spent checking divided by the number of accepted pairs),
+	 * so cheap, selective substitution types are checked first
+	 *
+	 * <p><b>NOTE</b>: if more than one substitution type accepts a pair, the first one determines the SubstitutionDiffType,
+	 * so the result may differ from the original order. Stateful substitution types keep their position, since their state may depend on which pairs they see.</p>
+	 *
+	 * <p>The new pipeline shares the statistics with this pipeline.</p>
+	 *
+	 * @return the reordered pipeline
+	 */
+	public SubstitutionPipeline reorderedByCost() {
+		if (this.counters == null) {
+			return this;
+		}
+
+		List<Integer> movableIndexes = new ArrayList<>();
+		for (int i = 0; i < this.substitutionTypes.size(); i++) {
+			if (!this.substitutionTypes.get(i).isStateful()) {
+				movableIndexes.add(i);
+			}
+		}
+
+		List<Integer> sortedIndexes = new ArrayList<>(movableIndexes);
+		// Stable sort, so substitution types with the same cost keep their order
+		sortedIndexes.sort(Comparator.comparingDouble(i -> this.counters.get(i).costPerHit()));
+
+		List<SubstitutionType> substitutionTypes = new ArrayList<>(this.substitutionTypes);
+		List<Counters> counters = new ArrayList<>(this.counters);
+
+		for (int i = 0; i < movableIndexes.size(); i++) {
+			int index = movableIndexes.get(i);
+			int sortedIndex = sortedIndexes.get(i);
+
+			substitutionTypes.set(index, this.substitutionTypes.get(sortedIndex));
+			counters.set(index, this.counters.get(sortedIndex));
+		}
+
+		return new SubstitutionPipeline(substitutionTypes, counters);
+	}
+
+	private static final class Counters {
+		private final LongAdder skips = new LongAdder();
+		private final LongAdder checks = new LongAdder();
+		private final LongAdder hits = new LongAdder();
+		private final LongAdder nanos = new LongAdder();
+
+		private double costPerHit() {
+			long hits = this.hits.sum();
+
+			if (hits == 0) {
+				// Never accepted a pair, so check last (substitution types which were never checked have no cost)
+				return this.nanos.sum() == 0 ? 0 : Double.POSITIVE_INFINITY;
+			}
+
+			return (double) this.nanos.sum() / hits;
+		}
+	}
+
+	/**
+	 * Snapshot of the statistics for a substitution type
+	 */
+	public static final class Statistics {
+		private final SubstitutionType substitutionType;
+		private final long skips;
+		private final long checks;
+		private final long hits;
+		private final long nanos;
+
+		Statistics(final SubstitutionType substitutionType, final long skips, final long checks, final long hits,
+				final long nanos) {
+			this.substitutionType = substitutionType;
+			this.skips = skips;
+			this.checks = checks;
+			this.hits = hits;
+			this.nanos = nanos;
+		}
+
+		public SubstitutionType getSubstitutionType() {
+			return this.substitutionType;
+		}
+
+		/**
+		 *
+		 * @return the number of pairs skipped, since the precondition failed
+		 */
+		public long getSkips() {
+			return this.skips;
+		}
+
+		/**
+		 *
+		 * @return the number of pairs checked (accept was called)
+		 */
+		public long getChecks() {
+			return this.checks;
+		}
+
+		/**
+		 *
+		 * @return the number of pairs accepted
+		 */
+		public long getHits() {
+			return this.hits;
+		}
+
+		/**
+		 *
+		 * @return the total time checking pairs, in nanoseconds
+		 */
+		public long getNanos() {
+			return this.nanos;
+		}
+
+		/**
+		 *
+		 * @return the fraction of checked pairs which were accepted
+		 */
+		public double getHitRate() {
+			return this.checks != 0 ? (double) this.hits / this.checks : 0;
+		}
+
+		/**
+		 *
+		 * @return the average time checking a pair, in nanoseconds
+		 */
+		public double getAverageNanos() {
+			return this.checks != 0 ? (double) this.nanos / this.checks : 0;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s: skips=%d, checks=%d, hits=%d (%.1f%%), average=%.0f ns",
+					this.substitutionType.getClass().getSimpleName(), this.skips, this.checks, this.hits,
+					this.getHitRate() * 100, this.getAverageNanos());
+		}
+	}
+}
@@ -22,7 +22,47 @@ public interface SubstitutionType {
 	//	SubstitutionDiffType accept(final BEXPair<DiffEdit> checkPair, final Map<DiffEdit, String> normalizedTexts,
 	//			final BiFunction<String, String, DiffNormalizedText> normalizationFunction);
 
+	/**
+	 * Cheap check if {@link #accept(BEXPair, Map, NormalizationFunction)} could accept the pair (used to skip calling accept)
+	 *
+	 * <p>Must only return <code>false</code> if accept would return <code>null</code>.</p>
+	 *
+	 * @param normalizedText the normalized left text and right text
+	 * @return <code>false</code> if the pair is not a substitution of this type; otherwise, <code>true</code>
+	 * @see SubstitutionPipeline
+	 * @since 0.15
+	 */
+	public default boolean mightAccept(final BEXPair<String> normalizedText) {
+		return true;
+	}
+
+	/**
+	 * Indicates if this substitution type keeps state between calls (such as state based on the text order)
+	 *
+	 * <p>Blocks are only checked for substitutions in parallel if none of the substitution types are stateful,
+	 * since the state from an earlier block may affect a later block.</p>
+	 *
+	 * @return <code>true</code> if this substitution type keeps state between calls
+	 * @since 0.15
+	 */
+	public default boolean isStateful() {
+		return false;
+	}
+
+	/**
+	 * Gets the id which identifies this substitution type, including its settings, when caching diffs
+	 *
+	 * <p>Substitution types with the same cache id must find the same substitutions, including across runs
+	 * (so the id shouldn't be based on a lambda's class name or on an identity hash code).</p>
+	 *
+	 * @return the cache id (or <code>null</code> if diffs using this substitution type shouldn't be cached)
+	 * @since 0.15
+	 */
+	public default String getCacheId() {
+		return null;
+	}
+
 	public static final SubstitutionContainsSubstitutionType SUBSTITUTION_CONTAINS = new SubstitutionContainsSubstitutionType();
-	public static final LcsSubstitution LCS_MIN_OPERATOR = new LcsSubstitution(0.66, 150, Math::min);
-	public static final LcsSubstitution LCS_MAX_OPERATOR = new LcsSubstitution(0.66, 150, Math::max);
+	public static final LcsSubstitution LCS_MIN_OPERATOR = new LcsSubstitution(0.66, Math::min);
+	public static final LcsSubstitution LCS_MAX_OPERATOR = new LcsSubstitution(0.66, Math::max);
 }
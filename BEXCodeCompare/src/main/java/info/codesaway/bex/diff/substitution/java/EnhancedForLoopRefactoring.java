@@ -46,6 +46,12 @@ public final class EnhancedForLoopRefactoring implements JavaSubstitution, Refac
 	private final Map<String, State> states = new HashMap<>();
 	private State lastState = null;
 
+	@Override
+	public boolean mightAccept(final BEXPair<String> normalizedText) {
+		// Once a for loop is found, related changes (such as the element) are also accepted
+		return !this.states.isEmpty() || normalizedText.testAndBoth(t -> t.contains("for"));
+	}
+
 	@Override
 	public RefactoringDiffType accept(final BEXPair<DiffEdit> checkPair,
 			final Map<DiffEdit, String> normalizedTexts,
@@ -109,6 +115,19 @@ public final class EnhancedForLoopRefactoring implements JavaSubstitution, Refac
 		return null;
 	}
 
+	/**
+	 * @return always <code>true</code>, since the for loops found are used to find the related changes
+	 */
+	@Override
+	public boolean isStateful() {
+		return true;
+	}
+
+	@Override
+	public String getCacheId() {
+		return this.getClass().getName();
+	}
+
 	@Override
 	public RefactoringDiffType acceptSingleSide(final BEXSide side, final DiffEdit diffEdit,
 			final Map<DiffEdit, String> normalizedTexts,
@@ -15,6 +15,22 @@ public final class ImportSameClassnameDiffType implements SubstitutionDiffType {
 		this.isMove = isMove;
 	}
 
+	/**
+	 * @return the class name
+	 * @since 0.15
+	 */
+	public String getClassName() {
+		return this.className;
+	}
+
+	/**
+	 * @return the package of the import on each side
+	 * @since 0.15
+	 */
+	public BEXPair<String> getImportPackage() {
+		return this.importPackage;
+	}
+
 	@Override
 	public char getSymbol() {
 		return 'i';
@@ -9,6 +9,11 @@ import info.codesaway.bex.diff.NormalizationFunction;
 import info.codesaway.bex.diff.substitution.SubstitutionDiffType;
 
 public final class ImportSameClassnameDifferentPackage implements JavaSubstitution {
+	@Override
+	public boolean mightAccept(final BEXPair<String> normalizedText) {
+		return normalizedText.testAndBoth(t -> t.contains("import"));
+	}
+
 	@Override
 	public SubstitutionDiffType accept(final BEXPair<DiffEdit> checkPair,
 			final Map<DiffEdit, String> normalizedTexts,
@@ -16,4 +21,9 @@ public final class ImportSameClassnameDifferentPackage implements JavaSubstituti
 
 		return DiffHelper.determineImportSameClassnameDiffType(checkPair.map(normalizedTexts::get), false);
 	}
+
+	@Override
+	public String getCacheId() {
+		return this.getClass().getName();
+	}
 }
@@ -26,6 +26,11 @@ public final class JavaCastSubstitution implements JavaSubstitution {
 					+ ") "
 					+ "(?<tail>.*+)"));
 
+	@Override
+	public boolean mightAccept(final BEXPair<String> normalizedText) {
+		return normalizedText.testOrBoth(t -> t.indexOf('(') != -1 && t.indexOf('=') != -1);
+	}
+
 	@Override
 	public RefactoringDiffType accept(final BEXPair<DiffEdit> checkPair,
 			final Map<DiffEdit, String> normalizedTexts,
@@ -60,4 +65,9 @@ public final class JavaCastSubstitution implements JavaSubstitution {
 						? new RefactoringDiffTypeValue('R', side, "cast", type, true)
 						: null;
 	}
+
+	@Override
+	public String getCacheId() {
+		return this.getClass().getName();
+	}
 }
@@ -21,6 +21,11 @@ public final class JavaDiamondOperatorSubstitution implements JavaSubstitution {
 					+ "(?<type>" + TYPE_PART_REGEX + "(?: , " + TYPE_PART_REGEX + ")*+)"
 					+ "(?<tail>>\\()"));
 
+	@Override
+	public boolean mightAccept(final BEXPair<String> normalizedText) {
+		return normalizedText.testOrBoth(t -> t.contains("new") && t.indexOf('<') != -1);
+	}
+
 	@Override
 	public RefactoringDiffType accept(final BEXPair<DiffEdit> checkPair,
 			final Map<DiffEdit, String> normalizedTexts,
@@ -46,4 +51,9 @@ public final class JavaDiamondOperatorSubstitution implements JavaSubstitution {
 				? new RefactoringDiffTypeValue('R', side, "diamond operator", type, true)
 				: null;
 	}
+
+	@Override
+	public String getCacheId() {
+		return this.getClass().getName();
+	}
 }
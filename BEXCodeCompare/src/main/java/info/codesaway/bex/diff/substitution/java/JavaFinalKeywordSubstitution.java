@@ -19,6 +19,12 @@ public final class JavaFinalKeywordSubstitution implements JavaSubstitution {
 	private static final ThreadLocal<Matcher> FINAL_KEYWORD_MATCHER = getThreadLocalMatcher(
 			"\\bfinal\\s");
 
+	@Override
+	public boolean mightAccept(final BEXPair<String> normalizedText) {
+		// Without the final keyword, the texts are only a match if they are equal
+		return normalizedText.testOrBoth(t -> t.contains("final")) || normalizedText.test(String::equals);
+	}
+
 	@Override
 	public RefactoringDiffType accept(final BEXPair<DiffEdit> checkPair,
 			final Map<DiffEdit, String> normalizedTexts,
@@ -35,4 +41,9 @@ public final class JavaFinalKeywordSubstitution implements JavaSubstitution {
 				? new RefactoringDiffTypeValue('R', side, "final keyword", null, true)
 				: null;
 	}
+
+	@Override
+	public String getCacheId() {
+		return this.getClass().getName();
+	}
 }
@@ -10,6 +10,11 @@ import info.codesaway.bex.diff.substitution.RefactoringDiffType;
 import info.codesaway.bex.diff.substitution.RefactoringDiffTypeValue;
 
 public final class JavaSemicolonSubstitution implements JavaSubstitution {
+	@Override
+	public boolean mightAccept(final BEXPair<String> normalizedText) {
+		return normalizedText.testOrBoth(t -> t.indexOf(';') != -1);
+	}
+
 	@Override
 	public RefactoringDiffType accept(final BEXPair<DiffEdit> checkPair,
 			final Map<DiffEdit, String> normalizedTexts,
@@ -31,4 +36,9 @@ public final class JavaSemicolonSubstitution implements JavaSubstitution {
 
 		return null;
 	}
+
+	@Override
+	public String getCacheId() {
+		return this.getClass().getName();
+	}
 }
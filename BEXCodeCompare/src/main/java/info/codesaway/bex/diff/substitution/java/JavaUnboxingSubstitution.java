@@ -17,6 +17,11 @@ public final class JavaUnboxingSubstitution implements JavaSubstitution {
 	private static final ThreadLocal<Matcher> UNBOXING_MATCHER = getThreadLocalMatcher(enhanceRegexWhitespace(
 			"\\.(?<type>boolean|byte|char|double|float|int|long|short)Value\\(\\)"));
 
+	@Override
+	public boolean mightAccept(final BEXPair<String> normalizedText) {
+		return normalizedText.testOrBoth(t -> t.contains("Value("));
+	}
+
 	@Override
 	public RefactoringDiffType accept(final BEXPair<DiffEdit> checkPair,
 			final Map<DiffEdit, String> normalizedTexts,
@@ -41,4 +46,9 @@ public final class JavaUnboxingSubstitution implements JavaSubstitution {
 				? new RefactoringDiffTypeValue('R', side, "unboxing", type, true)
 				: null;
 	}
+
+	@Override
+	public String getCacheId() {
+		return this.getClass().getName();
+	}
 }
@@ -0,0 +1,221 @@
+package info.codesaway.bex.diff.token;
+
+import static info.codesaway.bex.IntBEXRange.closedOpen;
+import static info.codesaway.bex.parsing.BEXParsingUtilities.isWordCharacter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Function;
+
+import info.codesaway.bex.BEXListPair;
+import info.codesaway.bex.ImmutableIntRangeMap;
+import info.codesaway.bex.IntBEXRange;
+import info.codesaway.bex.IntRange;
+import info.codesaway.bex.diff.BasicDiffType;
+import info.codesaway.bex.diff.DiffEdit;
+import info.codesaway.bex.diff.DiffLine;
+import info.codesaway.bex.diff.InternedLines;
+import info.codesaway.bex.diff.myers.MyersLinearDiff;
+import info.codesaway.bex.diff.patience.PatienceDiff;
+import info.codesaway.bex.parsing.BEXParsingLanguage;
+import info.codesaway.bex.parsing.ParsingLanguage;
+import info.codesaway.bex.parsing.ParsingState;
+
+/**
+ * Token-level (intra-line) diff, which determines the characters which changed between a left line and a right line
+ *
+ * <p>Each line is split into tokens using the parsing language:</p>
+ * <ul>
+ * <li>String literals and comments are a single token (so a change inside is highlighted as a change to the entire literal / comment)</li>
+ * <li>Words (letters, digits, and underscores) are a single token</li>
+ * <li>Every other character (such as an operator or bracket) is its own token</li>
+ * <li>Whitespace separates tokens, but isn't a token itself (whitespace only changes are not highlighted)</li>
+ * </ul>
+ *
+ * <p>Each token is interned to an int id and the token ids are diffed using {@link PatienceDiff} (with {@link MyersLinearDiff} as the fallback),
+ * the same diff algorithms used to diff lines. This is near-linear in the length of the lines (versus computing the LCS of the characters).</p>
+ *
+ * @since 0.15
+ */
+public final class TokenDiff {
+	private TokenDiff() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Determines the characters which changed between the left line and right line of the DiffEdit (as Java code)
+	 *
+	 * @param diffEdit the DiffEdit (such as a substitution)
+	 * @return the ranges of changed characters in the left text (left) and the right text (right)
+	 */
+	public static BEXListPair<IntBEXRange> diff(final DiffEdit diffEdit) {
+		return diff(diffEdit.getLeftText(), diffEdit.getRightText());
+	}
+
+	/**
+	 * Determines the characters which changed between the left text and right text (as Java code)
+	 *
+	 * @param leftText the left text
+	 * @param rightText the right text
+	 * @return the ranges of changed characters in the left text (left) and the right text (right)
+	 */
+	public static BEXListPair<IntBEXRange> diff(final String leftText, final String rightText) {
+		return diff(leftText, rightText, BEXParsingLanguage.JAVA);
+	}
+
+	/**
+	 * Determines the characters which changed between the left text and right text
+	 *
+	 * @param leftText the left text
+	 * @param rightText the right text
+	 * @param language the parsing language used to determine string literals and comments
+	 * @return the ranges of changed characters in the left text (left) and the right text (right)
+	 */
+	public static BEXListPair<IntBEXRange> diff(final String leftText, final String rightText,
+			final ParsingLanguage language) {
+		return diff(leftText, rightText, language, PatienceDiff::diff);
+	}
+
+	/**
+	 * Determines the characters which changed between the left text and right text
+	 *
+	 * @param leftText the left text
+	 * @param rightText the right text
+	 * @param language the parsing language used to determine string literals and comments
+	 * @param diffAlgorithm the diff algorithm used to diff the tokens (such as <code>PatienceDiff::diff</code>)
+	 * @return the ranges of changed characters in the left text (left) and the right text (right)
+	 */
+	public static BEXListPair<IntBEXRange> diff(final String leftText, final String rightText,
+			final ParsingLanguage language, final Function<InternedLines, List<DiffEdit>> diffAlgorithm) {
+		List<IntBEXRange> leftTokens = tokenize(leftText, language);
+		List<IntBEXRange> rightTokens = tokenize(rightText, language);
+
+		// Map from token text to its id
+		Map<String, Integer> ids = new HashMap<>();
+		List<DiffLine> leftLines = new ArrayList<>(leftTokens.size());
+		List<DiffLine> rightLines = new ArrayList<>(rightTokens.size());
+
+		int[] leftIds = intern(leftText, leftTokens, ids, leftLines);
+		int[] rightIds = intern(rightText, rightTokens, ids, rightLines);
+
+		InternedLines internedLines = InternedLines.of(leftLines, rightLines, null, leftIds, rightIds, ids.size());
+		List<DiffEdit> diff = diffAlgorithm.apply(internedLines);
+
+		List<IntBEXRange> leftChanges = new ArrayList<>();
+		List<IntBEXRange> rightChanges = new ArrayList<>();
+
+		for (DiffEdit diffEdit : diff) {
+			if (diffEdit.getType() == BasicDiffType.EQUAL) {
+				continue;
+			}
+
+			// Line number is the token's position plus 1
+			if (diffEdit.hasLeftLine()) {
+				addChange(leftChanges, leftText, leftTokens.get(diffEdit.getLeftLineNumber() - 1));
+			}
+
+			if (diffEdit.hasRightLine()) {
+				addChange(rightChanges, rightText, rightTokens.get(diffEdit.getRightLineNumber() - 1));
+			}
+		}
+
+		return new BEXListPair<>(leftChanges, rightChanges);
+	}
+
+	/**
+	 * Splits the text into tokens
+	 *
+	 * @param text the text
+	 * @param language the parsing language used to determine string literals and comments
+	 * @return the range of each token (in order)
+	 */
+	public static List<IntBEXRange> tokenize(final String text, final ParsingLanguage language) {
+		ImmutableIntRangeMap<ParsingState> textStateMap = language.parse(text);
+		List<IntBEXRange> tokens = new ArrayList<>();
+
+		int index = 0;
+		while (index < text.length()) {
+			Entry<IntRange, ParsingState> entry = textStateMap.getEntry(index);
+
+			if (entry != null && (entry.getValue().isStringLiteral() || entry.getValue().isComment())) {
+				// Keep string literals and comments whole
+				int end = Math.min(entry.getKey().getCanonicalEnd(), text.length());
+				tokens.add(closedOpen(index, end));
+				index = end;
+				continue;
+			}
+
+			char c = text.charAt(index);
+
+			if (Character.isWhitespace(c)) {
+				index++;
+				continue;
+			}
+
+			int end = index + 1;
+
+			if (isWordCharacter(c)) {
+				while (end < text.length() && isWordCharacter(text.charAt(end))) {
+					end++;
+				}
+			}
+
+			tokens.add(closedOpen(index, end));
+			index = end;
+		}
+
+		return tokens;
+	}
+
+	private static int[] intern(final String text, final List<IntBEXRange> tokens, final Map<String, Integer> ids,
+			final List<DiffLine> lines) {
+		int[] tokenIds = new int[tokens.size()];
+
+		for (int i = 0; i < tokenIds.length; i++) {
+			IntBEXRange token = tokens.get(i);
+			String tokenText = text.substring(token.getStart(), token.getEnd());
+
+			Integer id = ids.get(tokenText);
+
+			if (id == null) {
+				id = ids.size();
+				ids.put(tokenText, id);
+			}
+
+			tokenIds[i] = id;
+			lines.add(new DiffLine(i + 1, tokenText));
+		}
+
+		return tokenIds;
+	}
+
+	/**
+	 * Adds the changed token, combining it with the previous change if only whitespace is between them
+	 */
+	private static void addChange(final List<IntBEXRange> changes, final String text, final IntBEXRange token) {
+		if (!changes.isEmpty()) {
+			int lastIndex = changes.size() - 1;
+			IntBEXRange lastChange = changes.get(lastIndex);
+
+			if (isWhitespace(text, lastChange.getEnd(), token.getStart())) {
+				changes.set(lastIndex, closedOpen(lastChange.getStart(), token.getEnd()));
+				return;
+			}
+		}
+
+		changes.add(token);
+	}
+
+	private static boolean isWhitespace(final String text, final int start, final int end) {
+		for (int i = start; i < end; i++) {
+			if (!Character.isWhitespace(text.charAt(i))) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+}
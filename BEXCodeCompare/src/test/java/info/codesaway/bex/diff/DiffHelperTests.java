@@ -5,6 +5,7 @@ import static info.codesaway.bex.BEXPairs.bexPair;
 import static info.codesaway.bex.BEXSide.LEFT;
 import static info.codesaway.bex.BEXSide.RIGHT;
 import static info.codesaway.bex.IntBEXRange.closed;
+import static info.codesaway.bex.IntBEXRange.closedOpen;
 import static info.codesaway.bex.diff.BasicDiffType.DELETE;
 import static info.codesaway.bex.diff.BasicDiffType.EQUAL;
 import static info.codesaway.bex.diff.BasicDiffType.INSERT;
@@ -21,12 +22,17 @@ import static info.codesaway.bex.diff.substitution.SubstitutionType.LCS_MIN_OPER
 import static info.codesaway.bex.util.BEXUtilities.index;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.BiFunction;
 
 import org.junit.jupiter.api.Test;
@@ -37,15 +43,19 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Streams;
 import com.google.common.primitives.ImmutableIntArray;
 
+import info.codesaway.bex.BEXListPair;
 import info.codesaway.bex.BEXPair;
 import info.codesaway.bex.IntBEXPair;
 import info.codesaway.bex.IntRange;
+import info.codesaway.bex.diff.histogram.HistogramDiff;
 import info.codesaway.bex.diff.myers.MyersLinearDiff;
 import info.codesaway.bex.diff.patience.PatienceDiff;
 import info.codesaway.bex.diff.patience.PatienceMatch;
+import info.codesaway.bex.diff.substitution.RefactoringDiffTypeValue;
 import info.codesaway.bex.diff.substitution.SubstitutionDiffType;
 import info.codesaway.bex.diff.substitution.SubstitutionDiffTypeValue;
 import info.codesaway.bex.diff.substitution.SubstitutionType;
+import info.codesaway.bex.diff.substitution.java.JavaSemicolonSubstitution;
 
 class DiffHelperTests {
 
@@ -108,6 +118,303 @@ class DiffHelperTests {
 		assertEquals(expected, diff);
 	}
 
+	@Test
+	public void testParallelMyersLinearDiff() {
+		Random random = new Random(1);
+		List<DiffLine> leftLines = new ArrayList<>();
+		List<DiffLine> rightLines = new ArrayList<>();
+
+		for (int i = 1; i <= 500; i++) {
+			leftLines.add(new DiffLine(i, "line " + random.nextInt(50)));
+			rightLines.add(new DiffLine(i, "line " + random.nextInt(50)));
+		}
+
+		// Use a small threshold, so many boxes are diffed in parallel
+		List<DiffEdit> diff = MyersLinearDiff.diff(leftLines, rightLines, null, 4, 8);
+
+		List<DiffEdit> expected = MyersLinearDiff.diff(leftLines, rightLines);
+
+		assertEquals(expected, diff);
+
+		// After the pools are shut down, a new pool is created
+		MyersLinearDiff.shutdownForkJoinPools();
+		assertEquals(expected, MyersLinearDiff.diff(leftLines, rightLines, null, 4, 8));
+	}
+
+	@Test
+	public void testInternedMyersLinearDiff() {
+		List<DiffLine> leftLines = ImmutableList.of(new DiffLine(0, "a"), new DiffLine(1, "b"), new DiffLine(2, "c"));
+		List<DiffLine> rightLines = ImmutableList.of(new DiffLine(0, "c"), new DiffLine(1, "b"), new DiffLine(2, "a"));
+		List<DiffEdit> diff = MyersLinearDiff.diff(InternedLines.intern(leftLines, rightLines, null));
+
+		List<DiffEdit> expected = MyersLinearDiff.diff(leftLines, rightLines);
+
+		assertEquals(expected, diff);
+	}
+
+	@Test
+	public void testInternedPatienceDiff() {
+		List<DiffLine> leftLines = ImmutableList.of(new DiffLine(1, "class A {"), new DiffLine(2, "\tint a;"),
+				new DiffLine(3, "}"), new DiffLine(4, ""), new DiffLine(5, "class B {"), new DiffLine(6, "}"),
+				new DiffLine(7, "}"));
+		List<DiffLine> rightLines = ImmutableList.of(new DiffLine(1, "class A  {"), new DiffLine(2, "}"),
+				new DiffLine(3, "class B {"), new DiffLine(4, "    int a;"), new DiffLine(5, "}"),
+				new DiffLine(6, "}"), new DiffLine(7, "}"));
+
+		NormalizationFunction normalizationFunction = NormalizationFunction.WHITESPACE_NORMALIZATION;
+
+		List<DiffEdit> diff = PatienceDiff.diff(InternedLines.intern(leftLines, rightLines, normalizationFunction));
+
+		List<DiffEdit> expected = PatienceDiff.diff(leftLines, rightLines, normalizationFunction,
+				MyersLinearDiff.with(normalizationFunction));
+
+		assertEquals(expected, diff);
+	}
+
+	@Test
+	public void testHistogramDiff() {
+		List<DiffLine> leftLines = ImmutableList.of(new DiffLine(0, "a"), new DiffLine(1, "b"), new DiffLine(2, "c"));
+		List<DiffLine> rightLines = ImmutableList.of(new DiffLine(0, "c"), new DiffLine(1, "b"), new DiffLine(2, "a"));
+		List<DiffEdit> diff = HistogramDiff.diff(leftLines, rightLines);
+
+		List<DiffEdit> expected = ImmutableList.of(
+				new DiffEdit(DELETE, leftLines.get(0), null),
+				new DiffEdit(DELETE, leftLines.get(1), null),
+				new DiffEdit(EQUAL, leftLines.get(2), rightLines.get(0)),
+				new DiffEdit(INSERT, null, rightLines.get(1)),
+				new DiffEdit(INSERT, null, rightLines.get(2)));
+
+		assertEquals(expected, diff);
+	}
+
+	@Test
+	public void testHistogramDiffRepeatedLines() {
+		// No unique lines, but "b" occurs less often than "}", so is used as the anchor
+		List<DiffLine> leftLines = ImmutableList.of(new DiffLine(1, "a"), new DiffLine(2, "}"), new DiffLine(3, "b"),
+				new DiffLine(4, "}"), new DiffLine(5, "a"), new DiffLine(6, "}"));
+		List<DiffLine> rightLines = ImmutableList.of(new DiffLine(1, "c"), new DiffLine(2, "b"), new DiffLine(3, "}"),
+				new DiffLine(4, "c"), new DiffLine(5, "b"), new DiffLine(6, "}"));
+		List<DiffEdit> diff = HistogramDiff.diff(leftLines, rightLines);
+
+		List<DiffEdit> expected = ImmutableList.of(
+				new DiffEdit(DELETE, leftLines.get(0), null),
+				new DiffEdit(DELETE, leftLines.get(1), null),
+				new DiffEdit(INSERT, null, rightLines.get(0)),
+				new DiffEdit(EQUAL, leftLines.get(2), rightLines.get(1)),
+				new DiffEdit(EQUAL, leftLines.get(3), rightLines.get(2)),
+				new DiffEdit(DELETE, leftLines.get(4), null),
+				new DiffEdit(INSERT, null, rightLines.get(3)),
+				new DiffEdit(INSERT, null, rightLines.get(4)),
+				new DiffEdit(EQUAL, leftLines.get(5), rightLines.get(5)));
+
+		assertEquals(expected, diff);
+	}
+
+	@Test
+	public void testHistogramDiffUsesFallbackWhenTooManyOccurrences() {
+		List<DiffLine> leftLines = new ArrayList<>();
+		List<DiffLine> rightLines = new ArrayList<>();
+
+		rightLines.add(new DiffLine(1, "y"));
+		for (int i = 1; i <= HistogramDiff.MAX_CHAIN_LENGTH + 1; i++) {
+			leftLines.add(new DiffLine(i, "}"));
+			rightLines.add(new DiffLine(i + 1, "}"));
+		}
+		leftLines.add(new DiffLine(leftLines.size() + 1, "x"));
+
+		List<DiffEdit> diff = HistogramDiff.diff(leftLines, rightLines);
+
+		List<DiffEdit> expected = MyersLinearDiff.diff(leftLines, rightLines);
+
+		assertEquals(expected, diff);
+	}
+
+	@Test
+	public void testInternedHistogramDiff() {
+		List<DiffLine> leftLines = ImmutableList.of(new DiffLine(1, "class A {"), new DiffLine(2, "\tint a;"),
+				new DiffLine(3, "}"), new DiffLine(4, ""), new DiffLine(5, "class B {"), new DiffLine(6, "}"),
+				new DiffLine(7, "}"));
+		List<DiffLine> rightLines = ImmutableList.of(new DiffLine(1, "class A  {"), new DiffLine(2, "}"),
+				new DiffLine(3, "class B {"), new DiffLine(4, "    int a;"), new DiffLine(5, "}"),
+				new DiffLine(6, "}"), new DiffLine(7, "}"));
+
+		NormalizationFunction normalizationFunction = NormalizationFunction.WHITESPACE_NORMALIZATION;
+
+		List<DiffEdit> diff = HistogramDiff.diff(InternedLines.intern(leftLines, rightLines, normalizationFunction));
+
+		List<DiffEdit> expected = HistogramDiff.diff(leftLines, rightLines, normalizationFunction);
+
+		assertEquals(expected, diff);
+		assertThat(diff).filteredOn(d -> d.getType() == NORMALIZE).hasSize(2);
+	}
+
+	@Test
+	public void testPatienceDiffHistogramFallback() {
+		List<DiffLine> leftLines = ImmutableList.of(new DiffLine(1, "class A {"), new DiffLine(2, "\tint a;"),
+				new DiffLine(3, "}"), new DiffLine(4, ""), new DiffLine(5, "class B {"), new DiffLine(6, "}"),
+				new DiffLine(7, "}"));
+		List<DiffLine> rightLines = ImmutableList.of(new DiffLine(1, "class A  {"), new DiffLine(2, "}"),
+				new DiffLine(3, "class B {"), new DiffLine(4, "    int a;"), new DiffLine(5, "}"),
+				new DiffLine(6, "}"), new DiffLine(7, "}"));
+
+		NormalizationFunction normalizationFunction = NormalizationFunction.WHITESPACE_NORMALIZATION;
+
+		List<DiffEdit> diff = PatienceDiff.diff(leftLines, rightLines, normalizationFunction,
+				HistogramDiff.with(normalizationFunction));
+
+		List<DiffEdit> expected = PatienceDiff.diff(InternedLines.intern(leftLines, rightLines, normalizationFunction),
+				HistogramDiff::diff);
+
+		assertEquals(expected, diff);
+	}
+
+	@Test
+	public void testPatienceDiffTrimCommonLines() {
+		List<DiffLine> leftLines = ImmutableList.of(new DiffLine(1, "a"), new DiffLine(2, "b"), new DiffLine(3, "c"),
+				new DiffLine(4, "d"), new DiffLine(5, "e"));
+		List<DiffLine> rightLines = ImmutableList.of(new DiffLine(1, "a"), new DiffLine(2, " b"), new DiffLine(3, "x"),
+				new DiffLine(4, "d"), new DiffLine(5, "e"));
+
+		NormalizationFunction normalizationFunction = NormalizationFunction.WHITESPACE_NORMALIZATION;
+
+		List<DiffEdit> diff = PatienceDiff.diff(leftLines, rightLines, normalizationFunction,
+				MyersLinearDiff.with(normalizationFunction), true);
+
+		List<DiffEdit> expected = ImmutableList.of(
+				new DiffEdit(EQUAL, leftLines.get(0), rightLines.get(0)),
+				new DiffEdit(NORMALIZE, leftLines.get(1), rightLines.get(1)),
+				new DiffEdit(INSERT, null, rightLines.get(2)),
+				new DiffEdit(DELETE, leftLines.get(2), null),
+				new DiffEdit(EQUAL, leftLines.get(3), rightLines.get(3)),
+				new DiffEdit(EQUAL, leftLines.get(4), rightLines.get(4)));
+
+		assertEquals(expected, diff);
+
+		List<DiffEdit> internedDiff = PatienceDiff.diff(
+				InternedLines.intern(leftLines, rightLines, normalizationFunction), MyersLinearDiff::diff, true);
+
+		assertEquals(expected, internedDiff);
+	}
+
+	@Test
+	public void testMyersLinearDiffTrimCommonLinesIdenticalText() {
+		List<DiffLine> leftLines = ImmutableList.of(new DiffLine(1, "a"), new DiffLine(2, "b"));
+		List<DiffLine> rightLines = ImmutableList.of(new DiffLine(1, "a"), new DiffLine(2, "b"), new DiffLine(3, "b"));
+
+		List<DiffEdit> diff = MyersLinearDiff.diff(leftLines, rightLines, null, true);
+
+		List<DiffEdit> expected = ImmutableList.of(
+				new DiffEdit(EQUAL, leftLines.get(0), rightLines.get(0)),
+				new DiffEdit(EQUAL, leftLines.get(1), rightLines.get(1)),
+				new DiffEdit(INSERT, null, rightLines.get(2)));
+
+		assertEquals(expected, diff);
+	}
+
+	@Test
+	public void testMyersLinearDiffBudgetExhausted() {
+		List<DiffLine> leftLines = ImmutableList.of(new DiffLine(1, "a"), new DiffLine(2, "b"), new DiffLine(3, "c"));
+		List<DiffLine> rightLines = ImmutableList.of(new DiffLine(1, "c"), new DiffLine(2, "b"), new DiffLine(3, "a"));
+
+		DiffBudget budget = DiffBudget.ofCost(0);
+		List<DiffEdit> diff = MyersLinearDiff.diff(leftLines, rightLines, null, budget);
+
+		// Budget ran out, so diff is coarser (but still valid)
+		List<DiffEdit> expected = ImmutableList.of(
+				new DiffEdit(DELETE, leftLines.get(0), null),
+				new DiffEdit(DELETE, leftLines.get(1), null),
+				new DiffEdit(DELETE, leftLines.get(2), null),
+				new DiffEdit(INSERT, null, rightLines.get(0)),
+				new DiffEdit(INSERT, null, rightLines.get(1)),
+				new DiffEdit(INSERT, null, rightLines.get(2)));
+
+		assertEquals(expected, diff);
+		assertTrue(budget.isExhausted());
+	}
+
+	@Test
+	public void testMyersLinearDiffBudgetExhaustedKeepsAlignment() {
+		List<DiffLine> leftLines = new ArrayList<>();
+		List<DiffLine> rightLines = new ArrayList<>();
+
+		for (int i = 1; i <= 10_000; i++) {
+			leftLines.add(new DiffLine(i, "line " + i));
+			// Change every 50th line
+			rightLines.add(new DiffLine(i, i % 50 == 0 ? "changed " + i : "line " + i));
+		}
+
+		DiffBudget budget = DiffBudget.ofCost(10);
+		List<DiffEdit> diff = MyersLinearDiff.diff(leftLines, rightLines, null, budget);
+
+		// Budget ran out, but the box is split at the furthest reaching point, so the matching lines are still aligned
+		assertTrue(budget.isExhausted());
+		assertThat(diff.stream().filter(d -> d.getType() == EQUAL).count()).isGreaterThan(9_000);
+		assertEquals(leftLines.size(), diff.stream().filter(DiffEdit::hasLeftLine).count());
+		assertEquals(rightLines.size(), diff.stream().filter(DiffEdit::hasRightLine).count());
+	}
+
+	@Test
+	public void testMyersLinearDiffBudgetNotExhausted() {
+		List<DiffLine> leftLines = ImmutableList.of(new DiffLine(1, "a"), new DiffLine(2, "b"), new DiffLine(3, "c"));
+		List<DiffLine> rightLines = ImmutableList.of(new DiffLine(1, "c"), new DiffLine(2, "b"), new DiffLine(3, "a"));
+
+		DiffBudget budget = DiffBudget.of(DiffBudget.UNLIMITED_COST, Duration.ofMinutes(1));
+		List<DiffEdit> diff = MyersLinearDiff.diff(leftLines, rightLines, null, budget);
+
+		assertEquals(MyersLinearDiff.diff(leftLines, rightLines), diff);
+		assertFalse(budget.isExhausted());
+	}
+
+	@Test
+	public void testRediff() {
+		List<DiffLine> leftLines = ImmutableList.of(new DiffLine(1, "a"), new DiffLine(2, "b"), new DiffLine(3, "c"),
+				new DiffLine(4, "d"), new DiffLine(5, "e"));
+		List<DiffLine> rightLines = ImmutableList.of(new DiffLine(1, "a"), new DiffLine(2, "b"), new DiffLine(3, "c"),
+				new DiffLine(4, "d"), new DiffLine(5, "e"));
+
+		List<DiffEdit> diff = new ArrayList<>(PatienceDiff.diff(leftLines, rightLines, MyersLinearDiff::diff));
+
+		// Replace right line 3 with 2 lines
+		List<DiffLine> newRightLines = ImmutableList.of(rightLines.get(0), rightLines.get(1), new DiffLine(3, "x"),
+				new DiffLine(4, "y"), new DiffLine(5, "d"), new DiffLine(6, "e"));
+
+		IntRange rediffRange = DiffHelper.rediff(diff, new BEXListPair<>(leftLines, newRightLines), RIGHT,
+				closedOpen(3, 4), MyersLinearDiff::diff);
+
+		assertEquals(PatienceDiff.diff(leftLines, newRightLines, MyersLinearDiff::diff), diff);
+		assertEquals(closedOpen(2, 5), rediffRange);
+	}
+
+	@Test
+	public void testHandleSubstitutionParallel() {
+		Random random = new Random(1);
+		List<DiffLine> leftLines = new ArrayList<>();
+		List<DiffLine> rightLines = new ArrayList<>();
+
+		for (int i = 1; i <= 1000; i++) {
+			String text = "String value" + random.nextInt(200) + " = getValue();";
+
+			// Change some lines, so there are many blocks separated by equal lines
+			leftLines.add(new DiffLine(i, text));
+			rightLines.add(new DiffLine(i, random.nextInt(4) == 0 ? text.replace("()", "(true)") : text));
+		}
+
+		List<DiffEdit> expected = new ArrayList<>(PatienceDiff.diff(leftLines, rightLines, MyersLinearDiff::diff));
+		List<DiffEdit> diff = new ArrayList<>(expected);
+
+		handleSubstitution(expected, NormalizationFunction.NO_NORMALIZATION, LCS_MIN_OPERATOR);
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			DiffHelper.handleSubstitutionParallel(diff, NormalizationFunction.NO_NORMALIZATION,
+					DiffHelper.DEFAULT_SUBSTITUTION_CANDIDATE_GENERATOR, executor, LCS_MIN_OPERATOR);
+		} finally {
+			executor.shutdown();
+		}
+
+		assertEquals(expected, diff);
+	}
+
 	@Test
 	public void testPatienceHandleMovedLines() {
 		// TODO: not really a unit test since tests diff and handleMovedLines
@@ -126,6 +433,28 @@ class DiffHelperTests {
 		assertEquals(expected, diff);
 	}
 
+	@Test
+	public void testHandleMovedLinesWithRefactoring() {
+		DiffLine leftLine = new DiffLine(1, "first();;");
+		DiffLine rightLine = new DiffLine(2, "first();");
+
+		List<DiffEdit> diff = new ArrayList<>();
+		diff.add(new DiffEdit(DELETE, leftLine, null));
+		diff.add(new DiffEdit(EQUAL, new DiffLine(2, "second();"), new DiffLine(1, "second();")));
+		diff.add(new DiffEdit(INSERT, null, rightLine));
+
+		DiffHelper.handleMovedLines(diff, NormalizationFunction.NO_NORMALIZATION,
+				DiffHelper.ALL_PAIRS_SUBSTITUTION_CANDIDATE_GENERATOR, new JavaSemicolonSubstitution());
+
+		// Each side has its own DiffEdit (like MOVE_LEFT and MOVE_RIGHT), which keeps the refactoring type
+		RefactoringDiffTypeValue moveType = new RefactoringDiffTypeValue(';', RIGHT, "double semicolon", null, true,
+				true);
+
+		assertEquals(new DiffEdit(moveType, leftLine, rightLine), diff.get(0));
+		assertEquals(new DiffEdit(moveType, leftLine, rightLine), diff.get(2));
+		assertThat(diff.get(0)).isNotSameAs(diff.get(2));
+	}
+
 	@Test
 	public void testCombineToDiffBlocks() {
 		List<DiffLine> leftLines = ImmutableList.of(new DiffLine(0, "a"), new DiffLine(1, "b"), new DiffLine(2, "c"));
@@ -289,6 +618,28 @@ class DiffHelperTests {
 		assertThat(diff).hasSize(5);
 	}
 
+	@Test
+	public void testHistogramDiffNullNormalizationBiFunction() {
+		BiFunction<String, String, DiffNormalizedText> normalizationFunction = null;
+
+		List<DiffLine> leftLines = ImmutableList.of(new DiffLine(0, "a"), new DiffLine(1, "b"), new DiffLine(2, "c"));
+		List<DiffLine> rightLines = ImmutableList.of(new DiffLine(0, "c"), new DiffLine(1, "b"), new DiffLine(2, "a"));
+
+		List<DiffEdit> diff = HistogramDiff.diff(leftLines, rightLines, normalizationFunction);
+		assertThat(diff).hasSize(5);
+	}
+
+	@Test
+	public void testHistogramDiffNullNormalizationFunction() {
+		NormalizationFunction normalizationFunction = null;
+
+		List<DiffLine> leftLines = ImmutableList.of(new DiffLine(0, "a"), new DiffLine(1, "b"), new DiffLine(2, "c"));
+		List<DiffLine> rightLines = ImmutableList.of(new DiffLine(0, "c"), new DiffLine(1, "b"), new DiffLine(2, "a"));
+
+		List<DiffEdit> diff = HistogramDiff.diff(leftLines, rightLines, normalizationFunction);
+		assertThat(diff).hasSize(5);
+	}
+
 	/**
 	 * @see DiffHelper#normalize(DiffEdit, BiFunction)
 	 */
@@ -582,4 +933,39 @@ class DiffHelperTests {
 
 		assertThat(diffUnits.get(0).getType()).isEqualTo(NORMALIZE);
 	}
+
+	/**
+	 * @see DiffHelper#normalizeWhitespace(String)
+	 */
+	@Test
+	public void testNormalizeWhitespace() {
+		assertThat(DiffHelper.normalizeWhitespace("  int  x = ( a + b );\t")).isEqualTo("int x=(a+b);");
+		assertThat(DiffHelper.normalizeWhitespace("return\t\tvalue;")).isEqualTo("return value;");
+		assertThat(DiffHelper.normalizeWhitespace(" \t ")).isEmpty();
+
+		String normalizedText = "int x=(a+b);";
+		assertThat(DiffHelper.normalizeWhitespace(normalizedText)).isSameAs(normalizedText);
+	}
+
+	/**
+	 * @see DiffHelper#normalizeWhitespace(String)
+	 * @see DiffHelper#normalizeWhitespaceUsingRegex(String, String)
+	 */
+	@Test
+	public void testNormalizeWhitespaceSameAsRegex() {
+		String characters = "ab_1 \t\n\r\f\u000B\u0001(){};.=+\"'\u00e9\u0301\u03a9\u00a0\u2003";
+		Random random = new Random(1);
+
+		for (int i = 0; i < 10_000; i++) {
+			StringBuilder text = new StringBuilder();
+			int length = random.nextInt(20);
+
+			for (int j = 0; j < length; j++) {
+				text.append(characters.charAt(random.nextInt(characters.length())));
+			}
+
+			String expected = DiffHelper.normalizeWhitespaceUsingRegex(text.toString(), "").getLeft();
+			assertThat(DiffHelper.normalizeWhitespace(text.toString())).as("'%s'", text).isEqualTo(expected);
+		}
+	}
 }
@@ -0,0 +1,110 @@
+package info.codesaway.bex.diff;
+
+import static info.codesaway.bex.diff.NormalizationFunction.WHITESPACE_NORMALIZATION;
+import static info.codesaway.bex.diff.NormalizationFunction.normalization;
+import static info.codesaway.bex.diff.substitution.SubstitutionType.LCS_MIN_OPERATOR;
+import static info.codesaway.bex.util.BEXUtilities.index;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import info.codesaway.bex.BEXSide;
+import info.codesaway.bex.diff.myers.MyersLinearDiff;
+import info.codesaway.bex.diff.patience.PatienceDiff;
+
+class NormalizedLinesTests {
+	private static final List<DiffLine> LEFT_LINES = ImmutableList.of(new DiffLine(1, "class A {"),
+			new DiffLine(2, "\tint a;"), new DiffLine(3, "\tint b = 1;"), new DiffLine(4, "}"), new DiffLine(5, ""),
+			new DiffLine(6, "class B {"), new DiffLine(7, "}"));
+
+	private static final List<DiffLine> RIGHT_LINES = ImmutableList.of(new DiffLine(1, "class A  {"),
+			new DiffLine(2, "\tlong b = 1;"), new DiffLine(3, "}"), new DiffLine(4, "class B {"),
+			new DiffLine(5, "    int a;"), new DiffLine(6, "}"));
+
+	@Test
+	void testEachLineNormalizedOnce() {
+		AtomicInteger count = new AtomicInteger();
+		NormalizationFunction countingNormalization = normalization((l, r) -> {
+			count.incrementAndGet();
+			return DiffHelper.WHITESPACE_NORMALIZATION_FUNCTION.apply(l, r);
+		});
+
+		NormalizedLines normalizedLines = NormalizedLines.of(LEFT_LINES, RIGHT_LINES, countingNormalization);
+
+		List<DiffEdit> diff = this.diff(normalizedLines);
+
+		// Each line is normalized at most once (plus the blank text once per side)
+		assertThat(count.get()).isLessThanOrEqualTo(LEFT_LINES.size() + RIGHT_LINES.size() + 2);
+
+		// Same result as normalizing each time
+		assertThat(toString(diff)).isEqualTo(toString(this.diff(WHITESPACE_NORMALIZATION)));
+	}
+
+	@Test
+	void testDiffAlgorithmHoldsNormalizedLines() {
+		NormalizedLines normalizedLines = NormalizedLines.of(LEFT_LINES, RIGHT_LINES, WHITESPACE_NORMALIZATION);
+
+		AbstractDiffAlgorithm diffAlgorithm = new AbstractDiffAlgorithm(LEFT_LINES, RIGHT_LINES, normalizedLines) {
+			@Override
+			protected List<DiffEdit> diff() {
+				return new ArrayList<>();
+			}
+		};
+
+		assertThat(diffAlgorithm.getNormalizedLines()).isSameAs(normalizedLines);
+		assertThat(diffAlgorithm.isNormalizedEqualLine(0, 0)).isTrue();
+	}
+
+	@Test
+	void testOtherText() {
+		NormalizedLines normalizedLines = NormalizedLines.of(LEFT_LINES, RIGHT_LINES, WHITESPACE_NORMALIZATION);
+
+		assertThat(normalizedLines.getNormalizedText(BEXSide.RIGHT, RIGHT_LINES.get(0))).isEqualTo("class A{");
+
+		// Same line number, but different text, so isn't the cached line
+		assertThat(normalizedLines.getNormalizedText(BEXSide.RIGHT, new DiffLine(1, "  other  text "))).isEqualTo(
+				"other text");
+
+		assertThat(normalizedLines.getNormalizedText(BEXSide.LEFT, index(-1, ""))).isEmpty();
+	}
+
+	@Test
+	void testNonConsecutiveLineNumbers() {
+		List<DiffLine> leftLines = ImmutableList.of(new DiffLine(10, " a "), new DiffLine(20, " b "));
+		NormalizedLines normalizedLines = NormalizedLines.of(leftLines, new ArrayList<>(),
+				WHITESPACE_NORMALIZATION);
+
+		assertThat(normalizedLines.getNormalizedText(BEXSide.LEFT, leftLines.get(1))).isEqualTo("b");
+		assertThat(DiffHelper.normalize(BEXSide.LEFT, leftLines.get(0), normalizedLines)).isEqualTo("a");
+	}
+
+	private List<DiffEdit> diff(final NormalizationFunction normalizationFunction) {
+		List<DiffEdit> diff = new ArrayList<>(PatienceDiff.diff(LEFT_LINES, RIGHT_LINES, normalizationFunction,
+				MyersLinearDiff.with(normalizationFunction)));
+
+		DiffHelper.handleSubstitution(diff, normalizationFunction, LCS_MIN_OPERATOR);
+		DiffHelper.handleMovedLines(diff, normalizationFunction);
+
+		List<DiffUnit> diffBlocks = DiffHelper.combineToDiffBlocks(diff, true);
+		DiffHelper.handleSplitLines(diffBlocks, normalizationFunction);
+		DiffHelper.handleBlankLines(diffBlocks, normalizationFunction);
+
+		return diff;
+	}
+
+	private static String toString(final List<DiffEdit> diff) {
+		StringBuilder result = new StringBuilder();
+
+		for (DiffEdit diffEdit : diff) {
+			result.append(diffEdit.toString(true)).append('\n');
+		}
+
+		return result.toString();
+	}
+}
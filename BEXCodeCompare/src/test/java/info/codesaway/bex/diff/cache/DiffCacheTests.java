@@ -0,0 +1,244 @@
+package info.codesaway.bex.diff.cache;
+
+import static info.codesaway.bex.diff.NormalizationFunction.WHITESPACE_NORMALIZATION;
+import static info.codesaway.bex.diff.substitution.SubstitutionType.LCS_MIN_OPERATOR;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.common.collect.ImmutableList;
+
+import info.codesaway.bex.diff.BasicDiffType;
+import info.codesaway.bex.diff.DiffBlock;
+import info.codesaway.bex.diff.DiffEdit;
+import info.codesaway.bex.diff.DiffHelper;
+import info.codesaway.bex.diff.DiffLine;
+import info.codesaway.bex.diff.DiffUnit;
+import info.codesaway.bex.diff.myers.MyersLinearDiff;
+import info.codesaway.bex.diff.patience.PatienceDiff;
+import info.codesaway.bex.diff.substitution.java.JavaSemicolonSubstitution;
+
+class DiffCacheTests {
+	@TempDir
+	Path directory;
+
+	private static final List<DiffLine> LEFT_LINES = ImmutableList.of(new DiffLine(1, "class A {"),
+			new DiffLine(2, "\tint a;;"), new DiffLine(3, "\tint b = 1;"), new DiffLine(4, "}"), new DiffLine(5, ""),
+			new DiffLine(6, "class B {"), new DiffLine(7, "}"));
+
+	private static final List<DiffLine> RIGHT_LINES = ImmutableList.of(new DiffLine(1, "class A  {"),
+			new DiffLine(2, "\tint a;"), new DiffLine(3, "\tlong b = 1;"), new DiffLine(4, "}"),
+			new DiffLine(5, "class B {"), new DiffLine(6, "    int c;"), new DiffLine(7, "}"));
+
+	@Test
+	void testRoundTrip() throws IOException {
+		List<DiffEdit> diff = diff();
+		List<DiffUnit> diffBlocks = DiffHelper.combineToDiffBlocks(diff, true);
+
+		DiffCacheKey key = key(LEFT_LINES, RIGHT_LINES);
+
+		try (DiffCache diffCache = this.open(1_000_000)) {
+			assertThat(diffCache.get(key, LEFT_LINES, RIGHT_LINES)).isNull();
+			assertThat(diffCache.put(key, diff, diffBlocks, LEFT_LINES, RIGHT_LINES)).isTrue();
+
+			// Already cached
+			assertThat(diffCache.put(key, diff, diffBlocks, LEFT_LINES, RIGHT_LINES)).isFalse();
+
+			CachedDiff cachedDiff = diffCache.get(key, LEFT_LINES, RIGHT_LINES);
+
+			assertThat(cachedDiff).isNotNull();
+			assertSameDiff(cachedDiff, diff, diffBlocks);
+
+			DiffCache.Statistics statistics = diffCache.getStatistics();
+			assertThat(statistics.getHits()).isEqualTo(1);
+			assertThat(statistics.getMisses()).isEqualTo(1);
+			assertThat(statistics.getPuts()).isEqualTo(1);
+			assertThat(statistics.getEntries()).isEqualTo(1);
+		}
+
+		// Persisted when reopened
+		try (DiffCache diffCache = this.open(1_000_000)) {
+			CachedDiff cachedDiff = diffCache.get(key, LEFT_LINES, RIGHT_LINES);
+
+			assertThat(cachedDiff).isNotNull();
+			assertSameDiff(cachedDiff, diff, diffBlocks);
+		}
+	}
+
+	@Test
+	void testKeyIncludesContentAndIds() {
+		DiffCacheKey key = key(LEFT_LINES, RIGHT_LINES);
+
+		assertThat(key(LEFT_LINES, RIGHT_LINES)).isEqualTo(key);
+		assertThat(key(RIGHT_LINES, LEFT_LINES)).isNotEqualTo(key);
+		assertThat(DiffCacheKey.of(LEFT_LINES, RIGHT_LINES, "other", "test")).isNotEqualTo(key);
+		assertThat(DiffCacheKey.of(LEFT_LINES, RIGHT_LINES, "whitespace", "other")).isNotEqualTo(key);
+
+		List<DiffLine> changedLines = new ArrayList<>(LEFT_LINES);
+		changedLines.set(0, new DiffLine(1, "class C {"));
+		assertThat(key(changedLines, RIGHT_LINES)).isNotEqualTo(key);
+	}
+
+	@Test
+	void testUncacheable() throws IOException {
+		List<DiffEdit> diff = new ArrayList<>();
+		// Line isn't one of the compared lines
+		diff.add(new DiffEdit(BasicDiffType.DELETE, new DiffLine(1, "class A {"), null));
+
+		try (DiffCache diffCache = this.open(1_000_000)) {
+			assertThat(diffCache.put(key(LEFT_LINES, RIGHT_LINES), diff, new ArrayList<>(diff), LEFT_LINES,
+					RIGHT_LINES)).isFalse();
+			assertThat(diffCache.getStatistics().getUncacheable()).isEqualTo(1);
+		}
+	}
+
+	@Test
+	void testTooLargeForCompactedSize() throws IOException {
+		List<DiffEdit> diff = diff();
+		List<DiffUnit> diffBlocks = DiffHelper.combineToDiffBlocks(diff, true);
+
+		long emptySize;
+		long size;
+		try (DiffCache diffCache = this.open(1_000_000)) {
+			emptySize = diffCache.getStatistics().getSize();
+			diffCache.put(key(LEFT_LINES, RIGHT_LINES), diff, diffBlocks, LEFT_LINES, RIGHT_LINES);
+			size = diffCache.getStatistics().getSize();
+		}
+
+		Files.delete(this.directory.resolve("diff.cache"));
+
+		// Record fits in the max size, but not in the 3/4 kept when compacting
+		try (DiffCache diffCache = this.open(size)) {
+			assertThat(diffCache.put(key(LEFT_LINES, RIGHT_LINES), diff, diffBlocks, LEFT_LINES, RIGHT_LINES))
+					.isFalse();
+
+			DiffCache.Statistics statistics = diffCache.getStatistics();
+			assertThat(statistics.getUncacheable()).isEqualTo(1);
+			assertThat(statistics.getEntries()).isZero();
+			assertThat(statistics.getSize()).isEqualTo(emptySize);
+		}
+	}
+
+	@Test
+	void testEvictsLeastRecentlyUsed() throws IOException {
+		List<DiffEdit> diff = diff();
+		List<DiffUnit> diffBlocks = DiffHelper.combineToDiffBlocks(diff, true);
+
+		try (DiffCache diffCache = this.open(400)) {
+			List<DiffCacheKey> keys = new ArrayList<>();
+
+			for (int i = 0; i < 10; i++) {
+				DiffCacheKey key = DiffCacheKey.of(LEFT_LINES, RIGHT_LINES, "whitespace", String.valueOf(i));
+				keys.add(key);
+				diffCache.put(key, diff, diffBlocks, LEFT_LINES, RIGHT_LINES);
+
+				// Keep the first diff recently used
+				diffCache.get(keys.get(0), LEFT_LINES, RIGHT_LINES);
+			}
+
+			DiffCache.Statistics statistics = diffCache.getStatistics();
+			assertThat(statistics.getSize()).isLessThanOrEqualTo(400);
+			assertThat(statistics.getEvictions()).isPositive();
+			assertThat(statistics.getEntries() + statistics.getEvictions()).isEqualTo(10);
+
+			assertThat(diffCache.get(keys.get(0), LEFT_LINES, RIGHT_LINES)).isNotNull();
+			assertThat(diffCache.get(keys.get(9), LEFT_LINES, RIGHT_LINES)).isNotNull();
+			assertThat(diffCache.get(keys.get(1), LEFT_LINES, RIGHT_LINES)).isNull();
+		}
+	}
+
+	@Test
+	void testIncompleteRecordRemoved() throws IOException {
+		List<DiffEdit> diff = diff();
+		List<DiffUnit> diffBlocks = DiffHelper.combineToDiffBlocks(diff, true);
+		DiffCacheKey firstKey = DiffCacheKey.of(LEFT_LINES, RIGHT_LINES, "whitespace", "1");
+		DiffCacheKey secondKey = DiffCacheKey.of(LEFT_LINES, RIGHT_LINES, "whitespace", "2");
+
+		long size;
+		try (DiffCache diffCache = this.open(1_000_000)) {
+			diffCache.put(firstKey, diff, diffBlocks, LEFT_LINES, RIGHT_LINES);
+			diffCache.put(secondKey, diff, diffBlocks, LEFT_LINES, RIGHT_LINES);
+			size = diffCache.getStatistics().getSize();
+		}
+
+		// Simulate the process being killed while writing the second record
+		try (FileChannel channel = FileChannel.open(this.directory.resolve("diff.cache"),
+				StandardOpenOption.WRITE)) {
+			channel.truncate(size - 1);
+		}
+
+		try (DiffCache diffCache = this.open(1_000_000)) {
+			assertThat(diffCache.getStatistics().getEntries()).isEqualTo(1);
+			assertThat(diffCache.get(firstKey, LEFT_LINES, RIGHT_LINES)).isNotNull();
+			assertThat(diffCache.get(secondKey, LEFT_LINES, RIGHT_LINES)).isNull();
+		}
+	}
+
+	@Test
+	void testAlreadyOpen() throws IOException {
+		try (DiffCache diffCache = this.open(1_000_000)) {
+			assertThatThrownBy(() -> this.open(1_000_000)).isInstanceOf(IOException.class);
+		}
+	}
+
+	private DiffCache open(final long maxSize) throws IOException {
+		return DiffCache.open(this.directory.resolve("diff.cache"), maxSize);
+	}
+
+	private static DiffCacheKey key(final List<DiffLine> leftLines, final List<DiffLine> rightLines) {
+		return DiffCacheKey.of(leftLines, rightLines, "whitespace", "test");
+	}
+
+	private static List<DiffEdit> diff() {
+		List<DiffEdit> diff = new ArrayList<>(PatienceDiff.diff(LEFT_LINES, RIGHT_LINES, WHITESPACE_NORMALIZATION,
+				MyersLinearDiff.with(WHITESPACE_NORMALIZATION)));
+
+		DiffHelper.handleSubstitution(diff, WHITESPACE_NORMALIZATION, new JavaSemicolonSubstitution(),
+				LCS_MIN_OPERATOR);
+		DiffHelper.handleMovedLines(diff, WHITESPACE_NORMALIZATION);
+
+		return diff;
+	}
+
+	private static void assertSameDiff(final CachedDiff cachedDiff, final List<DiffEdit> diff,
+			final List<DiffUnit> diffBlocks) {
+		assertThat(cachedDiff.getDiff()).hasSameSizeAs(diff);
+
+		for (int i = 0; i < diff.size(); i++) {
+			DiffEdit expected = diff.get(i);
+			DiffEdit actual = cachedDiff.getDiff().get(i);
+
+			assertThat(actual.toString(true)).isEqualTo(expected.toString(true));
+			// Refers to the same lines
+			assertThat(actual.getLeftLine().orElse(null)).isSameAs(expected.getLeftLine().orElse(null));
+			assertThat(actual.getRightLine().orElse(null)).isSameAs(expected.getRightLine().orElse(null));
+			assertThat(actual.getType().getClass()).isEqualTo(expected.getType().getClass());
+		}
+
+		assertThat(cachedDiff.getDiffBlocks()).hasSameSizeAs(diffBlocks);
+
+		for (int i = 0; i < diffBlocks.size(); i++) {
+			DiffUnit expected = diffBlocks.get(i);
+			DiffUnit actual = cachedDiff.getDiffBlocks().get(i);
+
+			assertThat(actual.getClass()).isEqualTo(expected.getClass());
+			assertThat(actual.getType().toString()).isEqualTo(expected.getType().toString());
+			assertThat(actual.getEdits()).hasSameSizeAs(expected.getEdits());
+
+			if (actual instanceof DiffBlock) {
+				// Edits are the same instances as in the diff
+				assertThat(cachedDiff.getDiff()).contains(actual.getEdits().get(0));
+			}
+		}
+	}
+}
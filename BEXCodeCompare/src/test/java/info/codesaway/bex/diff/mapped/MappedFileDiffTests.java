@@ -0,0 +1,97 @@
+package info.codesaway.bex.diff.mapped;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import info.codesaway.bex.diff.BasicDiffType;
+import info.codesaway.bex.diff.DiffEdit;
+import info.codesaway.bex.diff.DiffLine;
+import info.codesaway.bex.diff.myers.MyersLinearDiff;
+import info.codesaway.bex.diff.patience.PatienceDiff;
+
+class MappedFileDiffTests {
+	@TempDir
+	Path directory;
+
+	@Test
+	void testMapSplitsLines() throws IOException {
+		Path file = this.write("file.txt", "a\r\nb\nc\rd\n");
+
+		MappedFileLines lines = MappedFileLines.map(file, UTF_8);
+
+		assertThat(lines.getLineCount()).isEqualTo(5);
+		assertThat(lines.getText(0)).isEqualTo("a");
+		assertThat(lines.getText(1)).isEqualTo("b");
+		assertThat(lines.getText(2)).isEqualTo("c");
+		assertThat(lines.getText(3)).isEqualTo("d");
+		assertThat(lines.getText(4)).isEmpty();
+	}
+
+	@Test
+	void testMapEmptyFile() throws IOException {
+		Path file = this.write("empty.txt", "");
+
+		MappedFileLines lines = MappedFileLines.map(file, UTF_8);
+
+		assertThat(lines.getLineCount()).isEqualTo(1);
+		assertThat(lines.getText(0)).isEmpty();
+	}
+
+	@Test
+	void testDiffOnlyIncludesChanges() throws IOException {
+		String leftText = "class A {\n\tint a;\n\tint b;\n}\n\nclass B {\n}\n";
+		String rightText = "class A {\n\tint a;\n\tint c;\n}\n\nclass B {\n\tint b;\n}\n";
+
+		Path left = this.write("left.txt", leftText);
+		Path right = this.write("right.txt", rightText);
+
+		List<DiffEdit> diff = MappedFileDiff.diff(left, right, UTF_8, PatienceDiff::diff);
+
+		List<DiffEdit> expected = PatienceDiff.diff(splitLines(leftText), splitLines(rightText),
+				MyersLinearDiff::diff)
+				.stream()
+				.filter(d -> d.getType() != BasicDiffType.EQUAL)
+				.collect(Collectors.toList());
+
+		assertThat(toStrings(diff)).isNotEmpty().isEqualTo(toStrings(expected));
+	}
+
+	@Test
+	void testDiffIdenticalFiles() throws IOException {
+		Path left = this.write("left.txt", "a\nb\n");
+		Path right = this.write("right.txt", "a\nb\n");
+
+		assertThat(MappedFileDiff.diff(left, right)).isEmpty();
+	}
+
+	private Path write(final String filename, final String text) throws IOException {
+		return Files.write(this.directory.resolve(filename), text.getBytes(UTF_8));
+	}
+
+	private static List<DiffLine> splitLines(final String text) {
+		String[] textLines = text.split("\r?\n|\r", -1);
+		List<DiffLine> lines = new ArrayList<>(textLines.length);
+
+		for (int i = 0; i < textLines.length; i++) {
+			lines.add(new DiffLine(i + 1, textLines[i]));
+		}
+
+		return lines;
+	}
+
+	private static List<String> toStrings(final List<DiffEdit> diff) {
+		return diff.stream()
+				.map(DiffEdit::toString)
+				.collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,100 @@
+package info.codesaway.bex.diff.substitution;
+
+import static info.codesaway.bex.BEXPairs.bexPair;
+import static info.codesaway.bex.diff.BasicDiffType.DELETE;
+import static info.codesaway.bex.diff.BasicDiffType.INSERT;
+import static info.codesaway.bex.diff.BasicDiffType.SUBSTITUTE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import info.codesaway.bex.diff.DiffEdit;
+import info.codesaway.bex.diff.DiffLine;
+
+class BitParallelLcsTests {
+	@Test
+	void testLcsLength() {
+		assertThat(BitParallelLcs.lcsLength("ABCBDAB", "BDCABA")).isEqualTo(4);
+	}
+
+	@Test
+	void testLcsLengthEmpty() {
+		assertThat(BitParallelLcs.lcsLength("", "abc")).isZero();
+		assertThat(BitParallelLcs.lcsLength("abc", "")).isZero();
+	}
+
+	@Test
+	void testLcsLengthNonAscii() {
+		assertThat(BitParallelLcs.lcsLength("café über", "über café")).isEqualTo(4);
+	}
+
+	@Test
+	void testLcsLengthMatchesDynamicProgramming() {
+		Random random = new Random(0);
+		// Include lengths around the 64 bit word boundaries
+		int[] lengths = { 1, 5, 63, 64, 65, 127, 128, 129, 200, 500 };
+
+		for (int leftLength : lengths) {
+			for (int rightLength : lengths) {
+				String left = randomText(random, leftLength);
+				String right = randomText(random, rightLength);
+
+				assertThat(BitParallelLcs.lcsLength(left, right))
+						.as("%s vs %s", left, right)
+						.isEqualTo(dynamicProgrammingLcsLength(left, right));
+			}
+		}
+	}
+
+	@Test
+	void testLcsSubstitutionLongLine() {
+		// Lines longer than 150 characters were previously never considered substitutions
+		StringBuilder left = new StringBuilder("String sql = \"SELECT ");
+		StringBuilder right = new StringBuilder("String sql = \"SELECT ");
+
+		for (int i = 0; i < 50; i++) {
+			left.append("COLUMN_").append(i).append(", ");
+			right.append("COLUMN_").append(i).append(i % 10 == 0 ? "_NEW, " : ", ");
+		}
+
+		DiffEdit leftEdit = new DiffEdit(DELETE, new DiffLine(1, left.toString()), null);
+		DiffEdit rightEdit = new DiffEdit(INSERT, null, new DiffLine(1, right.toString()));
+
+		Map<DiffEdit, String> normalizedTexts = new HashMap<>();
+		normalizedTexts.put(leftEdit, leftEdit.getLeftText());
+		normalizedTexts.put(rightEdit, rightEdit.getRightText());
+
+		assertThat(left.length()).isGreaterThan(150);
+		assertThat(SubstitutionType.LCS_MAX_OPERATOR.accept(bexPair(leftEdit, rightEdit), normalizedTexts, null))
+				.isEqualTo(SUBSTITUTE);
+	}
+
+	private static String randomText(final Random random, final int length) {
+		StringBuilder text = new StringBuilder(length);
+
+		for (int i = 0; i < length; i++) {
+			// Small alphabet, so there are lots of matches
+			text.append((char) ('a' + random.nextInt(4)));
+		}
+
+		return text.toString();
+	}
+
+	private static int dynamicProgrammingLcsLength(final String left, final String right) {
+		int[][] table = new int[left.length() + 1][right.length() + 1];
+
+		for (int i = 1; i <= left.length(); i++) {
+			for (int j = 1; j <= right.length(); j++) {
+				table[i][j] = left.charAt(i - 1) == right.charAt(j - 1)
+						? table[i - 1][j - 1] + 1
+						: Math.max(table[i - 1][j], table[i][j - 1]);
+			}
+		}
+
+		return table[left.length()][right.length()];
+	}
+}
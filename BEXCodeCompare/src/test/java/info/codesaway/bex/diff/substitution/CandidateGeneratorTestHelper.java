@@ -0,0 +1,42 @@
+package info.codesaway.bex.diff.substitution;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import info.codesaway.bex.diff.DiffEdit;
+
+public final class CandidateGeneratorTestHelper {
+	private CandidateGeneratorTestHelper() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Gets the text of a left line, which is similar to the right line with the same number
+	 *
+	 * <p>The line number is part of the words, so each line pair shares words which no other line has</p>
+	 */
+	static String leftText(final int i) {
+		return "String name" + i + " = customer" + i + ".getName(locale, DEFAULT_NAME_FORMAT);";
+	}
+
+	/**
+	 * Gets the text of a right line, which is similar to the left line with the same number
+	 */
+	static String rightText(final int i) {
+		return "String name" + i + " = customer" + i + ".getName(locale, NAME_FORMAT);";
+	}
+
+	/**
+	 * Uses the text of each DiffEdit as its normalized text
+	 */
+	static Map<DiffEdit, String> normalizedTexts(final List<DiffEdit> diffEdits) {
+		Map<DiffEdit, String> normalizedTexts = new HashMap<>();
+
+		for (DiffEdit diffEdit : diffEdits) {
+			normalizedTexts.put(diffEdit, diffEdit.getText());
+		}
+
+		return normalizedTexts;
+	}
+}
@@ -0,0 +1,116 @@
+package info.codesaway.bex.diff.substitution;
+
+import static info.codesaway.bex.diff.BasicDiffType.DELETE;
+import static info.codesaway.bex.diff.BasicDiffType.INSERT;
+import static info.codesaway.bex.diff.BasicDiffType.SUBSTITUTE;
+import static info.codesaway.bex.diff.DiffHelper.handleSubstitution;
+import static info.codesaway.bex.diff.NormalizationFunction.NO_NORMALIZATION;
+import static info.codesaway.bex.diff.substitution.CandidateGeneratorTestHelper.leftText;
+import static info.codesaway.bex.diff.substitution.CandidateGeneratorTestHelper.normalizedTexts;
+import static info.codesaway.bex.diff.substitution.CandidateGeneratorTestHelper.rightText;
+import static info.codesaway.bex.diff.substitution.SubstitutionType.LCS_MIN_OPERATOR;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import info.codesaway.bex.BEXPair;
+import info.codesaway.bex.diff.DiffEdit;
+import info.codesaway.bex.diff.DiffHelper;
+import info.codesaway.bex.diff.DiffLine;
+
+class InvertedIndexCandidateGeneratorTests {
+	@Test
+	void testCandidatesShareRareWords() {
+		int lineCount = 200;
+		List<DiffEdit> diffEdits = new ArrayList<>();
+
+		for (int i = 1; i <= lineCount; i++) {
+			diffEdits.add(new DiffEdit(DELETE, new DiffLine(i, leftText(i)), null));
+		}
+
+		for (int i = 1; i <= lineCount; i++) {
+			diffEdits.add(new DiffEdit(INSERT, null, new DiffLine(i, rightText(i))));
+		}
+
+		Collection<BEXPair<DiffEdit>> candidates = new InvertedIndexCandidateGenerator()
+				.generate(diffEdits, normalizedTexts(diffEdits));
+
+		// Only the words unique to a line pair are indexed, so each line has a single candidate
+		assertThat(candidates).hasSize(lineCount);
+
+		int expectedLineNumber = 1;
+		for (BEXPair<DiffEdit> candidate : candidates) {
+			assertThat(candidate.getLeft().getLeftLineNumber()).isEqualTo(expectedLineNumber);
+			assertThat(candidate.getRight().getRightLineNumber()).isEqualTo(expectedLineNumber);
+			expectedLineNumber++;
+		}
+	}
+
+	@Test
+	void testMaxCandidates() {
+		List<DiffEdit> diffEdits = new ArrayList<>();
+
+		for (int i = 1; i <= 5; i++) {
+			diffEdits.add(new DiffEdit(DELETE, new DiffLine(i, "rare(" + i + ");"), null));
+			diffEdits.add(new DiffEdit(INSERT, null, new DiffLine(i, "rare(" + i + ");")));
+		}
+
+		diffEdits.add(new DiffEdit(INSERT, null, new DiffLine(6, "other();")));
+
+		Collection<BEXPair<DiffEdit>> candidates = new InvertedIndexCandidateGenerator(1, 1)
+				.generate(diffEdits, normalizedTexts(diffEdits));
+
+		// Each line only keeps its best candidate (instead of every line sharing the word "rare")
+		// The last right line doesn't share any words, so uses the left line nearest the same relative position
+		assertThat(candidates)
+				.extracting(p -> p.getLeft().getLeftLineNumber() + ":" + p.getRight().getRightLineNumber())
+				.containsExactly("1:1", "2:2", "3:3", "4:4", "5:5", "5:6");
+	}
+
+	@Test
+	void testLinesWithoutWords() {
+		List<DiffEdit> diffEdits = new ArrayList<>();
+
+		for (int i = 1; i <= 20; i++) {
+			diffEdits.add(new DiffEdit(DELETE, new DiffLine(i, "}"), null));
+			diffEdits.add(new DiffEdit(INSERT, null, new DiffLine(i, "};")));
+		}
+
+		Collection<BEXPair<DiffEdit>> candidates = new InvertedIndexCandidateGenerator(3)
+				.generate(diffEdits, normalizedTexts(diffEdits));
+
+		// Uses the lines nearest the same relative position
+		assertThat(candidates).allSatisfy(p -> assertThat(
+				Math.abs(p.getLeft().getLeftLineNumber() - p.getRight().getRightLineNumber())).isLessThanOrEqualTo(2));
+	}
+
+	@Test
+	void testHandleSubstitutionLargeBlock() {
+		// More pairs than checked by default, so uses the inverted index
+		int lineCount = 500;
+		assertThat(lineCount * lineCount).isGreaterThan(DiffHelper.MAX_ALL_PAIRS_SUBSTITUTION_CANDIDATES);
+
+		List<DiffEdit> diff = new ArrayList<>();
+
+		for (int i = 1; i <= lineCount; i++) {
+			diff.add(new DiffEdit(DELETE, new DiffLine(i, leftText(i)), null));
+		}
+
+		for (int i = 1; i <= lineCount; i++) {
+			diff.add(new DiffEdit(INSERT, null, new DiffLine(i, rightText(i))));
+		}
+
+		handleSubstitution(diff, NO_NORMALIZATION, new InvertedIndexCandidateGenerator(5), LCS_MIN_OPERATOR);
+
+		assertThat(diff).hasSize(lineCount);
+
+		for (DiffEdit diffEdit : diff) {
+			assertThat(diffEdit.getType()).isEqualTo(SUBSTITUTE);
+			assertThat(diffEdit.getLeftLineNumber()).isEqualTo(diffEdit.getRightLineNumber());
+		}
+	}
+}
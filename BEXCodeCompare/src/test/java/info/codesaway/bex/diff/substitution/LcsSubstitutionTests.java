@@ -0,0 +1,108 @@
+package info.codesaway.bex.diff.substitution;
+
+import static info.codesaway.bex.BEXPairs.bexPair;
+import static info.codesaway.bex.diff.BasicDiffType.DELETE;
+import static info.codesaway.bex.diff.BasicDiffType.INSERT;
+import static info.codesaway.bex.diff.BasicDiffType.SUBSTITUTE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import info.codesaway.bex.diff.DiffEdit;
+import info.codesaway.bex.diff.DiffLine;
+
+class LcsSubstitutionTests {
+	@Test
+	void testBoundsAreUpperBounds() {
+		Random random = new Random(0);
+
+		for (int i = 0; i < 2000; i++) {
+			String left = randomText(random, random.nextInt(80));
+			String right = randomText(random, random.nextInt(80));
+
+			int lcsLength = BitParallelLcs.lcsLength(left, right);
+
+			assertThat(LcsBounds.characterHistogramBound(left, right))
+					.as("%s vs %s", left, right)
+					.isGreaterThanOrEqualTo(lcsLength);
+
+			assertThat(LcsBounds.bigramBound(left, right))
+					.as("%s vs %s", left, right)
+					.isGreaterThanOrEqualTo(lcsLength);
+		}
+	}
+
+	@Test
+	void testCountersLengthBound() {
+		LcsSubstitution substitution = new LcsSubstitution(0.66, Math::max);
+
+		assertThat(accept(substitution, "int a;", "String description = getDescription();")).isNull();
+
+		assertThat(substitution.getLengthBoundRejections()).isEqualTo(1);
+		assertThat(substitution.getLcsComputations()).isZero();
+	}
+
+	@Test
+	void testCountersCharacterHistogramBound() {
+		LcsSubstitution substitution = new LcsSubstitution(0.66, Math::max);
+
+		assertThat(accept(substitution, "abcdefgh", "stuvwxyz")).isNull();
+
+		assertThat(substitution.getCharacterHistogramBoundRejections()).isEqualTo(1);
+		assertThat(substitution.getLcsComputations()).isZero();
+	}
+
+	@Test
+	void testCountersBigramBound() {
+		LcsSubstitution substitution = new LcsSubstitution(0.66, Math::max);
+
+		// Common characters, but in a different order
+		String alphabet = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+		String leftText = alphabet + alphabet;
+		String reversed = new StringBuilder(alphabet).reverse().toString();
+		String rightText = reversed + reversed.substring(0, 30);
+
+		assertThat(accept(substitution, leftText, rightText)).isNull();
+
+		assertThat(substitution.getBigramBoundRejections()).isEqualTo(1);
+		assertThat(substitution.getLcsComputations()).isZero();
+	}
+
+	@Test
+	void testCountersLcsComputed() {
+		LcsSubstitution substitution = new LcsSubstitution(0.66, Math::max);
+
+		assertThat(accept(substitution, "int count = 0;", "long count = 0;")).isEqualTo(SUBSTITUTE);
+		assertThat(substitution.getLcsComputations()).isEqualTo(1);
+
+		substitution.resetCounters();
+		assertThat(substitution.getLcsComputations()).isZero();
+	}
+
+	private static SubstitutionDiffType accept(final LcsSubstitution substitution, final String leftText,
+			final String rightText) {
+		DiffEdit leftEdit = new DiffEdit(DELETE, new DiffLine(1, leftText), null);
+		DiffEdit rightEdit = new DiffEdit(INSERT, null, new DiffLine(1, rightText));
+
+		Map<DiffEdit, String> normalizedTexts = new HashMap<>();
+		normalizedTexts.put(leftEdit, leftText);
+		normalizedTexts.put(rightEdit, rightText);
+
+		return substitution.accept(bexPair(leftEdit, rightEdit), normalizedTexts, null);
+	}
+
+	private static String randomText(final Random random, final int length) {
+		StringBuilder text = new StringBuilder(length);
+
+		for (int i = 0; i < length; i++) {
+			// Small alphabet, so there are lots of matches
+			text.append((char) ('a' + random.nextInt(4)));
+		}
+
+		return text.toString();
+	}
+}
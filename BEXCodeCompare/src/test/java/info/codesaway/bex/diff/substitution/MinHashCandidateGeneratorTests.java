@@ -0,0 +1,116 @@
+package info.codesaway.bex.diff.substitution;
+
+import static info.codesaway.bex.diff.BasicDiffType.DELETE;
+import static info.codesaway.bex.diff.BasicDiffType.EQUAL;
+import static info.codesaway.bex.diff.BasicDiffType.INSERT;
+import static info.codesaway.bex.diff.BasicDiffType.SUBSTITUTE;
+import static info.codesaway.bex.diff.DiffHelper.handleMovedLines;
+import static info.codesaway.bex.diff.DiffHelper.handleSubstitution;
+import static info.codesaway.bex.diff.NormalizationFunction.NO_NORMALIZATION;
+import static info.codesaway.bex.diff.substitution.CandidateGeneratorTestHelper.leftText;
+import static info.codesaway.bex.diff.substitution.CandidateGeneratorTestHelper.normalizedTexts;
+import static info.codesaway.bex.diff.substitution.CandidateGeneratorTestHelper.rightText;
+import static info.codesaway.bex.diff.substitution.SubstitutionType.LCS_MIN_OPERATOR;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import info.codesaway.bex.BEXPair;
+import info.codesaway.bex.diff.DiffEdit;
+import info.codesaway.bex.diff.DiffLine;
+
+class MinHashCandidateGeneratorTests {
+	@Test
+	void testSimilarLinesAreCandidates() {
+		int lineCount = 1000;
+		List<DiffEdit> diffEdits = new ArrayList<>();
+
+		for (int i = 1; i <= lineCount; i++) {
+			diffEdits.add(new DiffEdit(DELETE, new DiffLine(i, leftText(i)), null));
+		}
+
+		for (int i = 1; i <= lineCount; i++) {
+			diffEdits.add(new DiffEdit(INSERT, null, new DiffLine(i, rightText(i))));
+		}
+
+		Collection<BEXPair<DiffEdit>> candidates = new MinHashCandidateGenerator()
+				.generate(diffEdits, normalizedTexts(diffEdits));
+
+		long similarCandidates = candidates.stream()
+				.filter(p -> p.getLeft().getLeftLineNumber() == p.getRight().getRightLineNumber())
+				.count();
+
+		assertThat(similarCandidates).isEqualTo(lineCount);
+
+		// Lines share some shingles with every other line, but only a few share a bucket (versus checking every pair)
+		assertThat(candidates.size()).isLessThan(lineCount * 3);
+	}
+
+	@Test
+	void testLinesWithoutTokens() {
+		List<DiffEdit> diffEdits = new ArrayList<>();
+		diffEdits.add(new DiffEdit(DELETE, new DiffLine(1, ""), null));
+		diffEdits.add(new DiffEdit(INSERT, null, new DiffLine(1, "   ")));
+
+		assertThat(new MinHashCandidateGenerator().generate(diffEdits, normalizedTexts(diffEdits))).isEmpty();
+	}
+
+	@Test
+	void testHandleSubstitution() {
+		List<DiffEdit> diff = new ArrayList<>();
+
+		for (int i = 1; i <= 200; i++) {
+			diff.add(new DiffEdit(DELETE, new DiffLine(i, leftText(i)), null));
+		}
+
+		for (int i = 1; i <= 200; i++) {
+			diff.add(new DiffEdit(INSERT, null, new DiffLine(i, rightText(i))));
+		}
+
+		handleSubstitution(diff, NO_NORMALIZATION, new MinHashCandidateGenerator(), LCS_MIN_OPERATOR);
+
+		assertThat(diff).hasSize(200);
+		assertThat(diff).allSatisfy(d -> {
+			assertThat(d.getType()).isEqualTo(SUBSTITUTE);
+			assertThat(d.getLeftLineNumber()).isEqualTo(d.getRightLineNumber());
+		});
+	}
+
+	@Test
+	void testHandleMovedLinesWithChange() {
+		List<DiffEdit> diff = new ArrayList<>();
+		diff.add(new DiffEdit(DELETE, new DiffLine(1, leftText(1)), null));
+		diff.add(new DiffEdit(EQUAL, new DiffLine(2, "first();"), new DiffLine(1, "first();")));
+		diff.add(new DiffEdit(EQUAL, new DiffLine(3, "second();"), new DiffLine(2, "second();")));
+		diff.add(new DiffEdit(INSERT, null, new DiffLine(3, rightText(1))));
+
+		handleMovedLines(diff, NO_NORMALIZATION, new MinHashCandidateGenerator(), LCS_MIN_OPERATOR);
+
+		// Each side has its own DiffEdit
+		assertThat(diff.get(0)).isNotSameAs(diff.get(3));
+		assertThat(ImmutableList.of(diff.get(0), diff.get(3))).allSatisfy(move -> {
+			assertThat(move.isMove()).isTrue();
+			assertThat(move.isSubstitution()).isTrue();
+			assertThat(move.getLeftLineNumber()).isEqualTo(1);
+			assertThat(move.getRightLineNumber()).isEqualTo(3);
+		});
+	}
+
+	@Test
+	void testHandleMovedLinesSameBlock() {
+		List<DiffEdit> diff = new ArrayList<>();
+		diff.add(new DiffEdit(DELETE, new DiffLine(1, leftText(1)), null));
+		diff.add(new DiffEdit(INSERT, null, new DiffLine(1, rightText(1))));
+
+		handleMovedLines(diff, NO_NORMALIZATION, new MinHashCandidateGenerator(), LCS_MIN_OPERATOR);
+
+		// Substitution in place (not a move)
+		assertThat(diff).extracting(DiffEdit::getType).containsExactly(DELETE, INSERT);
+	}
+}
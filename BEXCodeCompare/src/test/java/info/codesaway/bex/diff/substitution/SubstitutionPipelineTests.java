@@ -0,0 +1,225 @@
+package info.codesaway.bex.diff.substitution;
+
+import static info.codesaway.bex.diff.BasicDiffType.DELETE;
+import static info.codesaway.bex.diff.BasicDiffType.INSERT;
+import static info.codesaway.bex.diff.BasicDiffType.SUBSTITUTE;
+import static info.codesaway.bex.diff.NormalizationFunction.NO_NORMALIZATION;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import info.codesaway.bex.BEXPair;
+import info.codesaway.bex.BEXPairValue;
+import info.codesaway.bex.diff.DiffEdit;
+import info.codesaway.bex.diff.DiffHelper;
+import info.codesaway.bex.diff.DiffLine;
+import info.codesaway.bex.diff.NormalizationFunction;
+import info.codesaway.bex.diff.substitution.java.JavaCastSubstitution;
+import info.codesaway.bex.diff.substitution.java.JavaDiamondOperatorSubstitution;
+import info.codesaway.bex.diff.substitution.java.JavaFinalKeywordSubstitution;
+import info.codesaway.bex.diff.substitution.java.JavaSemicolonSubstitution;
+import info.codesaway.bex.diff.substitution.java.JavaUnboxingSubstitution;
+
+class SubstitutionPipelineTests {
+	private static final SubstitutionDiffType FIRST = new SubstitutionDiffTypeValue('1', "First");
+	private static final SubstitutionDiffType SECOND = new SubstitutionDiffTypeValue('2', "Second");
+
+	@Test
+	void testFirstAcceptingTypeWins() {
+		SubstitutionPipeline pipeline = SubstitutionPipeline.of(accepting(FIRST), accepting(SECOND));
+
+		assertThat(accept(pipeline, "a", "b")).isSameAs(FIRST);
+
+		List<SubstitutionPipeline.Statistics> statistics = pipeline.getStatistics();
+		assertThat(statistics.get(0).getChecks()).isEqualTo(1);
+		assertThat(statistics.get(0).getHits()).isEqualTo(1);
+		// Not checked, since the first substitution type accepted the pair
+		assertThat(statistics.get(1).getChecks()).isZero();
+	}
+
+	@Test
+	void testMightAcceptSkipsType() {
+		SubstitutionType skipped = new SubstitutionType() {
+			@Override
+			public SubstitutionDiffType accept(final BEXPair<DiffEdit> checkPair,
+					final Map<DiffEdit, String> normalizedTexts,
+					final NormalizationFunction normalizationFunction) {
+				throw new AssertionError("Should have been skipped");
+			}
+
+			@Override
+			public boolean mightAccept(final BEXPair<String> normalizedText) {
+				return false;
+			}
+		};
+
+		SubstitutionPipeline pipeline = SubstitutionPipeline.of(skipped, accepting(SECOND));
+
+		assertThat(accept(pipeline, "a", "b")).isSameAs(SECOND);
+
+		List<SubstitutionPipeline.Statistics> statistics = pipeline.getStatistics();
+		assertThat(statistics.get(0).getSkips()).isEqualTo(1);
+		assertThat(statistics.get(0).getChecks()).isZero();
+		assertThat(statistics.get(1).getHits()).isEqualTo(1);
+
+		pipeline.resetStatistics();
+		assertThat(pipeline.getStatistics()).allSatisfy(s -> {
+			assertThat(s.getSkips()).isZero();
+			assertThat(s.getChecks()).isZero();
+		});
+	}
+
+	@Test
+	void testWithoutStatistics() {
+		SubstitutionPipeline pipeline = SubstitutionPipeline.withoutStatistics(accepting(FIRST));
+
+		assertThat(accept(pipeline, "a", "b")).isSameAs(FIRST);
+		assertThat(pipeline.isRecordingStatistics()).isFalse();
+		assertThat(pipeline.getStatistics()).isEmpty();
+		assertThat(pipeline.reorderedByCost()).isSameAs(pipeline);
+	}
+
+	@Test
+	void testWithSubstitutionTypesSharesStatistics() {
+		SubstitutionPipeline template = SubstitutionPipeline.of(rejecting());
+		SubstitutionPipeline pipeline = template.withSubstitutionTypes(Arrays.asList(accepting(FIRST)));
+
+		assertThat(accept(pipeline, "a", "b")).isSameAs(FIRST);
+		assertThat(template.getStatistics().get(0).getHits()).isEqualTo(1);
+
+		assertThatThrownBy(() -> template.withSubstitutionTypes(new ArrayList<>()))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void testReorderedByCost() {
+		SubstitutionType neverAccepts = rejecting();
+		SubstitutionType accepts = accepting(SECOND);
+		SubstitutionPipeline pipeline = SubstitutionPipeline.of(neverAccepts, accepts);
+
+		accept(pipeline, "a", "b");
+
+		// Substitution types which never accept a pair are checked last
+		SubstitutionPipeline reordered = pipeline.reorderedByCost();
+		assertThat(reordered.getSubstitutionTypes()).containsExactly(accepts, neverAccepts);
+
+		accept(reordered, "a", "b");
+
+		// Shares the statistics (which follow the substitution type)
+		assertThat(pipeline.getStatistics().get(1).getHits()).isEqualTo(2);
+		assertThat(pipeline.getStatistics().get(0).getChecks()).isEqualTo(1);
+	}
+
+	@Test
+	void testReorderedByCostKeepsStatefulPosition() {
+		SubstitutionType stateful = new SubstitutionType() {
+			@Override
+			public SubstitutionDiffType accept(final BEXPair<DiffEdit> checkPair,
+					final Map<DiffEdit, String> normalizedTexts,
+					final NormalizationFunction normalizationFunction) {
+				return null;
+			}
+
+			@Override
+			public boolean isStateful() {
+				return true;
+			}
+		};
+
+		SubstitutionType accepts = accepting(SECOND);
+		SubstitutionPipeline pipeline = SubstitutionPipeline.of(stateful, rejecting(), accepts);
+
+		assertThat(pipeline.isStateful()).isTrue();
+
+		accept(pipeline, "a", "b");
+
+		assertThat(pipeline.reorderedByCost().getSubstitutionTypes().subList(0, 2))
+				.containsExactly(stateful, accepts);
+	}
+
+	@Test
+	void testPreconditionsMatchAccept() {
+		// The cheap precondition must never skip a pair which would have been accepted
+		List<SubstitutionType> substitutionTypes = Arrays.asList(new JavaSemicolonSubstitution(),
+				new JavaFinalKeywordSubstitution(), new JavaDiamondOperatorSubstitution(),
+				new JavaUnboxingSubstitution(), new JavaCastSubstitution());
+
+		String[][] pairs = {
+				{ "", ";" },
+				{ "int value = 1;;", "int value = 1;" },
+				{ "String name = getName();", "final String name = getName();" },
+				{ "List<String> list = new ArrayList<String>();", "List<String> list = new ArrayList<>();" },
+				{ "int value = number.intValue();", "int value = number;" },
+				{ "String text = (String) object;", "String text = object;" },
+				{ "return value;", "return other;" },
+		};
+
+		for (String[] pair : pairs) {
+			BEXPair<DiffEdit> checkPair = checkPair(pair[0], pair[1]);
+			Map<DiffEdit, String> normalizedTexts = normalizedTexts(checkPair);
+			BEXPair<String> normalizedText = checkPair.map(normalizedTexts::get);
+
+			for (SubstitutionType substitutionType : substitutionTypes) {
+				if (substitutionType.accept(checkPair, normalizedTexts, NO_NORMALIZATION) != null) {
+					assertThat(substitutionType.mightAccept(normalizedText))
+							.as("%s: %s", substitutionType.getClass().getSimpleName(), Arrays.toString(pair))
+							.isTrue();
+				}
+			}
+		}
+	}
+
+	@Test
+	void testHandleSubstitution() {
+		List<DiffEdit> diff = new ArrayList<>();
+		diff.add(new DiffEdit(DELETE, new DiffLine(1, "int value = 1;;"), null));
+		diff.add(new DiffEdit(INSERT, null, new DiffLine(1, "int value = 1;")));
+
+		SubstitutionPipeline pipeline = SubstitutionPipeline.of(new JavaFinalKeywordSubstitution(),
+				new JavaSemicolonSubstitution(), SubstitutionType.LCS_MIN_OPERATOR);
+
+		DiffHelper.handleSubstitution(diff, NO_NORMALIZATION, pipeline);
+
+		assertThat(diff).hasSize(1);
+		assertThat(diff.get(0).getType()).isNotEqualTo(SUBSTITUTE);
+		assertThat(diff.get(0).isSubstitution()).isTrue();
+
+		List<SubstitutionPipeline.Statistics> statistics = pipeline.getStatistics();
+		// No "final" keyword, so skipped
+		assertThat(statistics.get(0).getSkips()).isEqualTo(1);
+		assertThat(statistics.get(1).getHits()).isEqualTo(1);
+		assertThat(statistics.get(2).getChecks()).isZero();
+	}
+
+	private static SubstitutionType accepting(final SubstitutionDiffType diffType) {
+		return (checkPair, normalizedTexts, normalizationFunction) -> diffType;
+	}
+
+	private static SubstitutionType rejecting() {
+		return (checkPair, normalizedTexts, normalizationFunction) -> null;
+	}
+
+	private static SubstitutionDiffType accept(final SubstitutionPipeline pipeline, final String left,
+			final String right) {
+		BEXPair<DiffEdit> checkPair = checkPair(left, right);
+		return pipeline.accept(checkPair, normalizedTexts(checkPair), NO_NORMALIZATION);
+	}
+
+	private static BEXPair<DiffEdit> checkPair(final String left, final String right) {
+		return new BEXPairValue<>(new DiffEdit(DELETE, new DiffLine(1, left), null),
+				new DiffEdit(INSERT, null, new DiffLine(1, right)));
+	}
+
+	private static Map<DiffEdit, String> normalizedTexts(final BEXPair<DiffEdit> checkPair) {
+		Map<DiffEdit, String> normalizedTexts = new HashMap<>();
+		checkPair.acceptBoth(e -> normalizedTexts.put(e, e.getText()));
+		return normalizedTexts;
+	}
+}
@@ -0,0 +1,52 @@
+package info.codesaway.bex.diff.token;
+
+import static info.codesaway.bex.IntBEXRange.closedOpen;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+import info.codesaway.bex.BEXListPair;
+import info.codesaway.bex.IntBEXRange;
+
+class TokenDiffTests {
+	@Test
+	void testChangedWords() {
+		String leftText = "int count = total + 1;";
+		String rightText = "long count = total + 2;";
+
+		BEXListPair<IntBEXRange> changes = TokenDiff.diff(leftText, rightText);
+
+		assertThat(changes.getLeft()).containsExactly(closedOpen(0, 3), closedOpen(20, 21));
+		assertThat(changes.getRight()).containsExactly(closedOpen(0, 4), closedOpen(21, 22));
+	}
+
+	@Test
+	void testStringLiteralIsSingleToken() {
+		String leftText = "String name = \"old value\";";
+		String rightText = "String name = \"new value\";";
+
+		BEXListPair<IntBEXRange> changes = TokenDiff.diff(leftText, rightText);
+
+		assertThat(changes.getLeft()).containsExactly(closedOpen(14, 25));
+		assertThat(changes.getRight()).containsExactly(closedOpen(14, 25));
+	}
+
+	@Test
+	void testAdjacentChangesAreCombined() {
+		String leftText = "for (int i = 0; i < list.size(); i++) {";
+		String rightText = "for (String item : list) {";
+
+		BEXListPair<IntBEXRange> changes = TokenDiff.diff(leftText, rightText);
+
+		assertThat(changes.getLeft()).containsExactly(closedOpen(5, 19), closedOpen(24, 36));
+		assertThat(changes.getRight()).containsExactly(closedOpen(5, 18));
+	}
+
+	@Test
+	void testWhitespaceOnlyChange() {
+		BEXListPair<IntBEXRange> changes = TokenDiff.diff("a = b;", "a  =  b;");
+
+		assertThat(changes.getLeft()).isEmpty();
+		assertThat(changes.getRight()).isEmpty();
+	}
+}
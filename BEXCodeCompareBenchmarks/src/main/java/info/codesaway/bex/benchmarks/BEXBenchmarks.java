@@ -0,0 +1,33 @@
+package info.codesaway.bex.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the BEX benchmarks with the GC profiler enabled (reports allocation rate, gc.alloc.rate.norm is bytes per operation)
+ *
+ * <p>Usage: <code>java -jar target/benchmarks.jar [JMH options]</code></p>
+ *
+ * <p>Any standard JMH command line options can be passed (for example, a benchmark regex or <code>-p lineCount=5000</code>)</p>
+ */
+public final class BEXBenchmarks {
+	private BEXBenchmarks() {
+		throw new UnsupportedOperationException();
+	}
+
+	public static void main(final String[] args) throws RunnerException, CommandLineOptionException {
+		Options commandLineOptions = new CommandLineOptions(args);
+
+		Options options = new OptionsBuilder()
+				.parent(commandLineOptions)
+				.addProfiler(GCProfiler.class)
+				.build();
+
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,248 @@
+package info.codesaway.bex.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import info.codesaway.bex.diff.DiffLine;
+
+/**
+ * Generates realistic looking Java source files to use as benchmark input
+ *
+ * <p>The generated code has the same shape as typical business code (imports, fields, getters / setters, loops, blank lines, and lots of lines with only <code>}</code>)
+ * so that the diff algorithms see a realistic mix of unique and repeated lines.</p>
+ *
+ * <p>Generation is deterministic for a given seed, so each benchmark iteration (and each run) compares the same text.</p>
+ */
+public final class BenchmarkSources {
+	private BenchmarkSources() {
+		throw new UnsupportedOperationException();
+	}
+
+	private static final String[] TYPES = { "String", "int", "long", "boolean", "List<String>", "Map<String, Integer>",
+			"BigDecimal", "LocalDate", "Optional<String>", "Set<Long>" };
+
+	private static final String[] WORDS = { "account", "amount", "balance", "customer", "order", "invoice",
+			"payment", "address", "status", "total", "item", "price", "quantity", "discount", "tax", "name", "value",
+			"result", "record", "entry", "line", "count", "index", "message", "request", "response", "cache", "key" };
+
+	private static final String[] IMPORTS = { "java.math.BigDecimal", "java.time.LocalDate", "java.util.ArrayList",
+			"java.util.HashMap", "java.util.List", "java.util.Map", "java.util.Objects", "java.util.Optional",
+			"java.util.Set", "java.util.stream.Collectors" };
+
+	/**
+	 * Generates Java source code with approximately the specified number of lines
+	 *
+	 * @param lineCount the number of lines to generate
+	 * @param seed the seed used to generate the code
+	 * @return the generated lines (line numbers start at 1)
+	 */
+	public static List<DiffLine> generateJavaSource(final int lineCount, final long seed) {
+		Random random = new Random(seed);
+		List<String> lines = new ArrayList<>(lineCount + 32);
+
+		lines.add("package info.codesaway.generated;");
+		lines.add("");
+		for (String importName : IMPORTS) {
+			lines.add("import " + importName + ";");
+		}
+		lines.add("");
+		lines.add("public class GeneratedClass" + random.nextInt(1000) + " {");
+
+		int member = 0;
+		while (lines.size() < lineCount - 1) {
+			switch (random.nextInt(5)) {
+			case 0:
+				addField(lines, random, member);
+				break;
+			case 1:
+				addGetterSetter(lines, random, member);
+				break;
+			case 2:
+				addLoopMethod(lines, random, member);
+				break;
+			case 3:
+				addConditionalMethod(lines, random, member);
+				break;
+			default:
+				addBuilderMethod(lines, random, member);
+				break;
+			}
+
+			member++;
+		}
+
+		lines.add("}");
+
+		return toDiffLines(lines);
+	}
+
+	/**
+	 * Creates a modified copy of the specified lines
+	 *
+	 * <p>Each line is edited with probability <code>editDensity</code>. Edits are a mix of changed lines (substitutions),
+	 * whitespace only changes, inserted lines, deleted lines, and added / removed <code>final</code> keywords.
+	 * In addition, if <code>editDensity</code> is positive, one block of lines is moved, so moved line detection has work to do.</p>
+	 *
+	 * @param original the original lines
+	 * @param editDensity the probability a given line is edited (0 to 1)
+	 * @param seed the seed used to choose the edits
+	 * @return the modified lines (line numbers start at 1)
+	 */
+	public static List<DiffLine> modify(final List<DiffLine> original, final double editDensity, final long seed) {
+		Random random = new Random(seed);
+		List<String> lines = new ArrayList<>(original.size() + 32);
+
+		for (DiffLine line : original) {
+			String text = line.getText();
+
+			if (random.nextDouble() >= editDensity) {
+				lines.add(text);
+				continue;
+			}
+
+			int kind = random.nextInt(100);
+
+			if (kind < 30) {
+				// Changed line (should be detected as a substitution)
+				lines.add(changeWord(text, random));
+			} else if (kind < 45) {
+				// Whitespace only change (ignored when normalizing whitespace)
+				lines.add(text.isEmpty() ? "\t" : text.replace("\t", "    ").replace(" = ", "  =  "));
+			} else if (kind < 65) {
+				// Inserted line(s)
+				lines.add(text);
+				int inserted = 1 + random.nextInt(3);
+				for (int i = 0; i < inserted; i++) {
+					lines.add("\t\t" + word(random) + "Helper.log(\"" + word(random) + "\", " + random.nextInt(100)
+							+ ");");
+				}
+			} else if (kind < 85) {
+				// Deleted line
+				continue;
+			} else {
+				// Add or remove final keyword (a refactoring)
+				lines.add(text.contains("final ") ? text.replaceFirst("final ", "") : text.replace("(", "(final "));
+			}
+		}
+
+		if (editDensity > 0 && lines.size() > 100) {
+			// Move a block of lines from the first half to the second half
+			int size = 10 + random.nextInt(20);
+			int from = random.nextInt(lines.size() / 2 - size);
+			List<String> block = new ArrayList<>(lines.subList(from, from + size));
+			lines.subList(from, from + size).clear();
+
+			int to = lines.size() / 2 + random.nextInt(lines.size() / 2);
+			lines.addAll(to, block);
+		}
+
+		return toDiffLines(lines);
+	}
+
+	private static List<DiffLine> toDiffLines(final List<String> lines) {
+		return Collections.unmodifiableList(IntStream.range(0, lines.size())
+				.mapToObj(i -> new DiffLine(i + 1, lines.get(i)))
+				.collect(Collectors.toList()));
+	}
+
+	private static String word(final Random random) {
+		return WORDS[random.nextInt(WORDS.length)];
+	}
+
+	private static String type(final Random random) {
+		return TYPES[random.nextInt(TYPES.length)];
+	}
+
+	private static String capitalize(final String text) {
+		return Character.toUpperCase(text.charAt(0)) + text.substring(1);
+	}
+
+	private static String changeWord(final String text, final Random random) {
+		for (String word : WORDS) {
+			if (text.contains(word)) {
+				return text.replace(word, word(random) + capitalize(word));
+			}
+		}
+
+		return text.isEmpty() ? "\t// TODO: " + word(random) : text + " // " + word(random);
+	}
+
+	private static void addField(final List<String> lines, final Random random, final int member) {
+		lines.add("\tprivate " + (random.nextBoolean() ? "final " : "") + type(random) + " " + word(random) + member
+				+ ";");
+	}
+
+	private static void addGetterSetter(final List<String> lines, final Random random, final int member) {
+		String type = type(random);
+		String name = word(random) + member;
+
+		lines.add("");
+		lines.add("\tpublic " + type + " get" + capitalize(name) + "() {");
+		lines.add("\t\treturn this." + name + ";");
+		lines.add("\t}");
+		lines.add("");
+		lines.add("\tpublic void set" + capitalize(name) + "(final " + type + " " + name + ") {");
+		lines.add("\t\tthis." + name + " = " + name + ";");
+		lines.add("\t}");
+	}
+
+	private static void addLoopMethod(final List<String> lines, final Random random, final int member) {
+		String name = word(random);
+
+		lines.add("");
+		lines.add("\tpublic int process" + capitalize(name) + member + "(final List<String> " + name + "s) {");
+		lines.add("\t\tint " + word(random) + "Count = 0;");
+		lines.add("\t\tfor (int i = 0; i < " + name + "s.size(); i++) {");
+		lines.add("\t\t\tString " + name + " = " + name + "s.get(i);");
+		lines.add("\t\t\tif (" + name + " == null || " + name + ".isEmpty()) {");
+		lines.add("\t\t\t\tcontinue;");
+		lines.add("\t\t\t}");
+		lines.add("");
+		lines.add("\t\t\tthis.cache.put(" + name + ", " + random.nextInt(1000) + ");");
+		lines.add("\t\t}");
+		lines.add("");
+		lines.add("\t\treturn " + name + "s.size();");
+		lines.add("\t}");
+	}
+
+	private static void addConditionalMethod(final List<String> lines, final Random random, final int member) {
+		String name = word(random);
+		String other = word(random);
+
+		lines.add("");
+		lines.add("\t/**");
+		lines.add("\t * Checks the " + name + " against the " + other);
+		lines.add("\t */");
+		lines.add("\tprivate boolean is" + capitalize(name) + "Valid" + member + "(final " + type(random) + " "
+				+ name + ") {");
+		lines.add("\t\tif (" + name + " == null) {");
+		lines.add("\t\t\treturn false;");
+		lines.add("\t\t} else if (Objects.equals(" + name + ", this." + other + ")) {");
+		lines.add("\t\t\treturn true;");
+		lines.add("\t\t}");
+		lines.add("");
+		lines.add("\t\treturn " + random.nextBoolean() + ";");
+		lines.add("\t}");
+	}
+
+	private static void addBuilderMethod(final List<String> lines, final Random random, final int member) {
+		String name = word(random);
+
+		lines.add("");
+		lines.add("\tpublic Map<String, Object> to" + capitalize(name) + "Map" + member + "() {");
+		lines.add("\t\tMap<String, Object> map = new HashMap<>();");
+
+		int entries = 2 + random.nextInt(6);
+		for (int i = 0; i < entries; i++) {
+			String key = word(random);
+			lines.add("\t\tmap.put(\"" + key + "\", this." + key + member + ");");
+		}
+
+		lines.add("\t\treturn map;");
+		lines.add("\t}");
+	}
+}
@@ -0,0 +1,75 @@
+package info.codesaway.bex.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import info.codesaway.bex.diff.DiffEdit;
+import info.codesaway.bex.diff.InternedLines;
+import info.codesaway.bex.diff.histogram.HistogramDiff;
+import info.codesaway.bex.diff.myers.MyersLinearDiff;
+import info.codesaway.bex.diff.patience.PatienceDiff;
+
+/**
+ * Benchmarks the diff algorithms
+ *
+ * <p>Throughput shows ops/s, SampleTime shows the latency distribution (including p0.99)</p>
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DiffAlgorithmBenchmark {
+	@Benchmark
+	public List<DiffEdit> patienceDiff(final DiffInput input) {
+		return PatienceDiff.diff(input.leftLines, input.rightLines, input.normalizationFunction,
+				MyersLinearDiff.with(input.normalizationFunction));
+	}
+
+	@Benchmark
+	public List<DiffEdit> patienceDiffTrimCommonLines(final DiffInput input) {
+		return PatienceDiff.diff(input.leftLines, input.rightLines, input.normalizationFunction,
+				MyersLinearDiff.with(input.normalizationFunction), true);
+	}
+
+	@Benchmark
+	public List<DiffEdit> myersLinearDiff(final DiffInput input) {
+		return MyersLinearDiff.diff(input.leftLines, input.rightLines, input.normalizationFunction);
+	}
+
+	@Benchmark
+	public List<DiffEdit> myersLinearDiffParallel(final DiffInput input) {
+		return MyersLinearDiff.diff(input.leftLines, input.rightLines, input.normalizationFunction,
+				Runtime.getRuntime().availableProcessors(), MyersLinearDiff.DEFAULT_PARALLEL_THRESHOLD);
+	}
+
+	@Benchmark
+	public List<DiffEdit> patienceDiffInterned(final DiffInput input) {
+		return PatienceDiff.diff(InternedLines.intern(input.leftLines, input.rightLines, input.normalizationFunction));
+	}
+
+	@Benchmark
+	public List<DiffEdit> myersLinearDiffInterned(final DiffInput input) {
+		return MyersLinearDiff.diff(InternedLines.intern(input.leftLines, input.rightLines,
+				input.normalizationFunction));
+	}
+
+	@Benchmark
+	public List<DiffEdit> histogramDiff(final DiffInput input) {
+		return HistogramDiff.diff(input.leftLines, input.rightLines, input.normalizationFunction);
+	}
+
+	@Benchmark
+	public List<DiffEdit> patienceDiffHistogramFallback(final DiffInput input) {
+		return PatienceDiff.diff(InternedLines.intern(input.leftLines, input.rightLines, input.normalizationFunction),
+				HistogramDiff::diff);
+	}
+}
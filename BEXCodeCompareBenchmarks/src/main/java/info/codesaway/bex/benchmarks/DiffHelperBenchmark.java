@@ -0,0 +1,214 @@
+package info.codesaway.bex.benchmarks;
+
+import static info.codesaway.bex.diff.substitution.SubstitutionType.LCS_MAX_OPERATOR;
+import static info.codesaway.bex.diff.substitution.SubstitutionType.LCS_MIN_OPERATOR;
+import static info.codesaway.bex.diff.substitution.SubstitutionType.SUBSTITUTION_CONTAINS;
+import static info.codesaway.bex.diff.substitution.java.JavaRefactorings.IMPORT_SAME_CLASSNAME_DIFFERENT_PACKAGE;
+import static info.codesaway.bex.diff.substitution.java.JavaRefactorings.JAVA_CAST;
+import static info.codesaway.bex.diff.substitution.java.JavaRefactorings.JAVA_DIAMOND_OPERATOR;
+import static info.codesaway.bex.diff.substitution.java.JavaRefactorings.JAVA_FINAL_KEYWORD;
+import static info.codesaway.bex.diff.substitution.java.JavaRefactorings.JAVA_SEMICOLON;
+import static info.codesaway.bex.diff.substitution.java.JavaRefactorings.JAVA_UNBOXING;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import info.codesaway.bex.BEXListPair;
+import info.codesaway.bex.BEXSide;
+import info.codesaway.bex.IntBEXRange;
+import info.codesaway.bex.diff.DiffEdit;
+import info.codesaway.bex.diff.DiffHelper;
+import info.codesaway.bex.diff.DiffLine;
+import info.codesaway.bex.diff.DiffUnit;
+import info.codesaway.bex.diff.NormalizationFunction;
+import info.codesaway.bex.diff.NormalizedLines;
+import info.codesaway.bex.diff.myers.MyersLinearDiff;
+import info.codesaway.bex.diff.patience.PatienceDiff;
+import info.codesaway.bex.diff.substitution.java.EnhancedForLoopRefactoring;
+
+/**
+ * Benchmarks the DiffHelper post-processing pipeline (the steps run after the diff algorithm)
+ *
+ * <p>The diff is computed once per trial; each invocation works on a fresh copy, since the DiffHelper methods modify the passed list</p>
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DiffHelperBenchmark {
+	@State(Scope.Benchmark)
+	public static class ComputedDiff {
+		/**
+		 * Diff as returned by the diff algorithm
+		 */
+		List<DiffEdit> diff;
+
+		/**
+		 * Diff after substitutions are handled (the input to combineToDiffBlocks)
+		 */
+		List<DiffEdit> substitutedDiff;
+
+		/**
+		 * Diff blocks (the input to handleSplitLines)
+		 */
+		List<DiffUnit> diffBlocks;
+
+		@Setup(Level.Trial)
+		public void setup(final DiffInput input) {
+			this.diff = PatienceDiff.diff(input.leftLines, input.rightLines, input.normalizationFunction,
+					MyersLinearDiff.with(input.normalizationFunction));
+
+			this.substitutedDiff = new ArrayList<>(this.diff);
+			handleSubstitution(this.substitutedDiff, input);
+
+			this.diffBlocks = DiffHelper.combineToDiffBlocks(this.substitutedDiff, true);
+		}
+	}
+
+	/**
+	 * Right lines after a single line in the middle is edited (such as typing in an editor)
+	 */
+	@State(Scope.Benchmark)
+	public static class EditedLines {
+		/**
+		 * Line number of the edited line
+		 */
+		int editedLineNumber;
+
+		BEXListPair<DiffLine> lines;
+
+		@Setup(Level.Trial)
+		public void setup(final DiffInput input) {
+			List<DiffLine> rightLines = new ArrayList<>(input.rightLines);
+			int index = rightLines.size() / 2;
+			DiffLine line = rightLines.get(index);
+			rightLines.set(index, new DiffLine(line.getNumber(), line.getText() + " // edited"));
+
+			this.editedLineNumber = line.getNumber();
+			this.lines = new BEXListPair<>(input.leftLines, rightLines);
+		}
+	}
+
+	/**
+	 * Handles substitutions the same way as the BEX Eclipse plugin (enhanced compare)
+	 */
+	static void handleSubstitution(final List<DiffEdit> diff, final DiffInput input) {
+		DiffHelper.handleSubstitution(diff, input.normalizationFunction, JAVA_SEMICOLON, JAVA_FINAL_KEYWORD,
+				SUBSTITUTION_CONTAINS, new EnhancedForLoopRefactoring(), IMPORT_SAME_CLASSNAME_DIFFERENT_PACKAGE,
+				JAVA_UNBOXING, JAVA_CAST, JAVA_DIAMOND_OPERATOR, LCS_MAX_OPERATOR);
+
+		DiffHelper.handleSubstitution(diff, input.normalizationFunction, LCS_MIN_OPERATOR);
+	}
+
+	@Benchmark
+	public List<DiffEdit> handleSubstitution(final DiffInput input, final ComputedDiff computedDiff) {
+		List<DiffEdit> diff = new ArrayList<>(computedDiff.diff);
+		handleSubstitution(diff, input);
+		return diff;
+	}
+
+	/**
+	 * Baseline for {@link #handleSubstitutionParallel(DiffInput, ComputedDiff)}
+	 */
+	@Benchmark
+	public List<DiffEdit> handleSubstitutionSerial(final DiffInput input, final ComputedDiff computedDiff) {
+		List<DiffEdit> diff = new ArrayList<>(computedDiff.diff);
+		DiffHelper.handleSubstitution(diff, input.normalizationFunction, LCS_MIN_OPERATOR);
+		return diff;
+	}
+
+	/**
+	 * Checks the blocks in parallel (LCS_MIN_OPERATOR isn't stateful, unlike EnhancedForLoopRefactoring)
+	 */
+	@Benchmark
+	public List<DiffEdit> handleSubstitutionParallel(final DiffInput input, final ComputedDiff computedDiff) {
+		List<DiffEdit> diff = new ArrayList<>(computedDiff.diff);
+		DiffHelper.handleSubstitutionParallel(diff, input.normalizationFunction, LCS_MIN_OPERATOR);
+		return diff;
+	}
+
+	@Benchmark
+	public List<DiffEdit> rediff(final DiffInput input, final ComputedDiff computedDiff,
+			final EditedLines editedLines) {
+		List<DiffEdit> diff = new ArrayList<>(computedDiff.substitutedDiff);
+		DiffHelper.rediff(diff, editedLines.lines, BEXSide.RIGHT,
+				IntBEXRange.closedOpen(editedLines.editedLineNumber, editedLines.editedLineNumber + 1),
+				MyersLinearDiff.with(input.normalizationFunction), d -> handleSubstitution(d, input));
+		return diff;
+	}
+
+	/**
+	 * Baseline for {@link #rediff(DiffInput, ComputedDiff, EditedLines)}, which diffs the entire file again
+	 */
+	@Benchmark
+	public List<DiffEdit> rediffEntireFile(final DiffInput input, final EditedLines editedLines) {
+		List<DiffEdit> diff = PatienceDiff.diff(editedLines.lines.getLeft(), editedLines.lines.getRight(),
+				input.normalizationFunction, MyersLinearDiff.with(input.normalizationFunction));
+		handleSubstitution(diff, input);
+		return diff;
+	}
+
+	@Benchmark
+	public List<DiffEdit> handleMovedLines(final DiffInput input, final ComputedDiff computedDiff) {
+		List<DiffEdit> diff = new ArrayList<>(computedDiff.diff);
+		DiffHelper.handleMovedLines(diff, input.normalizationFunction);
+		return diff;
+	}
+
+	@Benchmark
+	public List<DiffUnit> combineToDiffBlocks(final ComputedDiff computedDiff) {
+		return DiffHelper.combineToDiffBlocks(computedDiff.substitutedDiff, true);
+	}
+
+	@Benchmark
+	public List<DiffUnit> handleSplitLines(final DiffInput input, final ComputedDiff computedDiff) {
+		List<DiffUnit> diffBlocks = new ArrayList<>(computedDiff.diffBlocks);
+		DiffHelper.handleSplitLines(diffBlocks, input.normalizationFunction);
+		return diffBlocks;
+	}
+
+	/**
+	 * Baseline for {@link #diffAndPostProcessNormalizedLines(DiffInput)}, which normalizes the lines again in each stage
+	 */
+	@Benchmark
+	public List<DiffUnit> diffAndPostProcess(final DiffInput input) {
+		return diffAndPostProcess(input, input.normalizationFunction);
+	}
+
+	/**
+	 * Diffs and post processes, normalizing each line once (the normalized text is reused by each stage)
+	 */
+	@Benchmark
+	public List<DiffUnit> diffAndPostProcessNormalizedLines(final DiffInput input) {
+		return diffAndPostProcess(input,
+				NormalizedLines.of(input.leftLines, input.rightLines, input.normalizationFunction));
+	}
+
+	private static List<DiffUnit> diffAndPostProcess(final DiffInput input,
+			final NormalizationFunction normalizationFunction) {
+		List<DiffEdit> diff = PatienceDiff.diff(input.leftLines, input.rightLines, normalizationFunction,
+				MyersLinearDiff.with(normalizationFunction));
+
+		DiffHelper.handleSubstitution(diff, normalizationFunction, LCS_MAX_OPERATOR);
+		DiffHelper.handleSubstitution(diff, normalizationFunction, LCS_MIN_OPERATOR);
+
+		List<DiffUnit> diffBlocks = DiffHelper.combineToDiffBlocks(diff, true);
+		DiffHelper.handleSplitLines(diffBlocks, normalizationFunction);
+		DiffHelper.handleBlankLines(diffBlocks, normalizationFunction);
+		return diffBlocks;
+	}
+}
@@ -0,0 +1,55 @@
+package info.codesaway.bex.benchmarks;
+
+import static info.codesaway.bex.diff.NormalizationFunction.NO_NORMALIZATION;
+import static info.codesaway.bex.diff.NormalizationFunction.WHITESPACE_NORMALIZATION;
+
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import info.codesaway.bex.diff.DiffLine;
+import info.codesaway.bex.diff.NormalizationFunction;
+
+/**
+ * Benchmark input: an original Java file and a modified copy
+ *
+ * <p>Parameterized by file size, edit density, and normalization, so each benchmark is run against the full matrix</p>
+ */
+@State(Scope.Benchmark)
+public class DiffInput {
+	/**
+	 * Seed used to generate the original file (fixed so runs are comparable)
+	 */
+	private static final long ORIGINAL_SEED = 20211002L;
+
+	/**
+	 * Seed used to generate the modifications (fixed so runs are comparable)
+	 */
+	private static final long MODIFIED_SEED = 20211003L;
+
+	@Param({ "500", "5000", "20000" })
+	public int lineCount;
+
+	@Param({ "0.01", "0.1" })
+	public double editDensity;
+
+	@Param({ "NONE", "WHITESPACE" })
+	public String normalization;
+
+	public List<DiffLine> leftLines;
+	public List<DiffLine> rightLines;
+	public NormalizationFunction normalizationFunction;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		this.leftLines = BenchmarkSources.generateJavaSource(this.lineCount, ORIGINAL_SEED);
+		this.rightLines = BenchmarkSources.modify(this.leftLines, this.editDensity, MODIFIED_SEED);
+		this.normalizationFunction = this.normalization.equals("WHITESPACE")
+				? WHITESPACE_NORMALIZATION
+				: NO_NORMALIZATION;
+	}
+}
@@ -0,0 +1,62 @@
+package info.codesaway.bex.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import info.codesaway.bex.diff.DiffEdit;
+import info.codesaway.bex.diff.DiffLine;
+import info.codesaway.bex.diff.InternedLines;
+import info.codesaway.bex.diff.myers.MyersLinearDiff;
+
+/**
+ * Benchmarks MyersLinearDiff on large, very different files (the worst case, where the search runs for many D-steps)
+ *
+ * <p>Run with the GC profiler ({@link BEXBenchmarks}) to see the allocation per diff (gc.alloc.rate.norm)</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MyersAllocationBenchmark {
+	/**
+	 * Benchmark input: two unrelated generated Java files
+	 */
+	@State(Scope.Benchmark)
+	public static class DifferentFilesInput {
+		@Param({ "2000", "10000" })
+		public int lineCount;
+
+		public List<DiffLine> leftLines;
+		public List<DiffLine> rightLines;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			this.leftLines = BenchmarkSources.generateJavaSource(this.lineCount, 1L);
+			this.rightLines = BenchmarkSources.generateJavaSource(this.lineCount, 2L);
+		}
+	}
+
+	@Benchmark
+	public List<DiffEdit> myersLinearDiff(final DifferentFilesInput input) {
+		return MyersLinearDiff.diff(input.leftLines, input.rightLines);
+	}
+
+	@Benchmark
+	public List<DiffEdit> myersLinearDiffInterned(final DifferentFilesInput input) {
+		return MyersLinearDiff.diff(InternedLines.intern(input.leftLines, input.rightLines, null));
+	}
+}
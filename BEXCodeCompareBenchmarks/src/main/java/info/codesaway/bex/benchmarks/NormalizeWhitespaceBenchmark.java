@@ -0,0 +1,106 @@
+package info.codesaway.bex.benchmarks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import info.codesaway.bex.diff.DiffHelper;
+import info.codesaway.bex.diff.DiffLine;
+
+/**
+ * Benchmarks whitespace normalization, comparing the char scanning implementation against the original regex implementation
+ *
+ * <p>Each invocation normalizes every line of the input, paired with a blank line (the same as the diff algorithm does to find unique lines)</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NormalizeWhitespaceBenchmark {
+	/**
+	 * Benchmark input: the lines to normalize
+	 *
+	 * <p>SOURCES reads the Java files in the directory specified by the <code>bex.benchmark.sources</code> system property
+	 * (defaults to the BEXCodeCompare sources, when run from the BEXCodeCompareBenchmarks directory)</p>
+	 */
+	@State(Scope.Benchmark)
+	public static class Lines {
+		@Param({ "GENERATED", "SOURCES" })
+		public String source;
+
+		public List<String> lines;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			if (this.source.equals("SOURCES")) {
+				Path directory = Paths.get(
+						System.getProperty("bex.benchmark.sources", "../BEXCodeCompare/src/main/java"));
+				this.lines = readJavaSources(directory);
+			} else {
+				this.lines = BenchmarkSources.generateJavaSource(20_000, 1L)
+						.stream()
+						.map(DiffLine::getText)
+						.collect(Collectors.toList());
+			}
+		}
+	}
+
+	private static List<String> readJavaSources(final Path directory) {
+		if (!Files.isDirectory(directory)) {
+			throw new IllegalStateException("Directory with Java sources doesn't exist: " + directory.toAbsolutePath()
+					+ " (set the bex.benchmark.sources system property)");
+		}
+
+		List<String> lines = new ArrayList<>();
+
+		try (Stream<Path> paths = Files.walk(directory)) {
+			for (Path path : (Iterable<Path>) paths.filter(p -> p.toString().endsWith(".java"))::iterator) {
+				lines.addAll(Files.readAllLines(path, StandardCharsets.UTF_8));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		return lines;
+	}
+
+	@Benchmark
+	public void normalizeWhitespace(final Lines input, final Blackhole blackhole) {
+		for (String line : input.lines) {
+			blackhole.consume(DiffHelper.WHITESPACE_NORMALIZATION_FUNCTION.apply(line, "").getLeft());
+		}
+	}
+
+	/**
+	 * Baseline for {@link #normalizeWhitespace(Lines, Blackhole)}
+	 */
+	@Benchmark
+	public void normalizeWhitespaceUsingRegex(final Lines input, final Blackhole blackhole) {
+		for (String line : input.lines) {
+			blackhole.consume(DiffHelper.normalizeWhitespaceUsingRegex(line, "").getLeft());
+		}
+	}
+}
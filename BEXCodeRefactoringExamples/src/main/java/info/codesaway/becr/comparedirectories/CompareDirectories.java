@@ -1,10 +1,14 @@
 package info.codesaway.becr.comparedirectories;
 
 import static info.codesaway.becr.comparedirectories.CompareDirectoriesOption.EXCLUDE_DEFAULT_SUBSTITUTIONS;
+import static info.codesaway.becr.comparedirectories.CompareDirectoriesOption.TRUST_SIZE_AND_MODIFIED_TIME;
+import static info.codesaway.becr.comparedirectories.CompareDirectoriesOption.VIRTUAL_THREAD_IO;
 import static info.codesaway.becr.util.ExcelUtilities.EXCEL_COLUMN_CHARACTER_MULTIPLIER;
 import static info.codesaway.bex.BEXSide.LEFT;
 import static info.codesaway.bex.BEXSide.RIGHT;
+import static info.codesaway.bex.diff.NormalizationFunction.normalization;
 import static info.codesaway.bex.diff.substitution.SubstitutionType.LCS_MAX_OPERATOR;
+import static info.codesaway.bex.diff.substitution.SubstitutionType.LCS_MIN_OPERATOR;
 import static info.codesaway.bex.diff.substitution.SubstitutionType.SUBSTITUTION_CONTAINS;
 import static info.codesaway.bex.diff.substitution.java.JavaRefactorings.IMPORT_SAME_CLASSNAME_DIFFERENT_PACKAGE;
 import static info.codesaway.bex.diff.substitution.java.JavaRefactorings.JAVA_CAST;
@@ -12,10 +16,12 @@ import static info.codesaway.bex.diff.substitution.java.JavaRefactorings.JAVA_DI
 import static info.codesaway.bex.diff.substitution.java.JavaRefactorings.JAVA_FINAL_KEYWORD;
 import static info.codesaway.bex.diff.substitution.java.JavaRefactorings.JAVA_SEMICOLON;
 import static info.codesaway.bex.diff.substitution.java.JavaRefactorings.JAVA_UNBOXING;
+import static info.codesaway.bex.util.BEXUtilities.checkArgument;
 import static java.util.stream.Collectors.toList;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -23,6 +29,7 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.HashMap;
@@ -37,32 +44,33 @@ import java.util.StringJoiner;
 import java.util.TreeMap;
 import java.util.Vector;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.function.BiFunction;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.Font;
 import org.apache.poi.ss.usermodel.IndexedColors;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.util.CellRangeAddress;
-import org.apache.poi.xssf.usermodel.XSSFCellStyle;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.eclipse.jdt.core.dom.ASTParser;
-import org.eclipse.jdt.core.dom.CompilationUnit;
-import org.eclipse.jdt.core.dom.FileASTRequestor;
-import org.eclipse.jdt.core.dom.PackageDeclaration;
 
 import com.google.common.base.Splitter;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.LinkedHashMultiset;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.MultimapBuilder;
@@ -86,6 +94,8 @@ import info.codesaway.becr.parsing.MethodSignature;
 import info.codesaway.becr.parsing.ParsingUtilities;
 import info.codesaway.becr.parsing.ProjectPath;
 import info.codesaway.becr.util.ExcelUtilities;
+import info.codesaway.becr.util.ExecutorUtilities;
+import info.codesaway.becr.util.FileUtilities;
 import info.codesaway.bex.BEXListPair;
 import info.codesaway.bex.BEXMapPair;
 import info.codesaway.bex.BEXPair;
@@ -93,14 +103,20 @@ import info.codesaway.bex.BEXPairValue;
 import info.codesaway.bex.BEXSide;
 import info.codesaway.bex.MutableIntBEXPair;
 import info.codesaway.bex.diff.BasicDiffType;
+import info.codesaway.bex.diff.DiffBudget;
 import info.codesaway.bex.diff.DiffEdit;
 import info.codesaway.bex.diff.DiffHelper;
 import info.codesaway.bex.diff.DiffLine;
 import info.codesaway.bex.diff.DiffNormalizedText;
 import info.codesaway.bex.diff.DiffType;
 import info.codesaway.bex.diff.DiffUnit;
+import info.codesaway.bex.diff.NormalizedLines;
+import info.codesaway.bex.diff.cache.CachedDiff;
+import info.codesaway.bex.diff.cache.DiffCache;
+import info.codesaway.bex.diff.cache.DiffCacheKey;
 import info.codesaway.bex.diff.myers.MyersLinearDiff;
 import info.codesaway.bex.diff.patience.PatienceDiff;
+import info.codesaway.bex.diff.substitution.SubstitutionPipeline;
 import info.codesaway.bex.diff.substitution.SubstitutionType;
 import info.codesaway.bex.diff.substitution.java.EnhancedForLoopRefactoring;
 import info.codesaway.bex.util.BEXUtilities;
@@ -135,6 +151,12 @@ public class CompareDirectories {
 
 	private static final Splitter lineSplitter = Splitter.onPattern("\r?+\n|\r");
 
+	/**
+	 * Version of how the diffs are computed, which is part of the diff cache key
+	 * (increment if the diff or substitution algorithms change, so the previously cached diffs aren't used)
+	 */
+	private static final int DIFF_CACHE_ALGORITHM_VERSION = 1;
+
 	// Read from JAVA_HOME environment variable
 	// TODO: also support specifying it
 	private final String jrePathname = System.getenv("JAVA_HOME");
@@ -149,6 +171,13 @@ public class CompareDirectories {
 	private final Map<Integer, List<BiFunction<Path, BEXListPair<DiffLine>, SubstitutionType>>> substitutionGroups = new TreeMap<>();
 	private final List<BiFunction<Path, BEXListPair<DiffLine>, SubstitutionType>> substitutionTypes = new ArrayList<>();
 
+	/**
+	 * Pipeline for each substitution group, which records the statistics across all files
+	 * (the substitution types are created for each file, so each file uses a copy sharing the statistics)
+	 */
+	private final Map<Integer, SubstitutionPipeline> substitutionPipelines = new ConcurrentHashMap<>();
+	private final SubstitutionPipeline lcsMinSubstitutionPipeline = SubstitutionPipeline.of(LCS_MIN_OPERATOR);
+
 	private boolean excludeLCSMaxSubstitution = false;
 	private boolean excludeLCSMinSubstitution = false;
 
@@ -161,6 +190,26 @@ public class CompareDirectories {
 
 	private boolean shouldShowDisplayMessages = false;
 
+	private Supplier<DiffBudget> diffBudgetSupplier;
+
+	private DiffCache diffCache;
+	private String diffCacheConfigurationId = "";
+
+	private int diffParallelism = Runtime.getRuntime().availableProcessors();
+	private int visitParallelism = Runtime.getRuntime().availableProcessors();
+	private int parseBatchSize = 1000;
+	private int parserParallelism = 2;
+	private int ioConcurrency = 64;
+
+	private CompareDirectoriesReportWriter reportWriter;
+
+	/**
+	 * The first error writing a difference row (rethrown by {@link #compare(BEXPair)} after the files are compared)
+	 *
+	 * <p>(rows are written using the diff threads, where throwing would only stop the thread running the task)</p>
+	 */
+	private volatile IOException reportWriterFailure;
+
 	private Comparator<Path> pathComparator = Comparator.naturalOrder();
 
 	private Predicate<Path> shouldCheckPath = this::shouldCheckPath;
@@ -250,6 +299,152 @@ public class CompareDirectories {
 		return this;
 	}
 
+	/**
+	 * Limits how much work is done when diffing each file, so a pathological file can't stall the compare
+	 *
+	 * <p>If the budget runs out, the file's diff is valid, but coarser ({@link DifferencesResult#isApproximate()} will be <code>true</code>)</p>
+	 *
+	 * @param diffBudgetSupplier supplies a new budget for each file (such as <code>() -&gt; DiffBudget.ofTime(Duration.ofSeconds(5))</code>); if null, no limit
+	 * @return <code>this</code> object
+	 * @since 0.15
+	 */
+	public CompareDirectories diffBudget(final Supplier<DiffBudget> diffBudgetSupplier) {
+		this.diffBudgetSupplier = diffBudgetSupplier;
+		return this;
+	}
+
+	/**
+	 * Uses the cache to get the differences for files whose diff was previously computed (such as when comparing the same directories again)
+	 *
+	 * @param diffCache the diff cache (if null, diffs aren't cached)
+	 * @return <code>this</code> object
+	 * @see #diffCache(DiffCache, String)
+	 * @since 0.15
+	 */
+	public CompareDirectories diffCache(final DiffCache diffCache) {
+		return this.diffCache(diffCache, "");
+	}
+
+	/**
+	 * Uses the cache to get the differences for files whose diff was previously computed (such as when comparing the same directories again)
+	 *
+	 * <p>Diffs are cached by the contents of both files, the normalization function, and the substitution types (by their {@link SubstitutionType#getCacheId() cache id}).
+	 * If any of the substitution types for a file doesn't have a cache id (such as a lambda), the diff for that file isn't cached.
+	 * Approximate diffs (due to the {@link #diffBudget(Supplier)}) aren't cached.
+	 * If the diffs would be computed differently, without changing the cache ids, specify a different configuration id,
+	 * so the diffs computed using the previous configuration aren't used.</p>
+	 *
+	 * <p><b>NOTE</b>: substitution statistics ({@link #getSubstitutionStatistics()}) only include the files whose diff was computed</p>
+	 *
+	 * @param diffCache the diff cache (if null, diffs aren't cached)
+	 * @param configurationId identifies the configuration used to compute the diffs
+	 * @return <code>this</code> object
+	 * @since 0.15
+	 */
+	public CompareDirectories diffCache(final DiffCache diffCache, final String configurationId) {
+		this.diffCache = diffCache;
+		this.diffCacheConfigurationId = Objects.requireNonNull(configurationId, "configurationId");
+		return this;
+	}
+
+	/**
+	 * Sets the number of threads used to read and compare files
+	 *
+	 * <p>Files are compared while walking the directories; if the threads fall behind, walking waits for them to catch up</p>
+	 *
+	 * @param diffParallelism the number of threads (defaults to the number of processors)
+	 * @return <code>this</code> object
+	 * @since 0.15
+	 */
+	public CompareDirectories diffParallelism(final int diffParallelism) {
+		checkArgument(diffParallelism > 0, "diffParallelism must be positive");
+		this.diffParallelism = diffParallelism;
+		return this;
+	}
+
+	/**
+	 * Sets the number of threads used to visit the parsed Java code
+	 *
+	 * <p>The threads which parse the Java code are set separately (see {@link #parserParallelism(int)})</p>
+	 *
+	 * @param visitParallelism the number of threads (defaults to the number of processors)
+	 * @return <code>this</code> object
+	 * @since 0.15
+	 */
+	public CompareDirectories visitParallelism(final int visitParallelism) {
+		checkArgument(visitParallelism > 0, "visitParallelism must be positive");
+		this.visitParallelism = visitParallelism;
+		return this;
+	}
+
+	/**
+	 * Sets the number of modified Java files parsed at once
+	 *
+	 * <p>Java files are parsed in batches while the other files are still being compared.
+	 * A new parser is created for each batch (using the {@link #parserBiFunction(BiFunction)}), so larger batches have less overhead,
+	 * but parsing starts later and more differences are kept waiting to be parsed.</p>
+	 *
+	 * @param parseBatchSize the number of Java files parsed at once (defaults to 1000)
+	 * @return <code>this</code> object
+	 * @since 0.15
+	 */
+	public CompareDirectories parseBatchSize(final int parseBatchSize) {
+		checkArgument(parseBatchSize > 0, "parseBatchSize must be positive");
+		this.parseBatchSize = parseBatchSize;
+		return this;
+	}
+
+	/**
+	 * Sets the number of threads used to parse the modified Java files
+	 *
+	 * <p>Each side of each batch (see {@link #parseBatchSize(int)}) is parsed by one thread using its own parser.
+	 * The default parses the left and right sides at the same time; more threads also parse multiple batches at the same time.
+	 * Each parser resolves bindings using its own copy of the classpath, so each thread uses more memory.</p>
+	 *
+	 * <p>If there are fewer modified Java files than the batch size, use a smaller batch size to parse more batches at the same time.</p>
+	 *
+	 * @param parserParallelism the number of threads (defaults to 2)
+	 * @return <code>this</code> object
+	 * @since 0.15
+	 */
+	public CompareDirectories parserParallelism(final int parserParallelism) {
+		checkArgument(parserParallelism > 0, "parserParallelism must be positive");
+		this.parserParallelism = parserParallelism;
+		return this;
+	}
+
+	/**
+	 * Sets the max number of files read at the same time, when using {@link CompareDirectoriesOption#VIRTUAL_THREAD_IO}
+	 *
+	 * <p>A file's text is kept until its differences are determined, so this also limits the number of files in memory</p>
+	 *
+	 * @param ioConcurrency the max number of files read at the same time (defaults to 64)
+	 * @return <code>this</code> object
+	 * @since 0.15
+	 */
+	public CompareDirectories ioConcurrency(final int ioConcurrency) {
+		checkArgument(ioConcurrency > 0, "ioConcurrency must be positive");
+		this.ioConcurrency = ioConcurrency;
+		return this;
+	}
+
+	/**
+	 * Sets the report writer, which is given each row of the report while the compare is still running
+	 *
+	 * <p>The difference rows are written as the paths are compared; the detail rows are written as the Java code is analyzed.
+	 * The report writer isn't closed by the compare.</p>
+	 *
+	 * <p>If unable to write a row, no more rows are written and {@link #compare(BEXPair)} throws the IOException.</p>
+	 *
+	 * @param reportWriter the report writer (or <code>null</code> to not write the rows)
+	 * @return <code>this</code> object
+	 * @since 0.15
+	 */
+	public CompareDirectories reportWriter(final CompareDirectoriesReportWriter reportWriter) {
+		this.reportWriter = reportWriter;
+		return this;
+	}
+
 	/**
 	 * @param substitutionTypeSuppliers
 	 * @return <code>this</code> object
@@ -405,6 +600,8 @@ public class CompareDirectories {
 
 		BEXPair<Path> rootPath = workspace.map(Paths::get);
 
+		this.reportWriterFailure = null;
+
 		// Store location where should copy files from
 		// (copy from right rootPath, which is thought as the "after" changes location)
 		// (leave null if shouldn't copy files)
@@ -415,7 +612,25 @@ public class CompareDirectories {
 		// This way if added a new package with 10 classes, would have 1 line showing the new package, listing the 10 classes
 		// (versus having one line for the new package and 10 extra lines for each of the new classes)
 
-		CompareDirectoriesDifferencesResult compareDirectoriesDifferencesResult = this.findDifferences(rootPath);
+		// Map from path to list of differences
+		// (path will be the destination path)
+		Map<Path, DifferencesResult> javaPathDiffMap = new ConcurrentHashMap<>();
+
+		// Java code is parsed while comparing the other files
+		JavaParseStage javaParseStage = new JavaParseStage(parser,
+				workspace.map(w -> () -> this.parserBiFunction.apply(w, this.jrePathname)), javaPathDiffMap,
+				this.parseBatchSize, this.parserParallelism, this.visitParallelism);
+
+		CompareDirectoriesDifferencesResult compareDirectoriesDifferencesResult = this.findDifferences(rootPath,
+				javaPathDiffMap, javaParseStage);
+
+		this.println("Parsing Java code");
+		BEXMapPair<String, CompareJavaCodeInfo> parseResults = javaParseStage.finish();
+
+		IOException reportWriterFailure = this.reportWriterFailure;
+		if (reportWriterFailure != null) {
+			throw reportWriterFailure;
+		}
 
 		BEXListPair<ProjectPath> javaPaths = compareDirectoriesDifferencesResult.getJavaPaths();
 
@@ -436,9 +651,6 @@ public class CompareDirectories {
 		//						.map(ProjectPath::getPathname)
 		//						.toArray(String[]::new));
 
-		this.println("Parsing Java code");
-		BEXMapPair<String, CompareJavaCodeInfo> parseResults = parse(parser, javaPaths, diffs);
-
 		this.println("Analyzing Java code");
 
 		// For each pair of paths
@@ -492,6 +704,10 @@ public class CompareDirectories {
 			List<CompareDirectoriesJoinedDetail> changes = this.determineChanges(parseResult, differencesResult,
 					correspondingCodeResult, extendedRanges, ranges);
 			javaPath.acceptBoth(p -> javaChanges.put(p, changes));
+
+			if (this.reportWriter != null) {
+				this.writeDetails(javaPath.getRight(), parseResult.getRight(), changes);
+			}
 		}
 
 		long endTime = System.currentTimeMillis();
@@ -501,6 +717,19 @@ public class CompareDirectories {
 				javaChanges);
 	}
 
+	private void writeDetails(final ProjectPath javaPath, final CompareJavaCodeInfo javaParseResults,
+			final List<CompareDirectoriesJoinedDetail> changes) throws IOException {
+		for (CompareDirectoriesJoinedDetail change : changes) {
+			List<String> values = this.getDetailValues(javaPath, javaParseResults, change);
+
+			if (!values.isEmpty()) {
+				synchronized (this.reportWriter) {
+					this.reportWriter.writeDetail(DETAILS_COLUMN_NAMES, values);
+				}
+			}
+		}
+	}
+
 	// TODO: how to allow user to customize how to determine changes?
 	private List<CompareDirectoriesJoinedDetail> determineChanges(
 			final BEXPair<CompareJavaCodeInfo> parseResult, final DifferencesResult differencesResult,
@@ -837,6 +1066,19 @@ public class CompareDirectories {
 		}
 	}
 
+	/**
+	 * Column names of the Differences sheet (and the difference rows written by the report writer)
+	 */
+	private static final List<String> DIFFERENCES_COLUMN_NAMES = Arrays.stream(DifferencesExcelColumn.values())
+			.map(DifferencesExcelColumn::getHeaderName)
+			.collect(ImmutableList.toImmutableList());
+
+	/**
+	 * Column names of the project sheets (and the detail rows written by the report writer)
+	 */
+	private static final List<String> DETAILS_COLUMN_NAMES = ImmutableList.of("Package", "Class", "Change", "Type",
+			"Impact", "Modifiers", "Return / Class", "Method / Field", "Info", "Differences", "Deltas");
+
 	private static int PROJECT_COLUMN = DifferencesExcelColumn.PROJECT_COLUMN.ordinal();
 	private static int DIRECTORY_COLUMN = DifferencesExcelColumn.DIRECTORY_COLUMN.ordinal();
 	private static int FILENAME_COLUMN = DifferencesExcelColumn.FILENAME_COLUMN.ordinal();
@@ -846,12 +1088,75 @@ public class CompareDirectories {
 	private static int DELTAS_COLUMN = DifferencesExcelColumn.DELTAS_COLUMN.ordinal();
 	private static int PATHNAME_COLUMN = DifferencesExcelColumn.PATHNAME_COLUMN.ordinal();
 
-	private XSSFCellStyle WRAP_TEXT_CELL_STYLE;
+	private CellStyle WRAP_TEXT_CELL_STYLE;
 
 	@SuppressFBWarnings(value = "RCN_REDUNDANT_NULLCHECK_OF_NONNULL_VALUE", justification = "https://github.com/spotbugs/spotbugs/issues/756")
 	public XSSFWorkbook generateExcelReport(final Path excelReportPath,
 			final Map<String, String> projectSheetNameMap,
 			final CompareDirectoriesResult compareDirectoriesResult) throws IOException {
+		try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+			this.writeExcelReport(workbook, excelReportPath, projectSheetNameMap, compareDirectoriesResult);
+			return workbook;
+		}
+	}
+
+	/**
+	 * Generates the same Excel report as {@link #generateExcelReport(Path, Map, CompareDirectoriesResult)}, while keeping only the last 100 rows of each sheet in memory
+	 *
+	 * @param excelReportPath the path to write the report
+	 * @param projectSheetNameMap map from project to the name of its sheet (used if the project name isn't a valid sheet name)
+	 * @param compareDirectoriesResult the compare result
+	 * @throws IOException if unable to write the report
+	 * @since 0.15
+	 * @see #generateStreamingExcelReport(Path, Map, CompareDirectoriesResult, int)
+	 */
+	public void generateStreamingExcelReport(final Path excelReportPath,
+			final Map<String, String> projectSheetNameMap,
+			final CompareDirectoriesResult compareDirectoriesResult) throws IOException {
+		this.generateStreamingExcelReport(excelReportPath, projectSheetNameMap, compareDirectoriesResult,
+				SXSSFWorkbook.DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * Generates the same Excel report as {@link #generateExcelReport(Path, Map, CompareDirectoriesResult)}, while keeping only the last rows of each sheet in memory
+	 *
+	 * <p>Rows outside the row window are written to a (compressed) temporary file, so the memory used doesn't depend on the number of changes.
+	 * Use for large reports (such as hundreds of thousands of changes), where the in-memory workbook would take too much memory.</p>
+	 *
+	 * @param excelReportPath the path to write the report
+	 * @param projectSheetNameMap map from project to the name of its sheet (used if the project name isn't a valid sheet name)
+	 * @param compareDirectoriesResult the compare result
+	 * @param rowWindowSize the number of rows of each sheet kept in memory
+	 * @throws IOException if unable to write the report
+	 * @since 0.15
+	 */
+	@SuppressFBWarnings(value = "RCN_REDUNDANT_NULLCHECK_OF_NONNULL_VALUE", justification = "https://github.com/spotbugs/spotbugs/issues/756")
+	public void generateStreamingExcelReport(final Path excelReportPath,
+			final Map<String, String> projectSheetNameMap,
+			final CompareDirectoriesResult compareDirectoriesResult, final int rowWindowSize) throws IOException {
+		checkArgument(rowWindowSize > 0, "rowWindowSize must be positive");
+
+		try (SXSSFWorkbook workbook = new SXSSFWorkbook(rowWindowSize)) {
+			workbook.setCompressTempFiles(true);
+
+			try {
+				this.writeExcelReport(workbook, excelReportPath, projectSheetNameMap, compareDirectoriesResult);
+			} finally {
+				// Delete the temporary files (not deleted when closed)
+				workbook.dispose();
+			}
+		}
+	}
+
+	/**
+	 * Writes the Excel report
+	 *
+	 * <p>Rows are only added in order and aren't read back (so the workbook can be a streaming workbook)</p>
+	 */
+	@SuppressFBWarnings(value = "RCN_REDUNDANT_NULLCHECK_OF_NONNULL_VALUE", justification = "https://github.com/spotbugs/spotbugs/issues/756")
+	private void writeExcelReport(final Workbook workbook, final Path excelReportPath,
+			final Map<String, String> projectSheetNameMap,
+			final CompareDirectoriesResult compareDirectoriesResult) throws IOException {
 
 		// Make a copy so can add entris as create sheets
 		// (handle case of sheetname longer than 31 characters)
@@ -860,483 +1165,508 @@ public class CompareDirectories {
 		// TODO: refactor so split excel report creation from comparison
 		// This way, compare would return the results of the compare, regardless if an excel report was generated or not
 		// This allows, for example, creating a custom report
-		try (XSSFWorkbook workbook = new XSSFWorkbook()) {
-			XSSFCellStyle wrapTextCellStyle = workbook.createCellStyle();
-			wrapTextCellStyle.setWrapText(true);
-			this.WRAP_TEXT_CELL_STYLE = wrapTextCellStyle;
-
-			XSSFCellStyle hyperlinkCellStyle = workbook.createCellStyle();
-			Font hyperlinkFont = workbook.createFont();
-			hyperlinkFont.setUnderline(Font.U_SINGLE);
-			hyperlinkFont.setColor(IndexedColors.BLUE.getIndex());
-			hyperlinkCellStyle.setFont(hyperlinkFont);
-
-			int lastColumn = DifferencesExcelColumn.values().length - 1;
-
-			// Details header columns
-			List<String> detailsHeaderColumnNames = new ArrayList<>();
+		CellStyle wrapTextCellStyle = workbook.createCellStyle();
+		wrapTextCellStyle.setWrapText(true);
+		this.WRAP_TEXT_CELL_STYLE = wrapTextCellStyle;
+
+		CellStyle hyperlinkCellStyle = workbook.createCellStyle();
+		Font hyperlinkFont = workbook.createFont();
+		hyperlinkFont.setUnderline(Font.U_SINGLE);
+		hyperlinkFont.setColor(IndexedColors.BLUE.getIndex());
+		hyperlinkCellStyle.setFont(hyperlinkFont);
+
+		int lastColumn = DifferencesExcelColumn.values().length - 1;
+
+		// Details header columns
+		List<String> detailsHeaderColumnNames = DETAILS_COLUMN_NAMES;
+
+		// Initialize column numbers
+		int packageColumn = detailsHeaderColumnNames.indexOf("Package");
+		int classColumn = detailsHeaderColumnNames.indexOf("Class");
+		int detailsChangeTypeColumn = detailsHeaderColumnNames.indexOf("Change");
+		int typeColumn = detailsHeaderColumnNames.indexOf("Type");
+		int modifiersColumn = detailsHeaderColumnNames.indexOf("Modifiers");
+		int returnColumn = detailsHeaderColumnNames.indexOf("Return / Class");
+		int methodColumn = detailsHeaderColumnNames.indexOf("Method / Field");
+		int infoColumn = detailsHeaderColumnNames.indexOf("Info");
+		int detailsDifferencesColumn = detailsHeaderColumnNames.indexOf("Differences");
+		int detailsDeltasColumn = detailsHeaderColumnNames.indexOf("Deltas");
+
+		int lastDetailsColumn = detailsHeaderColumnNames.size() - 1;
+
+		// Create sheets
+		String sheetName = "Differences";
+		Sheet sheet = workbook.createSheet(sheetName);
+		ExcelUtilities.createHeaderRow(sheet, 0, DIFFERENCES_COLUMN_NAMES);
+
+		// TODO: support creating specific project sheets at the front
+		// (so to show them in a certain order versus alphabetical)
+		// For example, to put the commonly changed stuff first
+		//			XSSFSheet combinedEJBWebSheet = workbook.createSheet(combinedSheetName);
+		//			ParsingUtilities.createHeaderRow(combinedSheet, 0, detailsHeaderColumnNames);
+
+		// Track the last row number of each sheet, instead of using Sheet.getLastRowNum
+		// (a streaming sheet only knows the rows still in memory)
+		Map<String, Integer> lastRowNums = new HashMap<>();
+		lastRowNums.put(sheetName, 0);
+
+		for (PathChangeInfo change : compareDirectoriesResult.getCompareDirectoriesDifferencesResult()
+				.getPathChanges()) {
+			this.addDifference(sheet, lastRowNums.merge(sheetName, 1, Integer::sum), change);
+		}
 
-			// Initialize column numbers and names
-			int packageColumn = detailsHeaderColumnNames.size();
-			detailsHeaderColumnNames.add("Package");
+		for (ProjectPath javaPath : compareDirectoriesResult.getJavaPaths().getRight()) {
+			List<CompareDirectoriesJoinedDetail> javaChanges = compareDirectoriesResult.getJavaChanges()
+					.get(javaPath);
+			CompareJavaCodeInfo javaParseResults = compareDirectoriesResult.getJavaParseResults().get(javaPath);
 
-			int classColumn = detailsHeaderColumnNames.size();
-			detailsHeaderColumnNames.add("Class");
+			// For each change, output to spreadsheet
+			for (CompareDirectoriesJoinedDetail change : javaChanges) {
+				//										println(
+				//												change.getCodeInfo() + "\t" + change.getExtendedDifferenceCount() + "\t"
+				//														+ change.getDifferenceCount());
 
-			int detailsChangeTypeColumn = detailsHeaderColumnNames.size();
-			detailsHeaderColumnNames.add("Change");
+				List<String> values = this.getDetailValues(javaPath, javaParseResults, change);
 
-			int typeColumn = detailsHeaderColumnNames.size();
-			detailsHeaderColumnNames.add("Type");
+				if (values.isEmpty()) {
+					// There was no change
+					continue;
+				}
 
-			//			int impactColumn = detailsHeaderColumnNames.size();
-			detailsHeaderColumnNames.add("Impact");
+				String project = javaPath.getProject();
+				String[] rowValues = values.toArray(new String[0]);
+				String infoText = rowValues[infoColumn];
 
-			int modifiersColumn = detailsHeaderColumnNames.size();
-			detailsHeaderColumnNames.add("Modifiers");
+				if (!infoText.isEmpty() && (infoText.charAt(0) == '+' || infoText.charAt(0) == '-')) {
+					// Make Excel happy, so doesn't think cell is a formula and complain
+					rowValues[infoColumn] = "'" + infoText;
+				}
 
-			int returnColumn = detailsHeaderColumnNames.size();
-			detailsHeaderColumnNames.add("Return / Class");
+				// TODO: Combine EJB and WebProjects together (unless Excel is fussy)
+				String detailsSheetName = project;
+				//						String detailsSheetName = "Details";
 
-			int methodColumn = detailsHeaderColumnNames.size();
-			detailsHeaderColumnNames.add("Method / Field");
+				String projectSpecificDetailsSheetName = projectSheetNames.get(project);
 
-			int infoColumn = detailsHeaderColumnNames.size();
-			detailsHeaderColumnNames.add("Info");
+				if (projectSpecificDetailsSheetName != null) {
+					detailsSheetName = projectSpecificDetailsSheetName;
+				}
 
-			int detailsDifferencesColumn = detailsHeaderColumnNames.size();
-			detailsHeaderColumnNames.add("Differences");
+				Sheet detailsSheet = workbook.getSheet(detailsSheetName);
 
-			int detailsDeltasColumn = detailsHeaderColumnNames.size();
-			detailsHeaderColumnNames.add("Deltas");
+				// First time using sheet
+				if (detailsSheet == null) {
+					detailsSheet = workbook.createSheet(detailsSheetName);
+					projectSheetNames.put(project, detailsSheet.getSheetName());
 
-			int lastDetailsColumn = detailsHeaderColumnNames.size() - 1;
+					ExcelUtilities.createHeaderRow(detailsSheet, 0, detailsHeaderColumnNames);
+					lastRowNums.put(detailsSheet.getSheetName(), 0);
+				}
 
-			// Create sheets
-			String sheetName = "Differences";
-			XSSFSheet sheet = workbook.createSheet(sheetName);
-			List<String> headerNames = Arrays.stream(DifferencesExcelColumn.values())
-					.map(DifferencesExcelColumn::getHeaderName)
-					.collect(toList());
-			ExcelUtilities.createHeaderRow(sheet, 0, headerNames);
+				int rowNum = lastRowNums.merge(detailsSheet.getSheetName(), 1, Integer::sum);
+				Row row = ExcelUtilities.addRow(detailsSheet, rowNum, rowValues);
 
-			// TODO: support creating specific project sheets at the front
-			// (so to show them in a certain order versus alphabetical)
-			// For example, to put the commonly changed stuff first
-			//			XSSFSheet combinedEJBWebSheet = workbook.createSheet(combinedSheetName);
-			//			ParsingUtilities.createHeaderRow(combinedSheet, 0, detailsHeaderColumnNames);
+				// Wrap text for method and info column
+				row.getCell(packageColumn).setCellStyle(wrapTextCellStyle);
+				row.getCell(classColumn).setCellStyle(wrapTextCellStyle);
 
-			for (PathChangeInfo change : compareDirectoriesResult.getCompareDirectoriesDifferencesResult()
-					.getPathChanges()) {
-				this.addDifference(sheet, change);
-			}
+				if (rowValues[modifiersColumn] != null) {
+					row.getCell(modifiersColumn).setCellStyle(wrapTextCellStyle);
+				}
 
-			for (ProjectPath javaPath : compareDirectoriesResult.getJavaPaths().getRight()) {
-				List<CompareDirectoriesJoinedDetail> javaChanges = compareDirectoriesResult.getJavaChanges()
-						.get(javaPath);
-				CompareJavaCodeInfo javaParseResults = compareDirectoriesResult.getJavaParseResults().get(javaPath);
+				if (rowValues[returnColumn] != null) {
+					row.getCell(returnColumn).setCellStyle(wrapTextCellStyle);
 
-				// For each change, output to spreadsheet
-				for (CompareDirectoriesJoinedDetail change : javaChanges) {
-					//										println(
-					//												change.getCodeInfo() + "\t" + change.getExtendedDifferenceCount() + "\t"
-					//														+ change.getDifferenceCount());
+				}
 
-					if (change.getExtendedDifferenceCount() == 0 && change.getDifferenceCount() == 0) {
-						// There was no change
-						change.setImpact(ImpactType.NONE);
-						continue;
-					}
+				if (rowValues[methodColumn] != null) {
+					row.getCell(methodColumn).setCellStyle(wrapTextCellStyle);
+				}
 
-					StringJoiner info = new StringJoiner(System.lineSeparator());
-					int notesLength = 0;
+				row.getCell(infoColumn).setCellStyle(wrapTextCellStyle);
+			}
+		}
 
-					for (String note : change.getNotes()) {
-						info.add(note);
+		this.println("Formatting reports");
 
-						notesLength += note.length();
+		// ParsingUtilities.makeReportsPretty(sheet, lastColumn);
 
-						if (notesLength > 10000) {
-							info.add("Trimmed long change notes");
-							break;
-						}
-					}
+		// Add filtering
+		// (start on first row, so exclude title row)
+		sheet.setAutoFilter(new CellRangeAddress(0, lastRowNums.get(sheetName), 0, lastColumn));
 
-					final PathChangeType changeType;
-					final CodeInfoWithLineInfo codeInfo;
+		// Freeze header row
+		sheet.createFreezePane(0, 1);
 
-					if (change.getLeftCode() == null) {
-						// Added or unknown code block
+		// Don't autosize columns due to issue processing so many rows
+		// Autosize columns
+		// ParsingUtilities.autosizeColumnsFromSheet(sheet, 0, lastColumn);
 
-						if (change.getRightCode() == null) {
-							// Unknown code block
-							// TODO: could set based on whether unknown code was added / deleted or a combination
-							changeType = PathChangeType.MODIFIED;
-							codeInfo = null;
-						} else {
-							changeType = PathChangeType.ADDED;
-							codeInfo = change.getRightCode();
-						}
-					} else {
-						// Modified or deleted code block
-						assert change.getLeftCode() != null;
-
-						if (change.getRightCode() == null) {
-							// Deleted code block
-							changeType = PathChangeType.DELETED;
-							codeInfo = change.getLeftCode();
-
-							if (this.isTesting) {
-								this.println("Deleted change: " + change + "\t"
-										+ change.getLineChanges().entrySet());
-							}
-
-							//								int commentedOutLinesCount = change.getLineChanges()
-							//										.count(LineChangeType.COMMENTED_OUT);
-
-							//								if (commentedOutLinesCount > 0) {
-							//									// Add 1 since inclusive on both sides
-							//									int totalBodyLines = change.getCode1().getEndLine()
-							//											- change.getCode1().getStartLine() + 1;
-							//
-							//									if (commentedOutLinesCount == totalBodyLines) {
-							//										info.add("Commented out entire body");
-							//									} else {
-							//										info.add("Commented out part of body");
-							//									}
-							//								}
-						} else {
-							changeType = PathChangeType.MODIFIED;
-							// Get "destination" code block, in case changed (such as method signature change)
-							codeInfo = change.getRightCode();
-
-							if (this.isTesting) {
-								this.println("Modified change: " + change + "\t"
-										+ change.getLineChanges().entrySet());
-							}
-						}
-					}
+		sheet.setColumnWidth(PROJECT_COLUMN, 33 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
 
-					change.setPathChangeType(changeType);
+		sheet.setColumnWidth(DIRECTORY_COLUMN, 33 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
 
-					String project = javaPath.getProject();
-					String packageName = javaParseResults.getPackageName();
+		sheet.setColumnWidth(FILENAME_COLUMN, 21 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
 
-					String className = javaPath.getName();
-					className = className.substring(0, className.length() - ".java".length());
+		sheet.setColumnWidth(FILE_TYPE_COLUMN, 12 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
+		sheet.setColumnWidth(CHANGE_COLUMN, 10 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
+		sheet.setColumnWidth(DIFFERENCES_COLUMN, 15 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
+		sheet.setColumnWidth(DELTAS_COLUMN, 15 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
 
-					CodeInfoWithSourceInfo codeInfoWithSourceInfo = new CodeInfoWithSourceInfo(project,
-							packageName,
-							// Don't need to specify source pathname (last parameter), since not used for CompareDirectories
-							className, codeInfo == null ? null : codeInfo.getCodeInfo(), "", null);
+		sheet.setColumnWidth(PATHNAME_COLUMN, 33 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
 
-					// Will be null if not method
+		// Format all the details sheets (skip the Differences sheet)
+		for (Sheet detailsSheet : workbook) {
+			if (BEXUtilities.in(detailsSheet.getSheetName(), sheetName)) {
+				continue;
+			}
 
-					String modifiers = codeInfoWithSourceInfo.getModifiers();
+			// Add filtering
+			// (start on first row, so exclude title row)
+			detailsSheet.setAutoFilter(new CellRangeAddress(0, lastRowNums.get(detailsSheet.getSheetName()), 0,
+					lastDetailsColumn));
 
-					String returnValue = getReturnValue(codeInfoWithSourceInfo);
-					String signature = getSignature(codeInfoWithSourceInfo);
+			// Freeze header row
+			detailsSheet.createFreezePane(0, 1);
 
-					if (codeInfoWithSourceInfo.isMethod()) {
-						MethodSignature methodSignature = codeInfoWithSourceInfo
-								.getMethodSignature();
-						returnValue = methodSignature.getReturnValue();
-						signature = methodSignature.getSignature();
-					} else if (codeInfoWithSourceInfo.isField()) {
-						FieldInfo fieldInfo = codeInfoWithSourceInfo.getFieldInfo();
-						returnValue = fieldInfo.getType();
-						signature = fieldInfo.getName();
-					} else {
-						returnValue = null;
-						signature = null;
-					}
+			// Don't autosize columns due to issue processing so many rows
+			// Autosize columns
+			// ParsingUtilities.autosizeColumnsFromSheet(sheet, 0, lastColumn);
 
-					CodeType codeType = codeInfoWithSourceInfo.getCodeType();
+			// Format remaining two columns (others are specified below)
+			detailsSheet.setColumnWidth(classColumn, 21 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
 
-					// Ignore unknown changes (where change.getLeftCode() == null)
-					if (changeType == PathChangeType.MODIFIED && change.getLeftCode() != null) {
-						// Get info for "source" code
-						// If changed modifiers, return value, or, signature indicate on report
-						CodeInfoWithSourceInfo leftCodeInfoWithSourceInfo = new CodeInfoWithSourceInfo(project,
-								packageName,
-								// Don't need to specify source pathname (last parameter), since not used for CompareDirectories
-								className, change.getLeftCode().getCodeInfo(), "", null);
+			detailsSheet.setColumnWidth(detailsChangeTypeColumn, 10 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
 
-						String leftModifiers = leftCodeInfoWithSourceInfo.getModifiers();
-						boolean hasModifiersChanged = !Objects.equals(leftModifiers, modifiers);
+			// Allows CONSTRUCTOR to fully display
+			detailsSheet.setColumnWidth(typeColumn, 14 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
 
-						String leftReturnValue = getReturnValue(leftCodeInfoWithSourceInfo);
-						boolean hasReturnValueChanged = !Objects.equals(leftReturnValue, returnValue);
+			detailsSheet.setColumnWidth(modifiersColumn, 12 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
 
-						String leftSignature = getSignature(leftCodeInfoWithSourceInfo);
-						boolean hasSignatureChanged = !Objects.equals(leftSignature, signature);
+			detailsSheet.setColumnWidth(packageColumn, 21 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
 
-						if (hasModifiersChanged || hasReturnValueChanged || hasSignatureChanged) {
-							info.add("Refactored");
+			detailsSheet.setColumnWidth(returnColumn, 20 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
+			detailsSheet.setColumnWidth(methodColumn, 50 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
+			detailsSheet.setColumnWidth(infoColumn, 95 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
 
-							if (hasModifiersChanged) {
-								info.add(leftModifiers + " -> "
-										+ modifiers);
-							}
+			detailsSheet.setColumnWidth(detailsDifferencesColumn, 15 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
+			detailsSheet.setColumnWidth(detailsDeltasColumn, 15 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
 
-							if (hasReturnValueChanged) {
-								info.add(leftReturnValue + " -> "
-										+ returnValue);
-							}
+			//				sheet0.setColumnWidth(linesColumn, 7 * ParsingUtilities.EXCEL_COLUMN_CHARACTER_MULTIPLIER);
+		}
 
-							if (hasSignatureChanged) {
-								info.add(leftSignature + " -> "
-										+ signature);
-							}
-						}
-					}
+		this.println("Writing report at: " + excelReportPath);
+		try (OutputStream outputStream = Files.newOutputStream(excelReportPath)) {
+			workbook.write(outputStream);
+			this.println("Report saved at: " + excelReportPath);
 
-					if (change.getDifferenceCount() == 0) {
-						info.add("Has no change in actual body");
-					}
+			if (this.copyChangedFilesDestinationPath != null) {
+				Path destination = this.copyChangedFilesDestinationPath
+						.resolve(excelReportPath.getFileName());
 
-					if (change.getExtendedDifferenceCount() != 0) {
-						info.add("Has change before " + codeType.toString().toLowerCase(Locale.ENGLISH));
-					}
+				Files.copy(excelReportPath, destination);
+				this.println("Saved a copy of the report to: " + destination);
+			}
+		}
+	}
 
-					boolean allComments = change
-							.getCommentLinesCount() == change.getExtendedDifferenceCount()
-									+ change.getDifferenceCount();
+	/**
+	 * Gets the values for the change's row in the report (same columns as {@link #DETAILS_COLUMN_NAMES})
+	 *
+	 * <p>The values are determined once, since determining them also sets the change's impact</p>
+	 *
+	 * @return the values, or an empty list if there was no change
+	 */
+	private List<String> getDetailValues(final ProjectPath javaPath, final CompareJavaCodeInfo javaParseResults,
+			final CompareDirectoriesJoinedDetail change) {
+		List<String> values = change.getReportValues();
 
-					if (allComments) {
-						info.add("All changed lines are comments");
+		if (values == null) {
+			values = this.determineDetailValues(javaPath, javaParseResults, change);
+			change.setReportValues(values);
+		}
 
-						if (change.isImpactBlank()) {
-							change.setImpact(ImpactType.NONE);
-						}
-					}
+		return values;
+	}
 
-					boolean allBlankLines = change.getBlankLinesCount() == change.getExtendedDifferenceCount()
-							+ change.getDifferenceCount();
+	private List<String> determineDetailValues(final ProjectPath javaPath,
+			final CompareJavaCodeInfo javaParseResults, final CompareDirectoriesJoinedDetail change) {
+		if (change.getExtendedDifferenceCount() == 0 && change.getDifferenceCount() == 0) {
+			// There was no change
+			change.setImpact(ImpactType.NONE);
+			return Collections.emptyList();
+		}
 
-					if (allBlankLines) {
-						info.add("All changed lines are blank lines");
+		StringJoiner info = new StringJoiner(System.lineSeparator());
+		int notesLength = 0;
 
-						if (change.isImpactBlank()) {
-							change.setImpact(ImpactType.NONE);
-						}
-					}
+		for (String note : change.getNotes()) {
+			info.add(note);
 
-					boolean allCommentsOrBlankLines = change.getBlankLinesCount() != 0
-							&& change.getCommentLinesCount() != 0
-							&& change.getCommentLinesCount()
-									+ change.getBlankLinesCount() == change.getExtendedDifferenceCount()
-											+ change.getDifferenceCount();
+			notesLength += note.length();
 
-					if (allCommentsOrBlankLines) {
-						info.add("All changed lines are comments or blank lines");
+			if (notesLength > 10000) {
+				info.add("Trimmed long change notes");
+				break;
+			}
+		}
 
-						if (change.isImpactBlank()) {
-							change.setImpact(ImpactType.NONE);
-						}
-					}
+		final PathChangeType changeType;
+		final CodeInfoWithLineInfo codeInfo;
 
-					if (change.isImpactBlank() && changeType == PathChangeType.ADDED && codeType == CodeType.FIELD
-							&& Objects.equals(returnValue, "long")
-							&& Objects.equals(signature, "serialVersionUID")) {
-						change.setImpact(ImpactType.NONE);
-					}
+		if (change.getLeftCode() == null) {
+			// Added or unknown code block
 
-					if (change.isImpactBlank() && !change.getLineChanges().isEmpty()) {
-						if (this.isTesting) {
-							this.println(change.getLineChanges());
-						}
-						boolean isLowImpactChange = change.getLineChanges()
-								.keySet()
-								.stream()
-								.allMatch(DiffType::shouldTreatAsNormalizedEqual);
-
-						if (isLowImpactChange) {
-							change.setImpact(ImpactType.LOW);
-							info.add("Max impact of changed lines is low");
-						}
-					}
+			if (change.getRightCode() == null) {
+				// Unknown code block
+				// TODO: could set based on whether unknown code was added / deleted or a combination
+				changeType = PathChangeType.MODIFIED;
+				codeInfo = null;
+			} else {
+				changeType = PathChangeType.ADDED;
+				codeInfo = change.getRightCode();
+			}
+		} else {
+			// Modified or deleted code block
+			assert change.getLeftCode() != null;
 
-					//						if (change.isImpactBlank()) {
-					//							ImpactType maxImpactType = change.getLineChanges()
-					//									.stream()
-					//									.map(c -> c.getImpactType())
-					//									.max(Comparator.comparing(ImpactType::getImpact))
-					//									.orElse(ImpactType.UNKNOWN);
-					//
-					//							if (maxImpactType == ImpactType.NONE) {
-					//								change.setImpact(ImpactType.NONE);
-					//
-					//								info.add("None of the line changes have any impact");
-					//							} else if (maxImpactType == ImpactType.LOW) {
-					//								change.setImpact(ImpactType.LOW);
-					//
-					//								info.add("Max impact of changed lines is low");
-					//							}
-					//						}
+			if (change.getRightCode() == null) {
+				// Deleted code block
+				changeType = PathChangeType.DELETED;
+				codeInfo = change.getLeftCode();
 
-					int shortMethodLineCount = 5;
+				if (this.isTesting) {
+					this.println("Deleted change: " + change + "\t"
+							+ change.getLineChanges().entrySet());
+				}
 
-					if (change.isImpactBlank() && changeType == PathChangeType.ADDED
-							&& codeInfoWithSourceInfo.isMethod()
-							&& Objects.requireNonNull(codeInfo).getLineCount() <= shortMethodLineCount) {
-						change.setImpact(ImpactType.LOW);
-						info.add("Short method with " + codeInfo.getLineCount() + " lines");
-					}
+				//								int commentedOutLinesCount = change.getLineChanges()
+				//										.count(LineChangeType.COMMENTED_OUT);
 
-					if (change.isImpactBlank() && changeType == PathChangeType.MODIFIED
-							&& codeInfoWithSourceInfo.isMethod()
-							&& codeInfo != null
-							&& codeInfo.getLineCount() <= shortMethodLineCount
-							&& change.getLeftCode().getLineCount() <= shortMethodLineCount) {
-						change.setImpact(ImpactType.LOW);
-						info.add("Short method with " + codeInfo.getLineCount() + " lines");
-					}
+				//								if (commentedOutLinesCount > 0) {
+				//									// Add 1 since inclusive on both sides
+				//									int totalBodyLines = change.getCode1().getEndLine()
+				//											- change.getCode1().getStartLine() + 1;
+				//
+				//									if (commentedOutLinesCount == totalBodyLines) {
+				//										info.add("Commented out entire body");
+				//									} else {
+				//										info.add("Commented out part of body");
+				//									}
+				//								}
+			} else {
+				changeType = PathChangeType.MODIFIED;
+				// Get "destination" code block, in case changed (such as method signature change)
+				codeInfo = change.getRightCode();
 
-					boolean showDeltas = changeType == PathChangeType.MODIFIED && change.getLeftCode() != null
-							&& change.getRightCode() != null;
+				if (this.isTesting) {
+					this.println("Modified change: " + change + "\t"
+							+ change.getLineChanges().entrySet());
+				}
+			}
+		}
 
-					String differences = (showDeltas ? String.valueOf(change.getModifiedDifferences()) : "");
-					String deltas = (showDeltas ? String.valueOf(change.getModifiedDeltas()) : "");
+		change.setPathChangeType(changeType);
 
-					ImpactType impact = change.getImpact();
-					String impactValue = (impact == null ? null : impact.toString());
+		String project = javaPath.getProject();
+		String packageName = javaParseResults.getPackageName();
 
-					String infoText = info.toString();
+		String className = javaPath.getName();
+		className = className.substring(0, className.length() - ".java".length());
 
-					if (!infoText.isEmpty() && (infoText.charAt(0) == '+' || infoText.charAt(0) == '-')) {
-						// Make Excel happy, so doesn't think cell is a formula and complain
-						infoText = "'" + infoText;
-					}
+		CodeInfoWithSourceInfo codeInfoWithSourceInfo = new CodeInfoWithSourceInfo(project,
+				packageName,
+				// Don't need to specify source pathname (last parameter), since not used for CompareDirectories
+				className, codeInfo == null ? null : codeInfo.getCodeInfo(), "", null);
 
-					// TODO: Combine EJB and WebProjects together (unless Excel is fussy)
-					String detailsSheetName = project;
-					//						String detailsSheetName = "Details";
+		// Will be null if not method
 
-					String projectSpecificDetailsSheetName = projectSheetNames.get(project);
+		String modifiers = codeInfoWithSourceInfo.getModifiers();
 
-					if (projectSpecificDetailsSheetName != null) {
-						detailsSheetName = projectSpecificDetailsSheetName;
-					}
+		String returnValue = getReturnValue(codeInfoWithSourceInfo);
+		String signature = getSignature(codeInfoWithSourceInfo);
 
-					XSSFSheet detailsSheet = workbook.getSheet(detailsSheetName);
+		if (codeInfoWithSourceInfo.isMethod()) {
+			MethodSignature methodSignature = codeInfoWithSourceInfo
+					.getMethodSignature();
+			returnValue = methodSignature.getReturnValue();
+			signature = methodSignature.getSignature();
+		} else if (codeInfoWithSourceInfo.isField()) {
+			FieldInfo fieldInfo = codeInfoWithSourceInfo.getFieldInfo();
+			returnValue = fieldInfo.getType();
+			signature = fieldInfo.getName();
+		} else {
+			returnValue = null;
+			signature = null;
+		}
 
-					// First time using sheet
-					if (detailsSheet == null) {
-						detailsSheet = workbook.createSheet(detailsSheetName);
-						projectSheetNames.put(project, detailsSheet.getSheetName());
+		CodeType codeType = codeInfoWithSourceInfo.getCodeType();
 
-						ExcelUtilities.createHeaderRow(detailsSheet, 0, detailsHeaderColumnNames);
-					}
+		// Ignore unknown changes (where change.getLeftCode() == null)
+		if (changeType == PathChangeType.MODIFIED && change.getLeftCode() != null) {
+			// Get info for "source" code
+			// If changed modifiers, return value, or, signature indicate on report
+			CodeInfoWithSourceInfo leftCodeInfoWithSourceInfo = new CodeInfoWithSourceInfo(project,
+					packageName,
+					// Don't need to specify source pathname (last parameter), since not used for CompareDirectories
+					className, change.getLeftCode().getCodeInfo(), "", null);
 
-					Row row = ExcelUtilities.addRow(detailsSheet, packageName, className,
-							changeType.toString(), codeType.toString(), impactValue, modifiers, returnValue,
-							signature, infoText, differences, deltas);
+			String leftModifiers = leftCodeInfoWithSourceInfo.getModifiers();
+			boolean hasModifiersChanged = !Objects.equals(leftModifiers, modifiers);
 
-					// Wrap text for method and info column
-					row.getCell(packageColumn).setCellStyle(wrapTextCellStyle);
-					row.getCell(classColumn).setCellStyle(wrapTextCellStyle);
+			String leftReturnValue = getReturnValue(leftCodeInfoWithSourceInfo);
+			boolean hasReturnValueChanged = !Objects.equals(leftReturnValue, returnValue);
 
-					if (modifiers != null) {
-						row.getCell(modifiersColumn).setCellStyle(wrapTextCellStyle);
-					}
+			String leftSignature = getSignature(leftCodeInfoWithSourceInfo);
+			boolean hasSignatureChanged = !Objects.equals(leftSignature, signature);
 
-					if (returnValue != null) {
-						row.getCell(returnColumn).setCellStyle(wrapTextCellStyle);
+			if (hasModifiersChanged || hasReturnValueChanged || hasSignatureChanged) {
+				info.add("Refactored");
 
-					}
+				if (hasModifiersChanged) {
+					info.add(leftModifiers + " -> "
+							+ modifiers);
+				}
 
-					if (signature != null) {
-						row.getCell(methodColumn).setCellStyle(wrapTextCellStyle);
-					}
+				if (hasReturnValueChanged) {
+					info.add(leftReturnValue + " -> "
+							+ returnValue);
+				}
 
-					row.getCell(infoColumn).setCellStyle(wrapTextCellStyle);
+				if (hasSignatureChanged) {
+					info.add(leftSignature + " -> "
+							+ signature);
 				}
 			}
+		}
 
-			this.println("Formatting reports");
-
-			// ParsingUtilities.makeReportsPretty(sheet, lastColumn);
-
-			// Add filtering
-			// (start on first row, so exclude title row)
-			sheet.setAutoFilter(new CellRangeAddress(0, sheet.getLastRowNum(), 0, lastColumn));
+		if (change.getDifferenceCount() == 0) {
+			info.add("Has no change in actual body");
+		}
 
-			// Freeze header row
-			sheet.createFreezePane(0, 1);
+		if (change.getExtendedDifferenceCount() != 0) {
+			info.add("Has change before " + codeType.toString().toLowerCase(Locale.ENGLISH));
+		}
 
-			// Don't autosize columns due to issue processing so many rows
-			// Autosize columns
-			// ParsingUtilities.autosizeColumnsFromSheet(sheet, 0, lastColumn);
+		boolean allComments = change
+				.getCommentLinesCount() == change.getExtendedDifferenceCount()
+						+ change.getDifferenceCount();
 
-			sheet.setColumnWidth(PROJECT_COLUMN, 33 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
+		if (allComments) {
+			info.add("All changed lines are comments");
 
-			sheet.setColumnWidth(DIRECTORY_COLUMN, 33 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
+			if (change.isImpactBlank()) {
+				change.setImpact(ImpactType.NONE);
+			}
+		}
 
-			sheet.setColumnWidth(FILENAME_COLUMN, 21 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
+		boolean allBlankLines = change.getBlankLinesCount() == change.getExtendedDifferenceCount()
+				+ change.getDifferenceCount();
 
-			sheet.setColumnWidth(FILE_TYPE_COLUMN, 12 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
-			sheet.setColumnWidth(CHANGE_COLUMN, 10 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
-			sheet.setColumnWidth(DIFFERENCES_COLUMN, 15 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
-			sheet.setColumnWidth(DELTAS_COLUMN, 15 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
+		if (allBlankLines) {
+			info.add("All changed lines are blank lines");
 
-			sheet.setColumnWidth(PATHNAME_COLUMN, 33 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
+			if (change.isImpactBlank()) {
+				change.setImpact(ImpactType.NONE);
+			}
+		}
 
-			// Format all the details sheets (skip the Differences sheet)
-			for (Sheet detailsSheet : workbook) {
-				if (BEXUtilities.in(detailsSheet.getSheetName(), sheetName)) {
-					continue;
-				}
+		boolean allCommentsOrBlankLines = change.getBlankLinesCount() != 0
+				&& change.getCommentLinesCount() != 0
+				&& change.getCommentLinesCount()
+						+ change.getBlankLinesCount() == change.getExtendedDifferenceCount()
+								+ change.getDifferenceCount();
 
-				// Add filtering
-				// (start on first row, so exclude title row)
-				detailsSheet.setAutoFilter(new CellRangeAddress(0, detailsSheet.getLastRowNum(), 0, lastDetailsColumn));
+		if (allCommentsOrBlankLines) {
+			info.add("All changed lines are comments or blank lines");
 
-				// Freeze header row
-				detailsSheet.createFreezePane(0, 1);
+			if (change.isImpactBlank()) {
+				change.setImpact(ImpactType.NONE);
+			}
+		}
 
-				// Don't autosize columns due to issue processing so many rows
-				// Autosize columns
-				// ParsingUtilities.autosizeColumnsFromSheet(sheet, 0, lastColumn);
+		if (change.isImpactBlank() && changeType == PathChangeType.ADDED && codeType == CodeType.FIELD
+				&& Objects.equals(returnValue, "long")
+				&& Objects.equals(signature, "serialVersionUID")) {
+			change.setImpact(ImpactType.NONE);
+		}
 
-				// Format remaining two columns (others are specified below)
-				detailsSheet.setColumnWidth(classColumn, 21 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
+		if (change.isImpactBlank() && !change.getLineChanges().isEmpty()) {
+			if (this.isTesting) {
+				this.println(change.getLineChanges());
+			}
+			boolean isLowImpactChange = change.getLineChanges()
+					.keySet()
+					.stream()
+					.allMatch(DiffType::shouldTreatAsNormalizedEqual);
 
-				detailsSheet.setColumnWidth(detailsChangeTypeColumn, 10 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
+			if (isLowImpactChange) {
+				change.setImpact(ImpactType.LOW);
+				info.add("Max impact of changed lines is low");
+			}
+		}
 
-				// Allows CONSTRUCTOR to fully display
-				detailsSheet.setColumnWidth(typeColumn, 14 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
+		//						if (change.isImpactBlank()) {
+		//							ImpactType maxImpactType = change.getLineChanges()
+		//									.stream()
+		//									.map(c -> c.getImpactType())
+		//									.max(Comparator.comparing(ImpactType::getImpact))
+		//									.orElse(ImpactType.UNKNOWN);
+		//
+		//							if (maxImpactType == ImpactType.NONE) {
+		//								change.setImpact(ImpactType.NONE);
+		//
+		//								info.add("None of the line changes have any impact");
+		//							} else if (maxImpactType == ImpactType.LOW) {
+		//								change.setImpact(ImpactType.LOW);
+		//
+		//								info.add("Max impact of changed lines is low");
+		//							}
+		//						}
 
-				detailsSheet.setColumnWidth(modifiersColumn, 12 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
+		int shortMethodLineCount = 5;
 
-				detailsSheet.setColumnWidth(packageColumn, 21 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
+		if (change.isImpactBlank() && changeType == PathChangeType.ADDED
+				&& codeInfoWithSourceInfo.isMethod()
+				&& Objects.requireNonNull(codeInfo).getLineCount() <= shortMethodLineCount) {
+			change.setImpact(ImpactType.LOW);
+			info.add("Short method with " + codeInfo.getLineCount() + " lines");
+		}
 
-				detailsSheet.setColumnWidth(returnColumn, 20 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
-				detailsSheet.setColumnWidth(methodColumn, 50 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
-				detailsSheet.setColumnWidth(infoColumn, 95 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
+		if (change.isImpactBlank() && changeType == PathChangeType.MODIFIED
+				&& codeInfoWithSourceInfo.isMethod()
+				&& codeInfo != null
+				&& codeInfo.getLineCount() <= shortMethodLineCount
+				&& change.getLeftCode().getLineCount() <= shortMethodLineCount) {
+			change.setImpact(ImpactType.LOW);
+			info.add("Short method with " + codeInfo.getLineCount() + " lines");
+		}
 
-				detailsSheet.setColumnWidth(detailsDifferencesColumn, 15 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
-				detailsSheet.setColumnWidth(detailsDeltasColumn, 15 * EXCEL_COLUMN_CHARACTER_MULTIPLIER);
+		boolean showDeltas = changeType == PathChangeType.MODIFIED && change.getLeftCode() != null
+				&& change.getRightCode() != null;
 
-				//				sheet0.setColumnWidth(linesColumn, 7 * ParsingUtilities.EXCEL_COLUMN_CHARACTER_MULTIPLIER);
-			}
+		String differences = (showDeltas ? String.valueOf(change.getModifiedDifferences()) : "");
+		String deltas = (showDeltas ? String.valueOf(change.getModifiedDeltas()) : "");
 
-			this.println("Writing report at: " + excelReportPath);
-			try (OutputStream outputStream = Files.newOutputStream(excelReportPath)) {
-				workbook.write(outputStream);
-				this.println("Report saved at: " + excelReportPath);
+		ImpactType impact = change.getImpact();
+		String impactValue = (impact == null ? null : impact.toString());
 
-				if (this.copyChangedFilesDestinationPath != null) {
-					Path destination = this.copyChangedFilesDestinationPath
-							.resolve(excelReportPath.getFileName());
+		return Arrays.asList(packageName, className, changeType.toString(), codeType.toString(), impactValue,
+				modifiers, returnValue, signature, info.toString(), differences, deltas);
+	}
 
-					Files.copy(excelReportPath, destination);
-					this.println("Saved a copy of the report to: " + destination);
-				}
-			}
+	/**
+	 * Gets the values for the change's row in the report (same columns as {@link #DIFFERENCES_COLUMN_NAMES})
+	 */
+	private static List<String> getDifferenceValues(final PathChangeInfo change) {
+		int differenceCount = change.getDifferenceCount();
+		int deltaCount = change.getDeltaCount();
 
-			return workbook;
-		}
+		return Arrays.asList(change.getProject(), change.getDirectory(), change.getFilenameWithoutExtension(),
+				change.getExtension(), change.getFileType().toString(), change.getPathChangeType().toString(),
+				differenceCount >= 0 ? String.valueOf(differenceCount) : "",
+				deltaCount >= 0 ? String.valueOf(deltaCount) : "",
+				change.getRelativePath().toString());
 	}
 
 	private void println() {
@@ -1680,6 +2010,9 @@ public class CompareDirectories {
 	 * Gets the differences
 	 *
 	 * <p><b>NOTE</b>: this method may be overridden to implement your own functionality</p>
+	 *
+	 * <p>Each line is normalized once and the normalized text is reused by each stage (see {@link NormalizedLines}),
+	 * so the normalization function must normalize each line independent of the other line.</p>
 	 * @param relativePath the relative path for file to compare
 	 * @param lines the contents of the file
 	 * @param normalizationFunction the normalization function to use
@@ -1687,10 +2020,11 @@ public class CompareDirectories {
 	 */
 	public DifferencesResult getDifferences(final Path relativePath, final BEXListPair<DiffLine> lines,
 			final BiFunction<String, String, DiffNormalizedText> normalizationFunction) {
-		List<DiffEdit> diff = PatienceDiff.diff(lines.getLeft(), lines.getRight(), normalizationFunction,
-				MyersLinearDiff.with(normalizationFunction));
+		Map<Integer, List<SubstitutionType>> substitutionGroups = new LinkedHashMap<>();
 
-		for (List<BiFunction<Path, BEXListPair<DiffLine>, SubstitutionType>> value : this.substitutionGroups.values()) {
+		for (Map.Entry<Integer, List<BiFunction<Path, BEXListPair<DiffLine>, SubstitutionType>>> entry : this.substitutionGroups
+				.entrySet()) {
+			List<BiFunction<Path, BEXListPair<DiffLine>, SubstitutionType>> value = entry.getValue();
 			List<SubstitutionType> substitutionTypes = value.stream()
 					.map(s -> s.apply(relativePath, lines))
 					.collect(toList());
@@ -1700,13 +2034,53 @@ public class CompareDirectories {
 				substitutionTypes.add(LCS_MAX_OPERATOR);
 			}
 
-			DiffHelper.handleSubstitution(diff, normalizationFunction,
-					substitutionTypes.toArray(new SubstitutionType[0]));
+			substitutionGroups.put(entry.getKey(), substitutionTypes);
+		}
+
+		DiffCacheKey diffCacheKey = this.getDiffCacheKey(lines, normalizationFunction, substitutionGroups);
+
+		if (diffCacheKey != null) {
+			try {
+				CachedDiff cachedDiff = this.diffCache.get(diffCacheKey, lines.getLeft(), lines.getRight());
+
+				if (cachedDiff != null) {
+					return new DifferencesResult(relativePath, lines, normalizationFunction, cachedDiff.getDiff(),
+							cachedDiff.getDiffBlocks());
+				}
+			} catch (IOException e) {
+				this.printf("Unable to read diff cache for '%s': %s%n", relativePath, e);
+			}
+		}
+
+		DiffBudget budget = this.diffBudgetSupplier != null ? this.diffBudgetSupplier.get() : null;
+
+		NormalizedLines normalizedLines = NormalizedLines.of(lines.getLeft(), lines.getRight(),
+				normalization(normalizationFunction));
+
+		List<DiffEdit> diff = PatienceDiff.diff(lines.getLeft(), lines.getRight(), normalizedLines,
+				MyersLinearDiff.with(normalizedLines, budget));
+
+		boolean isApproximate = budget != null && budget.isExhausted();
+
+		if (isApproximate && !this.isTesting) {
+			this.printf("Diff budget exhausted for '%s' (diff is approximate)%n", relativePath);
+		}
+
+		for (Map.Entry<Integer, List<SubstitutionType>> entry : substitutionGroups.entrySet()) {
+			List<SubstitutionType> substitutionTypes = entry.getValue();
+
+			// Recreate the pipeline if substitution types were added after comparing files
+			SubstitutionPipeline pipeline = this.substitutionPipelines.compute(entry.getKey(),
+					(k, p) -> p != null && p.getSubstitutionTypes().size() == substitutionTypes.size()
+							? p
+							: SubstitutionPipeline.of(substitutionTypes));
+
+			DiffHelper.handleSubstitution(diff, normalizedLines, pipeline.withSubstitutionTypes(substitutionTypes));
 		}
 
 		if (!this.excludeLCSMinSubstitution) {
 			// Do separately, so LCS max can find better matches and do only run LCS min on leftovers
-			DiffHelper.handleSubstitution(diff, normalizationFunction, SubstitutionType.LCS_MIN_OPERATOR);
+			DiffHelper.handleSubstitution(diff, normalizedLines, this.lcsMinSubstitutionPipeline);
 		}
 
 		// TODO: handle split lines BEFORE handle moved lines
@@ -1719,11 +2093,86 @@ public class CompareDirectories {
 
 		List<DiffUnit> diffBlocks = DiffHelper.combineToDiffBlocks(diff, true);
 
-		DiffHelper.handleSplitLines(diffBlocks, normalizationFunction);
+		DiffHelper.handleSplitLines(diffBlocks, normalizedLines);
 
-		DiffHelper.handleBlankLines(diffBlocks, normalizationFunction);
+		DiffHelper.handleBlankLines(diffBlocks, normalizedLines);
 
-		return new DifferencesResult(relativePath, lines, normalizationFunction, diff, diffBlocks);
+		if (diffCacheKey != null && !isApproximate) {
+			try {
+				this.diffCache.put(diffCacheKey, diff, diffBlocks, lines.getLeft(), lines.getRight());
+			} catch (IOException e) {
+				this.printf("Unable to write diff cache for '%s': %s%n", relativePath, e);
+			}
+		}
+
+		return new DifferencesResult(relativePath, lines, normalizationFunction, diff, diffBlocks, isApproximate);
+	}
+
+	/**
+	 * Gets the key used to cache the diff
+	 *
+	 * @return the key (or <code>null</code> if not using a diff cache, the normalization function isn't known,
+	 * or a substitution type doesn't have a cache id)
+	 */
+	private DiffCacheKey getDiffCacheKey(final BEXListPair<DiffLine> lines,
+			final BiFunction<String, String, DiffNormalizedText> normalizationFunction,
+			final Map<Integer, List<SubstitutionType>> substitutionGroups) {
+		if (this.diffCache == null || normalizationFunction != DiffHelper.WHITESPACE_NORMALIZATION_FUNCTION) {
+			// Other normalization functions don't have an id, so their diffs cannot be cached
+			return null;
+		}
+
+		StringJoiner configuration = new StringJoiner(";");
+		configuration.add("version=" + DIFF_CACHE_ALGORITHM_VERSION);
+		configuration.add(this.diffCacheConfigurationId);
+
+		for (Map.Entry<Integer, List<SubstitutionType>> entry : substitutionGroups.entrySet()) {
+			StringJoiner group = new StringJoiner(",", entry.getKey() + "=", "");
+
+			for (SubstitutionType substitutionType : entry.getValue()) {
+				// LcsSubstitution doesn't have a cache id (since its operator is a lambda)
+				String cacheId = substitutionType == LCS_MAX_OPERATOR ? "LCS_MAX_OPERATOR"
+						: substitutionType.getCacheId();
+
+				if (cacheId == null) {
+					// The substitution type cannot be identified across runs, so the diff cannot be cached
+					return null;
+				}
+
+				group.add(cacheId);
+			}
+
+			configuration.add(group.toString());
+		}
+
+		configuration.add("lcsMin=" + !this.excludeLCSMinSubstitution);
+
+		return DiffCacheKey.of(lines.getLeft(), lines.getRight(), "whitespace", configuration.toString());
+	}
+
+	/**
+	 * Gets the statistics for each substitution type, across all files compared so far
+	 *
+	 * <p>Includes each substitution group, in numeric order, followed by LCS min substitution.
+	 * Can be used to determine which substitution types are expensive or rarely find a substitution.</p>
+	 *
+	 * @return the statistics for each substitution type
+	 * @since 0.15
+	 */
+	public List<SubstitutionPipeline.Statistics> getSubstitutionStatistics() {
+		List<SubstitutionPipeline.Statistics> statistics = new ArrayList<>();
+
+		for (Integer group : this.substitutionGroups.keySet()) {
+			SubstitutionPipeline pipeline = this.substitutionPipelines.get(group);
+
+			if (pipeline != null) {
+				statistics.addAll(pipeline.getStatistics());
+			}
+		}
+
+		statistics.addAll(this.lcsMinSubstitutionPipeline.getStatistics());
+
+		return statistics;
 	}
 
 	private static void addChange(final List<CompareDirectoriesJoinedDetail> changes,
@@ -1899,66 +2348,6 @@ public class CompareDirectories {
 				.collect(Collectors.toList());
 	}
 
-	private static BEXMapPair<String, CompareJavaCodeInfo> parse(final BEXPair<ASTParser> parser,
-			final BEXListPair<ProjectPath> javaPaths, final Map<Path, DifferencesResult> diffs) {
-
-		return new BEXMapPair<>(parse(LEFT, parser, javaPaths, diffs), parse(RIGHT, parser, javaPaths, diffs));
-	}
-
-	private static Map<String, CompareJavaCodeInfo> parse(final BEXSide side, final BEXPair<ASTParser> parserPair,
-			final BEXListPair<ProjectPath> javaPaths, final Map<Path, DifferencesResult> diffs) {
-		Map<String, CompareJavaCodeInfo> results = new ConcurrentHashMap<>();
-
-		ASTParser parser = parserPair.get(side);
-
-		String[] sourcePathnames = javaPaths.get(side).stream().map(ProjectPath::getPathname).toArray(String[]::new);
-
-		// TODO: multi-thread using ExecutorService
-		ExecutorService executorService = Executors.newWorkStealingPool();
-
-		parser.createASTs(sourcePathnames, null, new String[0],
-				new FileASTRequestor() {
-					@Override
-					public void acceptAST(final String sourcePathname,
-							final CompilationUnit cu) {
-
-						//						println("Parsing " + sourcePathname);
-
-						executorService.execute(() -> {
-							Path path = Paths.get(sourcePathname);
-							CompareDirectoriesVisitor visitor = new CompareDirectoriesVisitor(cu,
-									diffs.get(path).getLines(side));
-							cu.accept(visitor);
-
-							String packageName = "";
-
-							PackageDeclaration packageDeclaration = cu.getPackage();
-
-							if (packageDeclaration != null) {
-								packageName = packageDeclaration.getName().toString();
-							}
-
-							results.put(sourcePathname,
-									new CompareJavaCodeInfo(packageName, visitor.getDetails()));
-						});
-					}
-				}, null);
-
-		// https://www.baeldung.com/java-executor-wait-for-threads
-		// Set to 60 minutes just in case it takes a while
-		executorService.shutdown();
-		try {
-			if (!executorService.awaitTermination(60, TimeUnit.MINUTES)) {
-				executorService.shutdownNow();
-			}
-		} catch (InterruptedException ex) {
-			executorService.shutdownNow();
-			Thread.currentThread().interrupt();
-		}
-
-		return results;
-	}
-
 	private static int countBlankLines(final List<DiffLine> lines, final CodeInfoWithLineInfo code) {
 		return (int) lines.stream()
 				// Count number of blank lines
@@ -1967,27 +2356,30 @@ public class CompareDirectories {
 				.count();
 	}
 
-	private CompareDirectoriesDifferencesResult findDifferences(final BEXPair<Path> rootPath)
+	/**
+	 * Finds the differences between the directories
+	 *
+	 * <p>Walks both directories, comparing the files which exist in both directories using a bounded executor
+	 * (walking waits if the files cannot be compared fast enough). Modified Java files are added to the parse stage.</p>
+	 *
+	 * <p>If using virtual threads for I/O, the files are read using virtual threads, and only the modified files are compared using the bounded executor.</p>
+	 */
+	private CompareDirectoriesDifferencesResult findDifferences(final BEXPair<Path> rootPath,
+			final Map<Path, DifferencesResult> javaPathDiffMap, final JavaParseStage javaParseStage)
 			throws IOException {
-		BEXListPair<Path> paths = new BEXListPair<>(rootPath.mapThrows(r -> Files.walk(r)
-				// Run in parallel for performance boost
-				.parallel()
-				.filter(this.shouldCheckPath)
-				// Sort so can iterate over and find differences
-				.sorted(this.pathComparator)
-				.collect(toList())));
+		ExecutorService ioExecutorService = this.newIOExecutorService();
+		Semaphore ioPermits = new Semaphore(this.ioConcurrency);
+
+		BEXListPair<Path> paths = this.walk(rootPath, ioExecutorService);
 
 		List<PathChangeInfo> pathChanges = new Vector<>();
 
 		BEXListPair<ProjectPath> javaPaths = new BEXListPair<>(Vector::new);
 
-		// Map from path to list of differences
-		// (path will be the destination path)
-		Map<Path, DifferencesResult> javaPathDiffMap = new ConcurrentHashMap<>();
-
 		MutableIntBEXPair index = new MutableIntBEXPair();
 
-		ExecutorService executorService = Executors.newWorkStealingPool();
+		ExecutorService executorService = ExecutorUtilities.newBoundedExecutor("bex-diff", this.diffParallelism,
+				this.diffParallelism * 2);
 
 		while (index.getLeft() < paths.getLeft().size() && index.getRight() < paths.getRight().size()) {
 			BEXPair<Path> path = paths.get(index);
@@ -2012,9 +2404,8 @@ public class CompareDirectories {
 				// This means left path does not exist in the right directory
 				// (that is, the path was deleted)
 				index.incrementAndGet(side);
-				executorService.execute(
-						() -> pathChanges
-								.add(this.createDifference(side, relativePath, fileType, PathChangeType.DELETED)));
+				this.addPathChange(pathChanges,
+						this.createDifference(side, relativePath, fileType, PathChangeType.DELETED));
 			} else if (compare > 0) {
 				// Left path is after right path
 				// This means right path does not exist in the left directory
@@ -2022,8 +2413,8 @@ public class CompareDirectories {
 				index.incrementAndGet(side);
 
 				if (this.shouldReportAdd(path.get(side), fileType.get(side))) {
-					executorService.execute(() -> pathChanges
-							.add(this.createDifference(side, relativePath, fileType, PathChangeType.ADDED)));
+					this.addPathChange(pathChanges,
+							this.createDifference(side, relativePath, fileType, PathChangeType.ADDED));
 				}
 			} else {
 				// Same name
@@ -2032,8 +2423,13 @@ public class CompareDirectories {
 				// Verify type matches
 				if (fileType.test(Objects::equals)) {
 					if (fileType.get(side) == FileType.FILE) {
-						executorService.execute(() -> this.determineFileChanges(path, relativePath.get(side),
-								pathChanges, javaPaths, javaPathDiffMap));
+						if (ioExecutorService != null) {
+							this.determineFileChanges(ioExecutorService, ioPermits, executorService, path,
+									relativePath.get(side), pathChanges, javaPaths, javaPathDiffMap, javaParseStage);
+						} else {
+							executorService.execute(() -> this.determineFileChanges(path, relativePath.get(side),
+									pathChanges, javaPaths, javaPathDiffMap, javaParseStage));
+						}
 
 						// XXX: add back function to test specific path for differences
 						// (implement outside of this, by filtering the paths)
@@ -2055,33 +2451,27 @@ public class CompareDirectories {
 
 					// Show directory last, so groups directory and any subfolder's files together
 					if (fileType.getLeft() == FileType.DIRECTORY) {
-						executorService.execute(() -> {
-							pathChanges.add(this.createDifference(RIGHT, relativePath, fileType, PathChangeType.ADDED));
-							pathChanges
-									.add(this.createDifference(LEFT, relativePath, fileType, PathChangeType.DELETED));
-						});
+						this.addPathChange(pathChanges,
+								this.createDifference(RIGHT, relativePath, fileType, PathChangeType.ADDED));
+						this.addPathChange(pathChanges,
+								this.createDifference(LEFT, relativePath, fileType, PathChangeType.DELETED));
 					} else {
-						executorService.execute(() -> {
-							pathChanges
-									.add(this.createDifference(LEFT, relativePath, fileType, PathChangeType.DELETED));
-							pathChanges.add(this.createDifference(RIGHT, relativePath, fileType, PathChangeType.ADDED));
-						});
+						this.addPathChange(pathChanges,
+								this.createDifference(LEFT, relativePath, fileType, PathChangeType.DELETED));
+						this.addPathChange(pathChanges,
+								this.createDifference(RIGHT, relativePath, fileType, PathChangeType.ADDED));
 					}
 				}
 			}
 		}
 
-		// https://www.baeldung.com/java-executor-wait-for-threads
-		executorService.shutdown();
-		try {
-			if (!executorService.awaitTermination(60, TimeUnit.MINUTES)) {
-				executorService.shutdownNow();
-			}
-		} catch (InterruptedException ex) {
-			executorService.shutdownNow();
-			Thread.currentThread().interrupt();
+		if (ioExecutorService != null) {
+			// Wait for the files to be read first, since reading a modified file then compares it using the other executor
+			ExecutorUtilities.awaitTermination(ioExecutorService);
 		}
 
+		ExecutorUtilities.awaitTermination(executorService);
+
 		// Sort them, to ensure consistent ordering, even though multi-threaded
 		pathChanges.sort(Comparator.comparing(PathChangeInfo::getRelativePath, this.pathComparator));
 		javaPaths.acceptBoth(l -> l.sort(Comparator.comparing(ProjectPath::getPath, this.pathComparator)));
@@ -2109,71 +2499,252 @@ public class CompareDirectories {
 			if (shouldInclude) {
 				Path relativePath = rootPath.getLeft().relativize(path);
 
-				pathChanges.add(this.createDifference(relativePath, fileType, pathChangeType));
+				this.addPathChange(pathChanges, this.createDifference(relativePath, fileType, pathChangeType));
 			}
 		}
 
 		return new CompareDirectoriesDifferencesResult(pathChanges, javaPaths, javaPathDiffMap);
 	}
 
+	/**
+	 * Adds the path change and writes it to the report writer (if any)
+	 *
+	 * <p>If unable to write the row, the error is recorded (and rethrown by {@link #compare(BEXPair)})
+	 * and no more rows are written</p>
+	 */
+	private void addPathChange(final List<PathChangeInfo> pathChanges, final PathChangeInfo change) {
+		pathChanges.add(change);
+
+		if (this.reportWriter != null) {
+			List<String> values = getDifferenceValues(change);
+
+			// Synchronize, since paths are compared using multiple threads
+			synchronized (this.reportWriter) {
+				if (this.reportWriterFailure != null) {
+					return;
+				}
+
+				try {
+					this.reportWriter.writeDifference(DIFFERENCES_COLUMN_NAMES, values);
+				} catch (IOException e) {
+					this.reportWriterFailure = e;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates the executor used to walk the directories and read the files
+	 *
+	 * @return the executor, or <code>null</code> if not using virtual threads (the files are read using the diff threads)
+	 */
+	private ExecutorService newIOExecutorService() {
+		if (!this.options.contains(VIRTUAL_THREAD_IO)) {
+			return null;
+		}
+
+		ExecutorService executorService = ExecutorUtilities.newVirtualThreadPerTaskExecutor();
+
+		if (executorService == null) {
+			this.errPrintf("Virtual threads require Java 21 or later; reading files using the diff threads%n");
+		}
+
+		return executorService;
+	}
+
+	/**
+	 * Walks both directories
+	 *
+	 * @param ioExecutorService if not <code>null</code>, both directories are walked at the same time using this executor
+	 * @return the paths to check in each directory, sorted using the path comparator
+	 */
+	private BEXListPair<Path> walk(final BEXPair<Path> rootPath, final ExecutorService ioExecutorService)
+			throws IOException {
+		if (ioExecutorService == null) {
+			return new BEXListPair<>(rootPath.mapThrows(this::walk));
+		}
+
+		BEXPair<Future<List<Path>>> paths = rootPath.map(r -> ioExecutorService.submit(() -> this.walk(r)));
+
+		return new BEXListPair<>(paths.mapThrows(CompareDirectories::getWalkedPaths));
+	}
+
+	private List<Path> walk(final Path rootPath) throws IOException {
+		try (Stream<Path> paths = Files.walk(rootPath)) {
+			return paths
+					// Run in parallel for performance boost
+					.parallel()
+					.filter(this.shouldCheckPath)
+					// Sort so can iterate over and find differences
+					.sorted(this.pathComparator)
+					.collect(toList());
+		}
+	}
+
+	private static List<Path> getWalkedPaths(final Future<List<Path>> paths) throws IOException {
+		try {
+			return paths.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while walking directory", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof UncheckedIOException) {
+				// Thrown by Files.walk if unable to read a subdirectory
+				throw ((UncheckedIOException) cause).getCause();
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+
+			throw new IllegalStateException("Unable to walk directory", cause);
+		}
+	}
+
+	/**
+	 * Reads the file using a virtual thread, then (if modified) determines the differences using the diff executor
+	 *
+	 * <p>Waits if the max number of files are already being read or compared (see {@link #ioConcurrency(int)})</p>
+	 */
+	private void determineFileChanges(final ExecutorService ioExecutorService, final Semaphore ioPermits,
+			final ExecutorService executorService, final BEXPair<Path> path, final Path relativePath,
+			final List<PathChangeInfo> pathChanges, final BEXListPair<ProjectPath> javaPaths,
+			final Map<Path, DifferencesResult> javaPathDiffMap, final JavaParseStage javaParseStage) {
+		try {
+			ioPermits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting to read " + relativePath, e);
+		}
+
+		ioExecutorService.execute(() -> {
+			boolean isComparing = false;
+
+			try {
+				BEXPair<String> text = this.readModifiedText(path, relativePath, pathChanges);
+
+				if (text != null) {
+					// Release the permit after comparing, so the text isn't kept waiting for a diff thread
+					executorService.execute(() -> {
+						try {
+							this.addFileChanges(path, relativePath, text, pathChanges, javaPaths, javaPathDiffMap,
+									javaParseStage);
+						} finally {
+							ioPermits.release();
+						}
+					});
+
+					isComparing = true;
+				}
+			} finally {
+				if (!isComparing) {
+					ioPermits.release();
+				}
+			}
+		});
+	}
+
 	private void determineFileChanges(final BEXPair<Path> path, final Path relativePath,
 			final List<PathChangeInfo> pathChanges, final BEXListPair<ProjectPath> javaPaths,
-			final Map<Path, DifferencesResult> javaPathDiffMap) {
+			final Map<Path, DifferencesResult> javaPathDiffMap, final JavaParseStage javaParseStage) {
+		BEXPair<String> text = this.readModifiedText(path, relativePath, pathChanges);
+
+		if (text != null) {
+			this.addFileChanges(path, relativePath, text, pathChanges, javaPaths, javaPathDiffMap, javaParseStage);
+		}
+	}
+
+	/**
+	 * Reads the text of a file which exists in both workspaces
+	 *
+	 * <p>(only I/O, so can be run on a different thread than the diff)</p>
+	 *
+	 * @return the text of both files (or <code>null</code> if the file wasn't modified or couldn't be read)
+	 */
+	private BEXPair<String> readModifiedText(final BEXPair<Path> path, final Path relativePath,
+			final List<PathChangeInfo> pathChanges) {
 		// Path exists in both workspaces
 
 		BEXPair<String> text;
 		try {
+			// Fast path for unchanged files (most files, when comparing two versions of a large code base)
+			if (this.options.contains(TRUST_SIZE_AND_MODIFIED_TIME)
+					&& FileUtilities.hasSameSizeAndModifiedTime(path.getLeft(), path.getRight())) {
+				return null;
+			}
+
+			// Compare bytes before decoding, stopping at the first difference
+			if (FileUtilities.hasSameContents(path.getLeft(), path.getRight())) {
+				return null;
+			}
+
 			text = path.mapThrows(CompareDirectories::readFileContents);
 		} catch (IOException e) {
 			// If not able to read file, add as difference
-			pathChanges.add(this.createDifference(relativePath, FileType.FILE, PathChangeType.MODIFIED));
-			return;
+			this.addPathChange(pathChanges,
+					this.createDifference(relativePath, FileType.FILE, PathChangeType.MODIFIED));
+			return null;
 		}
 
-		if (!text.test(Object::equals)) {
-			// File was modified
-			if (!this.isTesting) {
-				this.printf("Modified '%s' (%s)%n", relativePath, FileType.FILE);
-			}
+		// Check if the decoded text is the same (even if the bytes differ)
+		return text.test(Object::equals) ? null : text;
+	}
+
+	/**
+	 * Determines the differences in a modified file
+	 */
+	private void addFileChanges(final BEXPair<Path> path, final Path relativePath, final BEXPair<String> text,
+			final List<PathChangeInfo> pathChanges, final BEXListPair<ProjectPath> javaPaths,
+			final Map<Path, DifferencesResult> javaPathDiffMap, final JavaParseStage javaParseStage) {
+		// File was modified
+		if (!this.isTesting) {
+			this.printf("Modified '%s' (%s)%n", relativePath, FileType.FILE);
+		}
 
-			DifferencesResult differencesResult;
-			int differenceCount;
-			int deltas;
+		DifferencesResult differencesResult;
+		int differenceCount;
+		int deltas;
 
-			if (this.skipTextCompare.test(path.getRight())) {
-				// Do not compare text, but still indicate difference
-				differencesResult = null;
-				// Use negates so don't show counts on report (since didn't calculate counts)
-				differenceCount = -1;
-				deltas = -1;
-			} else {
-				// Get differences
-				// (TODO: do something with the differences)
-				differencesResult = this.getDifferences(relativePath,
-						new BEXListPair<>(text.map(CompareDirectories::splitLines)),
-						DiffHelper.WHITESPACE_NORMALIZATION_FUNCTION);
+		if (this.skipTextCompare.test(path.getRight())) {
+			// Do not compare text, but still indicate difference
+			differencesResult = null;
+			// Use negates so don't show counts on report (since didn't calculate counts)
+			differenceCount = -1;
+			deltas = -1;
+		} else {
+			// Get differences
+			// (TODO: do something with the differences)
+			differencesResult = this.getDifferences(relativePath,
+					new BEXListPair<>(text.map(CompareDirectories::splitLines)),
+					DiffHelper.WHITESPACE_NORMALIZATION_FUNCTION);
 
-				differenceCount = getDifferenceCount(differencesResult);
+			differenceCount = getDifferenceCount(differencesResult);
 
-				// Count only the number of blocks which have differences
-				deltas = getDeltaCount(differencesResult);
-			}
+			// Count only the number of blocks which have differences
+			deltas = getDeltaCount(differencesResult);
+		}
 
-			pathChanges.add(this.createDifference(relativePath, FileType.FILE, PathChangeType.MODIFIED,
-					differenceCount, deltas));
+		this.addPathChange(pathChanges, this.createDifference(relativePath, FileType.FILE,
+				PathChangeType.MODIFIED, differenceCount, deltas));
 
-			if (deltas > 0 && path.getRight().toString().endsWith(".java")) {
-				// If has differences, parse Java code so can split into various methods
-				String project = getProject(relativePath);
+		if (deltas > 0 && path.getRight().toString().endsWith(".java")) {
+			// If has differences, parse Java code so can split into various methods
+			String project = getProject(relativePath);
 
-				BEXPair<ProjectPath> projectPath = path.map(f -> new ProjectPath(project, f));
+			BEXPair<ProjectPath> projectPath = path.map(f -> new ProjectPath(project, f));
 
-				// Track paths so can parse all at once (otherwise need to reset settings, which kills performance)
-				javaPaths.add(projectPath);
+			// Track paths so can parse all at once (otherwise need to reset settings, which kills performance)
+			javaPaths.add(projectPath);
 
-				// 8/28/2019 Put both left path and right path in map to help read diff / line information when parsing code
-				path.acceptBoth(f -> javaPathDiffMap.put(f, differencesResult));
-			}
+			// 8/28/2019 Put both left path and right path in map to help read diff / line information when parsing code
+			path.acceptBoth(f -> javaPathDiffMap.put(f, differencesResult));
+
+			// Parse while comparing the other files
+			javaParseStage.add(projectPath);
 		}
 	}
 
@@ -2227,15 +2798,16 @@ public class CompareDirectories {
 	 *
 	 *
 	 * @param sheet
+	 * @param rowNum
 	 * @return
 	 */
-	private Row addDifference(final XSSFSheet sheet, final PathChangeInfo change) {
+	private Row addDifference(final Sheet sheet, final int rowNum, final PathChangeInfo change) {
 		if (this.isTesting) {
 			this.println("Add difference: " + change.getRelativePath());
 		}
 
 		// Add most values, others added below
-		Row row = ExcelUtilities.addRow(sheet, change.getProject(), change.getDirectory(),
+		Row row = ExcelUtilities.addRow(sheet, rowNum, change.getProject(), change.getDirectory(),
 				change.getFilenameWithoutExtension(), change.getExtension(), change.getFileType().toString(),
 				change.getPathChangeType().toString());
 
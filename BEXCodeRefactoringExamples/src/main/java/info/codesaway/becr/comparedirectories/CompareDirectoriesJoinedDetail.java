@@ -2,6 +2,7 @@ package info.codesaway.becr.comparedirectories;
 
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -35,6 +36,11 @@ public final class CompareDirectoriesJoinedDetail {
 	 */
 	private final Set<String> notes = new LinkedHashSet<>();
 
+	/**
+	 * Values for the report (determined once, since determining them also sets the impact)
+	 */
+	private List<String> reportValues;
+
 	/**
 	 * @param leftCode the "source" code info (may be null for added or unknown blocks)
 	 * @param rightCode the "destination" code info (may be null for deleted or unknown blocks)
@@ -131,6 +137,14 @@ public final class CompareDirectoriesJoinedDetail {
 				this.extendedDifferenceCount, this.differenceCount);
 	}
 
+	List<String> getReportValues() {
+		return this.reportValues;
+	}
+
+	void setReportValues(final List<String> reportValues) {
+		this.reportValues = reportValues;
+	}
+
 	public long getModifiedDifferences() {
 		return this.modifiedDifferences;
 	}
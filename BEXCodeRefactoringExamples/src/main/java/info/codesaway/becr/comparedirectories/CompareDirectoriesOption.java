@@ -1,5 +1,29 @@
 package info.codesaway.becr.comparedirectories;
 
 public enum CompareDirectoriesOption {
-	EXCLUDE_DEFAULT_SUBSTITUTIONS
+	EXCLUDE_DEFAULT_SUBSTITUTIONS,
+
+	/**
+	 * Treat files with the same size and last modified time as unchanged, without reading their contents
+	 *
+	 * <p>Speeds up comparing large directories where most files are unchanged (such as a copy which preserved timestamps);
+	 * however, a file modified without changing its size and last modified time won't be reported</p>
+	 *
+	 * @since 0.15
+	 */
+	TRUST_SIZE_AND_MODIFIED_TIME,
+
+	/**
+	 * Walk the directories and read the files using virtual threads (Java 21 or later)
+	 *
+	 * <p>Reading files mostly waits on I/O, so many files can be read at the same time without a thread per file;
+	 * only the diffs and parsing use a fixed number of platform threads.
+	 * Helps most when the directories are on a network drive or other slower storage.</p>
+	 *
+	 * <p>If virtual threads are not supported by the running Java version, files are read using the diff threads (the default)</p>
+	 *
+	 * @since 0.15
+	 * @see CompareDirectories#ioConcurrency(int)
+	 */
+	VIRTUAL_THREAD_IO
 }
@@ -0,0 +1,40 @@
+package info.codesaway.becr.comparedirectories;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes the rows of a compare report, while the compare is still running
+ *
+ * <p>The rows have the same columns as the Excel report: a difference row for each changed path (the Differences sheet)
+ * and a detail row for each changed block of Java code (the project sheets).
+ * Each row is written as soon as it's known, so a consumer can start processing before the compare finishes.</p>
+ *
+ * <p>CompareDirectories synchronizes the calls (rows are found using multiple threads);
+ * the rows are written in the order they're found, versus sorted like the Excel report.</p>
+ *
+ * @since 0.15
+ * @see CompareDirectories#reportWriter(CompareDirectoriesReportWriter)
+ * @see JsonLinesReportWriter
+ * @see CsvReportWriter
+ */
+public interface CompareDirectoriesReportWriter extends Closeable {
+	/**
+	 * Writes the row for a changed path
+	 *
+	 * @param columnNames the column names (the same for each difference row)
+	 * @param values the values (may contain <code>null</code> values)
+	 * @throws IOException if an I/O error occurs
+	 */
+	void writeDifference(List<String> columnNames, List<String> values) throws IOException;
+
+	/**
+	 * Writes the row for a changed block of Java code (such as a method)
+	 *
+	 * @param columnNames the column names (the same for each detail row)
+	 * @param values the values (may contain <code>null</code> values)
+	 * @throws IOException if an I/O error occurs
+	 */
+	void writeDetail(List<String> columnNames, List<String> values) throws IOException;
+}
@@ -0,0 +1,124 @@
+package info.codesaway.becr.comparedirectories;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Writes the report as CSV (RFC 4180), with the difference rows and detail rows written to separate writers
+ *
+ * <p>The header row is written before the first row of each writer (a writer with no rows is left empty).
+ * <code>null</code> values are written as empty values.</p>
+ *
+ * <p>The writers are flushed after each row, so a consumer reading the files sees each row as soon as it's written.</p>
+ *
+ * @since 0.15
+ */
+public final class CsvReportWriter implements CompareDirectoriesReportWriter {
+	private final Writer differencesWriter;
+	private final Writer detailsWriter;
+
+	private boolean hasWrittenDifferencesHeader;
+	private boolean hasWrittenDetailsHeader;
+
+	// Reused for each row
+	private final StringBuilder line = new StringBuilder();
+
+	/**
+	 *
+	 * @param differencesWriter the writer for the difference rows (closed when this report writer is closed)
+	 * @param detailsWriter the writer for the detail rows (closed when this report writer is closed)
+	 */
+	public CsvReportWriter(final Writer differencesWriter, final Writer detailsWriter) {
+		this.differencesWriter = Objects.requireNonNull(differencesWriter, "differencesWriter");
+		this.detailsWriter = Objects.requireNonNull(detailsWriter, "detailsWriter");
+	}
+
+	@Override
+	public void writeDifference(final List<String> columnNames, final List<String> values) throws IOException {
+		if (!this.hasWrittenDifferencesHeader) {
+			this.writeRow(this.differencesWriter, columnNames);
+			this.hasWrittenDifferencesHeader = true;
+		}
+
+		this.writeRow(this.differencesWriter, values);
+	}
+
+	@Override
+	public void writeDetail(final List<String> columnNames, final List<String> values) throws IOException {
+		if (!this.hasWrittenDetailsHeader) {
+			this.writeRow(this.detailsWriter, columnNames);
+			this.hasWrittenDetailsHeader = true;
+		}
+
+		this.writeRow(this.detailsWriter, values);
+	}
+
+	private void writeRow(final Writer writer, final List<String> values) throws IOException {
+		StringBuilder line = this.line;
+		line.setLength(0);
+
+		for (int i = 0; i < values.size(); i++) {
+			if (i > 0) {
+				line.append(',');
+			}
+
+			appendValue(line, values.get(i));
+		}
+
+		line.append("\r\n");
+
+		writer.append(line);
+		writer.flush();
+	}
+
+	/**
+	 * Appends the value, quoting it if it contains a comma, quote, or line break
+	 */
+	private static void appendValue(final StringBuilder line, final String value) {
+		if (value == null) {
+			return;
+		}
+
+		boolean shouldQuote = false;
+
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+
+			if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+				shouldQuote = true;
+				break;
+			}
+		}
+
+		if (!shouldQuote) {
+			line.append(value);
+			return;
+		}
+
+		line.append('"');
+
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+
+			if (c == '"') {
+				// Quotes are escaped by doubling them
+				line.append('"');
+			}
+
+			line.append(c);
+		}
+
+		line.append('"');
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			this.differencesWriter.close();
+		} finally {
+			this.detailsWriter.close();
+		}
+	}
+}
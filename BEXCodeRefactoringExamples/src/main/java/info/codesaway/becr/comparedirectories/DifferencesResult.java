@@ -18,16 +18,33 @@ public final class DifferencesResult {
 	// TODO: see if can remove (think only used once and can use diffBlocks instead)
 	private final List<DiffEdit> diff;
 	private final List<DiffUnit> diffBlocks;
+	private final boolean isApproximate;
 
 	public DifferencesResult(final Path relativePath, final BEXListPair<DiffLine> lines,
 			final BiFunction<String, String, DiffNormalizedText> normalizationFunction, final List<DiffEdit> diff,
 			final List<DiffUnit> diffBlocks) {
+		this(relativePath, lines, normalizationFunction, diff, diffBlocks, false);
+	}
+
+	/**
+	 * @param relativePath
+	 * @param lines
+	 * @param normalizationFunction
+	 * @param diff
+	 * @param diffBlocks
+	 * @param isApproximate whether the diff budget ran out (so the diff is valid, but coarser)
+	 * @since 0.15
+	 */
+	public DifferencesResult(final Path relativePath, final BEXListPair<DiffLine> lines,
+			final BiFunction<String, String, DiffNormalizedText> normalizationFunction, final List<DiffEdit> diff,
+			final List<DiffUnit> diffBlocks, final boolean isApproximate) {
 		this.relativePath = relativePath;
 		this.lines = lines;
 		this.normalizationFunction = normalizationFunction;
 
 		this.diff = diff;
 		this.diffBlocks = diffBlocks;
+		this.isApproximate = isApproximate;
 	}
 
 	public Path getRelativePath() {
@@ -61,4 +78,14 @@ public final class DifferencesResult {
 	public List<DiffUnit> getDiffBlocks() {
 		return this.diffBlocks;
 	}
+
+	/**
+	 * Indicates if the diff budget ran out, so the diff is approximate (valid, but coarser)
+	 *
+	 * @return <code>true</code> if the diff is approximate
+	 * @since 0.15
+	 */
+	public boolean isApproximate() {
+		return this.isApproximate;
+	}
 }
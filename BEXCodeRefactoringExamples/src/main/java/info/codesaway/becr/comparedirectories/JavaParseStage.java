@@ -0,0 +1,236 @@
+package info.codesaway.becr.comparedirectories;
+
+import static info.codesaway.bex.BEXSide.LEFT;
+import static info.codesaway.bex.BEXSide.RIGHT;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.FileASTRequestor;
+import org.eclipse.jdt.core.dom.PackageDeclaration;
+
+import info.codesaway.becr.parsing.ProjectPath;
+import info.codesaway.becr.util.ExecutorUtilities;
+import info.codesaway.bex.BEXMapPair;
+import info.codesaway.bex.BEXPair;
+import info.codesaway.bex.BEXPairValue;
+import info.codesaway.bex.BEXSide;
+
+/**
+ * Stage which parses the Java files while the other files are still being compared
+ *
+ * <p>Java paths are added (after their differences are determined) to a bounded queue.
+ * The stage's thread takes the paths from the queue and groups them into batches; each side of each batch is parsed using a bounded executor,
+ * then each compilation unit is visited using another bounded executor.
+ * If the queue is full, adding a path waits until the stage catches up (so comparing files doesn't get too far ahead of parsing).</p>
+ *
+ * <p>Each side of a batch is parsed using a single call to {@link ASTParser#createASTs}, since setting up the parser is expensive.
+ * The parser is reset after each call, so a new parser is created for each side of each batch.
+ * Since each parser is only used by one thread, the left and right sides (and multiple batches) are parsed at the same time.</p>
+ *
+ * @since 0.15
+ */
+final class JavaParseStage {
+	/**
+	 * Marks the end of the Java paths
+	 */
+	private static final BEXPair<ProjectPath> END = new BEXPairValue<>(null, null);
+
+	private final BEXPair<Supplier<ASTParser>> parserSupplier;
+	private final Map<Path, DifferencesResult> diffs;
+	private final int batchSize;
+	private final BlockingQueue<BEXPair<ProjectPath>> queue;
+	private final ExecutorService parserExecutor;
+	private final ExecutorService visitorExecutor;
+	private final BEXMapPair<String, CompareJavaCodeInfo> results = new BEXMapPair<>(ConcurrentHashMap::new);
+
+	/**
+	 * Parser which was already created, used for the first batch
+	 *
+	 * <p>(only used by the stage's thread, which passes the parser to the task parsing the first batch)</p>
+	 */
+	private final Map<BEXSide, ASTParser> unusedParsers = new EnumMap<>(BEXSide.class);
+
+	private final Thread thread;
+	private volatile Throwable failure;
+
+	/**
+	 *
+	 * @param parser the parser for each side, used for the first batch
+	 * @param parserSupplier supplies a new parser for each side, used for each other batch
+	 * @param diffs map from path to its differences (each Java path's differences must be added before the path is added)
+	 * @param batchSize the number of Java paths to parse at once
+	 * @param parserParallelism the number of threads used to parse (each side of each batch is parsed by one thread)
+	 * @param visitParallelism the number of threads used to visit the compilation units
+	 */
+	JavaParseStage(final BEXPair<ASTParser> parser, final BEXPair<Supplier<ASTParser>> parserSupplier,
+			final Map<Path, DifferencesResult> diffs, final int batchSize, final int parserParallelism,
+			final int visitParallelism) {
+		this.parserSupplier = parserSupplier;
+		this.diffs = diffs;
+		this.batchSize = batchSize;
+		this.queue = new ArrayBlockingQueue<>(batchSize * 2);
+		// Queue at most one waiting task per thread (each task holds a batch of paths)
+		this.parserExecutor = ExecutorUtilities.newBoundedExecutor("bex-parser", parserParallelism,
+				parserParallelism);
+		this.visitorExecutor = ExecutorUtilities.newBoundedExecutor("bex-visit", visitParallelism,
+				visitParallelism * 2);
+
+		parser.acceptWithSide((p, side) -> this.unusedParsers.put(side, p));
+
+		this.thread = new Thread(this::run, "bex-parse");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/**
+	 * Adds the Java path to be parsed, waiting if the queue is full
+	 *
+	 * @param javaPath the Java path
+	 */
+	void add(final BEXPair<ProjectPath> javaPath) {
+		try {
+			this.queue.put(javaPath);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting to parse " + javaPath.getRight(), e);
+		}
+	}
+
+	/**
+	 * Waits for all added Java paths to be parsed
+	 *
+	 * @return map from each Java pathname to its parse result
+	 */
+	BEXMapPair<String, CompareJavaCodeInfo> finish() {
+		this.add(END);
+
+		try {
+			this.thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for Java code to be parsed", e);
+		}
+
+		// Wait for parsing first, since parsing then visits each compilation unit using the other executor
+		ExecutorUtilities.awaitTermination(this.parserExecutor);
+		ExecutorUtilities.awaitTermination(this.visitorExecutor);
+
+		Throwable failure = this.failure;
+		if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		} else if (failure instanceof Error) {
+			throw (Error) failure;
+		} else if (failure != null) {
+			throw new IllegalStateException("Unable to parse Java code", failure);
+		}
+
+		return this.results;
+	}
+
+	private void run() {
+		List<BEXPair<ProjectPath>> batch = new ArrayList<>(this.batchSize);
+
+		while (true) {
+			BEXPair<ProjectPath> javaPath;
+			try {
+				javaPath = this.queue.take();
+			} catch (InterruptedException e) {
+				this.failure = e;
+				return;
+			}
+
+			if (javaPath == END) {
+				break;
+			}
+
+			batch.add(javaPath);
+
+			if (batch.size() >= this.batchSize) {
+				this.parse(batch);
+				// The parser tasks keep using the batch, so start a new batch
+				batch = new ArrayList<>(this.batchSize);
+			}
+		}
+
+		this.parse(batch);
+	}
+
+	private void parse(final List<BEXPair<ProjectPath>> batch) {
+		if (batch.isEmpty() || this.failure != null) {
+			// If parsing failed, keep taking Java paths (so adding doesn't wait forever), but don't parse them
+			return;
+		}
+
+		// Parse the left and right sides at the same time
+		// (waits if the parser threads are busy and the executor's queue is full)
+		try {
+			this.parse(LEFT, batch);
+			this.parse(RIGHT, batch);
+		} catch (Throwable e) {
+			this.failure = e;
+		}
+	}
+
+	private void parse(final BEXSide side, final List<BEXPair<ProjectPath>> batch) {
+		ASTParser unusedParser = this.unusedParsers.remove(side);
+
+		this.parserExecutor.execute(() -> {
+			if (this.failure != null) {
+				return;
+			}
+
+			try {
+				ASTParser parser = unusedParser != null ? unusedParser : this.parserSupplier.get(side).get();
+				this.parse(side, batch, parser);
+			} catch (Throwable e) {
+				this.failure = e;
+			}
+		});
+	}
+
+	private void parse(final BEXSide side, final List<BEXPair<ProjectPath>> batch, final ASTParser parser) {
+		Map<String, CompareJavaCodeInfo> sideResults = this.results.get(side);
+
+		String[] sourcePathnames = batch.stream()
+				.map(p -> p.get(side).getPathname())
+				.toArray(String[]::new);
+
+		parser.createASTs(sourcePathnames, null, new String[0],
+				new FileASTRequestor() {
+					@Override
+					public void acceptAST(final String sourcePathname,
+							final CompilationUnit cu) {
+
+						JavaParseStage.this.visitorExecutor.execute(() -> {
+							Path path = Paths.get(sourcePathname);
+							CompareDirectoriesVisitor visitor = new CompareDirectoriesVisitor(cu,
+									JavaParseStage.this.diffs.get(path).getLines(side));
+							cu.accept(visitor);
+
+							String packageName = "";
+
+							PackageDeclaration packageDeclaration = cu.getPackage();
+
+							if (packageDeclaration != null) {
+								packageName = packageDeclaration.getName().toString();
+							}
+
+							sideResults.put(sourcePathname,
+									new CompareJavaCodeInfo(packageName, visitor.getDetails()));
+						});
+					}
+				}, null);
+	}
+}
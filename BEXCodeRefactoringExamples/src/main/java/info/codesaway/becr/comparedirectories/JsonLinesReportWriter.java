@@ -0,0 +1,112 @@
+package info.codesaway.becr.comparedirectories;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Writes the report as JSON Lines (one JSON object per line)
+ *
+ * <p>Each object has a <code>"record"</code> property (<code>"difference"</code> or <code>"detail"</code>),
+ * followed by a property for each column (using the column name as the property name).</p>
+ *
+ * <pre>{"record":"difference","Project":"project","Directory":"src/main/java",...}</pre>
+ *
+ * <p>The writer is flushed after each line, so a consumer reading the file sees each row as soon as it's written.</p>
+ *
+ * @since 0.15
+ */
+public final class JsonLinesReportWriter implements CompareDirectoriesReportWriter {
+	private final Writer writer;
+
+	// Reused for each line
+	private final StringBuilder line = new StringBuilder();
+
+	/**
+	 *
+	 * @param writer the writer (closed when this report writer is closed)
+	 */
+	public JsonLinesReportWriter(final Writer writer) {
+		this.writer = Objects.requireNonNull(writer, "writer");
+	}
+
+	@Override
+	public void writeDifference(final List<String> columnNames, final List<String> values) throws IOException {
+		this.write("difference", columnNames, values);
+	}
+
+	@Override
+	public void writeDetail(final List<String> columnNames, final List<String> values) throws IOException {
+		this.write("detail", columnNames, values);
+	}
+
+	private void write(final String record, final List<String> columnNames, final List<String> values)
+			throws IOException {
+		StringBuilder line = this.line;
+		line.setLength(0);
+
+		line.append("{\"record\":");
+		appendString(line, record);
+
+		for (int i = 0; i < columnNames.size(); i++) {
+			line.append(',');
+			appendString(line, columnNames.get(i));
+			line.append(':');
+			appendString(line, values.get(i));
+		}
+
+		line.append("}\n");
+
+		this.writer.append(line);
+		this.writer.flush();
+	}
+
+	/**
+	 * Appends the value as a JSON string (or <code>null</code>)
+	 */
+	private static void appendString(final StringBuilder line, final String value) {
+		if (value == null) {
+			line.append("null");
+			return;
+		}
+
+		line.append('"');
+
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+
+			switch (c) {
+			case '"':
+				line.append("\\\"");
+				break;
+			case '\\':
+				line.append("\\\\");
+				break;
+			case '\n':
+				line.append("\\n");
+				break;
+			case '\r':
+				line.append("\\r");
+				break;
+			case '\t':
+				line.append("\\t");
+				break;
+			default:
+				if (c < ' ') {
+					// Other control characters
+					line.append(String.format("\\u%04x", (int) c));
+				} else {
+					line.append(c);
+				}
+			}
+		}
+
+		line.append('"');
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.writer.close();
+	}
+}
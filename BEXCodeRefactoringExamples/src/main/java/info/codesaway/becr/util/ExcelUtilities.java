@@ -99,7 +99,25 @@ public final class ExcelUtilities {
 	}
 
 	public static Row addRow(final Sheet sheet, final String... columnValues) {
-		Row row = sheet.createRow(sheet.getLastRowNum() + 1);
+		return addRow(sheet, sheet.getLastRowNum() + 1, columnValues);
+	}
+
+	/**
+	 * Adds a row with the specified row number
+	 *
+	 * <p>Used for a streaming sheet, which doesn't know its last row number once the rows are written to disk</p>
+	 *
+	 * @param sheet
+	 *        the sheet
+	 * @param rowNum
+	 *        the 0-based row number
+	 * @param columnValues
+	 *        the column values
+	 * @return the row
+	 * @since 0.15
+	 */
+	public static Row addRow(final Sheet sheet, final int rowNum, final String... columnValues) {
+		Row row = sheet.createRow(rowNum);
 
 		for (int i = 0; i < columnValues.length; i++) {
 			Cell cell = row.createCell(i);
@@ -0,0 +1,114 @@
+package info.codesaway.becr.util;
+
+import static info.codesaway.bex.util.BEXUtilities.checkArgument;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Utilities to create and wait for executors
+ *
+ * @since 0.15
+ */
+public final class ExecutorUtilities {
+	private ExecutorUtilities() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Creates an executor with a fixed number of threads and a bounded queue
+	 *
+	 * <p>When the queue is full, <code>execute</code> blocks until there is room in the queue
+	 * (so a fast producer waits for the slower consumers, versus queuing an unbounded number of tasks)</p>
+	 *
+	 * @param name the name of the threads (followed by the thread number)
+	 * @param parallelism the number of threads
+	 * @param queueCapacity the max number of tasks waiting to run
+	 * @return the executor
+	 */
+	public static ExecutorService newBoundedExecutor(final String name, final int parallelism,
+			final int queueCapacity) {
+		checkArgument(parallelism > 0, "parallelism must be positive");
+		checkArgument(queueCapacity > 0, "queueCapacity must be positive");
+
+		AtomicInteger threadNumber = new AtomicInteger();
+		ThreadFactory threadFactory = r -> {
+			Thread thread = new Thread(r, name + "-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+
+		return new ThreadPoolExecutor(parallelism, parallelism, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), threadFactory, (r, executor) -> {
+					if (executor.isShutdown()) {
+						throw new RejectedExecutionException("Executor has been shut down");
+					}
+
+					try {
+						// Wait for room in the queue (back-pressure)
+						executor.getQueue().put(r);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new RejectedExecutionException("Interrupted while waiting for room in the queue", e);
+					}
+				});
+	}
+
+	/**
+	 * Creates an executor which starts a new virtual thread for each task, if supported
+	 *
+	 * <p>Virtual threads were added in Java 21, so they are looked up when called
+	 * (this allows using virtual threads when running on Java 21 or later, while still compiling and running on Java 8)</p>
+	 *
+	 * @return the executor, or <code>null</code> if virtual threads are not supported by the running Java version
+	 */
+	public static ExecutorService newVirtualThreadPerTaskExecutor() {
+		Method method;
+		try {
+			method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException e) {
+			// Before Java 19 (Java 19 / 20 have the method, as a preview feature)
+			return null;
+		}
+
+		try {
+			return (ExecutorService) method.invoke(null);
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof UnsupportedOperationException) {
+				// Java 19 / 20 without preview features enabled
+				return null;
+			}
+
+			throw new IllegalStateException("Unable to create virtual thread executor", e.getCause());
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException("Unable to create virtual thread executor", e);
+		}
+	}
+
+	/**
+	 * Shuts down the executor and waits for the submitted tasks to finish
+	 *
+	 * @param executorService the executor
+	 */
+	public static void awaitTermination(final ExecutorService executorService) {
+		// https://www.baeldung.com/java-executor-wait-for-threads
+		// Set to 60 minutes just in case it takes a while
+		executorService.shutdown();
+		try {
+			if (!executorService.awaitTermination(60, TimeUnit.MINUTES)) {
+				executorService.shutdownNow();
+			}
+		} catch (InterruptedException ex) {
+			executorService.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package info.codesaway.becr.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Utilities to compare files without reading them fully into memory
+ *
+ * @since 0.15
+ */
+public final class FileUtilities {
+	private FileUtilities() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Size of the chunks read from each file when comparing contents
+	 */
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	/**
+	 * Buffers not currently used to compare contents
+	 *
+	 * <p>Each comparison takes buffers from the pool (allocating them if the pool is empty) and returns them when done,
+	 * so the pool holds at most the buffers for the max number of files compared at the same time
+	 * (versus a ThreadLocal, which would allocate new buffers for each virtual thread)</p>
+	 */
+	private static final Deque<Buffers> BUFFERS = new ConcurrentLinkedDeque<>();
+
+	/**
+	 * Indicates if the files have the same size and last modified time
+	 *
+	 * <p>Reads only the file attributes; files with the same size and last modified time are very likely unchanged
+	 * (such as when a directory is copied preserving timestamps)</p>
+	 *
+	 * @param leftPath the left path
+	 * @param rightPath the right path
+	 * @return <code>true</code> if the files have the same size and last modified time
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static boolean hasSameSizeAndModifiedTime(final Path leftPath, final Path rightPath) throws IOException {
+		BasicFileAttributes leftAttributes = Files.readAttributes(leftPath, BasicFileAttributes.class);
+		BasicFileAttributes rightAttributes = Files.readAttributes(rightPath, BasicFileAttributes.class);
+
+		return leftAttributes.size() == rightAttributes.size()
+				&& leftAttributes.lastModifiedTime().equals(rightAttributes.lastModifiedTime());
+	}
+
+	/**
+	 * Indicates if the files have identical contents
+	 *
+	 * <p>Compares the file sizes first, then reads both files in chunks, stopping at the first chunk which differs
+	 * (the contents are never decoded or fully read into memory)</p>
+	 *
+	 * @param leftPath the left path
+	 * @param rightPath the right path
+	 * @return <code>true</code> if the files have identical bytes
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static boolean hasSameContents(final Path leftPath, final Path rightPath) throws IOException {
+		if (Files.size(leftPath) != Files.size(rightPath)) {
+			return false;
+		}
+
+		Buffers buffers = BUFFERS.pollFirst();
+
+		if (buffers == null) {
+			buffers = new Buffers();
+		}
+
+		try {
+			return hasSameContents(leftPath, rightPath, buffers.left, buffers.right);
+		} finally {
+			BUFFERS.offerFirst(buffers);
+		}
+	}
+
+	private static boolean hasSameContents(final Path leftPath, final Path rightPath, final ByteBuffer leftBuffer,
+			final ByteBuffer rightBuffer) throws IOException {
+		try (FileChannel leftChannel = FileChannel.open(leftPath, StandardOpenOption.READ);
+				FileChannel rightChannel = FileChannel.open(rightPath, StandardOpenOption.READ)) {
+			while (true) {
+				int leftCount = readChunk(leftChannel, leftBuffer);
+				int rightCount = readChunk(rightChannel, rightBuffer);
+
+				if (leftCount != rightCount) {
+					// File changed size while reading
+					return false;
+				}
+
+				if (leftCount == 0) {
+					return true;
+				}
+
+				// Compares the remaining bytes (from position 0 to the number of bytes read)
+				if (!leftBuffer.equals(rightBuffer)) {
+					return false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the next chunk, filling the buffer unless the end of the file is reached
+	 *
+	 * @return the number of bytes read (0 at the end of the file)
+	 */
+	private static int readChunk(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+		buffer.clear();
+
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) == -1) {
+				break;
+			}
+		}
+
+		buffer.flip();
+		return buffer.remaining();
+	}
+
+	private static final class Buffers {
+		private final ByteBuffer left = ByteBuffer.allocate(CHUNK_SIZE);
+		private final ByteBuffer right = ByteBuffer.allocate(CHUNK_SIZE);
+	}
+}